@@ -0,0 +1,14 @@
+package com.nova.support.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Конфигурация очереди AI задач: планировщик опроса очереди и sweeper аренд
+ */
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(AiJobProperties.class)
+public class AiJobConfig {
+}
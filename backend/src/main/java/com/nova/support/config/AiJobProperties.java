@@ -0,0 +1,74 @@
+package com.nova.support.config;
+
+import com.nova.support.domain.enums.AiJobType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Настройки очереди AI задач (ai.jobs.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "ai.jobs")
+public class AiJobProperties {
+    
+    /**
+     * Максимальное количество попыток до отправки в dead letter
+     */
+    private int maxAttempts = 5;
+    
+    /**
+     * Задержка перед первым повтором, далее удваивается
+     */
+    private Duration backoffBase = Duration.ofSeconds(5);
+    
+    /**
+     * Максимальная задержка между повторами
+     */
+    private Duration backoffMax = Duration.ofMinutes(10);
+    
+    /**
+     * Запас аренды сверх таймаута задачи
+     */
+    private Duration leaseMargin = Duration.ofMinutes(1);
+    
+    /**
+     * Срок хранения выполненных задач
+     */
+    private Duration doneRetention = Duration.ofDays(7);
+    
+    /**
+     * Срок хранения задач в dead letter (для разбора и повтора)
+     */
+    private Duration deadRetention = Duration.ofDays(30);
+    
+    /**
+     * Задач, удаляемых одним запросом очистки
+     */
+    private int purgeBatchSize = 1000;
+    
+    /**
+     * Количество одновременно выполняемых задач каждого типа на инстанс
+     */
+    private Map<AiJobType, Integer> concurrency = new HashMap<>();
+    
+    /**
+     * Таймаут выполнения задачи каждого типа
+     */
+    private Map<AiJobType, Duration> timeout = new HashMap<>();
+    
+    public int concurrencyOf(AiJobType type) {
+        return concurrency.getOrDefault(type, 1);
+    }
+    
+    public Duration timeoutOf(AiJobType type) {
+        return timeout.getOrDefault(type, Duration.ofMinutes(2));
+    }
+    
+    public Duration leaseOf(AiJobType type) {
+        return timeoutOf(type).plus(leaseMargin);
+    }
+}
@@ -0,0 +1,90 @@
+package com.nova.support.config;
+
+import org.postgresql.PGConnection;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Единый кодек векторов между Java и pgvector без промежуточных строк
+ * - запись: float[] передаётся как float4[] (pgjdbc кодирует массив в бинарном виде),
+ *   PostgreSQL приводит real[] к vector при присваивании или через CAST(? AS vector)
+ * - чтение: колонка выбирается как vector_send(embedding) (bytea) и декодируется из
+ *   бинарного формата pgvector: int16 размерность, int16 (не используется), float4 x N big-endian
+ */
+public final class VectorCodec {
+
+    private static final int HEADER_BYTES = 4;
+
+    private VectorCodec() {
+    }
+
+    /**
+     * Привязать вектор к параметру запроса как float4[]
+     */
+    public static void bind(PreparedStatement st, int index, float[] vector) throws SQLException {
+        if (vector == null) {
+            st.setNull(index, Types.OTHER);
+        } else {
+            st.setArray(index, toSqlArray(st.getConnection(), vector));
+        }
+    }
+
+    /**
+     * float[] -> java.sql.Array типа float4 без упаковки элементов в Float
+     */
+    public static Array toSqlArray(Connection connection, float[] vector) throws SQLException {
+        return connection.unwrap(PGConnection.class).createArrayOf("float4", vector);
+    }
+
+    /**
+     * Декодировать результат vector_send(...)
+     * Для совместимости принимает и текстовое представление "[1,2,3]"
+     * (первый байт бинарного формата - старший байт размерности, он не может быть '[')
+     */
+    public static float[] decode(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length > 0 && bytes[0] == '[') {
+            return parseText(bytes);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int dimension = Short.toUnsignedInt(buffer.getShort(0));
+        if (bytes.length != HEADER_BYTES + dimension * Float.BYTES) {
+            throw new IllegalArgumentException("Malformed pgvector value: " + bytes.length + " bytes for dimension " + dimension);
+        }
+        float[] vector = new float[dimension];
+        buffer.position(HEADER_BYTES);
+        buffer.asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    /**
+     * Закодировать вектор в бинарный формат pgvector (формат vector_recv / vector_send)
+     */
+    public static byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + vector.length * Float.BYTES);
+        buffer.putShort((short) vector.length).putShort((short) 0);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    private static float[] parseText(byte[] bytes) {
+        String body = new String(bytes, 1, bytes.length - 2, StandardCharsets.US_ASCII);
+        if (body.isEmpty()) {
+            return new float[0];
+        }
+        String[] parts = body.split(",");
+        float[] vector = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            vector[i] = Float.parseFloat(parts[i]);
+        }
+        return vector;
+    }
+}
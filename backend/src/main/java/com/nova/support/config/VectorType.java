@@ -0,0 +1,71 @@
+package com.nova.support.config;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.usertype.UserType;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * Hibernate тип для колонки pgvector vector(N) <-> float[]
+ * Пишет float4[] и читает бинарный vector_send через VectorCodec;
+ * колонка должна читаться через @ColumnTransformer(read = "vector_send(...)")
+ */
+public class VectorType implements UserType<float[]> {
+    
+    @Override
+    public int getSqlType() {
+        return Types.OTHER;
+    }
+    
+    @Override
+    public Class<float[]> returnedClass() {
+        return float[].class;
+    }
+    
+    @Override
+    public boolean equals(float[] x, float[] y) {
+        return Arrays.equals(x, y);
+    }
+    
+    @Override
+    public int hashCode(float[] x) {
+        return Arrays.hashCode(x);
+    }
+    
+    @Override
+    public float[] nullSafeGet(ResultSet rs, int position, SharedSessionContractImplementor session, Object owner)
+            throws SQLException {
+        return VectorCodec.decode(rs.getBytes(position));
+    }
+    
+    @Override
+    public void nullSafeSet(PreparedStatement st, float[] value, int index, SharedSessionContractImplementor session)
+            throws SQLException {
+        VectorCodec.bind(st, index, value);
+    }
+    
+    @Override
+    public float[] deepCopy(float[] value) {
+        return value != null ? value.clone() : null;
+    }
+    
+    @Override
+    public boolean isMutable() {
+        return true;
+    }
+    
+    @Override
+    public Serializable disassemble(float[] value) {
+        return deepCopy(value);
+    }
+    
+    @Override
+    public float[] assemble(Serializable cached, Object owner) {
+        return deepCopy((float[]) cached);
+    }
+}
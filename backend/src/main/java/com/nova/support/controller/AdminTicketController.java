@@ -1,14 +1,21 @@
 package com.nova.support.controller;
 
+import com.nova.support.domain.enums.Priority;
+import com.nova.support.domain.enums.TicketStatus;
+import com.nova.support.dto.TicketListPage;
 import com.nova.support.dto.TicketResponse;
+import com.nova.support.service.TicketListService;
 import com.nova.support.service.TicketService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+
 /**
  * REST API для управления тикетами (Admin)
  */
@@ -20,6 +27,7 @@ import org.springframework.web.bind.annotation.*;
 public class AdminTicketController {
     
     private final TicketService ticketService;
+    private final TicketListService ticketListService;
     
     /**
      * Получить все тикеты проекта с пагинацией
@@ -33,6 +41,25 @@ public class AdminTicketController {
         return ResponseEntity.ok(tickets);
     }
     
+    /**
+     * Список тикетов для дашборда: облегчённые строки, keyset пагинация от новых к старым
+     * Следующая страница - beforeCreatedAt и beforeId последнего элемента
+     */
+    @GetMapping("/list")
+    public ResponseEntity<TicketListPage> listTickets(
+            @RequestParam Long projectId,
+            @RequestParam(required = false) TicketStatus status,
+            @RequestParam(required = false) Priority priority,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeCreatedAt,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean estimateCount) {
+        log.debug("Listing tickets for project: {}", projectId);
+        TicketListPage page = ticketListService.listTickets(
+                projectId, status, priority, beforeCreatedAt, beforeId, limit, estimateCount);
+        return ResponseEntity.ok(page);
+    }
+    
     /**
      * Получить тикет по ID
      */
@@ -0,0 +1,52 @@
+package com.nova.support.controller;
+
+import com.nova.support.domain.entity.AiJob;
+import com.nova.support.domain.enums.AiJobStatus;
+import com.nova.support.domain.enums.AiJobType;
+import com.nova.support.service.AiJobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * REST API для мониторинга очереди AI задач (Admin)
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/ai-jobs")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class AiJobController {
+
+    private final AiJobService aiJobService;
+
+    /**
+     * Статистика очереди по типам и статусам задач
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<AiJobType, Map<AiJobStatus, Long>>> getStats() {
+        return ResponseEntity.ok(aiJobService.getStats());
+    }
+
+    /**
+     * Задачи в dead letter (исчерпали попытки)
+     */
+    @GetMapping("/dead")
+    public ResponseEntity<Page<AiJob>> getDeadJobs(Pageable pageable) {
+        return ResponseEntity.ok(aiJobService.getDeadJobs(pageable));
+    }
+
+    /**
+     * Повторно поставить задачу из dead letter
+     */
+    @PostMapping("/{id}/retry")
+    public ResponseEntity<AiJob> retry(@PathVariable Long id) {
+        log.info("Retrying AI job: {}", id);
+        return ResponseEntity.ok(aiJobService.retry(id));
+    }
+}
@@ -37,12 +37,19 @@ public class ChatController {
     }
     
     /**
-     * Получить историю сообщений тикета
+     * Получить историю сообщений тикета (keyset пагинация по id сообщения)
+     * @param after только сообщения новее этого id
+     * @param before только сообщения старше этого id
+     * @param limit размер страницы (без курсора - последние limit сообщений)
      */
     @GetMapping("/{ticketId}/messages")
-    public ResponseEntity<List<ChatMessageResponse>> getMessages(@PathVariable Long ticketId) {
-        log.info("Getting messages for ticket {}", ticketId);
-        List<ChatMessageResponse> messages = chatService.getTicketMessages(ticketId);
+    public ResponseEntity<List<ChatMessageResponse>> getMessages(
+            @PathVariable Long ticketId,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Integer limit) {
+        log.debug("Getting messages for ticket {} (after {}, before {}, limit {})", ticketId, after, before, limit);
+        List<ChatMessageResponse> messages = chatService.getTicketMessages(ticketId, after, before, limit);
         return ResponseEntity.ok(messages);
     }
     
@@ -1,6 +1,8 @@
 package com.nova.support.controller;
 
+import com.nova.support.service.OllamaOverloadedException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -13,6 +15,22 @@ import java.util.Map;
 @ControllerAdvice
 public class GlobalExceptionHandler {
     
+    /**
+     * Ollama перегружена - клиент может повторить запрос позже
+     */
+    @ExceptionHandler(OllamaOverloadedException.class)
+    public ResponseEntity<Map<String, Object>> handleOverloaded(OllamaOverloadedException e) {
+        log.warn("Request shed: {}", e.getMessage());
+        
+        Map<String, Object> body = new HashMap<>();
+        body.put("error", e.getClass().getSimpleName());
+        body.put("message", e.getMessage());
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(body);
+    }
+    
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleException(Exception e) {
         log.error("Unhandled exception:", e);
@@ -1,15 +1,22 @@
 package com.nova.support.controller;
 
+import com.nova.support.domain.enums.KnowledgeBaseImportFormat;
+import com.nova.support.dto.KnowledgeBaseImportProgress;
 import com.nova.support.dto.KnowledgeBaseRequest;
 import com.nova.support.dto.KnowledgeBaseResponse;
+import com.nova.support.service.KnowledgeBaseImportService;
 import com.nova.support.service.KnowledgeBaseService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+
 @Slf4j
 @RestController
 @RequestMapping("/api/admin/knowledge-base")
@@ -18,6 +25,7 @@ import org.springframework.web.bind.annotation.*;
 public class KnowledgeBaseController {
     
     private final KnowledgeBaseService knowledgeBaseService;
+    private final KnowledgeBaseImportService knowledgeBaseImportService;
     
     @GetMapping
     public ResponseEntity<Page<KnowledgeBaseResponse>> getAll(
@@ -65,4 +73,23 @@ public class KnowledgeBaseController {
         Page<KnowledgeBaseResponse> results = knowledgeBaseService.search(projectId, query, pageable);
         return ResponseEntity.ok(results);
     }
+    
+    /**
+     * Массовый импорт: файл передаётся телом запроса (не multipart), прогресс - в
+     * /topic/knowledge-base/imports/{importId} и GET /imports/{importId}
+     */
+    @PostMapping("/import")
+    public ResponseEntity<KnowledgeBaseImportProgress> importArticles(
+            @RequestParam Long projectId,
+            @RequestParam KnowledgeBaseImportFormat format,
+            HttpServletRequest request) throws IOException {
+        log.info("Importing knowledge base for project {} ({})", projectId, format);
+        KnowledgeBaseImportProgress progress = knowledgeBaseImportService.start(projectId, format, request.getInputStream());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(progress);
+    }
+    
+    @GetMapping("/imports/{importId}")
+    public ResponseEntity<KnowledgeBaseImportProgress> getImport(@PathVariable String importId) {
+        return ResponseEntity.ok(knowledgeBaseImportService.getProgress(importId));
+    }
 }
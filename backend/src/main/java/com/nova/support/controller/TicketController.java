@@ -5,8 +5,10 @@ import com.nova.support.dto.TicketResponse;
 import com.nova.support.service.TicketService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 @Slf4j
 @RestController
@@ -17,14 +19,35 @@ public class TicketController {
     
     private final TicketService ticketService;
     
-    @PostMapping
+    /**
+     * Создать тикет. AI обработка выполняется асинхронно,
+     * прогресс отправляется в /topic/tickets/{projectId}
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<TicketResponse> createTicket(@RequestBody TicketRequest request) {
         log.info("Creating ticket for project API key: {}", request.getProjectApiKey());
         
         TicketResponse response = ticketService.processTicket(request);
         
-        log.info("Ticket created with ID: {}", response.getId());
-        return ResponseEntity.ok(response);
+        log.info("Ticket accepted with ID: {}", response.getId());
+        return ResponseEntity.accepted().body(response);
+    }
+    
+    /**
+     * Создать тикет из multipart/form-data: поля TicketRequest + файлы audio и image
+     * Файлы передаются в хранилище потоком (base64 поля не используются)
+     */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<TicketResponse> createTicketMultipart(
+            @ModelAttribute TicketRequest request,
+            @RequestPart(value = "audio", required = false) MultipartFile audio,
+            @RequestPart(value = "image", required = false) MultipartFile image) {
+        log.info("Creating multipart ticket for project API key: {}", request.getProjectApiKey());
+        
+        TicketResponse response = ticketService.processTicket(request, audio, image);
+        
+        log.info("Ticket accepted with ID: {}", response.getId());
+        return ResponseEntity.accepted().body(response);
     }
     
     @GetMapping("/{id}")
@@ -1,6 +1,10 @@
 package com.nova.support.controller;
 
+import com.nova.support.domain.enums.LlmRequestPriority;
+import com.nova.support.dto.StoredObject;
 import com.nova.support.service.MinioService;
+import com.nova.support.service.OllamaAdmission;
+import com.nova.support.service.TranscriptionCache;
 import com.nova.support.service.WhisperService;
 import com.nova.support.service.OllamaService;
 import lombok.RequiredArgsConstructor;
@@ -9,6 +13,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -21,21 +28,35 @@ public class UploadController {
 
     private final MinioService minioService;
     private final WhisperService whisperService;
+    private final TranscriptionCache transcriptionCache;
     private final OllamaService ollamaService;
+    private final OllamaAdmission ollamaAdmission;
 
     @PostMapping
-    public ResponseEntity<Map<String, String>> uploadFile(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<Map<String, String>> uploadFile(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "language", required = false) String language) {
         try {
-            String url = minioService.uploadFile(file, "chat-attachments");
+            StoredObject stored = minioService.store(file, "chat-attachments");
             
             Map<String, String> response = new HashMap<>();
-            response.put("url", url);
+            response.put("url", stored.objectName());
+            response.put("sha256", stored.sha256());
             
-            // Если это аудио файл - транскрибировать
+            // Если это аудио файл - транскрибировать (повторная загрузка того же аудио берётся из кэша)
             if (file.getContentType() != null && file.getContentType().startsWith("audio/")) {
                 try {
-                    byte[] audioBytes = file.getBytes();
-                    String transcription = whisperService.transcribe(audioBytes, null);
+                    String transcription = transcriptionCache.getOrTranscribe(stored.sha256(), language, () -> {
+                        try (InputStream audioStream = file.getInputStream()) {
+                            return whisperService.transcribe(
+                                audioStream,
+                                file.getOriginalFilename() != null ? file.getOriginalFilename() : "audio.webm",
+                                file.getSize(),
+                                language);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
                     response.put("transcription", transcription);
                     log.info("Audio transcribed: {}", transcription);
                 } catch (Exception e) {
@@ -46,7 +67,8 @@ public class UploadController {
             
             // Если это изображение - описать
             if (file.getContentType() != null && file.getContentType().startsWith("image/")) {
-                try {
+                // Клиент ждёт ответа на загрузку - интерактивный приоритет
+                try (var ignored = ollamaAdmission.prioritize(LlmRequestPriority.INTERACTIVE)) {
                     byte[] imageBytes = file.getBytes();
                     String imageDescription = ollamaService.analyzeImage(imageBytes, 
                         "Опиши что изображено на этой картинке. Это скриншот или фото проблемы пользователя.");
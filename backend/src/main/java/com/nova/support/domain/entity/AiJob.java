@@ -0,0 +1,90 @@
+package com.nova.support.domain.entity;
+
+import com.nova.support.domain.enums.AiJobStatus;
+import com.nova.support.domain.enums.AiJobType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Задача в надёжной очереди AI обработки
+ * Переживает рестарт JVM и может быть выполнена любым инстансом сервиса
+ */
+@Entity
+@Table(name = "ai_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AiJob {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "job_type", nullable = false, length = 30)
+    private AiJobType jobType;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private AiJobStatus status = AiJobStatus.PENDING;
+    
+    /**
+     * Тикет, для которого выполняется задача (если применимо)
+     */
+    @Column(name = "ticket_id")
+    private Long ticketId;
+    
+    /**
+     * Запись базы знаний, для которой выполняется задача (если применимо)
+     */
+    @Column(name = "knowledge_base_id")
+    private Long knowledgeBaseId;
+    
+    // === Повторы ===
+    
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+    
+    @Column(name = "max_attempts", nullable = false)
+    private Integer maxAttempts;
+    
+    /**
+     * Время, не раньше которого задачу можно запускать
+     */
+    @Column(name = "run_at", nullable = false)
+    private LocalDateTime runAt;
+    
+    // === Аренда воркером ===
+    
+    @Column(name = "locked_by", length = 100)
+    private String lockedBy;
+    
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+    
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+    
+    // === Временные метки ===
+    
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+}
@@ -1,14 +1,15 @@
 package com.nova.support.domain.entity;
 
+import com.nova.support.config.VectorType;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnTransformer;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
-import org.hibernate.annotations.JdbcTypeCode;
-import org.hibernate.type.SqlTypes;
+import org.hibernate.annotations.Type;
 
 import java.time.LocalDateTime;
 
@@ -24,8 +25,12 @@ import java.time.LocalDateTime;
 @Builder
 public class KnowledgeBase {
     
+    /**
+     * Блоки по 50 идентификаторов из knowledge_base_id_seq (см. V18): вставки батчатся
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "knowledge_base_id")
+    @SequenceGenerator(name = "knowledge_base_id", sequenceName = "knowledge_base_id_seq", allocationSize = 50)
     private Long id;
     
     /**
@@ -50,10 +55,23 @@ public class KnowledgeBase {
     /**
      * Vector embedding для семантического поиска
      * Размерность 768 соответствует nomic-embed-text (Ollama)
-     * Храним как String в формате "[1.0,2.0,3.0]"
+     * Колонка vector(768) с HNSW индексом (vector_cosine_ops)
+     * Читается в бинарном формате pgvector, пишется как float4[] (см. VectorCodec)
+     * Усечённый префикс (колонка embedding_prefix) ведётся SQL-ом, см. KnowledgeBaseRepository
+     */
+    @Type(VectorType.class)
+    @ColumnTransformer(read = "vector_send(embedding)")
+    @Column(name = "embedding", columnDefinition = "vector(768)")
+    private float[] embedding;
+    
+    /**
+     * Модель и версия, которыми построен embedding
      */
-    @Column(name = "embedding")
-    private String embedding;
+    @Column(name = "embedding_model", length = 100)
+    private String embeddingModel;
+    
+    @Column(name = "embedding_version")
+    private Integer embeddingVersion;
     
     /**
      * Тип источника (faq, manual, article, etc.)
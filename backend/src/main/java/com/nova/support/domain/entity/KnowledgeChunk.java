@@ -0,0 +1,97 @@
+package com.nova.support.domain.entity;
+
+import com.nova.support.config.VectorType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnTransformer;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.annotations.Type;
+
+import java.time.LocalDateTime;
+
+/**
+ * Фрагмент статьи базы знаний (отрывок ограниченной длины) со своим эмбеддингом
+ * В промпт RAG попадают лучшие фрагменты, а не статьи целиком
+ */
+@Entity
+@Table(name = "knowledge_chunks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class KnowledgeChunk {
+    
+    /**
+     * Блоки по 50 идентификаторов из knowledge_chunks_id_seq (см. V18): вставки батчатся
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "knowledge_chunks_id")
+    @SequenceGenerator(name = "knowledge_chunks_id", sequenceName = "knowledge_chunks_id_seq", allocationSize = 50)
+    private Long id;
+    
+    @Column(name = "knowledge_base_id", nullable = false)
+    private Long knowledgeBaseId;
+    
+    /**
+     * Порядковый номер фрагмента в статье
+     */
+    @Column(name = "chunk_index", nullable = false)
+    private Integer chunkIndex;
+    
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String content;
+    
+    /**
+     * SHA-256 (hex) текста, отправленного на эмбеддинг: по нему фрагмент переиспользуется при правке статьи
+     */
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+    
+    /**
+     * Оценка числа токенов фрагмента (см. KnowledgeChunker)
+     */
+    @Column(name = "token_count", nullable = false)
+    private Integer tokenCount;
+    
+    @Type(VectorType.class)
+    @ColumnTransformer(read = "vector_send(embedding)")
+    @Column(name = "embedding", nullable = false, columnDefinition = "vector(768)")
+    private float[] embedding;
+    
+    /**
+     * Модель и версия, которыми построен embedding
+     */
+    @Column(name = "embedding_model", length = 100)
+    private String embeddingModel;
+    
+    @Column(name = "embedding_version")
+    private Integer embeddingVersion;
+    
+    /**
+     * Вектор целевой модели во время переиндексации (см. EmbeddingVersions)
+     */
+    @Type(VectorType.class)
+    @ColumnTransformer(read = "vector_send(next_embedding)")
+    @Column(name = "next_embedding", columnDefinition = "vector(768)")
+    private float[] nextEmbedding;
+    
+    @Column(name = "next_embedding_model", length = 100)
+    private String nextEmbeddingModel;
+    
+    @Column(name = "next_embedding_version")
+    private Integer nextEmbeddingVersion;
+    
+    // === Временные метки ===
+    
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
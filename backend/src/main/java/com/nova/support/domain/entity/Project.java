@@ -1,5 +1,6 @@
 package com.nova.support.domain.entity;
 
+import com.nova.support.domain.enums.VectorBackend;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -40,6 +41,21 @@ public class Project {
     @Column(name = "website_url", length = 500)
     private String websiteUrl;
     
+    /**
+     * Бэкенд семантического поиска по базе знаний (pgvector или HNSW в памяти)
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "vector_backend", nullable = false, length = 20)
+    @Builder.Default
+    private VectorBackend vectorBackend = VectorBackend.PGVECTOR;
+    
+    /**
+     * Длина Matryoshka-префикса эмбеддинга для грубого поиска кандидатов (128 или 256)
+     * NULL - поиск по полному вектору
+     */
+    @Column(name = "embedding_prefix_dims")
+    private Integer embeddingPrefixDims;
+    
     /**
      * Тикеты, принадлежащие этому проекту
      */
@@ -71,6 +71,12 @@ public class Ticket {
     @Column(name = "image_url", length = 500)
     private String imageUrl;
     
+    /**
+     * Язык обращения для транскрибации (ru, en, auto)
+     */
+    @Column(length = 10)
+    private String language;
+    
     // === Результаты AI обработки ===
     
     /**
@@ -138,21 +144,6 @@ public class Ticket {
     @Builder.Default
     private Boolean isClosed = false;
     
-    // === RAG Bucket для накопления сообщений ===
-    
-    /**
-     * Timestamp последнего ответа оператора (для определения границы bucket)
-     */
-    @Column(name = "last_operator_response_at")
-    private LocalDateTime lastOperatorResponseAt;
-    
-    /**
-     * Список ID сообщений в RAG bucket (накапливаются после ответа оператора)
-     * Хранится как строка с разделителями
-     */
-    @Column(name = "rag_bucket_message_ids", columnDefinition = "TEXT")
-    private String ragBucketMessageIds;
-    
     // === Временные метки ===
     
     @CreationTimestamp
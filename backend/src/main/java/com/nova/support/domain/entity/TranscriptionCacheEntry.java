@@ -0,0 +1,48 @@
+package com.nova.support.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Сохранённая транскрипция аудио (ключ - SHA-256 содержимого и язык)
+ */
+@Entity
+@Table(name = "transcription_cache")
+@IdClass(TranscriptionCacheEntry.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TranscriptionCacheEntry {
+    
+    @Id
+    @Column(name = "audio_sha256", length = 64)
+    private String audioSha256;
+    
+    @Id
+    @Column(length = 10)
+    private String language;
+    
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String transcription;
+    
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+    
+    /**
+     * Составной ключ записи
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String audioSha256;
+        private String language;
+    }
+}
@@ -0,0 +1,26 @@
+package com.nova.support.domain.enums;
+
+/**
+ * Статусы задач в очереди AI обработки
+ */
+public enum AiJobStatus {
+    /**
+     * Ожидает запуска (run_at - время ближайшей попытки)
+     */
+    PENDING,
+    
+    /**
+     * Выполняется воркером (аренда до locked_until)
+     */
+    RUNNING,
+    
+    /**
+     * Успешно выполнена
+     */
+    DONE,
+    
+    /**
+     * Исчерпаны попытки (dead letter)
+     */
+    DEAD
+}
@@ -0,0 +1,13 @@
+package com.nova.support.domain.enums;
+
+/**
+ * Типы задач в очереди AI обработки
+ */
+public enum AiJobType {
+    TRANSCRIPTION,      // Транскрибация аудио тикета (Whisper)
+    IMAGE_DESCRIPTION,  // Описание изображения тикета (vision модель)
+    ANALYSIS,           // Summary, sentiment и приоритет тикета
+    EMBEDDING,          // Эмбеддинг записи базы знаний
+    RAG_ANSWER,         // Предложенный ответ из базы знаний
+    RAG_REFRESH         // RAG ответ оператору по bucket сообщений (после паузы в сообщениях клиента)
+}
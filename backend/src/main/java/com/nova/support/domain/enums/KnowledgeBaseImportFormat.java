@@ -0,0 +1,10 @@
+package com.nova.support.domain.enums;
+
+/**
+ * Формат файла массового импорта базы знаний
+ */
+public enum KnowledgeBaseImportFormat {
+    JSONL,          // по объекту на строку: title, content, sourceType, sourceUrl
+    CSV,            // заголовок с колонками title, content, sourceType, sourceUrl (RFC 4180)
+    MARKDOWN_ZIP    // ZIP с .md файлами: заголовок - первый "# ...", иначе имя файла
+}
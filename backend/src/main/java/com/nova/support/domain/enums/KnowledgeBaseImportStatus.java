@@ -0,0 +1,10 @@
+package com.nova.support.domain.enums;
+
+/**
+ * Состояние массового импорта базы знаний
+ */
+public enum KnowledgeBaseImportStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,28 @@
+package com.nova.support.domain.enums;
+
+/**
+ * Приоритет запроса к Ollama в очереди допуска (от высшего к низшему)
+ */
+public enum LlmRequestPriority {
+    INTERACTIVE,  // Оператор или клиент ждёт ответа прямо сейчас
+    CRITICAL,     // Обработка тикетов с приоритетом CRITICAL
+    HIGH,
+    MEDIUM,       // По умолчанию (приоритет тикета ещё не определён)
+    LOW,
+    BACKGROUND;   // Фоновая работа (эмбеддинги базы знаний)
+    
+    /**
+     * Приоритет запроса для обработки тикета с указанным приоритетом
+     */
+    public static LlmRequestPriority of(Priority priority) {
+        if (priority == null) {
+            return MEDIUM;
+        }
+        return switch (priority) {
+            case CRITICAL -> CRITICAL;
+            case HIGH -> HIGH;
+            case MEDIUM -> MEDIUM;
+            case LOW -> LOW;
+        };
+    }
+}
@@ -0,0 +1,31 @@
+package com.nova.support.domain.enums;
+
+/**
+ * Стадии асинхронной AI обработки тикета (отправляются в WebSocket уведомлениях)
+ */
+public enum ProcessingStage {
+    /**
+     * Тикет сохранён, медиа загружено в MinIO, обработка поставлена в очередь
+     */
+    INGESTED,
+    
+    /**
+     * Аудио транскрибировано, изображение описано
+     */
+    MEDIA_PROCESSED,
+    
+    /**
+     * Summary, sentiment и приоритет готовы
+     */
+    ANALYZED,
+    
+    /**
+     * Предложенный ответ из базы знаний готов
+     */
+    ANSWER_SUGGESTED,
+    
+    /**
+     * Все AI задачи тикета завершены, тикет открыт для операторов
+     */
+    COMPLETED
+}
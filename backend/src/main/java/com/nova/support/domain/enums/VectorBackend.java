@@ -0,0 +1,9 @@
+package com.nova.support.domain.enums;
+
+/**
+ * Бэкенд семантического поиска по базе знаний проекта
+ */
+public enum VectorBackend {
+    PGVECTOR,   // HNSW индекс pgvector в PostgreSQL (по умолчанию)
+    IN_MEMORY   // HNSW граф в памяти инстанса (для небольших баз знаний с высокой нагрузкой)
+}
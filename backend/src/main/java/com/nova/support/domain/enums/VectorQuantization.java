@@ -0,0 +1,11 @@
+package com.nova.support.domain.enums;
+
+/**
+ * Квантование эмбеддингов для грубого поиска кандидатов
+ * Кандидаты затем переранжируются по точному cosine distance на float векторах
+ */
+public enum VectorQuantization {
+    NONE,    // Поиск по float векторам (4 байта на компоненту)
+    INT8,    // Скалярное квантование: 1 байт на компоненту, int8 скалярное произведение
+    BINARY   // Бинарное квантование: 1 бит на компоненту (знак), расстояние Хэмминга
+}
@@ -0,0 +1,36 @@
+package com.nova.support.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Фрагмент генерируемого ответа (/topic/tickets/{id}/answer-stream)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnswerStreamChunk {
+
+    /**
+     * Какой ответ генерируется: RAG (ответ по bucket сообщений) или SUGGESTED (первый ответ тикета)
+     */
+    private String source;
+
+    /**
+     * Идентификатор генерации: фрагменты с другим streamId относятся к другой генерации
+     */
+    private String streamId;
+
+    /**
+     * Новый фрагмент текста (пустой в завершающем сообщении)
+     */
+    private String delta;
+
+    /**
+     * Генерация завершена (полный ответ приходит отдельно: rag-updated / прогресс тикета)
+     */
+    private boolean done;
+}
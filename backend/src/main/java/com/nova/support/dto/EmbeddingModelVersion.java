@@ -0,0 +1,34 @@
+package com.nova.support.dto;
+
+/**
+ * Модель эмбеддингов и версия векторов
+ * Версия увеличивается вручную, когда векторы нужно перестроить той же моделью
+ * (обновлены веса под прежним тегом, изменено разбиение на фрагменты)
+ * 
+ * @param model имя модели Ollama
+ * @param version версия векторов
+ */
+public record EmbeddingModelVersion(
+        String model,
+        int version
+) {
+    
+    /**
+     * Векторы построены этой моделью и версией
+     */
+    public boolean matches(String model, Integer version) {
+        return this.model.equals(model) && version != null && this.version == version;
+    }
+    
+    /**
+     * Ключ кэша эмбеддингов: смена версии не должна возвращать прежние векторы
+     */
+    public String cacheKey() {
+        return model + "@" + version;
+    }
+    
+    @Override
+    public String toString() {
+        return model + " v" + version;
+    }
+}
@@ -0,0 +1,55 @@
+package com.nova.support.dto;
+
+import com.nova.support.domain.enums.KnowledgeBaseImportFormat;
+import com.nova.support.domain.enums.KnowledgeBaseImportStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Прогресс массового импорта базы знаний
+ * Рассылается в /topic/knowledge-base/imports/{importId} после каждой пачки
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class KnowledgeBaseImportProgress {
+    
+    private String importId;
+    
+    private Long projectId;
+    
+    private KnowledgeBaseImportFormat format;
+    
+    private KnowledgeBaseImportStatus status;
+    
+    /**
+     * Прочитано записей из файла
+     */
+    private long parsed;
+    
+    /**
+     * Сохранено статей
+     */
+    private long imported;
+    
+    /**
+     * Пропущено записей без заголовка или содержимого
+     */
+    private long skipped;
+    
+    /**
+     * Статьи, эмбеддинг которых отложен в очередь AI задач (модель была недоступна)
+     */
+    private long deferred;
+    
+    private String error;
+    
+    private LocalDateTime startedAt;
+    
+    private LocalDateTime finishedAt;
+}
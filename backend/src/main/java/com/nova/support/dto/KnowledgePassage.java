@@ -0,0 +1,15 @@
+package com.nova.support.dto;
+
+/**
+ * Отрывок статьи базы знаний для контекста RAG
+ * 
+ * @param knowledgeBaseId ID статьи
+ * @param title заголовок статьи
+ * @param content текст фрагмента (статья целиком, если она ещё не разбита на фрагменты)
+ */
+public record KnowledgePassage(
+        Long knowledgeBaseId,
+        String title,
+        String content
+) {
+}
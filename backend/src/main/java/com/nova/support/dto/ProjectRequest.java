@@ -1,9 +1,15 @@
 package com.nova.support.dto;
 
+import com.nova.support.domain.enums.VectorBackend;
 import lombok.Data;
 
 @Data
 public class ProjectRequest {
     private String name;
     private String websiteUrl;
+    private VectorBackend vectorBackend;
+    /**
+     * Длина Matryoshka-префикса для поиска: 128 или 256, 0 - полный вектор, null - без изменений
+     */
+    private Integer embeddingPrefixDims;
 }
@@ -1,5 +1,6 @@
 package com.nova.support.dto;
 
+import com.nova.support.domain.enums.VectorBackend;
 import lombok.Builder;
 import lombok.Data;
 
@@ -12,5 +13,7 @@ public class ProjectResponse {
     private String name;
     private String apiKey;
     private String websiteUrl;
+    private VectorBackend vectorBackend;
+    private Integer embeddingPrefixDims;
     private LocalDateTime createdAt;
 }
@@ -0,0 +1,17 @@
+package com.nova.support.dto;
+
+/**
+ * Объект в MinIO, адресуемый по содержимому
+ * 
+ * @param objectName имя объекта в формате "folder/sha256.ext"
+ * @param sha256 SHA-256 содержимого (hex) - ключ для повторного использования результатов AI обработки
+ * @param size размер в байтах
+ * @param deduplicated true если такой объект уже был в хранилище и загрузка пропущена
+ */
+public record StoredObject(
+        String objectName,
+        String sha256,
+        long size,
+        boolean deduplicated
+) {
+}
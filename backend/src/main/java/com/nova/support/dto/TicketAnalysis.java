@@ -0,0 +1,26 @@
+package com.nova.support.dto;
+
+import com.nova.support.domain.enums.Priority;
+import com.nova.support.domain.enums.Sentiment;
+
+/**
+ * Результат AI анализа обращения одним запросом (structured output Ollama)
+ */
+public record TicketAnalysis(
+        String summary,
+        Sentiment sentiment,
+        Double sentimentScore,
+        Priority priority
+) {
+    
+    /**
+     * Проверка ответа модели: все поля заполнены, оценка в диапазоне [-1, 1]
+     */
+    public boolean isValid() {
+        return summary != null && !summary.isBlank()
+                && sentiment != null
+                && priority != null
+                && sentimentScore != null
+                && sentimentScore >= -1.0 && sentimentScore <= 1.0;
+    }
+}
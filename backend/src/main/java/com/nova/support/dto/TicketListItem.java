@@ -0,0 +1,29 @@
+package com.nova.support.dto;
+
+import com.nova.support.domain.enums.Priority;
+import com.nova.support.domain.enums.Sentiment;
+import com.nova.support.domain.enums.TicketStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Строка списка тикетов: только колонки карточки списка, длинные тексты обрезаны в запросе
+ * Полный тикет - GET /api/admin/tickets/{id}
+ *
+ * @param summaryPreview начало AI резюме
+ * @param textPreview начало текста обращения (или транскрипции)
+ */
+public record TicketListItem(
+        Long id,
+        TicketStatus status,
+        Priority priority,
+        Sentiment sentiment,
+        String customerName,
+        String summaryPreview,
+        String textPreview,
+        boolean hasAudio,
+        boolean hasImage,
+        Boolean isClosed,
+        LocalDateTime createdAt
+) {
+}
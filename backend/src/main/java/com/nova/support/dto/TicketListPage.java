@@ -0,0 +1,32 @@
+package com.nova.support.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Страница списка тикетов (keyset по created_at, id - от новых к старым)
+ * Следующая страница: beforeCreatedAt и beforeId последнего элемента
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TicketListPage {
+
+    private List<TicketListItem> items;
+
+    /**
+     * Есть тикеты старше последнего элемента
+     */
+    private boolean hasMore;
+
+    /**
+     * Оценка числа тикетов по фильтру (статистика планировщика, без count(*));
+     * null, если не запрошена
+     */
+    private Long estimatedTotal;
+}
@@ -1,6 +1,8 @@
 package com.nova.support.dto;
 
+import com.nova.support.domain.entity.Ticket;
 import com.nova.support.domain.enums.Priority;
+import com.nova.support.domain.enums.ProcessingStage;
 import com.nova.support.domain.enums.Sentiment;
 import com.nova.support.domain.enums.TicketStatus;
 import lombok.Builder;
@@ -25,5 +27,26 @@ public class TicketResponse {
     private String audioUrl;
     private String imageUrl;
     private LocalDateTime createdAt;
+    private ProcessingStage processingStage;  // Стадия AI обработки (только в WebSocket уведомлениях)
+    
+    public static TicketResponse from(Ticket ticket) {
+        return TicketResponse.builder()
+                .id(ticket.getId())
+                .sessionId(ticket.getSessionId())
+                .originalText(ticket.getOriginalText())
+                .transcribedText(ticket.getTranscribedText())
+                .aiSummary(ticket.getAiSummary())
+                .sentiment(ticket.getSentiment())
+                .sentimentScore(ticket.getSentimentScore() != null ? 
+                        ticket.getSentimentScore().doubleValue() : null)
+                .priority(ticket.getPriority())
+                .suggestedAnswer(ticket.getSuggestedAnswer())
+                .status(ticket.getStatus())
+                .isClosed(ticket.getIsClosed())
+                .audioUrl(ticket.getAudioUrl())
+                .imageUrl(ticket.getImageUrl())
+                .createdAt(ticket.getCreatedAt())
+                .build();
+    }
 }
 
@@ -0,0 +1,173 @@
+package com.nova.support.repository;
+
+import com.nova.support.domain.entity.AiJob;
+import com.nova.support.domain.enums.AiJobStatus;
+import com.nova.support.domain.enums.AiJobType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Репозиторий очереди AI задач
+ */
+@Repository
+public interface AiJobRepository extends JpaRepository<AiJob, Long> {
+    
+    /**
+     * Заблокировать готовые к запуску задачи типа, пропуская уже заблокированные другими воркерами
+     * Вызывать в транзакции, которая переведёт задачи в RUNNING
+     * @param jobType тип задачи
+     * @param now текущее время
+     * @param limit максимальное количество задач
+     * @return заблокированные задачи
+     */
+    @Query(value = "SELECT * FROM ai_jobs " +
+                   "WHERE status = 'PENDING' AND job_type = :jobType AND run_at <= :now " +
+                   "ORDER BY run_at, id " +
+                   "LIMIT :limit " +
+                   "FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<AiJob> lockPending(@Param("jobType") String jobType,
+                            @Param("now") LocalDateTime now,
+                            @Param("limit") int limit);
+    
+    /**
+     * Завершить задачи с просроченной арендой, для которых уже ожидает новая задача того же типа
+     * (вторая ожидающая задача нарушила бы idx_ai_jobs_ticket_pending / idx_ai_jobs_knowledge_base_pending,
+     * работу выполнит новая)
+     * @return количество завершённых задач
+     */
+    @Modifying
+    @Query("UPDATE AiJob j SET j.status = :done, j.lockedBy = null, j.lockedUntil = null, " +
+           "j.completedAt = :now, j.lastError = 'Lease expired, superseded by a pending job' " +
+           "WHERE j.status = :running AND j.lockedUntil < :now AND EXISTS (" +
+           "SELECT p FROM AiJob p WHERE p.jobType = j.jobType AND p.status = :pending " +
+           "AND (p.ticketId = j.ticketId OR p.knowledgeBaseId = j.knowledgeBaseId))")
+    int completeSupersededExpiredLeases(@Param("now") LocalDateTime now,
+                                        @Param("running") AiJobStatus running,
+                                        @Param("pending") AiJobStatus pending,
+                                        @Param("done") AiJobStatus done);
+    
+    /**
+     * Вернуть в очередь задачи с просроченной арендой (воркер упал или завис)
+     * @return количество возвращённых задач
+     */
+    @Modifying
+    @Query("UPDATE AiJob j SET j.status = :pending, j.lockedBy = null, j.lockedUntil = null, " +
+           "j.runAt = :now, j.lastError = 'Lease expired' " +
+           "WHERE j.status = :running AND j.lockedUntil < :now AND j.attempts < j.maxAttempts")
+    int requeueExpiredLeases(@Param("now") LocalDateTime now,
+                             @Param("running") AiJobStatus running,
+                             @Param("pending") AiJobStatus pending);
+    
+    /**
+     * Отправить в dead letter задачи с просроченной арендой, исчерпавшие попытки
+     * @return количество задач
+     */
+    @Modifying
+    @Query("UPDATE AiJob j SET j.status = :dead, j.lockedBy = null, j.lockedUntil = null, " +
+           "j.completedAt = :now, j.lastError = 'Lease expired, attempts exhausted' " +
+           "WHERE j.status = :running AND j.lockedUntil < :now AND j.attempts >= j.maxAttempts")
+    int deadLetterExpiredLeases(@Param("now") LocalDateTime now,
+                                @Param("running") AiJobStatus running,
+                                @Param("dead") AiJobStatus dead);
+    
+    /**
+     * Количество задач тикета указанных типов в указанных статусах
+     */
+    long countByTicketIdAndStatusInAndJobTypeIn(Long ticketId, Collection<AiJobStatus> statuses,
+                                                Collection<AiJobType> jobTypes);
+    
+    /**
+     * Debounce одним запросом: перенести ожидающую задачу тикета на runAt, а если её нет - поставить новую
+     * Атомарность обеспечивает уникальный индекс idx_ai_jobs_ticket_pending
+     * @return количество затронутых задач
+     */
+    @Modifying
+    @Query(value = "INSERT INTO ai_jobs (job_type, ticket_id, run_at, max_attempts) " +
+                   "VALUES (:jobType, :ticketId, :runAt, :maxAttempts) " +
+                   "ON CONFLICT (ticket_id, job_type) WHERE status = 'PENDING' " +
+                   "DO UPDATE SET run_at = EXCLUDED.run_at",
+           nativeQuery = true)
+    int schedulePending(@Param("ticketId") Long ticketId,
+                        @Param("jobType") String jobType,
+                        @Param("runAt") LocalDateTime runAt,
+                        @Param("maxAttempts") int maxAttempts);
+    
+    /**
+     * Есть ли у тикета ожидающая задача указанного типа
+     */
+    boolean existsByTicketIdAndJobTypeAndStatus(Long ticketId, AiJobType jobType, AiJobStatus status);
+    
+    /**
+     * Есть ли у статьи базы знаний ожидающая задача указанного типа
+     */
+    boolean existsByKnowledgeBaseIdAndJobTypeAndStatus(Long knowledgeBaseId, AiJobType jobType, AiJobStatus status);
+    
+    /**
+     * Поставить задачу статьи базы знаний, если такая же ещё не ожидает запуска
+     * Ожидающая задача прочитает текст статьи при запуске, поэтому вторая не нужна;
+     * одновременные вызовы разрешает idx_ai_jobs_knowledge_base_pending
+     * @return 1 если задача поставлена, 0 если уже ожидает
+     */
+    @Modifying
+    @Query(value = "INSERT INTO ai_jobs (job_type, knowledge_base_id, run_at, max_attempts) " +
+                   "VALUES (:jobType, :knowledgeBaseId, :runAt, :maxAttempts) " +
+                   "ON CONFLICT (knowledge_base_id, job_type) WHERE status = 'PENDING' DO NOTHING",
+           nativeQuery = true)
+    int insertPendingForKnowledgeBase(@Param("knowledgeBaseId") Long knowledgeBaseId,
+                                      @Param("jobType") String jobType,
+                                      @Param("runAt") LocalDateTime runAt,
+                                      @Param("maxAttempts") int maxAttempts);
+    
+    /**
+     * Поставить задачу тикета, если задача этого типа ещё не ставилась (в любом статусе)
+     * Одновременные вызовы не создают дубликат: вторая вставка упирается в idx_ai_jobs_ticket_pending
+     * @return 1 если задача поставлена, 0 если уже есть
+     */
+    @Modifying
+    @Query(value = "INSERT INTO ai_jobs (job_type, ticket_id, run_at, max_attempts) " +
+                   "SELECT :jobType, :ticketId, :runAt, :maxAttempts " +
+                   "WHERE NOT EXISTS (SELECT 1 FROM ai_jobs WHERE ticket_id = :ticketId AND job_type = :jobType) " +
+                   "ON CONFLICT (ticket_id, job_type) WHERE status = 'PENDING' DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("ticketId") Long ticketId,
+                       @Param("jobType") String jobType,
+                       @Param("runAt") LocalDateTime runAt,
+                       @Param("maxAttempts") int maxAttempts);
+    
+    /**
+     * Удалить пачку задач в статусе, завершённых раньше before
+     * @param status DONE или DEAD
+     * @return количество удалённых задач (меньше limit - удалять больше нечего)
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM ai_jobs WHERE id IN (" +
+                   "SELECT id FROM ai_jobs WHERE status = :status AND completed_at < :before " +
+                   "ORDER BY completed_at LIMIT :limit)",
+           nativeQuery = true)
+    int deleteFinishedBefore(@Param("status") String status,
+                             @Param("before") LocalDateTime before,
+                             @Param("limit") int limit);
+    
+    /**
+     * Задачи в статусе (например, dead letter) - новые сверху
+     */
+    Page<AiJob> findByStatusOrderByUpdatedAtDesc(AiJobStatus status, Pageable pageable);
+    
+    /**
+     * Статистика очереди: [тип, статус, количество]
+     */
+    @Query("SELECT j.jobType, j.status, COUNT(j) FROM AiJob j GROUP BY j.jobType, j.status")
+    List<Object[]> countByTypeAndStatus();
+}
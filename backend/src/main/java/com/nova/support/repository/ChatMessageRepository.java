@@ -2,24 +2,59 @@ package com.nova.support.repository;
 
 import com.nova.support.domain.entity.ChatMessage;
 import com.nova.support.domain.entity.ChatMessage.SenderType;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
     
     /**
-     * Получить все сообщения тикета, отсортированные по времени
+     * Последние сообщения тикета (новые первыми); индекс idx_chat_messages_ticket_id_id
      */
-    List<ChatMessage> findByTicketIdOrderByCreatedAtAsc(Long ticketId);
+    List<ChatMessage> findByTicketIdOrderByIdDesc(Long ticketId, Pageable pageable);
+    
+    /**
+     * Сообщения тикета после курсора (по возрастанию id) - догрузка новых
+     */
+    List<ChatMessage> findByTicketIdAndIdGreaterThanOrderByIdAsc(Long ticketId, Long afterId, Pageable pageable);
+    
+    /**
+     * Сообщения тикета до курсора (новые первыми) - страница более ранней истории
+     */
+    List<ChatMessage> findByTicketIdAndIdLessThanOrderByIdDesc(Long ticketId, Long beforeId, Pageable pageable);
+    
+    /**
+     * Получить первое сообщение тикета (создаётся вместе с тикетом)
+     * Блокирует строку: несколько AI задач дополняют его metadata параллельно
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<ChatMessage> findFirstByTicketIdOrderByIdAsc(Long ticketId);
     
     /**
      * Подсчитать количество сообщений в тикете
      */
     long countByTicketId(Long ticketId);
     
+    /**
+     * ID сообщений RAG bucket: сообщения клиента после последнего ответа оператора, по порядку
+     * (индекс idx_chat_messages_ticket_sender_id)
+     */
+    @Query(value = "SELECT m.id FROM chat_messages m " +
+                   "WHERE m.ticket_id = :ticketId AND m.sender_type = 'CLIENT' " +
+                   "AND m.id > COALESCE((SELECT max(o.id) FROM chat_messages o " +
+                   "                     WHERE o.ticket_id = :ticketId AND o.sender_type = 'OPERATOR'), 0) " +
+                   "ORDER BY m.id",
+           nativeQuery = true)
+    List<Long> findRagBucketIds(@Param("ticketId") Long ticketId);
+    
     /**
      * Проверить наличие сообщений от определенного типа отправителя
      */
@@ -4,9 +4,11 @@ import com.nova.support.domain.entity.KnowledgeBase;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -34,34 +36,107 @@ public interface KnowledgeBaseRepository extends JpaRepository<KnowledgeBase, Lo
     Page<KnowledgeBase> findByProjectIdAndSourceType(Long projectId, String sourceType, Pageable pageable);
     
     /**
-     * Поиск по содержимому (полнотекстовый поиск)
+     * Лексический поиск: полнотекстовый (GIN по search_vector, русская и английская конфигурации)
+     * плюс поиск подстроки по триграммным индексам
+     * Термины запроса объединяются через ИЛИ, ранжирование - ts_rank_cd и бонус за точную подстроку
      * @param projectId ID проекта
-     * @param keyword ключевое слово
-     * @param pageable параметры пагинации
-     * @return страница записей
+     * @param query текст запроса
+     * @param pattern шаблон ILIKE вида "%подстрока%" (спецсимволы LIKE экранированы)
+     * @param limit количество результатов
+     * @return ID записей по убыванию лексической релевантности
      */
-    @Query("SELECT kb FROM KnowledgeBase kb WHERE kb.project.id = :projectId " +
-           "AND (LOWER(kb.title) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
-           "OR LOWER(kb.content) LIKE LOWER(CONCAT('%', :keyword, '%')))")
-    Page<KnowledgeBase> searchByKeyword(@Param("projectId") Long projectId, 
-                                         @Param("keyword") String keyword, 
-                                         Pageable pageable);
+    @Query(value = "WITH q AS (" +
+                   "  SELECT CAST(replace(CAST(plainto_tsquery('russian', :query) AS text), '&', '|') AS tsquery) || " +
+                   "         CAST(replace(CAST(plainto_tsquery('english', :query) AS text), '&', '|') AS tsquery) AS terms" +
+                   ") " +
+                   "SELECT kb.id FROM knowledge_base kb, q " +
+                   "WHERE kb.project_id = :projectId " +
+                   "AND (kb.search_vector @@ q.terms OR kb.title ILIKE :pattern OR kb.content ILIKE :pattern) " +
+                   "ORDER BY ts_rank_cd(kb.search_vector, q.terms, 32) + " +
+                   "CASE WHEN kb.title ILIKE :pattern THEN 1.0 WHEN kb.content ILIKE :pattern THEN 0.5 ELSE 0 END DESC, " +
+                   "kb.id " +
+                   "LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findIdsByLexicalMatch(@Param("projectId") Long projectId,
+                                     @Param("query") String query,
+                                     @Param("pattern") String pattern,
+                                     @Param("limit") int limit);
     
     /**
-     * Семантический поиск по вектору (для RAG)
-     * Найти топ-K наиболее похожих записей используя cosine similarity
+     * Лексический поиск только по полнотекстовому индексу (без подстроки): для длинных запросов,
+     * например текста тикета в RAG, где подстрока целиком почти не встречается, а ILIKE по content
+     * стоил бы просмотра триграммного индекса или всей таблицы
      * @param projectId ID проекта
-     * @param queryEmbedding вектор запроса в формате "[0.1,0.2,...]"
+     * @param query текст запроса
      * @param limit количество результатов
-     * @return список записей отсортированных по релевантности
+     * @return ID записей по убыванию ts_rank_cd
+     */
+    @Query(value = "WITH q AS (" +
+                   "  SELECT CAST(replace(CAST(plainto_tsquery('russian', :query) AS text), '&', '|') AS tsquery) || " +
+                   "         CAST(replace(CAST(plainto_tsquery('english', :query) AS text), '&', '|') AS tsquery) AS terms" +
+                   ") " +
+                   "SELECT kb.id FROM knowledge_base kb, q " +
+                   "WHERE kb.project_id = :projectId AND kb.search_vector @@ q.terms " +
+                   "ORDER BY ts_rank_cd(kb.search_vector, q.terms, 32) DESC, kb.id " +
+                   "LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findIdsByFullTextMatch(@Param("projectId") Long projectId,
+                                      @Param("query") String query,
+                                      @Param("limit") int limit);
+    
+    /**
+     * Обновить только эмбеддинг записи
+     * Вектор передаётся как float4[] (VectorType), PostgreSQL приводит его к vector при присваивании
+     * @param id ID записи
+     * @param embedding вектор
+     * @param model модель, которой построен вектор
+     * @param version версия векторов модели
+     * @return количество обновлённых записей
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE KnowledgeBase kb SET kb.embedding = :embedding, kb.embeddingModel = :model, " +
+           "kb.embeddingVersion = :version WHERE kb.id = :id")
+    int updateEmbedding(@Param("id") Long id, @Param("embedding") float[] embedding,
+                        @Param("model") String model, @Param("version") int version);
+    
+    /**
+     * Пересчитать Matryoshka-префикс эмбеддинга записи по настройке её проекта
+     * Префикс считается в БД из сохранённого вектора (subvector + l2_normalize)
+     * @param id ID записи
+     * @return количество обновлённых записей
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE knowledge_base kb SET embedding_prefix = " +
+                   "CASE WHEN p.embedding_prefix_dims IS NULL OR kb.embedding IS NULL THEN NULL " +
+                   "ELSE l2_normalize(subvector(kb.embedding, 1, p.embedding_prefix_dims)) END " +
+                   "FROM projects p WHERE p.id = kb.project_id AND kb.id = :id",
+           nativeQuery = true)
+    int refreshEmbeddingPrefix(@Param("id") Long id);
+    
+    /**
+     * Пересчитать Matryoshka-префиксы всех записей проекта (длина префикса изменена)
+     * @param projectId ID проекта
+     * @return количество обновлённых записей
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE knowledge_base kb SET embedding_prefix = " +
+                   "CASE WHEN p.embedding_prefix_dims IS NULL OR kb.embedding IS NULL THEN NULL " +
+                   "ELSE l2_normalize(subvector(kb.embedding, 1, p.embedding_prefix_dims)) END " +
+                   "FROM projects p WHERE p.id = kb.project_id AND kb.project_id = :projectId",
+           nativeQuery = true)
+    int refreshEmbeddingPrefixes(@Param("projectId") Long projectId);
+    
+    /**
+     * Настроить HNSW поиск до конца текущей транзакции
+     * @param efSearch размер списка кандидатов (больше - точнее и медленнее)
+     * @param iterativeScan режим итеративного сканирования (off, relaxed_order, strict_order):
+     *                      добирает кандидатов, если фильтр по проекту отсеял слишком многих
      */
-    @Query(value = "SELECT * FROM knowledge_base " +
-                   "WHERE project_id = :projectId " +
-                   "AND embedding IS NOT NULL " +
-                   "ORDER BY embedding::vector(768) <=> CAST(:queryEmbedding AS vector(768)) " +
-                   "LIMIT :limit", 
+    @Query(value = "SELECT set_config('hnsw.ef_search', CAST(:efSearch AS text), true) || " +
+                   "set_config('hnsw.iterative_scan', :iterativeScan, true)",
            nativeQuery = true)
-    List<KnowledgeBase> findSimilarByEmbedding(@Param("projectId") Long projectId,
-                                                @Param("queryEmbedding") String queryEmbedding,
-                                                @Param("limit") int limit);
+    String configureHnswSearch(@Param("efSearch") int efSearch, @Param("iterativeScan") String iterativeScan);
 }
@@ -0,0 +1,21 @@
+package com.nova.support.repository;
+
+import com.nova.support.domain.entity.KnowledgeChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Репозиторий фрагментов статей базы знаний
+ */
+@Repository
+public interface KnowledgeChunkRepository extends JpaRepository<KnowledgeChunk, Long> {
+    
+    /**
+     * Фрагменты статьи по порядку
+     * @param knowledgeBaseId ID записи базы знаний
+     * @return фрагменты статьи
+     */
+    List<KnowledgeChunk> findByKnowledgeBaseIdOrderByChunkIndex(Long knowledgeBaseId);
+}
@@ -1,9 +1,13 @@
 package com.nova.support.repository;
 
 import com.nova.support.domain.entity.Project;
+import com.nova.support.domain.enums.VectorBackend;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -25,4 +29,19 @@ public interface ProjectRepository extends JpaRepository<Project, Long> {
      * @return true если проект существует
      */
     boolean existsByApiKey(String apiKey);
+    
+    /**
+     * Найти проекты с заданным бэкендом семантического поиска
+     * @param vectorBackend бэкенд
+     * @return список проектов
+     */
+    List<Project> findByVectorBackend(VectorBackend vectorBackend);
+    
+    /**
+     * Длина Matryoshka-префикса эмбеддингов проекта
+     * @param projectId ID проекта
+     * @return 128, 256 или null (поиск по полному вектору)
+     */
+    @Query("SELECT p.embeddingPrefixDims FROM Project p WHERE p.id = :projectId")
+    Integer findEmbeddingPrefixDims(@Param("projectId") Long projectId);
 }
@@ -5,8 +5,11 @@ import com.nova.support.domain.enums.TicketStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -57,6 +60,26 @@ public interface TicketRepository extends JpaRepository<Ticket, Long> {
     @Query("SELECT t FROM Ticket t WHERE t.status = 'NEW' ORDER BY t.createdAt ASC")
     List<Ticket> findNewTicketsForProcessing();
     
+    /**
+     * Атомарно перевести тикет из одного статуса в другой
+     * @return 1 если переход выполнен, 0 если тикет уже в другом статусе
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Ticket t SET t.status = :to WHERE t.id = :id AND t.status = :from")
+    int transitionStatus(@Param("id") Long id, @Param("from") TicketStatus from, @Param("to") TicketStatus to);
+    
+    /**
+     * Найти тикеты в обработке, у которых не осталось незавершённых AI задач
+     * (задачи ушли в dead letter по истечении аренды)
+     * @return список ID тикетов
+     */
+    @Query(value = "SELECT t.id FROM tickets t WHERE t.status = 'PROCESSING' " +
+                   "AND NOT EXISTS (SELECT 1 FROM ai_jobs j WHERE j.ticket_id = t.id " +
+                   "AND j.status IN ('PENDING', 'RUNNING') AND j.job_type <> 'RAG_REFRESH')",
+           nativeQuery = true)
+    List<Long> findProcessingTicketIdsWithoutActiveJobs();
+    
     /**
      * Найти активный (незакрытый) тикет по session ID
      */
@@ -0,0 +1,30 @@
+package com.nova.support.repository;
+
+import com.nova.support.domain.entity.TranscriptionCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Репозиторий постоянного кэша транскрипций
+ */
+@Repository
+public interface TranscriptionCacheRepository extends JpaRepository<TranscriptionCacheEntry, TranscriptionCacheEntry.Key> {
+    
+    /**
+     * Сохранить транскрипцию; если запись уже есть (параллельная транскрибация того же аудио) - ничего не делать
+     * @return 1 если запись добавлена
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO transcription_cache (audio_sha256, language, transcription) " +
+                   "VALUES (:audioSha256, :language, :transcription) " +
+                   "ON CONFLICT (audio_sha256, language) DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("audioSha256") String audioSha256,
+                       @Param("language") String language,
+                       @Param("transcription") String transcription);
+}
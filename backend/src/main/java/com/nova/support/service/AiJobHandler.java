@@ -0,0 +1,28 @@
+package com.nova.support.service;
+
+import com.nova.support.domain.entity.AiJob;
+import com.nova.support.domain.enums.AiJobType;
+
+import java.util.Set;
+
+/**
+ * Обработчик задач очереди AI обработки
+ */
+public interface AiJobHandler {
+    
+    /**
+     * Типы задач, которые выполняет обработчик
+     */
+    Set<AiJobType> getSupportedTypes();
+    
+    /**
+     * Выполнить задачу. Исключение означает неудачную попытку (повтор с задержкой)
+     */
+    void handle(AiJob job) throws Exception;
+    
+    /**
+     * Вызывается после окончательного завершения задачи (DONE или DEAD)
+     */
+    default void onFinished(AiJob job) {
+    }
+}
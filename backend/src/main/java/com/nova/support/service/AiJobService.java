@@ -0,0 +1,322 @@
+package com.nova.support.service;
+
+import com.nova.support.config.AiJobProperties;
+import com.nova.support.domain.entity.AiJob;
+import com.nova.support.domain.enums.AiJobStatus;
+import com.nova.support.domain.enums.AiJobType;
+import com.nova.support.repository.AiJobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Надёжная очередь AI задач в PostgreSQL
+ * - постановка задач в транзакции вызывающего кода
+ * - захват задач через FOR UPDATE SKIP LOCKED (несколько инстансов делят одну очередь)
+ * - повторы с экспоненциальной задержкой и dead letter
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AiJobService {
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+    private static final Set<AiJobType> PROCESSING_TYPES = EnumSet.complementOf(EnumSet.of(AiJobType.RAG_REFRESH));
+
+    private final AiJobRepository aiJobRepository;
+    private final AiJobProperties properties;
+
+    /**
+     * Поставить задачу для тикета
+     */
+    @Transactional
+    public AiJob enqueueForTicket(AiJobType type, Long ticketId) {
+        AiJob job = newJob(type);
+        job.setTicketId(ticketId);
+        job = aiJobRepository.save(job);
+        log.info("Enqueued {} job {} for ticket {}", type, job.getId(), ticketId);
+        return job;
+    }
+
+    /**
+     * Поставить задачу для тикета, если задача этого типа ещё не ставилась
+     * (повторное выполнение шага не должно порождать дубликаты)
+     * @return true если задача поставлена
+     */
+    @Transactional
+    public boolean enqueueForTicketIfAbsent(AiJobType type, Long ticketId) {
+        boolean enqueued = aiJobRepository.insertIfAbsent(
+                ticketId, type.name(), LocalDateTime.now(), properties.getMaxAttempts()) > 0;
+        if (enqueued) {
+            log.info("Enqueued {} job for ticket {}", type, ticketId);
+        }
+        return enqueued;
+    }
+
+    /**
+     * Запустить задачу тикета через delay после последнего вызова (debounce)
+     * Ожидающая задача этого типа переносится, а не дублируется
+     */
+    @Transactional
+    public void scheduleForTicket(AiJobType type, Long ticketId, Duration delay) {
+        LocalDateTime runAt = LocalDateTime.now().plus(delay);
+        aiJobRepository.schedulePending(ticketId, type.name(), runAt, properties.getMaxAttempts());
+        log.debug("Scheduled {} job for ticket {} at {}", type, ticketId, runAt);
+    }
+    
+    /**
+     * Поставить задачу для записи базы знаний, если такая же ещё не ожидает запуска
+     * (создание и правка подряд дают одну задачу, она возьмёт последний текст)
+     * @return true если задача поставлена
+     */
+    @Transactional
+    public boolean enqueueForKnowledgeBase(AiJobType type, Long knowledgeBaseId) {
+        boolean enqueued = aiJobRepository.insertPendingForKnowledgeBase(
+                knowledgeBaseId, type.name(), LocalDateTime.now(), properties.getMaxAttempts()) > 0;
+        if (enqueued) {
+            log.info("Enqueued {} job for knowledge base entry {}", type, knowledgeBaseId);
+        } else {
+            log.debug("{} job for knowledge base entry {} is already pending", type, knowledgeBaseId);
+        }
+        return enqueued;
+    }
+
+    /**
+     * Захватить готовые задачи типа: перевести в RUNNING с арендой на воркер
+     */
+    @Transactional
+    public List<AiJob> claim(AiJobType type, int limit, String workerId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<AiJob> jobs = aiJobRepository.lockPending(type.name(), now, limit);
+        LocalDateTime lockedUntil = now.plus(properties.leaseOf(type));
+        for (AiJob job : jobs) {
+            job.setStatus(AiJobStatus.RUNNING);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setLockedBy(workerId);
+            job.setLockedUntil(lockedUntil);
+        }
+        return aiJobRepository.saveAll(jobs);
+    }
+
+    /**
+     * Отметить задачу выполненной
+     * @return задача после обновления или null, если аренда потеряна / задача удалена
+     */
+    @Transactional
+    public AiJob complete(Long jobId, String workerId) {
+        AiJob job = findOwned(jobId, workerId);
+        if (job == null) {
+            return null;
+        }
+        job.setStatus(AiJobStatus.DONE);
+        job.setLockedBy(null);
+        job.setLockedUntil(null);
+        job.setCompletedAt(LocalDateTime.now());
+        return aiJobRepository.save(job);
+    }
+
+    /**
+     * Зафиксировать неудачную попытку: повтор с экспоненциальной задержкой или dead letter
+     * @return задача после обновления или null, если аренда потеряна / задача удалена
+     */
+    @Transactional
+    public AiJob fail(Long jobId, String workerId, String error) {
+        AiJob job = findOwned(jobId, workerId);
+        if (job == null) {
+            return null;
+        }
+        job.setLockedBy(null);
+        job.setLockedUntil(null);
+        job.setLastError(error != null && error.length() > MAX_ERROR_LENGTH
+                ? error.substring(0, MAX_ERROR_LENGTH) : error);
+
+        if (hasPendingDuplicate(job)) {
+            job.setStatus(AiJobStatus.DONE);
+            job.setCompletedAt(LocalDateTime.now());
+            log.info("{} job {} failed, superseded by a pending job: {}", job.getJobType(), jobId, error);
+        } else if (job.getAttempts() >= job.getMaxAttempts()) {
+            job.setStatus(AiJobStatus.DEAD);
+            job.setCompletedAt(LocalDateTime.now());
+            log.error("{} job {} moved to dead letter after {} attempts: {}",
+                    job.getJobType(), jobId, job.getAttempts(), error);
+        } else {
+            Duration delay = backoff(job.getAttempts());
+            job.setStatus(AiJobStatus.PENDING);
+            job.setRunAt(LocalDateTime.now().plus(delay));
+            log.warn("{} job {} failed (attempt {}/{}), retry in {}s: {}",
+                    job.getJobType(), jobId, job.getAttempts(), job.getMaxAttempts(), delay.toSeconds(), error);
+        }
+        return aiJobRepository.save(job);
+    }
+
+    /**
+     * Отложить задачу без расхода попытки (внешний сервис перегружен, задача не виновата)
+     * @return задача после обновления или null, если аренда потеряна / задача удалена
+     */
+    @Transactional
+    public AiJob defer(Long jobId, String workerId, String reason) {
+        AiJob job = findOwned(jobId, workerId);
+        if (job == null) {
+            return null;
+        }
+        job.setLockedBy(null);
+        job.setLockedUntil(null);
+        if (hasPendingDuplicate(job)) {
+            job.setStatus(AiJobStatus.DONE);
+            job.setCompletedAt(LocalDateTime.now());
+            log.info("{} job {} superseded by a pending job instead of deferring", job.getJobType(), jobId);
+            return aiJobRepository.save(job);
+        }
+        Duration delay = backoff(1);
+        job.setStatus(AiJobStatus.PENDING);
+        job.setAttempts(job.getAttempts() - 1);
+        job.setRunAt(LocalDateTime.now().plus(delay));
+        log.info("{} job {} deferred for {}s: {}", job.getJobType(), jobId, delay.toSeconds(), reason);
+        return aiJobRepository.save(job);
+    }
+
+    /**
+     * Вернуть в очередь задачи с просроченной арендой, исчерпавшие попытки - в dead letter
+     */
+    @Transactional
+    public int sweepExpiredLeases() {
+        LocalDateTime now = LocalDateTime.now();
+        int superseded = aiJobRepository.completeSupersededExpiredLeases(
+                now, AiJobStatus.RUNNING, AiJobStatus.PENDING, AiJobStatus.DONE);
+        int requeued = aiJobRepository.requeueExpiredLeases(now, AiJobStatus.RUNNING, AiJobStatus.PENDING);
+        int dead = aiJobRepository.deadLetterExpiredLeases(now, AiJobStatus.RUNNING, AiJobStatus.DEAD);
+        if (requeued > 0 || dead > 0) {
+            log.warn("Expired job leases: {} requeued, {} moved to dead letter", requeued, dead);
+        }
+        return superseded + requeued + dead;
+    }
+
+    /**
+     * Удалить задачи, завершённые раньше срока хранения (DONE - ai.jobs.done-retention,
+     * DEAD - ai.jobs.dead-retention), пачками по ai.jobs.purge-batch-size
+     * Без очистки каждое сообщение клиента оставляло бы в очереди строку навсегда
+     * @return количество удалённых задач
+     */
+    public int purgeFinishedJobs() {
+        LocalDateTime now = LocalDateTime.now();
+        int purged = purge(AiJobStatus.DONE, now.minus(properties.getDoneRetention()))
+                + purge(AiJobStatus.DEAD, now.minus(properties.getDeadRetention()));
+        if (purged > 0) {
+            log.info("Purged {} finished AI jobs", purged);
+        }
+        return purged;
+    }
+
+    private int purge(AiJobStatus status, LocalDateTime before) {
+        int batchSize = properties.getPurgeBatchSize();
+        int total = 0;
+        int deleted;
+        do {
+            // Каждая пачка - отдельная короткая транзакция
+            deleted = aiJobRepository.deleteFinishedBefore(status.name(), before, batchSize);
+            total += deleted;
+        } while (deleted == batchSize);
+        return total;
+    }
+
+    /**
+     * Есть ли у тикета незавершённые задачи обработки (RAG_REFRESH не задерживает открытие тикета)
+     */
+    public boolean hasActiveJobs(Long ticketId) {
+        return aiJobRepository.countByTicketIdAndStatusInAndJobTypeIn(
+                ticketId, List.of(AiJobStatus.PENDING, AiJobStatus.RUNNING), PROCESSING_TYPES) > 0;
+    }
+
+    /**
+     * Задачи в dead letter
+     */
+    public Page<AiJob> getDeadJobs(Pageable pageable) {
+        return aiJobRepository.findByStatusOrderByUpdatedAtDesc(AiJobStatus.DEAD, pageable);
+    }
+
+    /**
+     * Повторно поставить задачу из dead letter
+     */
+    @Transactional
+    public AiJob retry(Long jobId) {
+        AiJob job = aiJobRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("AI job not found"));
+        if (job.getStatus() != AiJobStatus.DEAD) {
+            throw new RuntimeException("Only dead jobs can be retried");
+        }
+        if (hasPendingDuplicate(job)) {
+            throw new RuntimeException("A pending job of this type is already queued for the ticket");
+        }
+        job.setStatus(AiJobStatus.PENDING);
+        job.setAttempts(0);
+        job.setRunAt(LocalDateTime.now());
+        job.setCompletedAt(null);
+        log.info("Retrying dead {} job {}", job.getJobType(), jobId);
+        return aiJobRepository.save(job);
+    }
+
+    /**
+     * Статистика очереди: тип -> статус -> количество
+     */
+    public Map<AiJobType, Map<AiJobStatus, Long>> getStats() {
+        Map<AiJobType, Map<AiJobStatus, Long>> stats = new EnumMap<>(AiJobType.class);
+        for (Object[] row : aiJobRepository.countByTypeAndStatus()) {
+            stats.computeIfAbsent((AiJobType) row[0], t -> new EnumMap<>(AiJobStatus.class))
+                    .put((AiJobStatus) row[1], (Long) row[2]);
+        }
+        return stats;
+    }
+
+    private AiJob newJob(AiJobType type) {
+        return AiJob.builder()
+                .jobType(type)
+                .status(AiJobStatus.PENDING)
+                .attempts(0)
+                .maxAttempts(properties.getMaxAttempts())
+                .runAt(LocalDateTime.now())
+                .build();
+    }
+
+    private AiJob findOwned(Long jobId, String workerId) {
+        AiJob job = aiJobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStatus() != AiJobStatus.RUNNING || !workerId.equals(job.getLockedBy())) {
+            log.warn("Job {} is no longer leased by {}, ignoring result", jobId, workerId);
+            return null;
+        }
+        return job;
+    }
+
+    /**
+     * Для тикета или статьи уже ожидает задача того же типа (RAG_REFRESH или EMBEDDING, поставленные
+     * за время выполнения): вернуть эту задачу в PENDING не даст уникальный индекс ожидающих задач
+     */
+    private boolean hasPendingDuplicate(AiJob job) {
+        if (job.getTicketId() != null) {
+            return aiJobRepository.existsByTicketIdAndJobTypeAndStatus(
+                    job.getTicketId(), job.getJobType(), AiJobStatus.PENDING);
+        }
+        return job.getKnowledgeBaseId() != null && aiJobRepository.existsByKnowledgeBaseIdAndJobTypeAndStatus(
+                job.getKnowledgeBaseId(), job.getJobType(), AiJobStatus.PENDING);
+    }
+
+    private Duration backoff(int attempts) {
+        long baseMillis = properties.getBackoffBase().toMillis();
+        long delayMillis = baseMillis << Math.min(attempts - 1, 20);
+        delayMillis = Math.min(delayMillis, properties.getBackoffMax().toMillis());
+        // Небольшой джиттер, чтобы повторы разных инстансов не совпадали
+        delayMillis += ThreadLocalRandom.current().nextLong(delayMillis / 5 + 1);
+        return Duration.ofMillis(delayMillis);
+    }
+}
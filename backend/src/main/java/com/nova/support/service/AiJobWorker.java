@@ -0,0 +1,210 @@
+package com.nova.support.service;
+
+import com.nova.support.config.AiJobProperties;
+import com.nova.support.domain.entity.AiJob;
+import com.nova.support.domain.enums.AiJobStatus;
+import com.nova.support.domain.enums.AiJobType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Воркер очереди AI задач
+ * Периодически забирает задачи каждого типа в пределах настроенного параллелизма,
+ * выполняет их с таймаутом и фиксирует результат (DONE / повтор / DEAD)
+ */
+@Slf4j
+@Service
+public class AiJobWorker {
+
+    private final AiJobService aiJobService;
+    private final AiJobProperties properties;
+    private final Map<AiJobType, AiJobHandler> handlers = new EnumMap<>(AiJobType.class);
+    private final Map<AiJobType, AtomicInteger> inFlight = new EnumMap<>(AiJobType.class);
+    private final Map<Long, RunningJob> runningJobs = new ConcurrentHashMap<>();
+    private final Set<Long> superseded = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("ai-job-", 0).factory());
+    private final String workerId;
+    private volatile boolean stopping;
+
+    public AiJobWorker(AiJobService aiJobService, AiJobProperties properties, List<AiJobHandler> jobHandlers) {
+        this.aiJobService = aiJobService;
+        this.properties = properties;
+        for (AiJobHandler handler : jobHandlers) {
+            for (AiJobType type : handler.getSupportedTypes()) {
+                handlers.put(type, handler);
+            }
+        }
+        for (AiJobType type : AiJobType.values()) {
+            inFlight.put(type, new AtomicInteger());
+        }
+        this.workerId = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+        log.info("AI job worker {} started, handlers: {}", workerId, handlers.keySet());
+    }
+
+    /**
+     * Забрать готовые задачи в пределах свободного параллелизма по каждому типу
+     */
+    @Scheduled(fixedDelayString = "${ai.jobs.poll-interval-ms:1000}")
+    public void poll() {
+        if (stopping) {
+            return;
+        }
+        for (Map.Entry<AiJobType, AiJobHandler> entry : handlers.entrySet()) {
+            AiJobType type = entry.getKey();
+            int free = properties.concurrencyOf(type) - inFlight.get(type).get();
+            if (free <= 0) {
+                continue;
+            }
+            try {
+                for (AiJob job : aiJobService.claim(type, free, workerId)) {
+                    start(job, entry.getValue());
+                }
+            } catch (Exception e) {
+                log.error("Failed to claim {} jobs", type, e);
+            }
+        }
+    }
+
+    /**
+     * Вернуть в очередь задачи, аренда которых истекла (инстанс упал или завис)
+     */
+    @Scheduled(fixedDelayString = "${ai.jobs.sweep-interval-ms:30000}")
+    public void sweep() {
+        try {
+            aiJobService.sweepExpiredLeases();
+        } catch (Exception e) {
+            log.error("Failed to sweep expired job leases", e);
+        }
+    }
+
+    /**
+     * Удалить завершённые задачи старше срока хранения
+     */
+    @Scheduled(fixedDelayString = "${ai.jobs.purge-interval-ms:3600000}")
+    public void purge() {
+        try {
+            aiJobService.purgeFinishedJobs();
+        } catch (Exception e) {
+            log.error("Failed to purge finished AI jobs", e);
+        }
+    }
+
+    /**
+     * Отменить выполняющиеся на этом инстансе задачи тикета (тикет удалён)
+     */
+    public void cancelTicketJobs(Long ticketId) {
+        runningJobs.values().stream()
+                .filter(running -> ticketId.equals(running.job().getTicketId()))
+                .forEach(running -> {
+                    running.future().cancel(true);
+                    log.info("Cancelled {} job {} of ticket {}", running.job().getJobType(), running.job().getId(), ticketId);
+                });
+    }
+
+    /**
+     * Отменить выполняющиеся на этом инстансе задачи тикета указанного типа, результат которых устарел
+     * (для RAG_REFRESH - клиент дописал сообщение); отменённая задача считается выполненной
+     */
+    public void supersedeTicketJobs(Long ticketId, AiJobType type) {
+        runningJobs.values().stream()
+                .filter(running -> ticketId.equals(running.job().getTicketId()) && running.job().getJobType() == type)
+                .forEach(running -> {
+                    superseded.add(running.job().getId());
+                    running.future().cancel(true);
+                    log.info("Cancelled stale {} job {} of ticket {}", type, running.job().getId(), ticketId);
+                });
+    }
+
+    /**
+     * Количество выполняющихся задач типа на этом инстансе
+     */
+    public int getInFlight(AiJobType type) {
+        return inFlight.get(type).get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Незавершённые задачи вернутся в очередь по истечении аренды
+        stopping = true;
+        executor.shutdownNow();
+    }
+
+    private void start(AiJob job, AiJobHandler handler) {
+        inFlight.get(job.getJobType()).incrementAndGet();
+        executor.execute(() -> {
+            try {
+                execute(job, handler);
+            } finally {
+                runningJobs.remove(job.getId());
+                superseded.remove(job.getId());
+                inFlight.get(job.getJobType()).decrementAndGet();
+            }
+        });
+    }
+
+    private void execute(AiJob job, AiJobHandler handler) {
+        Future<?> work = executor.submit(() -> {
+            handler.handle(job);
+            return null;
+        });
+        runningJobs.put(job.getId(), new RunningJob(job, work));
+
+        AiJob finished;
+        try {
+            work.get(properties.timeoutOf(job.getJobType()).toMillis(), TimeUnit.MILLISECONDS);
+            finished = aiJobService.complete(job.getId(), workerId);
+        } catch (TimeoutException e) {
+            work.cancel(true);
+            finished = aiJobService.fail(job.getId(), workerId, "Timed out after " + properties.timeoutOf(job.getJobType()));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof OllamaOverloadedException) {
+                // Перегрузка Ollama: фоновая работа уступает интерактивной и откладывается
+                aiJobService.defer(job.getId(), workerId, cause.getMessage());
+                return;
+            }
+            finished = aiJobService.fail(job.getId(), workerId, cause.getClass().getSimpleName() + ": " + cause.getMessage());
+        } catch (CancellationException e) {
+            if (superseded.contains(job.getId())) {
+                // Устаревший результат не нужен: новая задача уже поставлена
+                aiJobService.complete(job.getId(), workerId);
+            }
+            log.info("{} job {} was cancelled", job.getJobType(), job.getId());
+            return;
+        } catch (InterruptedException e) {
+            // Остановка приложения: задача вернётся в очередь по истечении аренды
+            work.cancel(true);
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (finished != null && (finished.getStatus() == AiJobStatus.DONE || finished.getStatus() == AiJobStatus.DEAD)) {
+            try {
+                handler.onFinished(finished);
+            } catch (Exception e) {
+                log.error("Post-processing of {} job {} failed", job.getJobType(), job.getId(), e);
+            }
+        }
+    }
+
+    private record RunningJob(AiJob job, Future<?> future) {}
+}
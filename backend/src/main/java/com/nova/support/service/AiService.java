@@ -12,7 +12,7 @@ import java.util.List;
 
 /**
  * Сервис для работы с AI моделями через Ollama
- * - Анализ тикетов (sentiment, summary)
+ * - Генерация резюме
  * - Генерация эмбеддингов для RAG
  * - Анализ изображений (через gemma3:4b - мультимодальная модель)
  */
@@ -24,52 +24,6 @@ public class AiService {
     private final ChatClient.Builder chatClientBuilder;
     private final EmbeddingModel embeddingModel;
 
-    /**
-     * Анализ тикета: определение тональности и приоритета
-     * 
-     * @param text текст тикета (оригинальный или транскрибированный)
-     * @return результат анализа
-     */
-    public TicketAnalysis analyzeTicket(String text) {
-        log.info("Analyzing ticket text (length: {})", text.length());
-        
-        String prompt = String.format("""
-                Проанализируй следующее обращение клиента в службу поддержки.
-                
-                Текст обращения:
-                %s
-                
-                Определи:
-                1. Тональность (POSITIVE, NEUTRAL, NEGATIVE)
-                2. Приоритет (LOW, MEDIUM, HIGH, CRITICAL)
-                3. Краткое резюме проблемы (1-2 предложения)
-                
-                Ответь СТРОГО в формате JSON:
-                {
-                  "sentiment": "POSITIVE|NEUTRAL|NEGATIVE",
-                  "priority": "LOW|MEDIUM|HIGH|CRITICAL",
-                  "summary": "краткое описание проблемы"
-                }
-                """, text);
-        
-        try {
-            String response = chatClientBuilder.build()
-                    .prompt(new Prompt(prompt))
-                    .call()
-                    .content();
-            
-            log.debug("AI analysis response: {}", response);
-            
-            // Парсим JSON ответ (упрощенная версия, в продакшене использовать Jackson)
-            return parseAnalysisResponse(response);
-            
-        } catch (Exception e) {
-            log.error("Error during ticket analysis", e);
-            // Fallback значения
-            return new TicketAnalysis("NEUTRAL", "MEDIUM", "Не удалось проанализировать тикет");
-        }
-    }
-    
     /**
      * Генерация краткого резюме текста
      */
@@ -136,38 +90,4 @@ public class AiService {
         // Пока возвращаем заглушку
         return "Анализ изображений будет добавлен в следующей версии";
     }
-    
-    // Вспомогательные методы
-    
-    private TicketAnalysis parseAnalysisResponse(String jsonResponse) {
-        // Простой парсинг JSON (в продакшене использовать Jackson ObjectMapper)
-        String sentiment = extractJsonValue(jsonResponse, "sentiment");
-        String priority = extractJsonValue(jsonResponse, "priority");
-        String summary = extractJsonValue(jsonResponse, "summary");
-        
-        return new TicketAnalysis(sentiment, priority, summary);
-    }
-    
-    private String extractJsonValue(String json, String key) {
-        try {
-            String pattern = "\"" + key + "\"\\s*:\\s*\"([^\"]+)\"";
-            java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
-            java.util.regex.Matcher m = p.matcher(json);
-            if (m.find()) {
-                return m.group(1);
-            }
-        } catch (Exception e) {
-            log.warn("Failed to extract '{}' from JSON: {}", key, json);
-        }
-        return "";
-    }
-    
-    /**
-     * Результат анализа тикета
-     */
-    public record TicketAnalysis(
-            String sentiment,
-            String priority,
-            String summary
-    ) {}
 }
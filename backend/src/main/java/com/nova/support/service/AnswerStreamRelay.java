@@ -0,0 +1,79 @@
+package com.nova.support.service;
+
+import com.nova.support.dto.AnswerStreamChunk;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Ретрансляция фрагментов генерируемого ответа оператору в /topic/tickets/{id}/answer-stream
+ * Оператор видит ответ с первого токена; полный текст по-прежнему сохраняется и рассылается вызывающим кодом
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnswerStreamRelay {
+
+    public static final String RAG = "RAG";
+    public static final String SUGGESTED = "SUGGESTED";
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    /**
+     * Начать трансляцию одной генерации
+     *
+     * @param source RAG или SUGGESTED
+     */
+    public Stream open(Long ticketId, String source) {
+        return new Stream(ticketId, source, UUID.randomUUID().toString());
+    }
+
+    private void send(Long ticketId, AnswerStreamChunk chunk) {
+        try {
+            messagingTemplate.convertAndSend("/topic/tickets/" + ticketId + "/answer-stream", chunk);
+        } catch (MessagingException e) {
+            // Потерянный фрагмент не должен прерывать генерацию
+            log.debug("Failed to relay answer chunk for ticket {}: {}", ticketId, e.getMessage());
+        }
+    }
+
+    /**
+     * Трансляция одной генерации: accept - очередной фрагмент, close - завершение (в том числе при ошибке)
+     */
+    public final class Stream implements Consumer<String>, AutoCloseable {
+
+        private final Long ticketId;
+        private final String source;
+        private final String streamId;
+
+        private Stream(Long ticketId, String source, String streamId) {
+            this.ticketId = ticketId;
+            this.source = source;
+            this.streamId = streamId;
+        }
+
+        @Override
+        public void accept(String delta) {
+            send(ticketId, AnswerStreamChunk.builder()
+                    .source(source)
+                    .streamId(streamId)
+                    .delta(delta)
+                    .build());
+        }
+
+        @Override
+        public void close() {
+            send(ticketId, AnswerStreamChunk.builder()
+                    .source(source)
+                    .streamId(streamId)
+                    .delta("")
+                    .done(true)
+                    .build());
+        }
+    }
+}
@@ -5,11 +5,16 @@ import com.nova.support.dto.ChatMessageResponse;
 import com.nova.support.domain.entity.ChatMessage;
 import com.nova.support.repository.ChatMessageRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -21,6 +26,12 @@ public class ChatService {
     private final SimpMessagingTemplate messagingTemplate;
     private final TicketService ticketService;
     
+    @Value("${chat.messages.default-limit:50}")
+    private int defaultMessagesLimit;
+    
+    @Value("${chat.messages.max-limit:200}")
+    private int maxMessagesLimit;
+    
     public ChatService(
         ChatMessageRepository chatMessageRepository,
         SimpMessagingTemplate messagingTemplate,
@@ -68,13 +79,11 @@ public class ChatService {
         ChatMessage saved = chatMessageRepository.save(message);
         ChatMessageResponse response = ChatMessageResponse.from(saved);
         
-        // RAG Bucket Logic
+        // RAG bucket - сообщения клиента после последнего ответа оператора (выводится из chat_messages)
         if (request.getSenderType() == ChatMessage.SenderType.CLIENT) {
-            // Add client message to RAG bucket
-            ticketService.addMessageToBucket(request.getTicketId(), saved.getId());
+            ticketService.onClientMessage(request.getTicketId());
         } else if (request.getSenderType() == ChatMessage.SenderType.OPERATOR) {
-            // Clear RAG bucket after operator response
-            ticketService.clearBucket(request.getTicketId());
+            ticketService.onOperatorMessage(request.getTicketId());
         }
         
         // Отправляем через WebSocket
@@ -85,12 +94,28 @@ public class ChatService {
     }
     
     /**
-     * Получить всю историю сообщений тикета
+     * Страница истории сообщений тикета (keyset по id), всегда по возрастанию id
+     * - after: сообщения новее курсора (догрузка новых)
+     * - before: сообщения старше курсора (прокрутка вверх)
+     * - без курсора: последние limit сообщений
      */
-    public List<ChatMessageResponse> getTicketMessages(Long ticketId) {
-        log.info("Getting messages for ticket {}", ticketId);
-        return chatMessageRepository.findByTicketIdOrderByCreatedAtAsc(ticketId)
-                .stream()
+    public List<ChatMessageResponse> getTicketMessages(Long ticketId, Long afterId, Long beforeId, Integer limit) {
+        if (afterId != null && beforeId != null) {
+            throw new RuntimeException("Only one of after and before can be specified");
+        }
+        Pageable page = PageRequest.of(0, limit == null || limit <= 0
+                ? defaultMessagesLimit : Math.min(limit, maxMessagesLimit));
+        
+        List<ChatMessage> messages;
+        if (afterId != null) {
+            messages = chatMessageRepository.findByTicketIdAndIdGreaterThanOrderByIdAsc(ticketId, afterId, page);
+        } else {
+            messages = new ArrayList<>(beforeId != null
+                    ? chatMessageRepository.findByTicketIdAndIdLessThanOrderByIdDesc(ticketId, beforeId, page)
+                    : chatMessageRepository.findByTicketIdOrderByIdDesc(ticketId, page));
+            Collections.reverse(messages);
+        }
+        return messages.stream()
                 .map(ChatMessageResponse::from)
                 .collect(Collectors.toList());
     }
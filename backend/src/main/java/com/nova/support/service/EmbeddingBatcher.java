@@ -0,0 +1,142 @@
+package com.nova.support.service;
+
+import com.nova.support.domain.enums.LlmRequestPriority;
+import io.micrometer.core.instrument.DistributionSummary;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Микробатчинг одиночных запросов эмбеддингов
+ * Тексты, пришедшие в течение окна window, уходят одним запросом /api/embed (не больше maxBatchSize);
+ * полный батч отправляется сразу. Батчи раздельны по модели и приоритету вызывающего потока,
+ * чтобы фоновые тексты не задерживали интерактивные в очереди OllamaAdmission
+ * Одинаковые тексты внутри окна запрашиваются один раз
+ */
+@Slf4j
+final class EmbeddingBatcher implements AutoCloseable {
+
+    private final Duration window;
+    private final int maxBatchSize;
+    private final OllamaAdmission ollamaAdmission;
+    private final BiFunction<String, List<String>, List<float[]>> request;
+    private final DistributionSummary batchSizes;
+    private final Map<BatchKey, Batch> open = new HashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("embedding-batcher").daemon().factory());
+    private final ExecutorService senders = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("embedding-batch-", 0).factory());
+
+    /**
+     * @param request вызов модели: (модель, тексты) -> эмбеддинги в порядке текстов
+     */
+    EmbeddingBatcher(Duration window, int maxBatchSize, OllamaAdmission ollamaAdmission,
+                     BiFunction<String, List<String>, List<float[]>> request, DistributionSummary batchSizes) {
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.ollamaAdmission = ollamaAdmission;
+        this.request = request;
+        this.batchSizes = batchSizes;
+    }
+
+    /**
+     * Эмбеддинг одного текста; блокирует вызывающий поток до ответа батча
+     */
+    float[] embed(String model, String text) {
+        BatchKey key = new BatchKey(model, ollamaAdmission.currentPriority());
+        CompletableFuture<float[]> result;
+        Batch full = null;
+        synchronized (open) {
+            Batch batch = open.get(key);
+            if (batch == null) {
+                batch = new Batch();
+                open.put(key, batch);
+                Batch scheduled = batch;
+                timer.schedule(() -> flush(key, scheduled), window.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            result = batch.add(text);
+            if (batch.size() >= maxBatchSize) {
+                open.remove(key);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            send(key, full);
+        }
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    private void flush(BatchKey key, Batch batch) {
+        synchronized (open) {
+            // Батч мог уже уйти по заполнению
+            if (!open.remove(key, batch)) {
+                return;
+            }
+        }
+        send(key, batch);
+    }
+
+    private void send(BatchKey key, Batch batch) {
+        senders.execute(() -> {
+            List<String> texts = new ArrayList<>(batch.waiters.keySet());
+            batchSizes.record(texts.size());
+            try (var ignored = ollamaAdmission.prioritize(key.priority())) {
+                List<float[]> embeddings = request.apply(key.model(), texts);
+                for (int i = 0; i < texts.size(); i++) {
+                    for (CompletableFuture<float[]> waiter : batch.waiters.get(texts.get(i))) {
+                        waiter.complete(embeddings.get(i));
+                    }
+                }
+            } catch (Throwable e) {
+                log.debug("Embedding batch of {} texts failed: {}", texts.size(), e.getMessage());
+                batch.waiters.values().forEach(waiters -> waiters.forEach(w -> w.completeExceptionally(e)));
+            }
+        });
+    }
+
+    private record BatchKey(String model, LlmRequestPriority priority) {
+    }
+
+    /**
+     * Открытый батч: текст -> ожидающие его вызовы (порядок текстов сохраняется)
+     */
+    private static final class Batch {
+
+        private final Map<String, List<CompletableFuture<float[]>>> waiters = new LinkedHashMap<>();
+
+        CompletableFuture<float[]> add(String text) {
+            CompletableFuture<float[]> future = new CompletableFuture<>();
+            waiters.computeIfAbsent(text, t -> new ArrayList<>(1)).add(future);
+            return future;
+        }
+
+        int size() {
+            return waiters.size();
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.nova.support.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Двухуровневый кэш эмбеддингов по (модель, SHA-256 текста)
+ * - in-memory LRU над float[]
+ * - memory-mapped файл с записями фиксированной длины (ключ 32 байта + CRC32C + dimension float),
+ *   открытая адресация с линейным пробированием; переживает рестарт, при переполнении
+ *   запись вытесняет старую в своём слоте. Запись с несовпадающей контрольной суммой
+ *   (сбой посреди записи, страницы сброшены на диск не по порядку) считается промахом
+ * Возвращаемые массивы общие для всех вызывающих - их нельзя изменять
+ */
+@Slf4j
+@Service
+public class EmbeddingCache {
+
+    private static final int MAGIC = 0x454D4243; // "EMBC"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 16;
+    private static final int KEY_BYTES = 32;
+    private static final int CHECKSUM_BYTES = 4;
+    private static final int VECTOR_OFFSET = KEY_BYTES + CHECKSUM_BYTES;
+    private static final byte[] EMPTY_KEY = new byte[KEY_BYTES];
+    private static final int MAX_PROBES = 8;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final int dimension;
+    private final int recordBytes;
+    private final LruCache<String, float[]> memory;
+    private final ReentrantReadWriteLock diskLock = new ReentrantReadWriteLock();
+    private final AtomicInteger diskEntries = new AtomicInteger();
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    private FileChannel channel;
+    private MappedByteBuffer disk;
+    private int capacity;
+
+    public EmbeddingCache(
+            MeterRegistry meterRegistry,
+            @Value("${embedding.cache.dimension:768}") int dimension,
+            @Value("${embedding.cache.memory-max-entries:5000}") int memoryMaxEntries,
+            @Value("${embedding.cache.disk-path:./data/embedding-cache.bin}") String diskPath,
+            @Value("${embedding.cache.disk-capacity:32768}") int diskCapacity) {
+        this.dimension = dimension;
+        this.recordBytes = VECTOR_OFFSET + dimension * Float.BYTES;
+        this.memory = new LruCache<>(memoryMaxEntries);
+        openDisk(Path.of(diskPath), diskCapacity);
+
+        this.memoryHits = counter(meterRegistry, "hit", "memory");
+        this.diskHits = counter(meterRegistry, "hit", "disk");
+        this.misses = counter(meterRegistry, "miss", "none");
+        Gauge.builder("embedding.cache.memory.bytes", memory, m -> (double) m.size() * dimension * Float.BYTES)
+                .description("Approximate heap used by cached embedding vectors")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("embedding.cache.disk.bytes", this, c -> c.disk != null ? (double) c.disk.capacity() : 0)
+                .description("Size of the memory-mapped embedding store")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("embedding.cache.disk.entries", diskEntries, AtomicInteger::get)
+                .description("Embeddings stored in the memory-mapped tier")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Получить эмбеддинг из кэша или сгенерировать и сохранить
+     */
+    public float[] getOrCompute(String model, String text, Supplier<float[]> generator) {
+        float[] cached = getIfPresent(model, text);
+        if (cached != null) {
+            return cached;
+        }
+        float[] embedding = generator.get();
+        put(model, text, embedding);
+        return embedding;
+    }
+
+    /**
+     * Найти эмбеддинг в кэше (null - промах, генерирует вызывающий и сохраняет через put)
+     */
+    public float[] getIfPresent(String model, String text) {
+        byte[] key = keyOf(model, text);
+        String memoryKey = HEX.formatHex(key);
+
+        float[] cached = memory.get(memoryKey);
+        if (cached != null) {
+            memoryHits.increment();
+            return cached;
+        }
+
+        cached = readDisk(key);
+        if (cached != null) {
+            diskHits.increment();
+            memory.put(memoryKey, cached);
+            return cached;
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Сохранить сгенерированный эмбеддинг в оба уровня
+     */
+    public void put(String model, String text, float[] embedding) {
+        byte[] key = keyOf(model, text);
+        memory.put(HEX.formatHex(key), embedding);
+        writeDisk(key, embedding);
+    }
+
+    @PreDestroy
+    public void close() {
+        diskLock.writeLock().lock();
+        try {
+            if (disk != null) {
+                disk.force();
+                channel.close();
+                disk = null;
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close embedding cache file", e);
+        } finally {
+            diskLock.writeLock().unlock();
+        }
+    }
+
+    // ===== Memory-mapped уровень =====
+
+    private void openDisk(Path path, int requestedCapacity) {
+        // Один MappedByteBuffer ограничен 2 GB
+        int maxCapacity = (int) ((Integer.MAX_VALUE - HEADER_BYTES) / recordBytes);
+        int slots = Math.min(requestedCapacity, maxCapacity);
+        long size = HEADER_BYTES + (long) slots * recordBytes;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean compatible = channel.size() == size && headerMatches(slots);
+            if (!compatible) {
+                // Новый файл или другая размерность/ёмкость - начинаем с пустого хранилища
+                channel.truncate(0);
+            }
+            disk = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            capacity = slots;
+            if (compatible) {
+                diskEntries.set(countEntries());
+            } else {
+                disk.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, dimension).putInt(12, slots);
+            }
+            log.info("Embedding cache file {}: {} slots of {} floats, {} entries", path, slots, dimension, diskEntries.get());
+        } catch (IOException e) {
+            log.warn("Embedding cache file {} is unavailable, using in-memory tier only", path, e);
+            disk = null;
+        }
+    }
+
+    private boolean headerMatches(int slots) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        return header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+                && header.getInt(8) == dimension && header.getInt(12) == slots;
+    }
+
+    private int countEntries() {
+        int count = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (!isEmpty(slot)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private float[] readDisk(byte[] key) {
+        diskLock.readLock().lock();
+        try {
+            if (disk == null) {
+                return null;
+            }
+            int home = homeSlot(key);
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int slot = (home + probe) % capacity;
+                if (isEmpty(slot)) {
+                    return null;
+                }
+                if (keyMatches(slot, key)) {
+                    int offset = offsetOf(slot);
+                    if (disk.getInt(offset + KEY_BYTES) != checksum(key, offset)) {
+                        log.warn("Embedding cache record in slot {} is corrupted, ignoring it", slot);
+                        return null;
+                    }
+                    float[] embedding = new float[dimension];
+                    disk.slice(offset + VECTOR_OFFSET, dimension * Float.BYTES).asFloatBuffer().get(embedding);
+                    return embedding;
+                }
+            }
+            return null;
+        } finally {
+            diskLock.readLock().unlock();
+        }
+    }
+
+    private void writeDisk(byte[] key, float[] embedding) {
+        if (embedding.length != dimension) {
+            // Размерность другой модели - только in-memory уровень
+            return;
+        }
+        diskLock.writeLock().lock();
+        try {
+            if (disk == null) {
+                return;
+            }
+            int home = homeSlot(key);
+            int target = home;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int slot = (home + probe) % capacity;
+                if (isEmpty(slot)) {
+                    diskEntries.incrementAndGet();
+                    target = slot;
+                    break;
+                }
+                if (keyMatches(slot, key)) {
+                    target = slot;
+                    break;
+                }
+                // Цепочка заполнена - вытесняем запись в домашнем слоте
+            }
+            // Ключ записывается последним, а прежний стирается первым: вытесненный ключ не остаётся
+            // рядом с новым вектором; недописанную запись отсеет контрольная сумма
+            int offset = offsetOf(target);
+            disk.put(offset, EMPTY_KEY);
+            disk.slice(offset + VECTOR_OFFSET, dimension * Float.BYTES).asFloatBuffer().put(embedding);
+            disk.putInt(offset + KEY_BYTES, checksum(key, offset));
+            disk.put(offset, key);
+        } finally {
+            diskLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * CRC32C ключа и вектора записи (вектор читается из файла)
+     */
+    private int checksum(byte[] key, int offset) {
+        CRC32C crc = new CRC32C();
+        crc.update(key);
+        crc.update(disk.slice(offset + VECTOR_OFFSET, dimension * Float.BYTES));
+        return (int) crc.getValue();
+    }
+
+    private int homeSlot(byte[] key) {
+        int hash = (key[0] & 0xFF) << 24 | (key[1] & 0xFF) << 16 | (key[2] & 0xFF) << 8 | (key[3] & 0xFF);
+        return Math.floorMod(hash, capacity);
+    }
+
+    private int offsetOf(int slot) {
+        return HEADER_BYTES + slot * recordBytes;
+    }
+
+    private boolean isEmpty(int slot) {
+        int offset = offsetOf(slot);
+        for (int i = 0; i < KEY_BYTES; i += Long.BYTES) {
+            if (disk.getLong(offset + i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean keyMatches(int slot, byte[] key) {
+        byte[] stored = new byte[KEY_BYTES];
+        disk.get(offsetOf(slot), stored);
+        return Arrays.equals(stored, key);
+    }
+
+    private static byte[] keyOf(String model, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return digest.digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result, String tier) {
+        return Counter.builder("embedding.cache.requests")
+                .tag("result", result)
+                .tag("tier", tier)
+                .description("Embedding cache lookups")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,241 @@
+package com.nova.support.service;
+
+import com.nova.support.config.VectorCodec;
+import com.nova.support.domain.enums.LlmRequestPriority;
+import com.nova.support.dto.EmbeddingModelVersion;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Фоновая переиндексация базы знаний при смене модели эмбеддингов (или версии векторов)
+ * - фрагменты обходятся курсором по id, курсор хранится в embedding_reindex_runs и переживает рестарт
+ * - тексты отправляются в модель пачками (/api/embed) с фоновым приоритетом, не чаще раза в interval-ms
+ * - векторы пишутся JDBC батчем в next_embedding, поиск до конца прогона идёт по прежним векторам
+ * - когда у всех фрагментов есть вектор целевой модели, одна транзакция переключает embedding,
+ *   пересчитывает эмбеддинги и префиксы статей; графы в памяти перестраиваются
+ * Батч выполняет один инстанс: аренда строки прогона (locked_by / locked_until)
+ */
+@Slf4j
+@Service
+public class EmbeddingReindexService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EmbeddingVersions embeddingVersions;
+    private final OllamaService ollamaService;
+    private final OllamaAdmission ollamaAdmission;
+    private final InMemoryVectorIndex inMemoryVectorIndex;
+    private final String instanceId;
+
+    @Value("${embedding.reindex.enabled:true}")
+    private boolean enabled;
+
+    @Value("${embedding.reindex.batch-size:32}")
+    private int batchSize;
+
+    @Value("${embedding.reindex.lease-seconds:300}")
+    private int leaseSeconds;
+
+    public EmbeddingReindexService(JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   EmbeddingVersions embeddingVersions,
+                                   OllamaService ollamaService,
+                                   OllamaAdmission ollamaAdmission,
+                                   InMemoryVectorIndex inMemoryVectorIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.embeddingVersions = embeddingVersions;
+        this.ollamaService = ollamaService;
+        this.ollamaAdmission = ollamaAdmission;
+        this.inMemoryVectorIndex = inMemoryVectorIndex;
+        this.instanceId = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * Один шаг переиндексации; интервал между шагами ограничивает нагрузку на Ollama
+     */
+    @Scheduled(fixedDelayString = "${embedding.reindex.interval-ms:5000}",
+               initialDelayString = "${embedding.reindex.interval-ms:5000}")
+    public void reindexBatch() {
+        try {
+            if (embeddingVersions.refresh()) {
+                // Активную модель переключил этот или другой инстанс - графы в памяти на старых векторах
+                inMemoryVectorIndex.refresh();
+            }
+            if (!enabled || !embeddingVersions.inTransition()) {
+                return;
+            }
+            EmbeddingModelVersion target = embeddingVersions.target();
+            Long runId = acquireRun(target);
+            if (runId == null) {
+                return;
+            }
+            if (!embedNextBatch(runId, target)) {
+                completeIfDone(runId, target);
+            }
+        } catch (OllamaOverloadedException e) {
+            log.debug("Embedding reindex batch deferred: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("Embedding reindex batch failed", e);
+        }
+    }
+
+    /**
+     * Создать прогон для целевой модели (если ещё нет) и взять его в аренду
+     *
+     * @return ID прогона или null, если батч выполняет другой инстанс
+     */
+    private Long acquireRun(EmbeddingModelVersion target) {
+        jdbcTemplate.update(
+                "INSERT INTO embedding_reindex_runs (model, version) VALUES (?, ?) " +
+                "ON CONFLICT (model, version) DO UPDATE " +
+                "SET status = 'RUNNING', completed_at = NULL, last_chunk_id = 0, embedded_chunks = 0 " +
+                "WHERE embedding_reindex_runs.status = 'COMPLETED'",
+                target.model(), target.version());
+        List<Long> leased = jdbcTemplate.queryForList(
+                "UPDATE embedding_reindex_runs " +
+                "SET locked_by = ?, locked_until = CURRENT_TIMESTAMP + make_interval(secs => ?) " +
+                "WHERE model = ? AND version = ? AND status = 'RUNNING' " +
+                "AND (locked_until IS NULL OR locked_until < CURRENT_TIMESTAMP OR locked_by = ?) " +
+                "RETURNING id",
+                Long.class,
+                instanceId, leaseSeconds, target.model(), target.version(), instanceId);
+        return leased.isEmpty() ? null : leased.get(0);
+    }
+
+    /**
+     * Эмбеддить следующую пачку фрагментов после курсора
+     *
+     * @return false если курсор дошёл до конца таблицы
+     */
+    private boolean embedNextBatch(Long runId, EmbeddingModelVersion target) {
+        long cursor = jdbcTemplate.queryForObject(
+                "SELECT last_chunk_id FROM embedding_reindex_runs WHERE id = ?", Long.class, runId);
+        List<PendingChunk> batch = jdbcTemplate.query(
+                "SELECT c.id, c.content_hash, kb.title, c.content " +
+                "FROM knowledge_chunks c JOIN knowledge_base kb ON kb.id = c.knowledge_base_id " +
+                "WHERE c.id > ? " +
+                "AND (c.next_embedding_model IS DISTINCT FROM ? OR c.next_embedding_version IS DISTINCT FROM ?) " +
+                "AND (c.embedding_model IS DISTINCT FROM ? OR c.embedding_version IS DISTINCT FROM ?) " +
+                "ORDER BY c.id " +
+                "LIMIT ?",
+                (rs, rowNum) -> new PendingChunk(rs.getLong(1), rs.getString(2),
+                        KnowledgeChunkService.textToEmbed(rs.getString(3), rs.getString(4))),
+                cursor, target.model(), target.version(), target.model(), target.version(), batchSize);
+        if (batch.isEmpty()) {
+            return false;
+        }
+
+        List<float[]> embeddings;
+        try (var ignored = ollamaAdmission.prioritize(LlmRequestPriority.BACKGROUND)) {
+            embeddings = ollamaService.generateEmbeddings(target, batch.stream().map(PendingChunk::text).toList());
+        }
+
+        long lastId = batch.get(batch.size() - 1).id();
+        transactionTemplate.executeWithoutResult(status -> {
+            // Условие по хэшу: фрагмент, изменённый во время запроса, уже получил вектор от задачи EMBEDDING
+            jdbcTemplate.batchUpdate(
+                    "UPDATE knowledge_chunks " +
+                    "SET next_embedding = ?, next_embedding_model = ?, next_embedding_version = ? " +
+                    "WHERE id = ? AND content_hash = ?",
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            VectorCodec.bind(ps, 1, embeddings.get(i));
+                            ps.setString(2, target.model());
+                            ps.setInt(3, target.version());
+                            ps.setLong(4, batch.get(i).id());
+                            ps.setString(5, batch.get(i).hash());
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return batch.size();
+                        }
+                    });
+            jdbcTemplate.update(
+                    "UPDATE embedding_reindex_runs SET last_chunk_id = ?, embedded_chunks = embedded_chunks + ? " +
+                    "WHERE id = ?",
+                    lastId, batch.size(), runId);
+        });
+        log.info("Re-embedded {} knowledge chunks with {} (up to chunk {})", batch.size(), target, lastId);
+        return true;
+    }
+
+    /**
+     * Курсор дошёл до конца: переключить поиск на новые векторы, если не осталось фрагментов без них
+     * (фрагменты, изменённые за спиной курсора, догоняются следующим проходом)
+     */
+    private void completeIfDone(Long runId, EmbeddingModelVersion target) {
+        Integer remaining = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM knowledge_chunks " +
+                "WHERE (next_embedding_model IS DISTINCT FROM ? OR next_embedding_version IS DISTINCT FROM ?) " +
+                "AND (embedding_model IS DISTINCT FROM ? OR embedding_version IS DISTINCT FROM ?)",
+                Integer.class, target.model(), target.version(), target.model(), target.version());
+        if (remaining != null && remaining > 0) {
+            jdbcTemplate.update("UPDATE embedding_reindex_runs SET last_chunk_id = 0 WHERE id = ?", runId);
+            log.info("{} knowledge chunks changed during reindexing to {}, starting another pass", remaining, target);
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(
+                    "UPDATE knowledge_chunks SET embedding = next_embedding, " +
+                    "embedding_model = next_embedding_model, embedding_version = next_embedding_version, " +
+                    "next_embedding = NULL, next_embedding_model = NULL, next_embedding_version = NULL " +
+                    "WHERE next_embedding_model = ? AND next_embedding_version = ?",
+                    target.model(), target.version());
+            // Эмбеддинг статьи - нормализованное среднее фрагментов (как в KnowledgeChunkService)
+            jdbcTemplate.update(
+                    "UPDATE knowledge_base kb SET embedding = l2_normalize(c.centroid), " +
+                    "embedding_model = ?, embedding_version = ? " +
+                    "FROM (SELECT knowledge_base_id, avg(l2_normalize(embedding)) AS centroid " +
+                    "      FROM knowledge_chunks GROUP BY knowledge_base_id) c " +
+                    "WHERE c.knowledge_base_id = kb.id",
+                    target.model(), target.version());
+            // Статьи без фрагментов (задача EMBEDDING не выполнилась) не должны смешивать модели в поиске
+            jdbcTemplate.update(
+                    "INSERT INTO ai_jobs (job_type, knowledge_base_id) " +
+                    "SELECT 'EMBEDDING', kb.id FROM knowledge_base kb " +
+                    "WHERE kb.embedding IS NOT NULL " +
+                    "AND (kb.embedding_model IS DISTINCT FROM ? OR kb.embedding_version IS DISTINCT FROM ?) " +
+                    "ON CONFLICT (knowledge_base_id, job_type) WHERE status = 'PENDING' DO NOTHING",
+                    target.model(), target.version());
+            jdbcTemplate.update(
+                    "UPDATE knowledge_base SET embedding = NULL, embedding_prefix = NULL, " +
+                    "embedding_model = NULL, embedding_version = NULL " +
+                    "WHERE embedding IS NOT NULL " +
+                    "AND (embedding_model IS DISTINCT FROM ? OR embedding_version IS DISTINCT FROM ?)",
+                    target.model(), target.version());
+            jdbcTemplate.update(
+                    "UPDATE knowledge_base kb SET embedding_prefix = " +
+                    "CASE WHEN p.embedding_prefix_dims IS NULL OR kb.embedding IS NULL THEN NULL " +
+                    "ELSE l2_normalize(subvector(kb.embedding, 1, p.embedding_prefix_dims)) END " +
+                    "FROM projects p WHERE p.id = kb.project_id");
+            jdbcTemplate.update(
+                    "UPDATE embedding_reindex_runs SET status = 'COMPLETED', completed_at = CURRENT_TIMESTAMP, " +
+                    "locked_by = NULL, locked_until = NULL " +
+                    "WHERE id = ?",
+                    runId);
+        });
+        log.info("Knowledge base reindexed with {}, search switched to the new vectors", target);
+
+        if (embeddingVersions.refresh()) {
+            inMemoryVectorIndex.refresh();
+        }
+    }
+
+    private record PendingChunk(long id, String hash, String text) {
+    }
+}
@@ -0,0 +1,79 @@
+package com.nova.support.service;
+
+import com.nova.support.dto.EmbeddingModelVersion;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Активная и целевая модели эмбеддингов
+ * - целевая задаётся конфигурацией (ollama.model.embedding, embedding.version)
+ * - активная - последняя полностью переиндексированная (embedding_reindex_runs): ей строятся
+ *   эмбеддинги запросов и векторы, по которым идёт поиск
+ * Пока они различаются, новые векторы пишутся в обе модели, а EmbeddingReindexService
+ * догоняет остальные фрагменты в фоне (двойное чтение без простоя)
+ */
+@Slf4j
+@Service
+public class EmbeddingVersions {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingModelVersion target;
+    private volatile EmbeddingModelVersion active;
+
+    public EmbeddingVersions(JdbcTemplate jdbcTemplate,
+                             @Value("${ollama.model.embedding}") String model,
+                             @Value("${embedding.version:1}") int version) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.target = new EmbeddingModelVersion(model, version);
+    }
+
+    public EmbeddingModelVersion target() {
+        return target;
+    }
+
+    public EmbeddingModelVersion active() {
+        EmbeddingModelVersion current = active;
+        if (current == null) {
+            refresh();
+            current = active;
+        }
+        return current;
+    }
+
+    /**
+     * Идёт переход на новую модель: поиск ещё использует векторы прежней
+     */
+    public boolean inTransition() {
+        return !active().equals(target);
+    }
+
+    /**
+     * Перечитать активную модель (её могла переключить переиндексация на другом инстансе)
+     *
+     * @return true если активная модель сменилась
+     */
+    public synchronized boolean refresh() {
+        List<EmbeddingModelVersion> completed = jdbcTemplate.query(
+                "SELECT model, version FROM embedding_reindex_runs " +
+                "WHERE status = 'COMPLETED' " +
+                "ORDER BY completed_at DESC, id DESC " +
+                "LIMIT 1",
+                (rs, rowNum) -> new EmbeddingModelVersion(rs.getString(1), rs.getInt(2)));
+        EmbeddingModelVersion current = completed.isEmpty() ? target : completed.get(0);
+        EmbeddingModelVersion previous = active;
+        active = current;
+        if (previous == null) {
+            log.info("Active embedding model: {}, target: {}", current, target);
+            return false;
+        }
+        if (!previous.equals(current)) {
+            log.info("Active embedding model switched from {} to {}", previous, current);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,671 @@
+package com.nova.support.service;
+
+import com.nova.support.domain.enums.VectorQuantization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Снимок HNSW графа (Hierarchical Navigable Small World) по cosine distance
+ * - векторы нормализуются и хранятся как float[], соседи узла - int[] на каждый уровень
+ * - опубликованный снимок не изменяется: with/without возвращают новый снимок, поэтому поиск
+ *   по снимку не требует блокировок. Стоимость изменения не зависит от размера графа:
+ *   - векторы, коды и ID только дописываются, их массивы (ёмкость растёт удвоением) и карта
+ *     ID -> узел передаются следующему снимку без копирования: старый снимок не читает узлы
+ *     за своим size и к карте не обращается
+ *   - соседи и пометки удаления хранятся страницами (Pages), копируются каталог и изменённые страницы
+ *   Изменять можно только последний снимок цепочки (запись сериализуется вызывающим кодом);
+ *   изменение более старого снимка копирует массивы целиком
+ * - удаление помечает узел, при доле удалённых больше четверти граф перестраивается
+ * - при квантовании (INT8 / BINARY) и/или усечении до Matryoshka-префикса граф обходится
+ *   по компактному представлению, а rerankFactor * k лучших кандидатов переранжируются
+ *   по точному расстоянию на полных float векторах
+ */
+final class HnswGraph {
+
+    private static final int[] NO_NEIGHBORS = new int[0];
+    private static final int MAX_LEVEL = 16;
+    private static final int MIN_CAPACITY = 16;
+
+    private final Settings settings;
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final VectorQuantization quantization;
+    private final int rerankFactor;
+    private final int prefixDimensions;
+    private final boolean storesPrefixes;
+
+    private long[] ids;
+    private float[][] vectors;
+    private float[][] prefixes;
+    private byte[][] scalarCodes;
+    private float[] scalarScales;
+    private long[][] binaryCodes;
+    private Pages neighbors;
+    private Pages deleted;
+    private Map<Long, Integer> nodesById;
+    /**
+     * Снимок, которому передаются дописываемые массивы и карта (общая ячейка для всей цепочки)
+     */
+    private HnswGraph[] storageOwner;
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    private HnswGraph(Settings settings, int capacity) {
+        this.settings = settings;
+        this.m = settings.m();
+        this.efConstruction = settings.efConstruction();
+        this.levelMultiplier = 1 / Math.log(m);
+        this.quantization = settings.quantization();
+        this.rerankFactor = Math.max(settings.rerankFactor(), 1);
+        this.prefixDimensions = settings.prefixDimensions();
+        // Квантованные коды строятся по префиксу, сам префикс нужен только для обхода без квантования
+        this.storesPrefixes = prefixDimensions > 0 && quantization == VectorQuantization.NONE;
+        this.ids = new long[capacity];
+        this.vectors = new float[capacity][];
+        this.prefixes = new float[storesPrefixes ? capacity : 0][];
+        this.scalarCodes = new byte[quantization == VectorQuantization.INT8 ? capacity : 0][];
+        this.scalarScales = new float[quantization == VectorQuantization.INT8 ? capacity : 0];
+        this.binaryCodes = new long[quantization == VectorQuantization.BINARY ? capacity : 0][];
+        this.neighbors = new Pages();
+        this.deleted = new Pages();
+        this.nodesById = new HashMap<>(capacity * 2);
+        this.storageOwner = new HnswGraph[] {this};
+    }
+
+    /**
+     * Построить граф из набора векторов
+     */
+    static HnswGraph build(Settings settings, List<Long> ids, List<float[]> vectors) {
+        HnswGraph graph = new HnswGraph(settings, Math.max(ids.size(), MIN_CAPACITY));
+        for (int i = 0; i < ids.size(); i++) {
+            graph.insert(ids.get(i), normalize(vectors.get(i)));
+        }
+        return graph;
+    }
+
+    /**
+     * Новый снимок с добавленным или заменённым вектором записи
+     */
+    HnswGraph with(long id, float[] vector) {
+        int existing = nodeOf(id);
+        HnswGraph next = copy();
+        if (existing >= 0) {
+            next.markDeleted(existing);
+        }
+        next.insert(id, normalize(vector));
+        return next.compactIfNeeded();
+    }
+
+    /**
+     * Новый снимок без записи (или этот же, если записи нет)
+     */
+    HnswGraph without(long id) {
+        int node = nodeOf(id);
+        if (node < 0) {
+            return this;
+        }
+        HnswGraph next = copy();
+        next.markDeleted(node);
+        return next.compactIfNeeded();
+    }
+
+    /**
+     * Найти до k ближайших записей
+     * @param ef размер списка кандидатов (больше - точнее и медленнее)
+     * @return ID записей по возрастанию расстояния
+     */
+    long[] search(float[] query, int k, int ef) {
+        if (entryPoint < 0 || k <= 0) {
+            return new long[0];
+        }
+        float[] q = normalize(query);
+        checkDimension(q);
+        Scorer scorer = scorer(prefixDimensions > 0 ? MatryoshkaPrefix.of(q, prefixDimensions) : q);
+
+        int ep = entryPoint;
+        for (int level = maxLevel; level > 0; level--) {
+            ep = greedy(scorer, ep, level);
+        }
+        // Помеченные удалёнными узлы проходятся, но не попадают в результат
+        boolean approximate = quantization != VectorQuantization.NONE || prefixDimensions > 0;
+        int wanted = approximate ? k * rerankFactor : k;
+        int width = Math.max(ef, wanted) + Math.min(deletedCount, ef);
+        List<Candidate> found = searchLayer(scorer, ep, width, 0);
+
+        List<Candidate> live = new ArrayList<>(Math.min(wanted, found.size()));
+        for (Candidate candidate : found) {
+            if (live.size() == wanted) {
+                break;
+            }
+            if (!isDeleted(candidate.node())) {
+                live.add(candidate);
+            }
+        }
+        if (approximate) {
+            // Точное переранжирование кандидатов грубого поиска
+            live.replaceAll(candidate -> new Candidate(candidate.node(), exactDistance(q, vectors[candidate.node()])));
+            live.sort(null);
+        }
+
+        long[] result = new long[Math.min(k, live.size())];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids[live.get(i).node()];
+        }
+        return result;
+    }
+
+    /**
+     * Количество живых (не удалённых) записей
+     */
+    int liveSize() {
+        return size - deletedCount;
+    }
+
+    /**
+     * Память под полные float векторы (при квантовании и усечении - только для переранжирования)
+     */
+    long vectorBytes() {
+        return size > 0 ? (long) size * vectors[0].length * Float.BYTES : 0;
+    }
+
+    /**
+     * Память под представление, по которому идёт обход графа (префиксы и квантованные коды)
+     */
+    long codeBytes() {
+        if (size == 0) {
+            return 0;
+        }
+        long prefixBytes = storesPrefixes ? (long) size * prefixes[0].length * Float.BYTES : 0;
+        return prefixBytes + switch (quantization) {
+            case NONE -> 0;
+            case INT8 -> (long) size * (scalarCodes[0].length + Float.BYTES);
+            case BINARY -> (long) size * binaryCodes[0].length * Long.BYTES;
+        };
+    }
+
+    /**
+     * Память под списки соседей
+     */
+    long graphBytes() {
+        long total = 0;
+        for (int node = 0; node < size; node++) {
+            for (int[] level : levelsOf(node)) {
+                total += (long) level.length * Integer.BYTES;
+            }
+        }
+        return total;
+    }
+
+    // ===== Построение =====
+
+    /**
+     * Снимок для изменения: последний снимок цепочки передаёт дописываемые массивы и карту,
+     * более старый (его цепочка уже продолжена) - копирует их
+     */
+    private HnswGraph copy() {
+        HnswGraph copy = new HnswGraph(settings, 0);
+        if (storageOwner[0] == this) {
+            copy.ids = ids;
+            copy.vectors = vectors;
+            copy.prefixes = prefixes;
+            copy.scalarCodes = scalarCodes;
+            copy.scalarScales = scalarScales;
+            copy.binaryCodes = binaryCodes;
+            copy.nodesById = nodesById;
+            copy.storageOwner = storageOwner;
+            storageOwner[0] = copy;
+        } else {
+            copy.ids = ids.clone();
+            copy.vectors = vectors.clone();
+            copy.prefixes = prefixes.clone();
+            copy.scalarCodes = scalarCodes.clone();
+            copy.scalarScales = scalarScales.clone();
+            copy.binaryCodes = binaryCodes.clone();
+            copy.nodesById = new HashMap<>(size * 2);
+            for (int node = 0; node < size; node++) {
+                if (!isDeleted(node)) {
+                    copy.nodesById.put(ids[node], node);
+                }
+            }
+        }
+        copy.neighbors = neighbors.copy();
+        copy.deleted = deleted.copy();
+        copy.size = size;
+        copy.deletedCount = deletedCount;
+        copy.entryPoint = entryPoint;
+        copy.maxLevel = maxLevel;
+        return copy;
+    }
+
+    private HnswGraph compactIfNeeded() {
+        if (deletedCount * 4 <= size) {
+            return this;
+        }
+        HnswGraph compacted = new HnswGraph(settings, Math.max(liveSize(), MIN_CAPACITY));
+        for (int node = 0; node < size; node++) {
+            if (!isDeleted(node)) {
+                compacted.insert(ids[node], vectors[node]);
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Живой узел записи (карта верна для последнего снимка цепочки, остальные проверяются по массивам)
+     */
+    private int nodeOf(long id) {
+        Integer node = nodesById.get(id);
+        if (node != null && node < size && ids[node] == id && !isDeleted(node)) {
+            return node;
+        }
+        if (storageOwner[0] == this) {
+            return -1;
+        }
+        for (int candidate = 0; candidate < size; candidate++) {
+            if (ids[candidate] == id && !isDeleted(candidate)) {
+                return candidate;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isDeleted(int node) {
+        return deleted.get(node) != null;
+    }
+
+    private void markDeleted(int node) {
+        deleted.set(node, Boolean.TRUE);
+        nodesById.remove(ids[node], node);
+        deletedCount++;
+    }
+
+    /**
+     * Вставка нормализованного вектора
+     * Массивы соседей существующих узлов не изменяются, а заменяются копиями:
+     * они могут разделяться с ранее опубликованными снимками
+     */
+    private void insert(long id, float[] vector) {
+        checkDimension(vector);
+        ensureCapacity(size + 1);
+        int node = size;
+        int level = randomLevel();
+        int[][] levels = new int[level + 1][];
+        Arrays.fill(levels, NO_NEIGHBORS);
+        ids[node] = id;
+        vectors[node] = vector;
+        encode(node, vector);
+        neighbors.set(node, levels);
+        nodesById.put(id, node);
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        Scorer scorer = scorerOf(node);
+        int ep = entryPoint;
+        for (int lc = maxLevel; lc > level; lc--) {
+            ep = greedy(scorer, ep, lc);
+        }
+        for (int lc = Math.min(level, maxLevel); lc >= 0; lc--) {
+            List<Candidate> found = searchLayer(scorer, ep, efConstruction, lc);
+            int[] selected = new int[Math.min(m, found.size())];
+            for (int i = 0; i < selected.length; i++) {
+                selected[i] = found.get(i).node();
+            }
+            levels[lc] = selected;
+            int maxConnections = lc == 0 ? 2 * m : m;
+            for (int neighbor : selected) {
+                connect(neighbor, node, lc, maxConnections);
+            }
+            ep = found.get(0).node();
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    private void connect(int from, int to, int level, int maxConnections) {
+        int[][] levels = levelsOf(from).clone();
+        int[] current = levels[level];
+        int[] extended = Arrays.copyOf(current, current.length + 1);
+        extended[current.length] = to;
+        levels[level] = extended.length > maxConnections ? closest(from, extended, maxConnections) : extended;
+        neighbors.set(from, levels);
+    }
+
+    /**
+     * Оставить maxConnections ближайших к узлу соседей
+     */
+    private int[] closest(int node, int[] candidates, int maxConnections) {
+        Scorer scorer = scorerOf(node);
+        Candidate[] scored = new Candidate[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            scored[i] = new Candidate(candidates[i], scorer.distanceTo(candidates[i]));
+        }
+        Arrays.sort(scored);
+        int[] kept = new int[maxConnections];
+        for (int i = 0; i < maxConnections; i++) {
+            kept[i] = scored[i].node();
+        }
+        return kept;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            int grown = Math.max(capacity, ids.length * 2);
+            ids = Arrays.copyOf(ids, grown);
+            vectors = Arrays.copyOf(vectors, grown);
+            prefixes = Arrays.copyOf(prefixes, storesPrefixes ? grown : 0);
+            scalarCodes = Arrays.copyOf(scalarCodes, quantization == VectorQuantization.INT8 ? grown : 0);
+            scalarScales = Arrays.copyOf(scalarScales, quantization == VectorQuantization.INT8 ? grown : 0);
+            binaryCodes = Arrays.copyOf(binaryCodes, quantization == VectorQuantization.BINARY ? grown : 0);
+        }
+    }
+
+    private int randomLevel() {
+        double uniform = 1 - ThreadLocalRandom.current().nextDouble();
+        return Math.min((int) (-Math.log(uniform) * levelMultiplier), MAX_LEVEL);
+    }
+
+    // ===== Представление для обхода графа =====
+
+    private void encode(int node, float[] vector) {
+        float[] traversal = prefixDimensions > 0 ? MatryoshkaPrefix.of(vector, prefixDimensions) : vector;
+        switch (quantization) {
+            case INT8 -> {
+                scalarScales[node] = scalarScale(traversal);
+                scalarCodes[node] = scalarCode(traversal, scalarScales[node]);
+            }
+            case BINARY -> binaryCodes[node] = binaryCode(traversal);
+            case NONE -> {
+                if (storesPrefixes) {
+                    prefixes[node] = traversal;
+                }
+            }
+        }
+    }
+
+    /**
+     * Расстояние от вектора запроса (префикса, если граф усечён) в метрике обхода графа
+     */
+    private Scorer scorer(float[] vector) {
+        return switch (quantization) {
+            case NONE -> node -> exactDistance(vector, traversalVector(node));
+            case INT8 -> {
+                float scale = scalarScale(vector);
+                byte[] code = scalarCode(vector, scale);
+                yield node -> scalarDistance(code, scale, scalarCodes[node], scalarScales[node]);
+            }
+            case BINARY -> {
+                long[] code = binaryCode(vector);
+                yield node -> hammingDistance(code, binaryCodes[node]);
+            }
+        };
+    }
+
+    /**
+     * Расстояние от узла графа (коды уже посчитаны)
+     */
+    private Scorer scorerOf(int from) {
+        return switch (quantization) {
+            case NONE -> scorer(traversalVector(from));
+            case INT8 -> node -> scalarDistance(scalarCodes[from], scalarScales[from], scalarCodes[node], scalarScales[node]);
+            case BINARY -> node -> hammingDistance(binaryCodes[from], binaryCodes[node]);
+        };
+    }
+
+    private float[] traversalVector(int node) {
+        return storesPrefixes ? prefixes[node] : vectors[node];
+    }
+
+    /**
+     * Масштаб int8 кода: максимальная по модулю компонента переходит в 127
+     */
+    private static float scalarScale(float[] vector) {
+        float maxAbs = 0;
+        for (float value : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        return maxAbs > 0 ? maxAbs / 127 : 1;
+    }
+
+    private static byte[] scalarCode(float[] vector, float scale) {
+        byte[] code = new byte[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            code[i] = (byte) Math.round(vector[i] / scale);
+        }
+        return code;
+    }
+
+    private static long[] binaryCode(float[] vector) {
+        long[] code = new long[(vector.length + Long.SIZE - 1) / Long.SIZE];
+        for (int i = 0; i < vector.length; i++) {
+            if (vector[i] > 0) {
+                code[i / Long.SIZE] |= 1L << (i % Long.SIZE);
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Приближённый cosine distance по int8 кодам
+     */
+    private static float scalarDistance(byte[] a, float scaleA, byte[] b, float scaleB) {
+        int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int bound = a.length - 3; i < bound; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return 1 - (s0 + s1 + s2 + s3) * scaleA * scaleB;
+    }
+
+    /**
+     * Доля несовпадающих знаков компонент (монотонна по углу между векторами)
+     */
+    private static float hammingDistance(long[] a, long[] b) {
+        int differing = 0;
+        for (int i = 0; i < a.length; i++) {
+            differing += Long.bitCount(a[i] ^ b[i]);
+        }
+        return (float) differing / (a.length * Long.SIZE);
+    }
+
+    // ===== Поиск =====
+
+    private int greedy(Scorer scorer, int ep, int level) {
+        int current = ep;
+        float best = scorer.distanceTo(current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : neighborsOf(current, level)) {
+                float d = scorer.distanceTo(neighbor);
+                if (d < best) {
+                    best = d;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Поиск ef ближайших на уровне
+     * @return кандидаты по возрастанию расстояния
+     */
+    private List<Candidate> searchLayer(Scorer scorer, int ep, int ef, int level) {
+        BitSet visited = new BitSet(size);
+        visited.set(ep);
+        Candidate start = new Candidate(ep, scorer.distanceTo(ep));
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.reverseOrder());
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.distance() > results.peek().distance()) {
+                break;
+            }
+            for (int neighbor : neighborsOf(current.node(), level)) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float d = scorer.distanceTo(neighbor);
+                if (results.size() < ef || d < results.peek().distance()) {
+                    Candidate candidate = new Candidate(neighbor, d);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(null);
+        return sorted;
+    }
+
+    private int[] neighborsOf(int node, int level) {
+        int[][] levels = levelsOf(node);
+        return level < levels.length ? levels[level] : NO_NEIGHBORS;
+    }
+
+    private int[][] levelsOf(int node) {
+        return (int[][]) neighbors.get(node);
+    }
+
+    private void checkDimension(float[] vector) {
+        if (entryPoint >= 0 && vector.length != vectors[entryPoint].length) {
+            throw new IllegalArgumentException("Vector dimension " + vector.length
+                    + " does not match index dimension " + vectors[entryPoint].length);
+        }
+    }
+
+    /**
+     * Cosine distance нормализованных векторов
+     * Четыре независимых аккумулятора убирают зависимость сложений по цепочке
+     */
+    private static float exactDistance(float[] a, float[] b) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int bound = a.length - 3; i < bound; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return 1 - (s0 + s1 + s2 + s3);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float[] normalized = vector.clone();
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < normalized.length; i++) {
+                normalized[i] *= scale;
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * Параметры графа
+     * @param prefixDimensions длина Matryoshka-префикса для обхода графа (0 - полный вектор)
+     */
+    record Settings(int m, int efConstruction, VectorQuantization quantization, int rerankFactor, int prefixDimensions) {
+    }
+
+    /**
+     * Массив по узлам, разбитый на страницы: копия снимка копирует только каталог страниц,
+     * страница копируется при первой записи в неё (страницы прежних снимков не изменяются)
+     */
+    private static final class Pages {
+
+        private static final int PAGE_BITS = 8;
+        private static final int PAGE_SIZE = 1 << PAGE_BITS;
+        private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+        private Object[][] pages;
+        private final Set<Object[]> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Pages() {
+            this(new Object[MIN_CAPACITY][]);
+        }
+
+        private Pages(Object[][] pages) {
+            this.pages = pages;
+        }
+
+        Object get(int index) {
+            int page = index >>> PAGE_BITS;
+            return page < pages.length && pages[page] != null ? pages[page][index & PAGE_MASK] : null;
+        }
+
+        void set(int index, Object value) {
+            int page = index >>> PAGE_BITS;
+            if (page >= pages.length) {
+                pages = Arrays.copyOf(pages, Math.max(page + 1, pages.length * 2));
+            }
+            Object[] current = pages[page];
+            if (current == null || !owned.contains(current)) {
+                current = current == null ? new Object[PAGE_SIZE] : current.clone();
+                owned.add(current);
+                pages[page] = current;
+            }
+            current[index & PAGE_MASK] = value;
+        }
+
+        Pages copy() {
+            return new Pages(pages.clone());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Scorer {
+        float distanceTo(int node);
+    }
+
+    private record Candidate(int node, float distance) implements Comparable<Candidate> {
+        @Override
+        public int compareTo(Candidate other) {
+            int byDistance = Float.compare(distance, other.distance);
+            return byDistance != 0 ? byDistance : Integer.compare(node, other.node);
+        }
+    }
+}
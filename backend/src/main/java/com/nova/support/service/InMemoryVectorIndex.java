@@ -0,0 +1,206 @@
+package com.nova.support.service;
+
+import com.nova.support.config.VectorCodec;
+import com.nova.support.domain.entity.Project;
+import com.nova.support.domain.enums.VectorBackend;
+import com.nova.support.domain.enums.VectorQuantization;
+import com.nova.support.repository.ProjectRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * HNSW индекс в памяти инстанса для проектов с vector_backend = IN_MEMORY
+ * - граф строится при старте из knowledge_base и периодически перестраивается
+ *   (подхватывает изменения, сделанные другими инстансами)
+ * - обновляется инкрементально при генерации эмбеддинга и удалении записи
+ * - запись публикует новый снимок графа (copy-on-write), чтение идёт без блокировок
+ * - при vector.search.quantization = INT8 / BINARY граф обходится по квантованным кодам
+ *   с точным переранжированием кандидатов (граф перестраивается при следующей загрузке)
+ * - при заданном projects.embedding_prefix_dims граф строится по Matryoshka-префиксу
+ */
+@Slf4j
+@Service
+public class InMemoryVectorIndex implements VectorIndex {
+    
+    private final Map<Long, ProjectIndex> projects = new ConcurrentHashMap<>();
+    private final ProjectRepository projectRepository;
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${vector.index.in-memory.m:16}")
+    private int m;
+    
+    @Value("${vector.index.in-memory.ef-construction:64}")
+    private int efConstruction;
+    
+    @Value("${vector.search.quantization:NONE}")
+    private VectorQuantization quantization;
+    
+    @Value("${vector.search.rerank-factor:4}")
+    private int rerankFactor;
+    
+    public InMemoryVectorIndex(ProjectRepository projectRepository, JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.projectRepository = projectRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        Gauge.builder("vector.index.in-memory.vectors", projects,
+                        p -> p.values().stream().mapToInt(ProjectIndex::liveSize).sum())
+                .description("Knowledge base vectors held by in-memory HNSW indexes")
+                .register(meterRegistry);
+        registerMemoryGauge(meterRegistry, "vectors", HnswGraph::vectorBytes);
+        registerMemoryGauge(meterRegistry, "codes", HnswGraph::codeBytes);
+        registerMemoryGauge(meterRegistry, "graph", HnswGraph::graphBytes);
+    }
+    
+    @Override
+    public VectorBackend getBackend() {
+        return VectorBackend.IN_MEMORY;
+    }
+    
+    /**
+     * Обслуживает ли индекс проект (граф проекта построен)
+     */
+    public boolean serves(Long projectId) {
+        ProjectIndex index = projects.get(projectId);
+        return index != null && index.snapshot != null;
+    }
+    
+    @Override
+    public List<Long> search(Long projectId, float[] queryEmbedding, int limit, int efSearch) {
+        ProjectIndex index = projects.get(projectId);
+        HnswGraph snapshot = index != null ? index.snapshot : null;
+        if (snapshot == null) {
+            throw new IllegalStateException("In-memory vector index is not loaded for project " + projectId);
+        }
+        return Arrays.stream(snapshot.search(queryEmbedding, limit, efSearch)).boxed().toList();
+    }
+    
+    @Override
+    public void upsert(Long projectId, Long knowledgeBaseId, float[] embedding) {
+        ProjectIndex index = projects.get(projectId);
+        if (index == null) {
+            return;
+        }
+        synchronized (index) {
+            if (index.snapshot != null) {
+                index.snapshot = index.snapshot.with(knowledgeBaseId, embedding);
+            }
+        }
+    }
+    
+    @Override
+    public void remove(Long projectId, Long knowledgeBaseId) {
+        ProjectIndex index = projects.get(projectId);
+        if (index == null) {
+            return;
+        }
+        synchronized (index) {
+            if (index.snapshot != null) {
+                index.snapshot = index.snapshot.without(knowledgeBaseId);
+            }
+        }
+    }
+    
+    /**
+     * Построить (или перестроить) граф проекта из knowledge_base
+     * Поиск до завершения идёт по прежнему снимку, пока его нет - через pgvector
+     */
+    public void load(Long projectId) {
+        ProjectIndex index = projects.computeIfAbsent(projectId, id -> new ProjectIndex());
+        synchronized (index) {
+            long start = System.nanoTime();
+            List<Long> ids = new ArrayList<>();
+            List<float[]> embeddings = new ArrayList<>();
+            jdbcTemplate.query(
+                    "SELECT id, vector_send(embedding) FROM knowledge_base " +
+                    "WHERE project_id = ? AND embedding IS NOT NULL",
+                    rs -> {
+                        ids.add(rs.getLong(1));
+                        embeddings.add(VectorCodec.decode(rs.getBytes(2)));
+                    },
+                    projectId);
+            Integer prefixDimensions = projectRepository.findEmbeddingPrefixDims(projectId);
+            HnswGraph.Settings settings = new HnswGraph.Settings(m, efConstruction, quantization, rerankFactor,
+                    prefixDimensions != null ? prefixDimensions : 0);
+            index.snapshot = HnswGraph.build(settings, ids, embeddings);
+            log.info("Built in-memory vector index for project {}: {} vectors ({} quantization, prefix {}) in {} ms",
+                    projectId, ids.size(), quantization, prefixDimensions != null ? prefixDimensions : "full",
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+    
+    /**
+     * Освободить граф проекта (проект переключён на pgvector или удалён)
+     */
+    public void drop(Long projectId) {
+        if (projects.remove(projectId) != null) {
+            log.info("Dropped in-memory vector index for project {}", projectId);
+        }
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAll() {
+        refresh();
+    }
+    
+    /**
+     * Синхронизировать набор графов с проектами IN_MEMORY и перестроить их из БД
+     */
+    @Scheduled(fixedDelayString = "${vector.index.in-memory.refresh-interval-ms:600000}",
+               initialDelayString = "${vector.index.in-memory.refresh-interval-ms:600000}")
+    public void refresh() {
+        try {
+            Set<Long> projectIds = projectRepository.findByVectorBackend(VectorBackend.IN_MEMORY).stream()
+                    .map(Project::getId)
+                    .collect(Collectors.toSet());
+            projects.keySet().stream()
+                    .filter(id -> !projectIds.contains(id))
+                    .toList()
+                    .forEach(this::drop);
+            projectIds.forEach(this::load);
+        } catch (Exception e) {
+            log.error("Failed to refresh in-memory vector indexes", e);
+        }
+    }
+    
+    private void registerMemoryGauge(MeterRegistry meterRegistry, String part, ToLongFunction<HnswGraph> bytes) {
+        Gauge.builder("vector.index.in-memory.bytes", projects,
+                        p -> p.values().stream().mapToLong(index -> index.bytes(bytes)).sum())
+                .tag("part", part)
+                .description("Approximate heap used by in-memory HNSW indexes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Текущий снимок графа проекта; запись под монитором объекта
+     */
+    private static final class ProjectIndex {
+        
+        private volatile HnswGraph snapshot;
+        
+        int liveSize() {
+            HnswGraph current = snapshot;
+            return current != null ? current.liveSize() : 0;
+        }
+        
+        long bytes(ToLongFunction<HnswGraph> part) {
+            HnswGraph current = snapshot;
+            return current != null ? part.applyAsLong(current) : 0;
+        }
+    }
+}
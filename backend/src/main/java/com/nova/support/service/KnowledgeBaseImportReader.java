@@ -0,0 +1,272 @@
+package com.nova.support.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nova.support.domain.enums.KnowledgeBaseImportFormat;
+import com.nova.support.dto.KnowledgeBaseRequest;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Потоковое чтение файла массового импорта: записи читаются по одной, файл целиком в памяти не держится
+ * Некорректная запись возвращается пустой (импорт считает её пропущенной), а не прерывает импорт
+ */
+@Slf4j
+abstract class KnowledgeBaseImportReader implements Closeable {
+
+    private static final String DEFAULT_SOURCE_TYPE = "IMPORT";
+
+    /**
+     * Максимальный размер одного Markdown файла в архиве (защита от zip-бомб)
+     */
+    private static final int MAX_MARKDOWN_BYTES = 10 * 1024 * 1024;
+
+    /**
+     * Максимальная длина одной записи CSV в символах (незакрытая кавычка не растит буфер до конца файла)
+     */
+    static final int MAX_CSV_RECORD_CHARS = 10 * 1024 * 1024;
+
+    static KnowledgeBaseImportReader open(KnowledgeBaseImportFormat format, InputStream in, ObjectMapper objectMapper) {
+        return switch (format) {
+            case JSONL -> new JsonLinesReader(in, objectMapper);
+            case CSV -> new CsvReader(in);
+            case MARKDOWN_ZIP -> new MarkdownZipReader(in);
+        };
+    }
+
+    /**
+     * Следующая запись или null в конце файла
+     */
+    abstract KnowledgeBaseRequest next() throws IOException;
+
+    private static KnowledgeBaseRequest request(String title, String content, String sourceType, String sourceUrl) {
+        KnowledgeBaseRequest request = new KnowledgeBaseRequest();
+        request.setTitle(title);
+        request.setContent(content);
+        request.setSourceType(sourceType != null && !sourceType.isBlank() ? sourceType : DEFAULT_SOURCE_TYPE);
+        request.setSourceUrl(sourceUrl != null && !sourceUrl.isBlank() ? sourceUrl : null);
+        return request;
+    }
+
+    private static BufferedReader utf8(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private static String stripBom(String value) {
+        return value.startsWith("\uFEFF") ? value.substring(1) : value;
+    }
+
+    /**
+     * JSON Lines: по объекту KnowledgeBaseRequest на строку
+     */
+    private static final class JsonLinesReader extends KnowledgeBaseImportReader {
+
+        private final BufferedReader reader;
+        private final ObjectMapper objectMapper;
+        private long lineNumber;
+
+        JsonLinesReader(InputStream in, ObjectMapper objectMapper) {
+            this.reader = utf8(in);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        KnowledgeBaseRequest next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                lineNumber++;
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            try {
+                KnowledgeBaseRequest parsed = objectMapper.readValue(lineNumber == 1 ? stripBom(line) : line,
+                        KnowledgeBaseRequest.class);
+                return request(parsed.getTitle(), parsed.getContent(), parsed.getSourceType(), parsed.getSourceUrl());
+            } catch (JsonProcessingException e) {
+                log.warn("Skipping malformed JSONL line {}: {}", lineNumber, e.getOriginalMessage());
+                return new KnowledgeBaseRequest();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * CSV (RFC 4180): первая строка - заголовок; поля в кавычках могут содержать запятые и переводы строк
+     * Колонки сопоставляются без учёта регистра и подчёркиваний (source_type = sourceType)
+     */
+    private static final class CsvReader extends KnowledgeBaseImportReader {
+
+        private final BufferedReader reader;
+        private Map<String, Integer> columns;
+        private long recordNumber;
+        private int recordLength;
+
+        CsvReader(InputStream in) {
+            this.reader = utf8(in);
+        }
+
+        @Override
+        KnowledgeBaseRequest next() throws IOException {
+            if (columns == null) {
+                List<String> header = readRecord();
+                if (header == null) {
+                    return null;
+                }
+                columns = new HashMap<>();
+                for (int i = 0; i < header.size(); i++) {
+                    String name = i == 0 ? stripBom(header.get(i)) : header.get(i);
+                    columns.put(name.strip().replace("_", "").toLowerCase(Locale.ROOT), i);
+                }
+                if (!columns.containsKey("title") || !columns.containsKey("content")) {
+                    throw new RuntimeException("CSV header must contain title and content columns");
+                }
+            }
+            List<String> record;
+            do {
+                record = readRecord();
+                if (record == null) {
+                    return null;
+                }
+            } while (record.size() == 1 && record.get(0).isBlank());
+            if (recordLength > MAX_CSV_RECORD_CHARS) {
+                log.warn("Skipping CSV record {}: longer than {} characters", recordNumber, MAX_CSV_RECORD_CHARS);
+                return new KnowledgeBaseRequest();
+            }
+            return request(field(record, "title"), field(record, "content"),
+                    field(record, "sourcetype"), field(record, "sourceurl"));
+        }
+
+        private String field(List<String> record, String column) {
+            Integer index = columns.get(column);
+            return index != null && index < record.size() ? record.get(index) : null;
+        }
+
+        /**
+         * Прочитать одну запись CSV или null в конце файла
+         * Символы сверх MAX_CSV_RECORD_CHARS дочитываются до конца записи, но не сохраняются
+         */
+        private List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            recordNumber++;
+            recordLength = 0;
+            int fieldStart = 0;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        int following = reader.read();
+                        if (following == '"') {
+                            append(field, '"');
+                        } else {
+                            quoted = false;
+                            reader.reset();
+                        }
+                    } else {
+                        append(field, (char) c);
+                    }
+                } else if (c == '"' && recordLength == fieldStart) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    fieldStart = recordLength;
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    append(field, (char) c);
+                }
+                c = reader.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+
+        private void append(StringBuilder field, char c) {
+            if (++recordLength <= MAX_CSV_RECORD_CHARS) {
+                field.append(c);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * ZIP с Markdown файлами (.md, .markdown); прочие файлы и каталоги пропускаются
+     */
+    private static final class MarkdownZipReader extends KnowledgeBaseImportReader {
+
+        private final ZipInputStream zip;
+
+        MarkdownZipReader(InputStream in) {
+            this.zip = new ZipInputStream(in, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        KnowledgeBaseRequest next() throws IOException {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                String lower = name.toLowerCase(Locale.ROOT);
+                if (entry.isDirectory() || lower.startsWith("__macosx/")
+                        || !(lower.endsWith(".md") || lower.endsWith(".markdown"))) {
+                    continue;
+                }
+                byte[] bytes = zip.readNBytes(MAX_MARKDOWN_BYTES + 1);
+                if (bytes.length > MAX_MARKDOWN_BYTES) {
+                    log.warn("Skipping Markdown file {}: larger than {} bytes", name, MAX_MARKDOWN_BYTES);
+                    return new KnowledgeBaseRequest();
+                }
+                return parseMarkdown(name, stripBom(new String(bytes, StandardCharsets.UTF_8)));
+            }
+            return null;
+        }
+
+        /**
+         * Заголовок - первая непустая строка вида "# ...", иначе имя файла без расширения
+         */
+        private static KnowledgeBaseRequest parseMarkdown(String path, String text) {
+            String body = text.strip();
+            if (body.startsWith("# ")) {
+                int end = body.indexOf('\n');
+                String title = (end == -1 ? body.substring(2) : body.substring(2, end)).strip();
+                String content = end == -1 ? "" : body.substring(end + 1).strip();
+                return request(title, content, null, null);
+            }
+            String fileName = path.substring(path.lastIndexOf('/') + 1);
+            return request(fileName.substring(0, fileName.lastIndexOf('.')), body, null, null);
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.nova.support.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nova.support.config.VectorCodec;
+import com.nova.support.domain.entity.KnowledgeBase;
+import com.nova.support.domain.entity.KnowledgeChunk;
+import com.nova.support.domain.enums.KnowledgeBaseImportFormat;
+import com.nova.support.domain.enums.KnowledgeBaseImportStatus;
+import com.nova.support.dto.EmbeddingModelVersion;
+import com.nova.support.dto.KnowledgeBaseImportProgress;
+import com.nova.support.dto.KnowledgeBaseRequest;
+import com.nova.support.repository.ProjectRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.UnaryOperator;
+
+/**
+ * Массовый импорт базы знаний (JSONL, CSV, ZIP с Markdown)
+ * - тело запроса потоково пишется во временный файл, импорт идёт в фоне
+ * - файл читается по записи, пачками по batch-size статей: фрагменты всех статей пачки
+ *   эмбеддятся общими батчами /api/embed, статьи и фрагменты вставляются JDBC батчами
+ *   с идентификаторами, зарезервированными блоками из последовательностей
+ * - если модель недоступна, статьи сохраняются без эмбеддинга и получают задачи EMBEDDING
+ * - прогресс рассылается в /topic/knowledge-base/imports/{importId} после каждой пачки
+ * Память ограничена одной пачкой независимо от размера файла
+ */
+@Slf4j
+@Service
+public class KnowledgeBaseImportService {
+
+    private static final int MAX_TITLE_LENGTH = 500;
+    private static final int MAX_SOURCE_LENGTH = 50;
+    private static final int MAX_URL_LENGTH = 500;
+
+    private final ProjectRepository projectRepository;
+    private final KnowledgeChunkService knowledgeChunkService;
+    private final EmbeddingVersions embeddingVersions;
+    private final InMemoryVectorIndex inMemoryVectorIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final Map<String, KnowledgeBaseImportProgress> imports = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("kb-import-", 0).factory());
+
+    @Value("${knowledge-base.import.batch-size:500}")
+    private int batchSize;
+
+    @Value("${knowledge-base.import.max-bytes:1073741824}")
+    private long maxBytes;
+
+    @Value("${knowledge-base.import.progress-ttl:1h}")
+    private Duration progressTtl;
+
+    public KnowledgeBaseImportService(ProjectRepository projectRepository,
+                                      KnowledgeChunkService knowledgeChunkService,
+                                      EmbeddingVersions embeddingVersions,
+                                      InMemoryVectorIndex inMemoryVectorIndex,
+                                      JdbcTemplate jdbcTemplate,
+                                      TransactionTemplate transactionTemplate,
+                                      SimpMessagingTemplate messagingTemplate,
+                                      ObjectMapper objectMapper) {
+        this.projectRepository = projectRepository;
+        this.knowledgeChunkService = knowledgeChunkService;
+        this.embeddingVersions = embeddingVersions;
+        this.inMemoryVectorIndex = inMemoryVectorIndex;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Принять файл импорта и запустить импорт в фоне
+     *
+     * @param body содержимое файла (тело запроса)
+     * @return начальный прогресс с importId для подписки
+     */
+    public KnowledgeBaseImportProgress start(Long projectId, KnowledgeBaseImportFormat format, InputStream body) {
+        if (!projectRepository.existsById(projectId)) {
+            throw new RuntimeException("Project not found");
+        }
+        Path file = spool(body);
+
+        KnowledgeBaseImportProgress progress = KnowledgeBaseImportProgress.builder()
+                .importId(UUID.randomUUID().toString())
+                .projectId(projectId)
+                .format(format)
+                .status(KnowledgeBaseImportStatus.RUNNING)
+                .startedAt(LocalDateTime.now())
+                .build();
+        imports.put(progress.getImportId(), progress);
+        log.info("Starting knowledge base import {} for project {} ({})", progress.getImportId(), projectId, format);
+
+        executor.execute(() -> run(progress.getImportId(), file));
+        return progress;
+    }
+
+    /**
+     * Текущий прогресс импорта (хранится в памяти инстанса; завершённые импорты -
+     * knowledge-base.import.progress-ttl после окончания)
+     */
+    public KnowledgeBaseImportProgress getProgress(String importId) {
+        KnowledgeBaseImportProgress progress = imports.get(importId);
+        if (progress == null) {
+            throw new RuntimeException("Knowledge base import not found");
+        }
+        return progress;
+    }
+
+    /**
+     * Забыть завершённые (COMPLETED / FAILED) импорты старше progress-ttl
+     */
+    @Scheduled(fixedDelayString = "${knowledge-base.import.progress-eviction-interval-ms:600000}")
+    public void evictFinishedImports() {
+        LocalDateTime expired = LocalDateTime.now().minus(progressTtl);
+        imports.values().removeIf(progress -> progress.getFinishedAt() != null
+                && progress.getFinishedAt().isBefore(expired));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Скопировать тело запроса во временный файл (импорт переживает завершение HTTP запроса)
+     */
+    private Path spool(InputStream body) {
+        Path file = null;
+        try {
+            file = Files.createTempFile("kb-import-", ".upload");
+            try (OutputStream out = Files.newOutputStream(file)) {
+                byte[] buffer = new byte[64 * 1024];
+                long total = 0;
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    total += read;
+                    if (total > maxBytes) {
+                        throw new RuntimeException("Import file exceeds " + maxBytes + " bytes");
+                    }
+                    out.write(buffer, 0, read);
+                }
+            }
+            return file;
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(file);
+            if (e instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new RuntimeException("Failed to receive import file: " + e.getMessage(), e);
+        }
+    }
+
+    private void run(String importId, Path file) {
+        KnowledgeBaseImportProgress progress = imports.get(importId);
+        Long projectId = progress.getProjectId();
+        try (InputStream in = Files.newInputStream(file);
+             KnowledgeBaseImportReader reader = KnowledgeBaseImportReader.open(progress.getFormat(), in, objectMapper)) {
+            List<KnowledgeBase> batch = new ArrayList<>(batchSize);
+            KnowledgeBaseRequest record;
+            while ((record = reader.next()) != null) {
+                progress = update(importId, p -> p.parsed(p.build().getParsed() + 1));
+                if (isBlank(record.getTitle()) || isBlank(record.getContent())) {
+                    progress = update(importId, p -> p.skipped(p.build().getSkipped() + 1));
+                    continue;
+                }
+                batch.add(toArticle(record));
+                if (batch.size() >= batchSize) {
+                    importBatch(importId, projectId, batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                importBatch(importId, projectId, batch);
+            }
+            if (inMemoryVectorIndex.serves(projectId)) {
+                // Один пересбор графа вместо copy-on-write вставки каждой статьи
+                inMemoryVectorIndex.load(projectId);
+            }
+            progress = update(importId, p -> p.status(KnowledgeBaseImportStatus.COMPLETED).finishedAt(LocalDateTime.now()));
+            log.info("Knowledge base import {} completed: {} imported, {} skipped, {} deferred",
+                    importId, progress.getImported(), progress.getSkipped(), progress.getDeferred());
+        } catch (Exception e) {
+            log.error("Knowledge base import {} failed", importId, e);
+            update(importId, p -> p.status(KnowledgeBaseImportStatus.FAILED)
+                    .error(e.getMessage())
+                    .finishedAt(LocalDateTime.now()));
+        } finally {
+            deleteQuietly(file);
+            publish(imports.get(importId));
+        }
+    }
+
+    /**
+     * Эмбеддинги пачки (вне транзакции), затем вставка статей и фрагментов в одной транзакции
+     */
+    private void importBatch(String importId, Long projectId, List<KnowledgeBase> articles) {
+        long[] ids = SequenceIds.allocate(jdbcTemplate, "knowledge_base_id_seq", articles.size());
+        for (int i = 0; i < articles.size(); i++) {
+            articles.get(i).setId(ids[i]);
+        }
+
+        EmbeddingModelVersion active = embeddingVersions.active();
+        List<List<KnowledgeChunk>> chunks = null;
+        try {
+            chunks = knowledgeChunkService.chunkNewArticles(articles, active, embeddingVersions.target());
+        } catch (Exception e) {
+            log.warn("Embedding is unavailable during import {}, deferring {} articles to the AI job queue: {}",
+                    importId, articles.size(), e.getMessage());
+        }
+
+        List<List<KnowledgeChunk>> embedded = chunks;
+        transactionTemplate.executeWithoutResult(status -> {
+            insertArticles(projectId, articles, embedded, active);
+            if (embedded != null) {
+                knowledgeChunkService.insertChunks(embedded.stream().flatMap(List::stream).toList());
+                refreshEmbeddingPrefixes(ids);
+            } else {
+                enqueueEmbeddingJobs(ids);
+            }
+        });
+
+        KnowledgeBaseImportProgress progress = update(importId, p -> {
+            KnowledgeBaseImportProgress current = p.build();
+            return p.imported(current.getImported() + articles.size())
+                    .deferred(current.getDeferred() + (embedded == null ? articles.size() : 0));
+        });
+        publish(progress);
+    }
+
+    private void insertArticles(Long projectId, List<KnowledgeBase> articles, List<List<KnowledgeChunk>> chunks,
+                                EmbeddingModelVersion active) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO knowledge_base (id, project_id, title, content, source_type, source_url, " +
+                "embedding, embedding_model, embedding_version, created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        KnowledgeBase kb = articles.get(i);
+                        ps.setLong(1, kb.getId());
+                        ps.setLong(2, projectId);
+                        ps.setString(3, kb.getTitle());
+                        ps.setString(4, kb.getContent());
+                        ps.setString(5, kb.getSourceType());
+                        ps.setString(6, kb.getSourceUrl());
+                        if (chunks != null) {
+                            VectorCodec.bind(ps, 7, KnowledgeChunkService.centroid(chunks.get(i)));
+                            ps.setString(8, active.model());
+                            ps.setInt(9, active.version());
+                        } else {
+                            VectorCodec.bind(ps, 7, null);
+                            ps.setNull(8, Types.VARCHAR);
+                            ps.setNull(9, Types.INTEGER);
+                        }
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return articles.size();
+                    }
+                });
+    }
+
+    private void refreshEmbeddingPrefixes(long[] ids) {
+        jdbcTemplate.update(
+                "UPDATE knowledge_base kb SET embedding_prefix = " +
+                "l2_normalize(subvector(kb.embedding, 1, p.embedding_prefix_dims)) " +
+                "FROM projects p " +
+                "WHERE p.id = kb.project_id AND p.embedding_prefix_dims IS NOT NULL " +
+                "AND kb.embedding IS NOT NULL AND kb.id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", toObjects(ids))));
+    }
+
+    private void enqueueEmbeddingJobs(long[] ids) {
+        jdbcTemplate.update(
+                "INSERT INTO ai_jobs (job_type, knowledge_base_id) SELECT 'EMBEDDING', unnest(?) " +
+                "ON CONFLICT (knowledge_base_id, job_type) WHERE status = 'PENDING' DO NOTHING",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", toObjects(ids))));
+    }
+
+    private KnowledgeBaseImportProgress update(String importId,
+            UnaryOperator<KnowledgeBaseImportProgress.KnowledgeBaseImportProgressBuilder> change) {
+        return imports.compute(importId, (id, current) -> change.apply(current.toBuilder()).build());
+    }
+
+    private void publish(KnowledgeBaseImportProgress progress) {
+        messagingTemplate.convertAndSend("/topic/knowledge-base/imports/" + progress.getImportId(), progress);
+    }
+
+    private static KnowledgeBase toArticle(KnowledgeBaseRequest record) {
+        KnowledgeBase kb = new KnowledgeBase();
+        kb.setTitle(truncate(record.getTitle().strip(), MAX_TITLE_LENGTH));
+        kb.setContent(record.getContent());
+        kb.setSourceType(truncate(record.getSourceType(), MAX_SOURCE_LENGTH));
+        kb.setSourceUrl(truncate(record.getSourceUrl(), MAX_URL_LENGTH));
+        return kb;
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static Long[] toObjects(long[] ids) {
+        Long[] boxed = new Long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            boxed[i] = ids[i];
+        }
+        return boxed;
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete import file {}", file, e);
+        }
+    }
+}
@@ -1,26 +1,73 @@
 package com.nova.support.service;
 
+import com.nova.support.domain.entity.AiJob;
 import com.nova.support.domain.entity.KnowledgeBase;
 import com.nova.support.domain.entity.Project;
+import com.nova.support.domain.enums.AiJobType;
+import com.nova.support.domain.enums.LlmRequestPriority;
+import com.nova.support.dto.EmbeddingModelVersion;
 import com.nova.support.dto.KnowledgeBaseRequest;
 import com.nova.support.dto.KnowledgeBaseResponse;
+import com.nova.support.dto.KnowledgePassage;
 import com.nova.support.repository.KnowledgeBaseRepository;
 import com.nova.support.repository.ProjectRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Управление базой знаний
+ * Эмбеддинги генерируются асинхронно задачами EMBEDDING очереди AI задач (по фрагментам статей)
+ * Семантический поиск идёт через VectorIndex, выбранный для проекта (pgvector или HNSW в памяти)
+ * Гибридный поиск объединяет лексический и семантический рейтинги (reciprocal rank fusion)
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class KnowledgeBaseService {
+public class KnowledgeBaseService implements AiJobHandler {
     
     private final KnowledgeBaseRepository knowledgeBaseRepository;
     private final ProjectRepository projectRepository;
     private final OllamaService ollamaService;
+    private final AiJobService aiJobService;
+    private final OllamaAdmission ollamaAdmission;
+    private final PgVectorIndex pgVectorIndex;
+    private final InMemoryVectorIndex inMemoryVectorIndex;
+    private final KnowledgeChunkService knowledgeChunkService;
+    private final EmbeddingVersions embeddingVersions;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${vector.search.ef-search:40}")
+    private int defaultEfSearch;
+    
+    @Value("${knowledge-base.search.rrf-k:60}")
+    private int rrfK;
+    
+    @Value("${knowledge-base.search.candidates:20}")
+    private int hybridCandidates;
+    
+    @Value("${knowledge-base.search.max-results:100}")
+    private int maxSearchResults;
+    
+    @Value("${knowledge-base.search.passage-articles:5}")
+    private int passageArticles;
+    
+    @Value("${knowledge-base.search.substring-max-length:64}")
+    private int substringMaxLength;
     
     public Page<KnowledgeBaseResponse> getAll(Long projectId, Pageable pageable) {
         return knowledgeBaseRepository.findByProjectId(projectId, pageable)
@@ -45,15 +92,12 @@ public class KnowledgeBaseService {
         kb.setSourceType(request.getSourceType());
         kb.setSourceUrl(request.getSourceUrl());
         
-        // Генерируем эмбеддинг для семантического поиска
-        String textToEmbed = request.getTitle() + "\n\n" + request.getContent();
-        float[] embeddingArray = ollamaService.generateEmbedding(textToEmbed);
-        String embeddingStr = convertEmbeddingToString(embeddingArray);
-        kb.setEmbedding(embeddingStr);
-        
         kb = knowledgeBaseRepository.save(kb);
         log.info("Created knowledge base entry: {}", kb.getTitle());
         
+        // Эмбеддинг для семантического поиска генерируется в фоне
+        aiJobService.enqueueForKnowledgeBase(AiJobType.EMBEDDING, kb.getId());
+        
         return mapToResponse(kb);
     }
     
@@ -67,37 +111,185 @@ public class KnowledgeBaseService {
         kb.setSourceType(request.getSourceType());
         kb.setSourceUrl(request.getSourceUrl());
         
-        // Перегенерируем эмбеддинг при изменении контента
-        String textToEmbed = request.getTitle() + "\n\n" + request.getContent();
-        float[] embeddingArray = ollamaService.generateEmbedding(textToEmbed);
-        String embeddingStr = convertEmbeddingToString(embeddingArray);
-        kb.setEmbedding(embeddingStr);
-        
         kb = knowledgeBaseRepository.save(kb);
+        
+        // Перегенерируем эмбеддинг в фоне (до этого поиск использует прежний)
+        aiJobService.enqueueForKnowledgeBase(AiJobType.EMBEDDING, kb.getId());
         return mapToResponse(kb);
     }
     
-    private String convertEmbeddingToString(float[] array) {
-        StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < array.length; i++) {
-            if (i > 0) sb.append(",");
-            sb.append(array[i]);
+    @Override
+    public Set<AiJobType> getSupportedTypes() {
+        return EnumSet.of(AiJobType.EMBEDDING);
+    }
+    
+    /**
+     * Разбить запись базы знаний на фрагменты и обновить эмбеддинги (задача EMBEDDING)
+     */
+    @Override
+    public void handle(AiJob job) {
+        KnowledgeBase kb = knowledgeBaseRepository.findById(job.getKnowledgeBaseId()).orElse(null);
+        if (kb == null) {
+            log.warn("Knowledge base entry {} was deleted before embedding", job.getKnowledgeBaseId());
+            return;
         }
-        sb.append("]");
-        return sb.toString();
+        
+        // Эмбеддятся только изменившиеся фрагменты, эмбеддинг статьи - их среднее
+        EmbeddingModelVersion active = embeddingVersions.active();
+        float[] embeddingArray = knowledgeChunkService.embedChunks(kb, active, embeddingVersions.target(),
+                embedding -> {
+                    // Точечное обновление: не затираем поля записи, не относящиеся к эмбеддингу
+                    knowledgeBaseRepository.updateEmbedding(kb.getId(), embedding, active.model(), active.version());
+                    knowledgeBaseRepository.refreshEmbeddingPrefix(kb.getId());
+                    // Под блокировкой статьи: граф в памяти получает векторы в том же порядке, что и БД
+                    inMemoryVectorIndex.upsert(kb.getProject().getId(), kb.getId(), embedding);
+                });
+        if (embeddingArray == null) {
+            // Статью изменили во время генерации: её новый текст обработает уже поставленная задача
+            return;
+        }
+        log.info("Generated embedding for knowledge base entry {}", kb.getId());
+    }
+    
+    /**
+     * Семантический поиск ближайших записей проекта (HNSW, cosine distance)
+     * 
+     * @param projectId ID проекта
+     * @param queryEmbedding эмбеддинг запроса
+     * @param limit количество результатов
+     * @param efSearch размер списка кандидатов HNSW (не меньше limit)
+     */
+    @Transactional(readOnly = true)
+    public List<KnowledgeBase> findSimilar(Long projectId, float[] queryEmbedding, int limit, int efSearch) {
+        return loadInOrder(searchVectorIds(projectId, queryEmbedding, limit, efSearch));
+    }
+    
+    /**
+     * Семантический поиск с ef_search по умолчанию (vector.search.ef-search)
+     */
+    @Transactional(readOnly = true)
+    public List<KnowledgeBase> findSimilar(Long projectId, float[] queryEmbedding, int limit) {
+        return findSimilar(projectId, queryEmbedding, limit, defaultEfSearch);
+    }
+    
+    /**
+     * Контекст для RAG: гибридный поиск статей (лексический + семантический),
+     * затем лучшие по эмбеддингу фрагменты этих статей
+     * 
+     * @param projectId ID проекта
+     * @param queryText текст запроса
+     * @param queryEmbedding эмбеддинг запроса (null - только лексический поиск)
+     * @param limit количество фрагментов
+     */
+    @Transactional(readOnly = true)
+    public List<KnowledgePassage> findRelevantPassages(Long projectId, String queryText, float[] queryEmbedding, int limit) {
+        // Текст тикета как подстрока статьи не встречается: только полнотекстовый поиск
+        List<Long> articleIds = hybridSearchIds(projectId, queryText, queryEmbedding,
+                Math.max(limit, passageArticles), false);
+        return knowledgeChunkService.findBestPassages(articleIds, queryEmbedding, limit);
     }
     
     @Transactional
     public void delete(Long id) {
-        if (!knowledgeBaseRepository.existsById(id)) {
-            throw new RuntimeException("Knowledge base entry not found");
-        }
-        knowledgeBaseRepository.deleteById(id);
+        KnowledgeBase kb = knowledgeBaseRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Knowledge base entry not found"));
+        knowledgeBaseRepository.delete(kb);
+        inMemoryVectorIndex.remove(kb.getProject().getId(), id);
+    }
+    
+    /**
+     * Индекс для проекта: HNSW в памяти, если граф проекта построен, иначе pgvector
+     */
+    private VectorIndex vectorIndexOf(Long projectId) {
+        return inMemoryVectorIndex.serves(projectId) ? inMemoryVectorIndex : pgVectorIndex;
     }
     
+    /**
+     * Поиск по базе знаний (админка): гибридный, если удалось получить эмбеддинг запроса,
+     * иначе только лексический (эмбеддинг запрашивается вне транзакции)
+     * Всего результатов не больше knowledge-base.search.max-results; total страницы - нижняя оценка:
+     * на одну запись больше конца страницы, если результаты продолжаются (hasNext)
+     */
     public Page<KnowledgeBaseResponse> search(Long projectId, String query, Pageable pageable) {
-        return knowledgeBaseRepository.searchByKeyword(projectId, query, pageable)
-                .map(this::mapToResponse);
+        float[] queryEmbedding = null;
+        try (var ignored = ollamaAdmission.prioritize(LlmRequestPriority.INTERACTIVE)) {
+            queryEmbedding = ollamaService.generateEmbedding(query);
+        } catch (Exception e) {
+            log.warn("Embedding is unavailable, falling back to lexical knowledge base search: {}", e.getMessage());
+        }
+        
+        long end = pageable.getOffset() + pageable.getPageSize();
+        // Лишний результат показывает, есть ли следующая страница
+        int wanted = (int) Math.min(end + 1, maxSearchResults);
+        List<Long> ids = hybridSearchIds(projectId, query, queryEmbedding, wanted,
+                query.length() <= substringMaxLength);
+        int from = (int) Math.min(pageable.getOffset(), ids.size());
+        int to = (int) Math.min(end, ids.size());
+        List<KnowledgeBaseResponse> content = loadInOrder(ids.subList(from, to)).stream()
+                .map(this::mapToResponse)
+                .toList();
+        return new PageImpl<>(content, pageable, ids.size());
+    }
+    
+    /**
+     * @param substringMatch искать запрос и как подстроку (триграммы) - только для коротких запросов админки
+     */
+    private List<Long> hybridSearchIds(Long projectId, String queryText, float[] queryEmbedding, int limit,
+                                       boolean substringMatch) {
+        int candidates = Math.max(limit, hybridCandidates);
+        List<Long> lexical = substringMatch
+                ? knowledgeBaseRepository.findIdsByLexicalMatch(
+                        projectId, queryText, "%" + escapeLike(queryText) + "%", candidates)
+                : knowledgeBaseRepository.findIdsByFullTextMatch(projectId, queryText, candidates);
+        List<Long> semantic = queryEmbedding != null
+                ? searchVectorIds(projectId, queryEmbedding, candidates, defaultEfSearch)
+                : List.of();
+        return fuseRanks(rrfK, limit, List.of(lexical, semantic));
+    }
+    
+    /**
+     * Reciprocal rank fusion: score = сумма 1 / (k + rank) по всем рейтингам
+     * Не требует сопоставимости лексических и векторных оценок
+     */
+    static List<Long> fuseRanks(int k, int limit, List<List<Long>> rankings) {
+        Map<Long, Double> scores = new HashMap<>();
+        for (List<Long> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                scores.merge(ranking.get(rank), 1.0 / (k + rank + 1), Double::sum);
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+    
+    private List<Long> searchVectorIds(Long projectId, float[] queryEmbedding, int limit, int efSearch) {
+        VectorIndex index = vectorIndexOf(projectId);
+        return Timer.builder("vector.search")
+                .tag("backend", index.getBackend().name())
+                .description("Top-k knowledge base retrieval")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry)
+                .record(() -> index.search(projectId, queryEmbedding, limit, efSearch));
+    }
+    
+    /**
+     * Загрузить записи, сохранив порядок по релевантности
+     */
+    private List<KnowledgeBase> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return knowledgeBaseRepository.findAllById(ids).stream()
+                .sorted(Comparator.comparingInt(kb -> ids.indexOf(kb.getId())))
+                .toList();
+    }
+    
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
     }
     
     private KnowledgeBaseResponse mapToResponse(KnowledgeBase kb) {
@@ -0,0 +1,410 @@
+package com.nova.support.service;
+
+import com.nova.support.config.VectorCodec;
+import com.nova.support.domain.entity.KnowledgeBase;
+import com.nova.support.domain.entity.KnowledgeChunk;
+import com.nova.support.domain.enums.LlmRequestPriority;
+import com.nova.support.dto.EmbeddingModelVersion;
+import com.nova.support.dto.KnowledgePassage;
+import com.nova.support.repository.KnowledgeChunkRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Фрагменты статей базы знаний
+ * - при правке статьи эмбеддинг запрашивается только для фрагментов с новым хэшем,
+ *   эмбеддинги неизменённых фрагментов переиспользуются
+ * - эмбеддинг статьи целиком (для поиска статей через VectorIndex) - нормализованное среднее
+ *   эмбеддингов фрагментов, отдельного запроса к модели не требует
+ * - для RAG внутри отобранных статей выбираются ближайшие к запросу фрагменты
+ */
+@Slf4j
+@Service
+public class KnowledgeChunkService {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final KnowledgeChunkRepository knowledgeChunkRepository;
+    private final OllamaService ollamaService;
+    private final OllamaAdmission ollamaAdmission;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter embeddedChunks;
+    private final Counter reusedChunks;
+
+    @Value("${knowledge-base.chunking.max-tokens:256}")
+    private int maxTokens;
+
+    @Value("${knowledge-base.chunking.min-tokens:64}")
+    private int minTokens;
+
+    @Value("${knowledge-base.search.pinned-articles:2}")
+    private int pinnedArticles;
+
+    public KnowledgeChunkService(
+            KnowledgeChunkRepository knowledgeChunkRepository,
+            OllamaService ollamaService,
+            OllamaAdmission ollamaAdmission,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry) {
+        this.knowledgeChunkRepository = knowledgeChunkRepository;
+        this.ollamaService = ollamaService;
+        this.ollamaAdmission = ollamaAdmission;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.embeddedChunks = counter(meterRegistry, "embedded");
+        this.reusedChunks = counter(meterRegistry, "reused");
+    }
+
+    /**
+     * Разбить статью на фрагменты, эмбеддить изменившиеся и сохранить
+     * Вызывается вне транзакции: запросы к модели не держат соединение с БД
+     * Во время перехода на новую модель фрагмент эмбеддится обеими (active - для поиска, target - впрок)
+     * Запись идёт под блокировкой строки статьи и только если текст статьи не изменился с начала
+     * генерации: результат по устаревшему тексту не перезаписывает более новый (правка ставит новую задачу)
+     *
+     * @param active модель, по векторам которой сейчас идёт поиск
+     * @param target целевая модель (совпадает с active вне переиндексации)
+     * @param writeArticle запись эмбеддинга статьи в той же транзакции, что и фрагменты
+     * @return эмбеддинг статьи (нормализованное среднее эмбеддингов фрагментов) моделью active
+     *         или null, если статья изменена или удалена во время генерации
+     */
+    public float[] embedChunks(KnowledgeBase kb, EmbeddingModelVersion active, EmbeddingModelVersion target,
+                               Consumer<float[]> writeArticle) {
+        Map<String, float[]> reusable = new HashMap<>();
+        Map<String, float[]> reusableNext = new HashMap<>();
+        for (KnowledgeChunk chunk : knowledgeChunkRepository.findByKnowledgeBaseIdOrderByChunkIndex(kb.getId())) {
+            if (active.matches(chunk.getEmbeddingModel(), chunk.getEmbeddingVersion())) {
+                reusable.put(chunk.getContentHash(), chunk.getEmbedding());
+            }
+            if (!active.equals(target) && target.matches(chunk.getNextEmbeddingModel(), chunk.getNextEmbeddingVersion())) {
+                reusableNext.put(chunk.getContentHash(), chunk.getNextEmbedding());
+            }
+        }
+        int known = reusable.size();
+
+        List<KnowledgeChunk> chunks = buildChunks(List.of(kb), reusable, reusableNext, active, target).get(0);
+        int embedded = reusable.size() - known;
+        embeddedChunks.increment(embedded);
+        reusedChunks.increment(chunks.size() - embedded);
+
+        float[] embedding = centroid(chunks);
+        Boolean written = transactionTemplate.execute(status -> {
+            if (!lockIfUnchanged(kb)) {
+                return false;
+            }
+            replaceChunks(kb.getId(), chunks);
+            writeArticle.accept(embedding);
+            return true;
+        });
+        if (!Boolean.TRUE.equals(written)) {
+            log.info("Knowledge base entry {} changed or was deleted during embedding, result discarded", kb.getId());
+            return null;
+        }
+        log.info("Knowledge base entry {}: {} chunks, {} embedded, {} reused",
+                kb.getId(), chunks.size(), embedded, chunks.size() - embedded);
+        return embedding;
+    }
+
+    /**
+     * Заблокировать строку статьи до конца транзакции, если её заголовок и текст совпадают с прочитанными
+     * Задачи одной статьи записывают результат по очереди, и только по актуальному тексту
+     */
+    private boolean lockIfUnchanged(KnowledgeBase kb) {
+        List<Boolean> unchanged = jdbcTemplate.query(
+                "SELECT title IS NOT DISTINCT FROM ? AND content = ? FROM knowledge_base WHERE id = ? FOR UPDATE",
+                (rs, rowNum) -> rs.getBoolean(1),
+                kb.getTitle(), kb.getContent(), kb.getId());
+        return !unchanged.isEmpty() && unchanged.get(0);
+    }
+
+    /**
+     * Фрагменты и эмбеддинги пачки новых статей (массовый импорт): тексты всех статей пачки
+     * уходят в модель общими батчами /api/embed
+     *
+     * @param articles статьи с уже назначенными id
+     * @return фрагменты каждой статьи в порядке articles (без id, см. insertChunks)
+     */
+    public List<List<KnowledgeChunk>> chunkNewArticles(List<KnowledgeBase> articles,
+                                                       EmbeddingModelVersion active, EmbeddingModelVersion target) {
+        List<List<KnowledgeChunk>> chunks = buildChunks(articles, new HashMap<>(), new HashMap<>(), active, target);
+        embeddedChunks.increment(chunks.stream().mapToInt(List::size).sum());
+        return chunks;
+    }
+
+    /**
+     * Вставить новые фрагменты одним JDBC батчем (в транзакции вызывающего)
+     * Идентификаторы резервируются блоками из knowledge_chunks_id_seq
+     */
+    public void insertChunks(List<KnowledgeChunk> chunks) {
+        long[] ids = SequenceIds.allocate(jdbcTemplate, "knowledge_chunks_id_seq", chunks.size());
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO knowledge_chunks (id, knowledge_base_id, chunk_index, content, content_hash, token_count, " +
+                "embedding, embedding_model, embedding_version, " +
+                "next_embedding, next_embedding_model, next_embedding_version) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        KnowledgeChunk chunk = chunks.get(i);
+                        chunk.setId(ids[i]);
+                        ps.setLong(1, ids[i]);
+                        ps.setLong(2, chunk.getKnowledgeBaseId());
+                        ps.setInt(3, chunk.getChunkIndex());
+                        ps.setString(4, chunk.getContent());
+                        ps.setString(5, chunk.getContentHash());
+                        ps.setInt(6, chunk.getTokenCount());
+                        VectorCodec.bind(ps, 7, chunk.getEmbedding());
+                        ps.setString(8, chunk.getEmbeddingModel());
+                        ps.setObject(9, chunk.getEmbeddingVersion(), Types.INTEGER);
+                        VectorCodec.bind(ps, 10, chunk.getNextEmbedding());
+                        ps.setString(11, chunk.getNextEmbeddingModel());
+                        ps.setObject(12, chunk.getNextEmbeddingVersion(), Types.INTEGER);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return chunks.size();
+                    }
+                });
+    }
+
+    /**
+     * Разбить статьи на фрагменты; эмбеддинги хэшей, которых нет в reusable (reusableNext),
+     * запрашиваются одним батчем на модель
+     */
+    private List<List<KnowledgeChunk>> buildChunks(List<KnowledgeBase> articles,
+                                                   Map<String, float[]> reusable, Map<String, float[]> reusableNext,
+                                                   EmbeddingModelVersion active, EmbeddingModelVersion target) {
+        boolean transition = !active.equals(target);
+        List<List<String>> passages = new ArrayList<>(articles.size());
+        List<String> texts = new ArrayList<>();
+        List<String> hashes = new ArrayList<>();
+        for (KnowledgeBase kb : articles) {
+            List<String> split = KnowledgeChunker.split(kb.getContent(), maxTokens, minTokens);
+            if (split.isEmpty()) {
+                split = List.of("");
+            }
+            passages.add(split);
+            for (String passage : split) {
+                String text = textToEmbed(kb.getTitle(), passage);
+                texts.add(text);
+                hashes.add(sha256(text));
+            }
+        }
+        embedMissing(active, texts, hashes, reusable);
+        if (transition) {
+            embedMissing(target, texts, hashes, reusableNext);
+        }
+
+        List<List<KnowledgeChunk>> result = new ArrayList<>(articles.size());
+        int position = 0;
+        for (int a = 0; a < articles.size(); a++) {
+            List<KnowledgeChunk> chunks = new ArrayList<>(passages.get(a).size());
+            for (String passage : passages.get(a)) {
+                String hash = hashes.get(position++);
+                chunks.add(KnowledgeChunk.builder()
+                        .knowledgeBaseId(articles.get(a).getId())
+                        .chunkIndex(chunks.size())
+                        .content(passage)
+                        .contentHash(hash)
+                        .tokenCount(KnowledgeChunker.estimateTokens(passage))
+                        .embedding(reusable.get(hash))
+                        .embeddingModel(active.model())
+                        .embeddingVersion(active.version())
+                        .nextEmbedding(transition ? reusableNext.get(hash) : null)
+                        .nextEmbeddingModel(transition ? target.model() : null)
+                        .nextEmbeddingVersion(transition ? target.version() : null)
+                        .build());
+            }
+            result.add(chunks);
+        }
+        return result;
+    }
+
+    /**
+     * Текст фрагмента, отправляемый на эмбеддинг (заголовок статьи даёт фрагменту контекст)
+     */
+    static String textToEmbed(String title, String passage) {
+        return passage.isEmpty() ? title : title + "\n\n" + passage;
+    }
+
+    /**
+     * Лучшие фрагменты среди отобранных статей
+     * - лучший фрагмент каждой из первых pinnedArticles статей берётся всегда (в порядке статей):
+     *   статья, найденная только лексически, не вытесняется чужими фрагментами, близкими по вектору
+     * - остальные места - по cosine distance к запросу
+     * Статьи, ещё не разбитые на фрагменты, участвуют целиком (по эмбеддингу статьи)
+     * Без эмбеддинга запроса остальные места занимают фрагменты в порядке статей
+     *
+     * @param knowledgeBaseIds статьи по убыванию релевантности (порядок слияния RRF)
+     * @param queryEmbedding эмбеддинг запроса (может быть null)
+     * @param limit количество фрагментов
+     */
+    public List<KnowledgePassage> findBestPassages(List<Long> knowledgeBaseIds, float[] queryEmbedding, int limit) {
+        if (knowledgeBaseIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(
+                "WITH ranked AS (" +
+                "  SELECT kb.id, kb.title, COALESCE(c.content, kb.content) AS content, c.chunk_index, " +
+                "         array_position(CAST(? AS bigint[]), kb.id) AS article_rank, " +
+                "         COALESCE(c.embedding, kb.embedding) <=> CAST(? AS vector(768)) AS distance " +
+                "  FROM knowledge_base kb " +
+                "  LEFT JOIN knowledge_chunks c ON c.knowledge_base_id = kb.id " +
+                "  WHERE kb.id = ANY(?)" +
+                "), numbered AS (" +
+                "  SELECT ranked.*, row_number() OVER (" +
+                "           PARTITION BY id ORDER BY distance NULLS LAST, chunk_index) AS chunk_rank " +
+                "  FROM ranked" +
+                ") " +
+                "SELECT id, title, content FROM numbered " +
+                "ORDER BY CASE WHEN chunk_rank = 1 AND article_rank <= ? THEN article_rank END NULLS LAST, " +
+                "         distance NULLS LAST, article_rank, chunk_index " +
+                "LIMIT ?",
+                ps -> {
+                    Array ids = ps.getConnection().createArrayOf("bigint", knowledgeBaseIds.toArray());
+                    ps.setArray(1, ids);
+                    VectorCodec.bind(ps, 2, queryEmbedding);
+                    ps.setArray(3, ids);
+                    ps.setInt(4, pinnedArticles);
+                    ps.setInt(5, limit);
+                },
+                (rs, rowNum) -> new KnowledgePassage(rs.getLong(1), rs.getString(2), rs.getString(3)));
+    }
+
+    /**
+     * Записать фрагменты статьи: неизменённые строки не трогаются, лишние удаляются
+     */
+    private void replaceChunks(Long knowledgeBaseId, List<KnowledgeChunk> chunks) {
+        Map<Integer, KnowledgeChunk> existing = new HashMap<>();
+        for (KnowledgeChunk chunk : knowledgeChunkRepository.findByKnowledgeBaseIdOrderByChunkIndex(knowledgeBaseId)) {
+            existing.put(chunk.getChunkIndex(), chunk);
+        }
+
+        List<KnowledgeChunk> changed = new ArrayList<>();
+        for (KnowledgeChunk chunk : chunks) {
+            KnowledgeChunk current = existing.remove(chunk.getChunkIndex());
+            if (current == null) {
+                changed.add(chunk);
+            } else if (!sameVectors(current, chunk)) {
+                current.setContent(chunk.getContent());
+                current.setContentHash(chunk.getContentHash());
+                current.setTokenCount(chunk.getTokenCount());
+                current.setEmbedding(chunk.getEmbedding());
+                current.setEmbeddingModel(chunk.getEmbeddingModel());
+                current.setEmbeddingVersion(chunk.getEmbeddingVersion());
+                current.setNextEmbedding(chunk.getNextEmbedding());
+                current.setNextEmbeddingModel(chunk.getNextEmbeddingModel());
+                current.setNextEmbeddingVersion(chunk.getNextEmbeddingVersion());
+                changed.add(current);
+            }
+        }
+        knowledgeChunkRepository.deleteAll(existing.values());
+        // Удаление до вставки: новые фрагменты могут занять освобождённые номера
+        knowledgeChunkRepository.flush();
+        knowledgeChunkRepository.saveAll(changed);
+    }
+
+    /**
+     * Эмбеддить одним батчем тексты, для хэшей которых нет вектора в known (known дополняется)
+     */
+    private void embedMissing(EmbeddingModelVersion modelVersion, List<String> texts, List<String> hashes,
+                             Map<String, float[]> known) {
+        Map<String, String> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (!known.containsKey(hashes.get(i))) {
+                missing.putIfAbsent(hashes.get(i), texts.get(i));
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        List<float[]> embeddings;
+        try (var ignored = ollamaAdmission.prioritize(LlmRequestPriority.BACKGROUND)) {
+            embeddings = ollamaService.generateEmbeddings(modelVersion, new ArrayList<>(missing.values()));
+        }
+        int i = 0;
+        for (String hash : missing.keySet()) {
+            known.put(hash, embeddings.get(i++));
+        }
+    }
+
+    private static boolean sameVectors(KnowledgeChunk stored, KnowledgeChunk chunk) {
+        return stored.getContentHash().equals(chunk.getContentHash())
+                && Objects.equals(stored.getEmbeddingModel(), chunk.getEmbeddingModel())
+                && Objects.equals(stored.getEmbeddingVersion(), chunk.getEmbeddingVersion())
+                && Objects.equals(stored.getNextEmbeddingModel(), chunk.getNextEmbeddingModel())
+                && Objects.equals(stored.getNextEmbeddingVersion(), chunk.getNextEmbeddingVersion());
+    }
+
+    /**
+     * Эмбеддинг статьи: нормализованное среднее нормализованных эмбеддингов фрагментов
+     */
+    static float[] centroid(List<KnowledgeChunk> chunks) {
+        float[] sum = null;
+        for (KnowledgeChunk chunk : chunks) {
+            float[] vector = chunk.getEmbedding();
+            if (sum == null) {
+                sum = new float[vector.length];
+            }
+            double norm = 0;
+            for (float value : vector) {
+                norm += value * value;
+            }
+            float scale = norm > 0 ? (float) (1 / Math.sqrt(norm)) : 0;
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += vector[i] * scale;
+            }
+        }
+        double norm = 0;
+        for (float value : sum) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] *= scale;
+            }
+        }
+        return sum;
+    }
+
+    private static String sha256(String text) {
+        try {
+            return HEX.formatHex(MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("knowledge_base.chunks")
+                .tag("result", result)
+                .description("Knowledge base chunks processed by embedding jobs")
+                .register(meterRegistry);
+    }
+}
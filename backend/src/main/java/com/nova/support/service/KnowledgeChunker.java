@@ -0,0 +1,114 @@
+package com.nova.support.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Разбиение статьи базы знаний на фрагменты, ограниченные по числу токенов
+ * Границы фрагментов проходят по абзацам: правка одного абзаца меняет только его фрагмент,
+ * остальные сохраняют хэш и эмбеддинг. Длинный абзац режется по предложениям, длинное предложение - по словам
+ * Токены оцениваются без токенизатора модели: слово или знак препинания - один токен
+ */
+final class KnowledgeChunker {
+
+    private static final Pattern PARAGRAPH = Pattern.compile("\\n\\s*\\n");
+    private static final Pattern SENTENCE = Pattern.compile("(?<=[.!?…])\\s+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}]+|[^\\p{L}\\p{N}\\s]");
+
+    private KnowledgeChunker() {
+    }
+
+    /**
+     * Разбить текст на фрагменты не длиннее maxTokens
+     * Соседние абзацы короче minTokens склеиваются, чтобы не плодить фрагменты из одной строки
+     *
+     * @return фрагменты по порядку (пустой список для пустого текста)
+     */
+    static List<String> split(String text, int maxTokens, int minTokens) {
+        List<String> units = new ArrayList<>();
+        for (String paragraph : PARAGRAPH.split(text == null ? "" : text.strip())) {
+            String trimmed = paragraph.strip();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (estimateTokens(trimmed) <= maxTokens) {
+                units.add(trimmed);
+            } else {
+                units.addAll(pack(SENTENCE.split(trimmed), maxTokens));
+            }
+        }
+
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int currentTokens = 0;
+        for (String unit : units) {
+            int tokens = estimateTokens(unit);
+            if (!current.isEmpty() && (currentTokens >= minTokens || currentTokens + tokens > maxTokens)) {
+                chunks.add(current.toString());
+                current.setLength(0);
+                currentTokens = 0;
+            }
+            if (!current.isEmpty()) {
+                current.append("\n\n");
+            }
+            current.append(unit);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current.toString());
+        }
+        return chunks;
+    }
+
+    /**
+     * Оценка числа токенов: слова и числа плюс отдельные знаки препинания
+     * (BPE-токенизатор даёт не меньше, для кириллицы обычно больше - лимит берётся с запасом)
+     */
+    static int estimateTokens(String text) {
+        Matcher matcher = TOKEN.matcher(text);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Жадно упаковать части (предложения или слова) во фрагменты не длиннее maxTokens
+     */
+    private static List<String> pack(String[] parts, int maxTokens) {
+        List<String> packed = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int currentTokens = 0;
+        for (String part : parts) {
+            int tokens = estimateTokens(part);
+            if (tokens > maxTokens && WHITESPACE.matcher(part).find()) {
+                // Предложение длиннее лимита - режем по словам
+                if (!current.isEmpty()) {
+                    packed.add(current.toString());
+                    current.setLength(0);
+                    currentTokens = 0;
+                }
+                packed.addAll(pack(WHITESPACE.split(part), maxTokens));
+                continue;
+            }
+            if (!current.isEmpty() && currentTokens + tokens > maxTokens) {
+                packed.add(current.toString());
+                current.setLength(0);
+                currentTokens = 0;
+            }
+            if (!current.isEmpty()) {
+                current.append(' ');
+            }
+            current.append(part);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) {
+            packed.add(current.toString());
+        }
+        return packed;
+    }
+}
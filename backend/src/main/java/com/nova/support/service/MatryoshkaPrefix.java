@@ -0,0 +1,37 @@
+package com.nova.support.service;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Усечение Matryoshka-эмбеддингов (nomic-embed-text): ведущие компоненты осмысленны сами по себе,
+ * поэтому нормализованный префикс 128/256 компонент пригоден для грубого поиска кандидатов
+ */
+final class MatryoshkaPrefix {
+    
+    /**
+     * Поддерживаемые длины префикса (под них созданы частичные HNSW индексы, см. V14)
+     */
+    static final Set<Integer> SUPPORTED_DIMENSIONS = Set.of(128, 256);
+    
+    private MatryoshkaPrefix() {
+    }
+    
+    /**
+     * Первые dimensions компонент вектора, нормализованные к единичной длине
+     */
+    static float[] of(float[] vector, int dimensions) {
+        float[] prefix = Arrays.copyOf(vector, Math.min(dimensions, vector.length));
+        double norm = 0;
+        for (float value : prefix) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < prefix.length; i++) {
+                prefix[i] *= scale;
+            }
+        }
+        return prefix;
+    }
+}
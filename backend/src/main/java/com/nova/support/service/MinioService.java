@@ -1,5 +1,6 @@
 package com.nova.support.service;
 
+import com.nova.support.dto.StoredObject;
 import io.minio.*;
 import io.minio.http.Method;
 import lombok.RequiredArgsConstructor;
@@ -10,19 +11,32 @@ import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.annotation.PostConstruct;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.UUID;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Сервис для работы с MinIO (S3-совместимое хранилище)
  * Управляет загрузкой, скачиванием и удалением файлов
+ * Файлы хранятся по SHA-256 содержимого: повторная загрузка того же файла не пишет новый объект
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class MinioService {
 
+    private static final HexFormat HEX = HexFormat.of();
+
+    /**
+     * Имя объекта, адресуемого по содержимому: ".../<sha256>.ext"
+     */
+    private static final Pattern CONTENT_ADDRESSED_NAME = Pattern.compile("(?:^|/)([0-9a-f]{64})(?:\\.[^/.]*)?$");
+
     private final MinioClient minioClient;
 
     @Value("${minio.bucket-name}")
@@ -57,37 +71,37 @@ public class MinioService {
     }
 
     /**
-     * Загружает файл в MinIO
+     * Загружает файл в MinIO по хэшу содержимого
      * 
      * @param file MultipartFile из HTTP запроса
      * @param folder папка внутри bucket (например, "audio" или "images")
-     * @return путь к загруженному файлу в формате "folder/uuid-filename"
+     * @return путь к файлу в формате "folder/sha256.ext"
      */
     public String uploadFile(MultipartFile file, String folder) {
+        return store(file, folder).objectName();
+    }
+
+    /**
+     * Загружает файл в MinIO по хэшу содержимого; если такой объект уже есть - загрузка пропускается
+     * Хэш считается потоком по части запроса (она уже лежит во временном файле), затем
+     * при необходимости файл передаётся в MinIO вторым проходом
+     * 
+     * @param file MultipartFile из HTTP запроса
+     * @param folder папка внутри bucket
+     * @return сохранённый объект с SHA-256 содержимого
+     */
+    public StoredObject store(MultipartFile file, String folder) {
         if (file == null || file.isEmpty()) {
             throw new IllegalArgumentException("File is empty");
         }
 
         try {
-            // Генерируем уникальное имя файла
-            String originalFilename = file.getOriginalFilename();
-            String extension = originalFilename != null && originalFilename.contains(".") 
-                    ? originalFilename.substring(originalFilename.lastIndexOf("."))
-                    : "";
-            String fileName = folder + "/" + UUID.randomUUID() + extension;
-
-            // Загружаем файл
-            minioClient.putObject(
-                    PutObjectArgs.builder()
-                            .bucket(bucketName)
-                            .object(fileName)
-                            .stream(file.getInputStream(), file.getSize(), -1)
-                            .contentType(file.getContentType())
-                            .build()
-            );
-
-            log.info("Uploaded file to MinIO: {}", fileName);
-            return fileName;
+            String sha256;
+            try (InputStream stream = file.getInputStream()) {
+                sha256 = sha256(stream);
+            }
+            String objectName = folder + "/" + sha256 + extensionOf(file.getOriginalFilename());
+            return putIfAbsent(objectName, sha256, file.getSize(), file.getContentType(), file::getInputStream);
 
         } catch (Exception e) {
             log.error("Failed to upload file to MinIO", e);
@@ -96,33 +110,96 @@ public class MinioService {
     }
 
     /**
-     * Загружает файл из byte array в MinIO
+     * Загружает файл из byte array в MinIO по хэшу содержимого
      * 
      * @param data данные файла
-     * @param filename имя файла
-     * @param contentType MIME тип
-     * @return путь к загруженному файлу
+     * @param filename имя файла (используется расширение)
+     * @param contentType MIME тип (определяет папку: audio, images, files)
+     * @return путь к файлу в формате "folder/sha256.ext"
      */
     public String uploadFile(byte[] data, String filename, String contentType) {
+        return store(data, filename, contentType).objectName();
+    }
+
+    /**
+     * Загружает byte array в MinIO по хэшу содержимого; если такой объект уже есть - загрузка пропускается
+     */
+    public StoredObject store(byte[] data, String filename, String contentType) {
         try {
-            String objectName = UUID.randomUUID().toString() + "-" + filename;
-            
-            ByteArrayInputStream stream = new ByteArrayInputStream(data);
+            String sha256 = HEX.formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+            String objectName = folderOf(contentType) + "/" + sha256 + extensionOf(filename);
+            return putIfAbsent(objectName, sha256, data.length, contentType, () -> new ByteArrayInputStream(data));
+        } catch (Exception e) {
+            log.error("Failed to upload byte array to MinIO", e);
+            throw new RuntimeException("Failed to upload byte array", e);
+        }
+    }
+
+    /**
+     * SHA-256 содержимого по имени объекта
+     * 
+     * @param objectName имя объекта в MinIO
+     * @return hex хэш или null для объектов, загруженных до адресации по содержимому
+     */
+    public static String contentHashOf(String objectName) {
+        if (objectName == null) {
+            return null;
+        }
+        Matcher matcher = CONTENT_ADDRESSED_NAME.matcher(objectName);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private StoredObject putIfAbsent(String objectName, String sha256, long size, String contentType,
+                                     StreamSource source) throws Exception {
+        if (fileExists(objectName)) {
+            log.info("Skipped upload, identical content already stored: {}", objectName);
+            return new StoredObject(objectName, sha256, size, true);
+        }
+
+        try (InputStream stream = source.open()) {
             minioClient.putObject(
                     PutObjectArgs.builder()
                             .bucket(bucketName)
                             .object(objectName)
-                            .stream(stream, data.length, -1)
+                            .stream(stream, size, -1)
                             .contentType(contentType)
                             .build()
             );
-            
-            log.info("Uploaded byte array to MinIO: {}", objectName);
-            return objectName;
-        } catch (Exception e) {
-            log.error("Failed to upload byte array to MinIO", e);
-            throw new RuntimeException("Failed to upload byte array", e);
         }
+
+        log.info("Uploaded file to MinIO: {}", objectName);
+        return new StoredObject(objectName, sha256, size, false);
+    }
+
+    private static String sha256(InputStream stream) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return HEX.formatHex(digest.digest());
+    }
+
+    private static String extensionOf(String filename) {
+        return filename != null && filename.contains(".")
+                ? filename.substring(filename.lastIndexOf(".")).toLowerCase()
+                : "";
+    }
+
+    private static String folderOf(String contentType) {
+        if (contentType != null && contentType.startsWith("audio/")) {
+            return "audio";
+        }
+        if (contentType != null && contentType.startsWith("image/")) {
+            return "images";
+        }
+        return "files";
+    }
+
+    @FunctionalInterface
+    private interface StreamSource {
+        InputStream open() throws IOException;
     }
 
     /**
@@ -169,6 +246,7 @@ public class MinioService {
 
     /**
      * Удаляет файл из MinIO
+     * Объект общий для всех ссылок на одинаковое содержимое - удалять только если ссылок не осталось
      * 
      * @param objectName имя объекта для удаления
      */
@@ -187,6 +265,26 @@ public class MinioService {
         }
     }
 
+    /**
+     * Получает размер файла без скачивания
+     * 
+     * @param objectName имя объекта
+     * @return размер в байтах
+     */
+    public long getFileSize(String objectName) {
+        try {
+            return minioClient.statObject(
+                    StatObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(objectName)
+                            .build()
+            ).size();
+        } catch (Exception e) {
+            log.error("Failed to stat file in MinIO: {}", objectName, e);
+            throw new RuntimeException("Failed to get file size", e);
+        }
+    }
+
     /**
      * Проверяет существование файла
      * 
@@ -0,0 +1,247 @@
+package com.nova.support.service;
+
+import com.nova.support.domain.enums.LlmRequestPriority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Контроль допуска запросов к Ollama
+ * - ограничение одновременных запросов на модель
+ * - ограниченная очередь ожидания, упорядоченная по приоритету (INTERACTIVE -> ... -> BACKGROUND)
+ * - при переполнении вытесняется самый низкоприоритетный ожидающий запрос либо отклоняется новый
+ * Приоритет берётся из контекста текущего потока (см. prioritize)
+ */
+@Slf4j
+@Service
+public class OllamaAdmission {
+
+    private static final ThreadLocal<LlmRequestPriority> CURRENT_PRIORITY = new ThreadLocal<>();
+
+    private final Map<String, ModelGate> gates = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Value("${ollama.model.chat}")
+    private String chatModel;
+
+    @Value("${ollama.admission.concurrency.chat:2}")
+    private int chatConcurrency;
+
+    @Value("${ollama.admission.concurrency.embedding:4}")
+    private int embeddingConcurrency;
+
+    @Value("${ollama.admission.max-queue-depth:50}")
+    private int maxQueueDepth;
+
+    @Value("${ollama.admission.max-wait:PT2M}")
+    private Duration maxWait;
+
+    @Value("${ollama.admission.interactive-max-wait:PT20S}")
+    private Duration interactiveMaxWait;
+
+    public OllamaAdmission(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Установить приоритет запросов к Ollama для текущего потока
+     * Использование: try (var ignored = ollamaAdmission.prioritize(...)) { ... }
+     */
+    public PriorityScope prioritize(LlmRequestPriority priority) {
+        LlmRequestPriority previous = CURRENT_PRIORITY.get();
+        CURRENT_PRIORITY.set(priority);
+        return () -> {
+            if (previous != null) {
+                CURRENT_PRIORITY.set(previous);
+            } else {
+                CURRENT_PRIORITY.remove();
+            }
+        };
+    }
+
+    /**
+     * Выполнить запрос к модели, дождавшись свободного слота
+     * @throws OllamaOverloadedException если очередь переполнена или ожидание слишком долгое
+     */
+    public <T> T execute(String model, Supplier<T> call) {
+        LlmRequestPriority priority = currentPriority();
+        ModelGate gate = gates.computeIfAbsent(model, this::createGate);
+        gate.acquire(priority);
+        try {
+            return call.get();
+        } finally {
+            gate.release();
+        }
+    }
+
+    /**
+     * Приоритет текущего потока (MEDIUM, если не задан)
+     */
+    LlmRequestPriority currentPriority() {
+        LlmRequestPriority priority = CURRENT_PRIORITY.get();
+        return priority != null ? priority : LlmRequestPriority.MEDIUM;
+    }
+
+    private ModelGate createGate(String model) {
+        int permits = model.equals(chatModel) ? chatConcurrency : embeddingConcurrency;
+        ModelGate gate = new ModelGate(model, permits);
+        Gauge.builder("ollama.admission.queue.depth", gate, ModelGate::queueDepth)
+                .tag("model", model)
+                .description("Requests waiting for an Ollama slot")
+                .register(meterRegistry);
+        Gauge.builder("ollama.admission.in.flight", gate, ModelGate::inFlight)
+                .tag("model", model)
+                .description("Requests currently executing in Ollama")
+                .register(meterRegistry);
+        log.info("Ollama admission gate for model {}: {} concurrent, queue depth {}", model, permits, maxQueueDepth);
+        return gate;
+    }
+
+    /**
+     * Область действия приоритета (восстанавливает предыдущий при закрытии)
+     */
+    public interface PriorityScope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private record Waiter(LlmRequestPriority priority, long seq, CompletableFuture<Void> granted) {}
+
+    /**
+     * Семафор модели с приоритетной очередью ожидания
+     */
+    private class ModelGate {
+
+        private final String model;
+        private final int permits;
+        private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+                Comparator.comparing(Waiter::priority).thenComparingLong(Waiter::seq));
+        private int inUse;
+
+        ModelGate(String model, int permits) {
+            this.model = model;
+            this.permits = permits;
+        }
+
+        void acquire(LlmRequestPriority priority) {
+            long start = System.nanoTime();
+            Waiter waiter;
+            synchronized (this) {
+                if (inUse < permits && waiters.isEmpty()) {
+                    inUse++;
+                    recordWait(priority, start);
+                    return;
+                }
+                if (waiters.size() >= maxQueueDepth && !evictLowerThan(priority)) {
+                    reject(priority, "queue is full");
+                }
+                waiter = new Waiter(priority, sequence.incrementAndGet(), new CompletableFuture<>());
+                waiters.add(waiter);
+            }
+
+            Duration wait = priority == LlmRequestPriority.INTERACTIVE ? interactiveMaxWait : maxWait;
+            try {
+                waiter.granted().get(wait.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                abandon(waiter);
+                reject(priority, "waited longer than " + wait);
+            } catch (InterruptedException e) {
+                abandon(waiter);
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for Ollama", e);
+            } catch (ExecutionException e) {
+                // Вытеснен более приоритетным запросом
+                throw (OllamaOverloadedException) e.getCause();
+            }
+            recordWait(priority, start);
+        }
+
+        synchronized void release() {
+            Waiter next = waiters.poll();
+            if (next != null) {
+                // Слот переходит следующему ожидающему
+                next.granted().complete(null);
+            } else {
+                inUse--;
+            }
+        }
+
+        synchronized int queueDepth() {
+            return waiters.size();
+        }
+
+        synchronized int inFlight() {
+            return inUse;
+        }
+
+        /**
+         * Вытеснить самый низкоприоритетный ожидающий запрос, если он ниже нового
+         */
+        private boolean evictLowerThan(LlmRequestPriority priority) {
+            Waiter lowest = waiters.stream()
+                    .max(waiters.comparator())
+                    .orElse(null);
+            if (lowest == null || lowest.priority().compareTo(priority) <= 0) {
+                return false;
+            }
+            waiters.remove(lowest);
+            countRejected(lowest.priority());
+            lowest.granted().completeExceptionally(new OllamaOverloadedException(
+                    "Ollama model " + model + " is overloaded: displaced by a higher priority request"));
+            return true;
+        }
+
+        /**
+         * Покинуть очередь; если слот уже был выдан - вернуть его
+         */
+        private void abandon(Waiter waiter) {
+            boolean removed;
+            synchronized (this) {
+                removed = waiters.remove(waiter);
+            }
+            if (!removed && waiter.granted().isDone() && !waiter.granted().isCompletedExceptionally()) {
+                release();
+            }
+        }
+
+        private void reject(LlmRequestPriority priority, String reason) {
+            countRejected(priority);
+            log.warn("Rejected {} request to Ollama model {}: {}", priority, model, reason);
+            throw new OllamaOverloadedException("Ollama model " + model + " is overloaded: " + reason);
+        }
+
+        private void countRejected(LlmRequestPriority priority) {
+            Counter.builder("ollama.admission.rejected")
+                    .tag("model", model)
+                    .tag("priority", priority.name())
+                    .register(meterRegistry)
+                    .increment();
+        }
+
+        private void recordWait(LlmRequestPriority priority, long start) {
+            Timer.builder("ollama.admission.wait")
+                    .tag("model", model)
+                    .tag("priority", priority.name())
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.nova.support.service;
+
+/**
+ * Ollama перегружена: очередь допуска переполнена или время ожидания истекло
+ * Запрос можно повторить позже (для REST - 503, для задач очереди - отложить)
+ */
+public class OllamaOverloadedException extends RuntimeException {
+    
+    public OllamaOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -1,35 +1,101 @@
 package com.nova.support.service;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nova.support.dto.EmbeddingModelVersion;
+import com.nova.support.dto.TicketAnalysis;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Flux;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * Сервис для работы с Ollama (локальные LLM модели)
+ * Все запросы проходят через OllamaAdmission (лимит параллелизма и приоритетная очередь)
  */
 @Slf4j
 @Service
 public class OllamaService {
     
+    /**
+     * JSON схема ответа для анализа тикета (параметр format в /api/generate)
+     */
+    private static final Map<String, Object> TICKET_ANALYSIS_SCHEMA = Map.of(
+        "type", "object",
+        "properties", Map.of(
+            "summary", Map.of("type", "string"),
+            "sentiment", Map.of("type", "string", "enum", List.of("POSITIVE", "NEUTRAL", "NEGATIVE")),
+            "sentimentScore", Map.of("type", "number", "minimum", -1, "maximum", 1),
+            "priority", Map.of("type", "string", "enum", List.of("LOW", "MEDIUM", "HIGH", "CRITICAL"))
+        ),
+        "required", List.of("summary", "sentiment", "sentimentScore", "priority")
+    );
+    
+    /**
+     * Начальный размер буфера вектора при разборе ответа (nomic-embed-text)
+     */
+    private static final int EXPECTED_EMBEDDING_DIMENSION = 768;
+    
     private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+    private final OllamaAdmission ollamaAdmission;
+    private final EmbeddingCache embeddingCache;
+    private final EmbeddingVersions embeddingVersions;
+    private final EmbeddingBatcher embeddingBatcher;
+    private final int maxEmbeddingBatchSize;
+    private final Timer firstTokenLatency;
     
     @Value("${ollama.model.chat}")
     private String chatModel;
     
-    @Value("${ollama.model.embedding}")
-    private String embeddingModel;
-    
-    public OllamaService(@Value("${ollama.base-url}") String ollamaBaseUrl) {
+    public OllamaService(@Value("${ollama.base-url}") String ollamaBaseUrl, ObjectMapper objectMapper,
+                         OllamaAdmission ollamaAdmission, EmbeddingCache embeddingCache,
+                         EmbeddingVersions embeddingVersions, MeterRegistry meterRegistry,
+                         @Value("${ollama.embedding-batch.window:5ms}") Duration embeddingBatchWindow,
+                         @Value("${ollama.embedding-batch.max-size:32}") int maxEmbeddingBatchSize) {
         this.webClient = WebClient.builder()
                 .baseUrl(ollamaBaseUrl)
                 .build();
+        this.objectMapper = objectMapper;
+        this.ollamaAdmission = ollamaAdmission;
+        this.embeddingCache = embeddingCache;
+        this.embeddingVersions = embeddingVersions;
+        this.maxEmbeddingBatchSize = maxEmbeddingBatchSize;
+        this.embeddingBatcher = new EmbeddingBatcher(embeddingBatchWindow, maxEmbeddingBatchSize, ollamaAdmission,
+                this::requestEmbeddings,
+                DistributionSummary.builder("ollama.embedding.batch.size")
+                        .description("Texts per /api/embed request assembled by the micro-batcher")
+                        .register(meterRegistry));
+        this.firstTokenLatency = Timer.builder("ollama.generate.first.token")
+                .description("Time from a streaming generation request to its first token")
+                .register(meterRegistry);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        embeddingBatcher.close();
     }
     
     /**
@@ -39,28 +105,66 @@ public class OllamaService {
         try {
             log.info("Generating text with model: {}", chatModel);
             
-            Map<String, Object> request = Map.of(
+            return generate(Map.of(
                 "model", chatModel,
                 "prompt", prompt,
                 "stream", false
-            );
+            ));
             
-            Map<String, Object> response = webClient.post()
-                    .uri("/api/generate")
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(Map.class)
-                    .block();
+        } catch (OllamaOverloadedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error generating text", e);
+            throw new RuntimeException("Failed to generate text: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Генерация текста со стримингом: NDJSON поток /api/generate разбирается по мере поступления,
+     * каждый фрагмент ответа передаётся в onDelta (вызывается в IO потоке WebClient)
+     * @return полный текст ответа
+     */
+    public String generateTextStreaming(String prompt, Consumer<String> onDelta) {
+        try {
+            log.info("Streaming text with model: {}", chatModel);
             
-            if (response != null && response.containsKey("response")) {
-                return (String) response.get("response");
-            }
+            Map<String, Object> request = Map.of(
+                "model", chatModel,
+                "prompt", prompt,
+                "stream", true
+            );
+            String text = ollamaAdmission.execute(chatModel, () -> {
+                long start = System.nanoTime();
+                AtomicBoolean first = new AtomicBoolean(true);
+                return webClient.post()
+                        .uri("/api/generate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .bodyValue(request)
+                        .retrieve()
+                        .bodyToFlux(JsonNode.class)
+                        .map(OllamaService::responseDelta)
+                        .filter(delta -> !delta.isEmpty())
+                        .doOnNext(delta -> {
+                            if (first.compareAndSet(true, false)) {
+                                firstTokenLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                            }
+                            onDelta.accept(delta);
+                        })
+                        .collect(StringBuilder::new, StringBuilder::append)
+                        .map(StringBuilder::toString)
+                        .block();
+            });
             
-            throw new RuntimeException("Empty response from Ollama");
+            if (text == null || text.isEmpty()) {
+                throw new RuntimeException("Empty response from Ollama");
+            }
+            return text;
             
+        } catch (OllamaOverloadedException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("Error generating text", e);
+            log.error("Error streaming text", e);
             throw new RuntimeException("Failed to generate text: " + e.getMessage(), e);
         }
     }
@@ -74,27 +178,15 @@ public class OllamaService {
             
             String base64Image = Base64.getEncoder().encodeToString(imageBytes);
             
-            Map<String, Object> request = Map.of(
+            return generate(Map.of(
                 "model", chatModel,
                 "prompt", prompt,
                 "images", List.of(base64Image),
                 "stream", false
-            );
-            
-            Map<String, Object> response = webClient.post()
-                    .uri("/api/generate")
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(Map.class)
-                    .block();
-            
-            if (response != null && response.containsKey("response")) {
-                return (String) response.get("response");
-            }
-            
-            throw new RuntimeException("Empty response from Ollama");
+            ));
             
+        } catch (OllamaOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error analyzing image", e);
             throw new RuntimeException("Failed to analyze image: " + e.getMessage(), e);
@@ -102,62 +194,213 @@ public class OllamaService {
     }
     
     /**
-     * Генерация краткого резюме текста
+     * Анализ обращения одним запросом: summary, sentiment с оценкой и приоритет
+     * Ответ ограничен JSON схемой (structured outputs) и валидируется через Jackson
+     * 
+     * @return результат анализа или null, если модель вернула невалидный ответ
      */
-    public String generateSummary(String text) {
-        String prompt = String.format(
-            "Кратко резюмируй следующий текст обращения клиента в 2-3 предложениях:\n\n%s",
-            text
-        );
-        return generateText(prompt);
+    public TicketAnalysis analyzeTicket(String text) {
+        log.info("Analyzing ticket with model: {}", chatModel);
+        
+        String prompt = String.format("""
+                Проанализируй обращение клиента в службу поддержки.
+                
+                Текст обращения:
+                %s
+                
+                Заполни поля ответа:
+                - summary: краткое резюме обращения в 2-3 предложениях
+                - sentiment: тональность (POSITIVE, NEUTRAL, NEGATIVE)
+                - sentimentScore: оценка тональности от -1.0 (очень негативно) до 1.0 (очень позитивно)
+                - priority: LOW (общий вопрос), MEDIUM (проблема, требующая внимания),
+                  HIGH (срочная проблема), CRITICAL (сервис не работает или клиент очень недоволен)
+                """, text);
+        
+        String response;
+        try {
+            response = generate(Map.of(
+                "model", chatModel,
+                "prompt", prompt,
+                "format", TICKET_ANALYSIS_SCHEMA,
+                "stream", false,
+                "options", Map.of("temperature", 0)
+            ));
+        } catch (OllamaOverloadedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error analyzing ticket", e);
+            throw new RuntimeException("Failed to analyze ticket: " + e.getMessage(), e);
+        }
+        
+        try {
+            TicketAnalysis analysis = objectMapper.readValue(response, TicketAnalysis.class);
+            if (analysis.isValid()) {
+                return analysis;
+            }
+            log.warn("Ticket analysis failed validation: {}", response);
+        } catch (JsonProcessingException e) {
+            log.warn("Malformed ticket analysis response: {}", response);
+        }
+        return null;
     }
     
     /**
-     * Анализ тональности текста
+     * Генерация эмбеддинга запроса активной моделью (векторы в базе построены ею, см. EmbeddingVersions)
+     * Повторный текст берётся из EmbeddingCache без запроса к Ollama (массив не изменять)
      */
-    public String analyzeSentiment(String text) {
-        String prompt = String.format(
-            "Определи тональность следующего обращения клиента (positive/neutral/negative):\n\n%s\n\n" +
-            "Ответь одним словом: positive, neutral или negative",
-            text
-        );
-        return generateText(prompt);
+    public float[] generateEmbedding(String text) {
+        return generateEmbedding(embeddingVersions.active(), text);
     }
     
     /**
-     * Генерация эмбеддинга текста
+     * Генерация эмбеддинга заданной моделью
+     * Одновременные запросы объединяются микробатчером в один вызов /api/embed
      */
-    public float[] generateEmbedding(String text) {
+    public float[] generateEmbedding(EmbeddingModelVersion modelVersion, String text) {
+        return embeddingCache.getOrCompute(modelVersion.cacheKey(), text,
+                () -> embeddingBatcher.embed(modelVersion.model(), text));
+    }
+    
+    /**
+     * Эмбеддинги пачки текстов активной моделью
+     * 
+     * @return эмбеддинги в порядке текстов
+     */
+    public List<float[]> generateEmbeddings(List<String> texts) {
+        return generateEmbeddings(embeddingVersions.active(), texts);
+    }
+    
+    /**
+     * Эмбеддинги пачки текстов заданной моделью: закэшированные тексты не отправляются,
+     * остальные уходят запросами /api/embed не больше ollama.embedding-batch.max-size текстов
+     * 
+     * @return эмбеддинги в порядке текстов
+     */
+    public List<float[]> generateEmbeddings(EmbeddingModelVersion modelVersion, List<String> texts) {
+        float[][] embeddings = new float[texts.size()][];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings[i] = embeddingCache.getIfPresent(modelVersion.cacheKey(), texts.get(i));
+            if (embeddings[i] == null) {
+                missing.add(i);
+            }
+        }
+        for (int from = 0; from < missing.size(); from += maxEmbeddingBatchSize) {
+            List<Integer> part = missing.subList(from, Math.min(from + maxEmbeddingBatchSize, missing.size()));
+            List<float[]> generated = requestEmbeddings(modelVersion.model(), part.stream().map(texts::get).toList());
+            for (int i = 0; i < part.size(); i++) {
+                int index = part.get(i);
+                embeddings[index] = generated.get(i);
+                embeddingCache.put(modelVersion.cacheKey(), texts.get(index), embeddings[index]);
+            }
+        }
+        return Arrays.asList(embeddings);
+    }
+    
+    /**
+     * Вызов /api/embed; ответ разбирается потоковым парсером Jackson сразу в float[]
+     * (без промежуточных Map и List<Double>)
+     */
+    private List<float[]> requestEmbeddings(String model, List<String> texts) {
         try {
-            log.info("Generating embedding with model: {}", embeddingModel);
+            log.debug("Generating {} embedding(s) with model: {}", texts.size(), model);
             
             Map<String, Object> request = Map.of(
-                "model", embeddingModel,
-                "prompt", text
+                "model", model,
+                "input", texts
             );
             
-            Map<String, Object> response = webClient.post()
-                    .uri("/api/embeddings")
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(Map.class)
-                    .block();
+            List<float[]> embeddings = ollamaAdmission.execute(model, () -> DataBufferUtils.join(webClient.post()
+                            .uri("/api/embed")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .bodyValue(request)
+                            .retrieve()
+                            .bodyToFlux(DataBuffer.class))
+                    .map(this::readEmbeddings)
+                    .block());
             
-            if (response != null && response.containsKey("embedding")) {
-                List<Double> embeddingList = (List<Double>) response.get("embedding");
-                float[] embedding = new float[embeddingList.size()];
-                for (int i = 0; i < embeddingList.size(); i++) {
-                    embedding[i] = embeddingList.get(i).floatValue();
-                }
-                return embedding;
+            if (embeddings == null || embeddings.size() != texts.size()) {
+                throw new RuntimeException("Unexpected embedding response from Ollama: " +
+                        (embeddings == null ? "empty" : embeddings.size() + " of " + texts.size()));
             }
+            return embeddings;
             
-            throw new RuntimeException("Empty embedding response from Ollama");
-            
+        } catch (OllamaOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error generating embedding", e);
             throw new RuntimeException("Failed to generate embedding: " + e.getMessage(), e);
         }
     }
+    
+    /**
+     * Разобрать {"embeddings": [[...], ...], ...}, остальные поля пропускаются
+     */
+    private List<float[]> readEmbeddings(DataBuffer body) {
+        try (InputStream in = body.asInputStream(true);
+             JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new RuntimeException("Malformed embedding response from Ollama");
+            }
+            List<float[]> embeddings = new ArrayList<>();
+            int dimension = EXPECTED_EMBEDDING_DIMENSION;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("embeddings".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_ARRAY) {
+                        float[] embedding = readVector(parser, dimension);
+                        dimension = embedding.length;
+                        embeddings.add(embedding);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return embeddings;
+        } catch (IOException e) {
+            throw new RuntimeException("Malformed embedding response from Ollama", e);
+        }
+    }
+    
+    private static float[] readVector(JsonParser parser, int expectedDimension) throws IOException {
+        float[] vector = new float[Math.max(expectedDimension, 1)];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == vector.length) {
+                vector = Arrays.copyOf(vector, size * 2);
+            }
+            vector[size++] = parser.getFloatValue();
+        }
+        return size == vector.length ? vector : Arrays.copyOf(vector, size);
+    }
+    
+    /**
+     * Фрагмент ответа из строки NDJSON потока (ошибка модели приходит отдельной строкой с полем error)
+     */
+    private static String responseDelta(JsonNode chunk) {
+        if (chunk.hasNonNull("error")) {
+            throw new RuntimeException("Ollama error: " + chunk.get("error").asText());
+        }
+        return chunk.path("response").asText("");
+    }
+    
+    /**
+     * Вызов /api/generate без стриминга, возвращает поле response
+     */
+    private String generate(Map<String, Object> request) {
+        Map<String, Object> response = ollamaAdmission.execute(chatModel, () -> webClient.post()
+                .uri("/api/generate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .block());
+        
+        if (response != null && response.containsKey("response")) {
+            return (String) response.get("response");
+        }
+        
+        throw new RuntimeException("Empty response from Ollama");
+    }
 }
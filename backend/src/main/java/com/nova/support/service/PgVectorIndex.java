@@ -0,0 +1,136 @@
+package com.nova.support.service;
+
+import com.nova.support.config.VectorCodec;
+import com.nova.support.domain.enums.VectorBackend;
+import com.nova.support.domain.enums.VectorQuantization;
+import com.nova.support.repository.KnowledgeBaseRepository;
+import com.nova.support.repository.ProjectRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Векторный поиск через HNSW индекс pgvector
+ * Колонка knowledge_base.embedding - единственный источник данных, upsert/remove не нужны
+ * При vector.search.quantization = BINARY кандидаты ищутся по индексу binary_quantize (Хэмминг)
+ * и переранжируются по точному cosine distance; INT8 в pgvector не поддерживается
+ * Если у проекта задан Matryoshka-префикс, кандидаты ищутся по частичному индексу префикса
+ * (имеет приоритет над квантованием)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PgVectorIndex implements VectorIndex {
+    
+    private final KnowledgeBaseRepository knowledgeBaseRepository;
+    private final ProjectRepository projectRepository;
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${vector.search.iterative-scan:relaxed_order}")
+    private String iterativeScan;
+    
+    @Value("${vector.search.quantization:NONE}")
+    private VectorQuantization quantization;
+    
+    @Value("${vector.search.rerank-factor:4}")
+    private int rerankFactor;
+    
+    @PostConstruct
+    void checkQuantization() {
+        if (quantization == VectorQuantization.INT8) {
+            log.warn("INT8 quantization applies to the in-memory vector index only, pgvector searches use full vectors");
+        }
+    }
+    
+    @Override
+    public VectorBackend getBackend() {
+        return VectorBackend.PGVECTOR;
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public List<Long> search(Long projectId, float[] queryEmbedding, int limit, int efSearch) {
+        Integer prefixDimensions = projectRepository.findEmbeddingPrefixDims(projectId);
+        if (prefixDimensions != null) {
+            return searchByPrefix(projectId, queryEmbedding, limit, efSearch, prefixDimensions);
+        }
+        if (quantization == VectorQuantization.BINARY) {
+            return searchBinaryQuantized(projectId, queryEmbedding, limit, efSearch);
+        }
+        knowledgeBaseRepository.configureHnswSearch(Math.max(efSearch, limit), iterativeScan);
+        // Вектор запроса уходит бинарным float4[]; JdbcTemplate работает в той же транзакции (ef_search)
+        return jdbcTemplate.query(
+                "SELECT id FROM knowledge_base " +
+                "WHERE project_id = ? AND embedding IS NOT NULL " +
+                "ORDER BY embedding <=> CAST(? AS vector(768)) " +
+                "LIMIT ?",
+                ps -> {
+                    ps.setLong(1, projectId);
+                    VectorCodec.bind(ps, 2, queryEmbedding);
+                    ps.setInt(3, limit);
+                },
+                (rs, rowNum) -> rs.getLong(1));
+    }
+    
+    /**
+     * Грубый поиск rerankFactor * limit кандидатов по битовым кодам и точное переранжирование
+     */
+    private List<Long> searchBinaryQuantized(Long projectId, float[] queryEmbedding, int limit, int efSearch) {
+        int candidates = limit * Math.max(rerankFactor, 1);
+        knowledgeBaseRepository.configureHnswSearch(Math.max(efSearch, candidates), iterativeScan);
+        return jdbcTemplate.query(
+                "SELECT id FROM (" +
+                "  SELECT id, embedding FROM knowledge_base " +
+                "  WHERE project_id = ? AND embedding IS NOT NULL " +
+                "  ORDER BY binary_quantize(embedding)::bit(768) <~> binary_quantize(CAST(? AS vector(768))) " +
+                "  LIMIT ?" +
+                ") candidates " +
+                "ORDER BY embedding <=> CAST(? AS vector(768)) " +
+                "LIMIT ?",
+                ps -> {
+                    ps.setLong(1, projectId);
+                    VectorCodec.bind(ps, 2, queryEmbedding);
+                    ps.setInt(3, candidates);
+                    VectorCodec.bind(ps, 4, queryEmbedding);
+                    ps.setInt(5, limit);
+                },
+                (rs, rowNum) -> rs.getLong(1));
+    }
+    
+    /**
+     * Грубый поиск rerankFactor * limit кандидатов по Matryoshka-префиксу и точное переранжирование
+     * Длина префикса подставляется литералом: условие должно совпасть с частичным индексом
+     */
+    private List<Long> searchByPrefix(Long projectId, float[] queryEmbedding, int limit, int efSearch,
+                                      int prefixDimensions) {
+        if (!MatryoshkaPrefix.SUPPORTED_DIMENSIONS.contains(prefixDimensions)) {
+            throw new IllegalStateException("Unsupported embedding prefix length: " + prefixDimensions);
+        }
+        int candidates = limit * Math.max(rerankFactor, 1);
+        knowledgeBaseRepository.configureHnswSearch(Math.max(efSearch, candidates), iterativeScan);
+        String prefixType = "vector(" + prefixDimensions + ")";
+        return jdbcTemplate.query(
+                "SELECT id FROM (" +
+                "  SELECT id, embedding FROM knowledge_base " +
+                "  WHERE project_id = ? AND vector_dims(embedding_prefix) = " + prefixDimensions + " " +
+                "  ORDER BY embedding_prefix::" + prefixType + " <=> CAST(? AS " + prefixType + ") " +
+                "  LIMIT ?" +
+                ") candidates " +
+                "ORDER BY embedding <=> CAST(? AS vector(768)) " +
+                "LIMIT ?",
+                ps -> {
+                    ps.setLong(1, projectId);
+                    VectorCodec.bind(ps, 2, MatryoshkaPrefix.of(queryEmbedding, prefixDimensions));
+                    ps.setInt(3, candidates);
+                    VectorCodec.bind(ps, 4, queryEmbedding);
+                    ps.setInt(5, limit);
+                },
+                (rs, rowNum) -> rs.getLong(1));
+    }
+}
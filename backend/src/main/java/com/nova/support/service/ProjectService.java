@@ -1,8 +1,10 @@
 package com.nova.support.service;
 
 import com.nova.support.domain.entity.Project;
+import com.nova.support.domain.enums.VectorBackend;
 import com.nova.support.dto.ProjectRequest;
 import com.nova.support.dto.ProjectResponse;
+import com.nova.support.repository.KnowledgeBaseRepository;
 import com.nova.support.repository.ProjectRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,6 +13,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Objects;
 import java.util.UUID;
 
 @Slf4j
@@ -19,6 +22,8 @@ import java.util.UUID;
 public class ProjectService {
     
     private final ProjectRepository projectRepository;
+    private final KnowledgeBaseRepository knowledgeBaseRepository;
+    private final InMemoryVectorIndex inMemoryVectorIndex;
     
     public Page<ProjectResponse> getAllProjects(Pageable pageable) {
         return projectRepository.findAll(pageable)
@@ -37,10 +42,17 @@ public class ProjectService {
         project.setName(request.getName());
         project.setWebsiteUrl(request.getWebsiteUrl());
         project.setApiKey(generateApiKey());
+        if (request.getVectorBackend() != null) {
+            project.setVectorBackend(request.getVectorBackend());
+        }
+        if (request.getEmbeddingPrefixDims() != null) {
+            project.setEmbeddingPrefixDims(toPrefixDims(request.getEmbeddingPrefixDims()));
+        }
         
         project = projectRepository.save(project);
         log.info("Created project: {} with API key: {}", project.getName(), project.getApiKey());
         
+        applyVectorBackend(project);
         return mapToResponse(project);
     }
     
@@ -52,7 +64,29 @@ public class ProjectService {
         project.setName(request.getName());
         project.setWebsiteUrl(request.getWebsiteUrl());
         
-        project = projectRepository.save(project);
+        boolean backendChanged = request.getVectorBackend() != null
+                && request.getVectorBackend() != project.getVectorBackend();
+        if (backendChanged) {
+            log.info("Switching vector backend of project {}: {} -> {}",
+                    id, project.getVectorBackend(), request.getVectorBackend());
+            project.setVectorBackend(request.getVectorBackend());
+        }
+        
+        boolean prefixChanged = request.getEmbeddingPrefixDims() != null
+                && !Objects.equals(toPrefixDims(request.getEmbeddingPrefixDims()), project.getEmbeddingPrefixDims());
+        if (prefixChanged) {
+            project.setEmbeddingPrefixDims(toPrefixDims(request.getEmbeddingPrefixDims()));
+        }
+        
+        project = projectRepository.saveAndFlush(project);
+        if (prefixChanged) {
+            int updated = knowledgeBaseRepository.refreshEmbeddingPrefixes(id);
+            log.info("Embedding prefix of project {} set to {}, recomputed {} entries",
+                    id, project.getEmbeddingPrefixDims() != null ? project.getEmbeddingPrefixDims() : "full", updated);
+        }
+        if (backendChanged || prefixChanged) {
+            applyVectorBackend(project);
+        }
         return mapToResponse(project);
     }
     
@@ -62,6 +96,7 @@ public class ProjectService {
             throw new RuntimeException("Project not found");
         }
         projectRepository.deleteById(id);
+        inMemoryVectorIndex.drop(id);
     }
     
     @Transactional
@@ -79,6 +114,31 @@ public class ProjectService {
         return mapToResponse(project);
     }
     
+    /**
+     * Построить или освободить граф HNSW в памяти под выбранный бэкенд поиска
+     */
+    private void applyVectorBackend(Project project) {
+        if (project.getVectorBackend() == VectorBackend.IN_MEMORY) {
+            inMemoryVectorIndex.load(project.getId());
+        } else {
+            inMemoryVectorIndex.drop(project.getId());
+        }
+    }
+    
+    /**
+     * Длина Matryoshka-префикса из запроса: 0 - полный вектор (null в БД)
+     */
+    private Integer toPrefixDims(int requested) {
+        if (requested == 0) {
+            return null;
+        }
+        if (!MatryoshkaPrefix.SUPPORTED_DIMENSIONS.contains(requested)) {
+            throw new RuntimeException("Unsupported embedding prefix length: " + requested
+                    + " (supported: " + MatryoshkaPrefix.SUPPORTED_DIMENSIONS + ")");
+        }
+        return requested;
+    }
+    
     private String generateApiKey() {
         return "sk-" + UUID.randomUUID().toString().replace("-", "");
     }
@@ -89,6 +149,8 @@ public class ProjectService {
                 .name(project.getName())
                 .apiKey(project.getApiKey())
                 .websiteUrl(project.getWebsiteUrl())
+                .vectorBackend(project.getVectorBackend())
+                .embeddingPrefixDims(project.getEmbeddingPrefixDims())
                 .createdAt(project.getCreatedAt())
                 .build();
     }
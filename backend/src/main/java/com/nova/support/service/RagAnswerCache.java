@@ -0,0 +1,141 @@
+package com.nova.support.service;
+
+import com.nova.support.dto.RagAnswerResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Кэш RAG ответов оператору по ключу (тикет, сообщения bucket, версия базы знаний проекта, модели)
+ * - хранится последний ответ каждого тикета (in-memory LRU): изменение bucket или базы знаний
+ *   меняет ключ, и ответ генерируется заново
+ * - одинаковые одновременные запросы (несколько вкладок на одном тикете) схлопываются:
+ *   генерацию выполняет один поток, остальные ждут её результат
+ * Схлопывание действует в пределах инстанса
+ */
+@Slf4j
+@Service
+public class RagAnswerCache {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingVersions embeddingVersions;
+    private final LruCache<Long, CachedAnswer> memory;
+    private final Map<Key, CompletableFuture<RagAnswerResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter shared;
+
+    @Value("${ollama.model.chat}")
+    private String chatModel;
+
+    public RagAnswerCache(
+            JdbcTemplate jdbcTemplate,
+            EmbeddingVersions embeddingVersions,
+            MeterRegistry meterRegistry,
+            @Value("${rag.answer-cache.max-entries:1000}") int maxEntries) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.embeddingVersions = embeddingVersions;
+        this.memory = new LruCache<>(maxEntries);
+        this.hits = counter(meterRegistry, "hit");
+        this.misses = counter(meterRegistry, "miss");
+        this.shared = counter(meterRegistry, "shared");
+        Gauge.builder("rag.answer.cache.entries", memory, LruCache::size)
+                .description("Tickets with a cached RAG answer")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Получить ответ из кэша, дождаться уже идущей генерации или сгенерировать ответ
+     *
+     * @param bucketMessageIds ID сообщений bucket (в порядке bucket)
+     * @param generator генерация при промахе; исключение не кэшируется и передаётся всем ожидающим
+     */
+    public RagAnswerResponse getOrGenerate(Long ticketId, Long projectId, String bucketMessageIds,
+                                           Supplier<RagAnswerResponse> generator) {
+        Key key = new Key(ticketId, bucketMessageIds, knowledgeBaseVersion(projectId),
+                chatModel, embeddingVersions.active().cacheKey());
+
+        RagAnswerResponse cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        CompletableFuture<RagAnswerResponse> flight = new CompletableFuture<>();
+        CompletableFuture<RagAnswerResponse> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            shared.increment();
+            return await(running);
+        }
+        try {
+            // Генерация могла завершиться между проверкой кэша и регистрацией
+            cached = lookup(key);
+            if (cached == null) {
+                misses.increment();
+                cached = generator.get();
+                memory.put(ticketId, new CachedAnswer(key, cached));
+            }
+            flight.complete(cached);
+            return cached;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Забыть ответ тикета (bucket очищен оператором)
+     */
+    public void invalidate(Long ticketId) {
+        memory.remove(ticketId);
+    }
+
+    private RagAnswerResponse lookup(Key key) {
+        CachedAnswer entry = memory.get(key.ticketId());
+        return entry != null && entry.key().equals(key) ? entry.response() : null;
+    }
+
+    private long knowledgeBaseVersion(Long projectId) {
+        List<Long> version = jdbcTemplate.queryForList(
+                "SELECT version FROM knowledge_base_versions WHERE project_id = ?", Long.class, projectId);
+        return version.isEmpty() ? 0 : version.get(0);
+    }
+
+    private static RagAnswerResponse await(CompletableFuture<RagAnswerResponse> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("rag.answer.cache.requests")
+                .tag("result", result)
+                .description("RAG answer cache lookups (shared - joined an in-flight generation)")
+                .register(meterRegistry);
+    }
+
+    private record Key(Long ticketId, String bucketMessageIds, long knowledgeBaseVersion,
+                       String chatModel, String embeddingModel) {
+    }
+
+    private record CachedAnswer(Key key, RagAnswerResponse response) {
+    }
+}
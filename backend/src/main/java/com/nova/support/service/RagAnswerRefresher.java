@@ -0,0 +1,67 @@
+package com.nova.support.service;
+
+import com.nova.support.domain.entity.AiJob;
+import com.nova.support.domain.enums.AiJobType;
+import com.nova.support.dto.RagAnswerResponse;
+import com.nova.support.repository.ChatMessageRepository;
+import com.nova.support.repository.TicketRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Предварительный расчёт RAG ответа оператору (задача RAG_REFRESH)
+ * Задача ставится с задержкой после каждого сообщения клиента и переносится следующими сообщениями,
+ * поэтому серия сообщений даёт одну генерацию. Готовый ответ рассылается в /topic/tickets/{id}/rag-updated
+ * и остаётся в RagAnswerCache для GET /rag-answer
+ * Ответ, устаревший за время генерации (bucket изменился), не рассылается
+ */
+@Slf4j
+@Service
+public class RagAnswerRefresher implements AiJobHandler {
+
+    private final TicketRepository ticketRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final TicketService ticketService;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    public RagAnswerRefresher(TicketRepository ticketRepository,
+                              ChatMessageRepository chatMessageRepository,
+                              @Lazy TicketService ticketService,
+                              SimpMessagingTemplate messagingTemplate) {
+        this.ticketRepository = ticketRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.ticketService = ticketService;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @Override
+    public Set<AiJobType> getSupportedTypes() {
+        return EnumSet.of(AiJobType.RAG_REFRESH);
+    }
+
+    @Override
+    public void handle(AiJob job) {
+        Long ticketId = job.getTicketId();
+        if (!ticketRepository.existsById(ticketId)) {
+            log.warn("Ticket {} was deleted before {} job {}", ticketId, job.getJobType(), job.getId());
+            return;
+        }
+
+        RagAnswerResponse answer = ticketService.generateRagAnswer(ticketId);
+
+        String bucket = chatMessageRepository.findRagBucketIds(ticketId).stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+        if (!bucket.equals(answer.getMessageIds())) {
+            log.info("Discarding stale RAG answer for ticket {}: bucket changed during generation", ticketId);
+            return;
+        }
+        messagingTemplate.convertAndSend("/topic/tickets/" + ticketId + "/rag-updated", answer);
+    }
+}
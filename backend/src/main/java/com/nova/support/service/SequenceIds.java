@@ -0,0 +1,46 @@
+package com.nova.support.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Резервирование идентификаторов для JDBC батчей из последовательностей с шагом BLOCK_SIZE (см. V18)
+ * Семантика pooled, как у Hibernate: nextval = N резервирует диапазон (N - BLOCK_SIZE, N]
+ */
+final class SequenceIds {
+
+    /**
+     * Шаг последовательностей knowledge_base_id_seq и knowledge_chunks_id_seq (= allocationSize сущностей)
+     */
+    static final int BLOCK_SIZE = 50;
+
+    private SequenceIds() {
+    }
+
+    /**
+     * Зарезервировать count идентификаторов из последовательности
+     */
+    static long[] allocate(JdbcTemplate jdbcTemplate, String sequence, int count) {
+        long[] ids = new long[count];
+        if (count == 0) {
+            return ids;
+        }
+        int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        List<Long> highs = jdbcTemplate.queryForList(
+                "SELECT nextval(CAST(? AS regclass)) FROM generate_series(1, ?)", Long.class, sequence, blocks);
+        int next = 0;
+        for (long high : highs) {
+            // Первый nextval новой последовательности возвращает 1 - диапазон не уходит в отрицательные
+            for (long id = Math.max(1, high - BLOCK_SIZE + 1); id <= high && next < count; id++) {
+                ids[next++] = id;
+            }
+        }
+        if (next < count) {
+            // Только если блок оказался неполным (первый nextval новой последовательности)
+            long[] rest = allocate(jdbcTemplate, sequence, count - next);
+            System.arraycopy(rest, 0, ids, next, rest.length);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,154 @@
+package com.nova.support.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nova.support.domain.enums.Priority;
+import com.nova.support.domain.enums.Sentiment;
+import com.nova.support.domain.enums.TicketStatus;
+import com.nova.support.dto.TicketListItem;
+import com.nova.support.dto.TicketListPage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Список тикетов для дашборда
+ * - читаются только колонки карточки списка: тексты обрезаются в запросе и не тянутся целиком
+ * - keyset пагинация по (created_at, id) внутри проекта (индекс idx_tickets_project_created_at_id):
+ *   глубина страницы не влияет на стоимость запроса
+ * - count(*) не выполняется; оценка числа тикетов берётся из плана запроса по запросу клиента
+ * Условия фильтров подставляются в SQL только если фильтр задан, чтобы план не зависел от
+ * пустых параметров
+ */
+@Slf4j
+@Service
+public class TicketListService {
+
+    private static final String COLUMNS =
+            "SELECT id, status, priority, sentiment, customer_name, " +
+            "LEFT(ai_summary, ?) AS summary_preview, " +
+            "LEFT(COALESCE(original_text, transcribed_text), ?) AS text_preview, " +
+            "audio_url IS NOT NULL AS has_audio, image_url IS NOT NULL AS has_image, " +
+            "is_closed, created_at " +
+            "FROM tickets ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${tickets.list.default-limit:100}")
+    private int defaultLimit;
+
+    @Value("${tickets.list.max-limit:500}")
+    private int maxLimit;
+
+    @Value("${tickets.list.summary-preview-length:150}")
+    private int summaryPreviewLength;
+
+    @Value("${tickets.list.text-preview-length:80}")
+    private int textPreviewLength;
+
+    public TicketListService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Страница тикетов проекта от новых к старым
+     *
+     * @param beforeCreatedAt курсор: created_at последнего тикета предыдущей страницы (вместе с beforeId)
+     * @param beforeId курсор: id последнего тикета предыдущей страницы
+     * @param estimateCount добавить оценку числа тикетов по фильтру
+     */
+    public TicketListPage listTickets(Long projectId, TicketStatus status, Priority priority,
+                                      LocalDateTime beforeCreatedAt, Long beforeId,
+                                      Integer limit, boolean estimateCount) {
+        if ((beforeCreatedAt == null) != (beforeId == null)) {
+            throw new RuntimeException("beforeCreatedAt and beforeId must be specified together");
+        }
+        int pageSize = limit == null || limit <= 0 ? defaultLimit : Math.min(limit, maxLimit);
+
+        StringBuilder filter = new StringBuilder("WHERE project_id = ?");
+        List<Object> filterArgs = new ArrayList<>();
+        filterArgs.add(projectId);
+        if (status != null) {
+            filter.append(" AND status = ?");
+            filterArgs.add(status.name());
+        }
+        if (priority != null) {
+            filter.append(" AND priority = ?");
+            filterArgs.add(priority.name());
+        }
+
+        StringBuilder sql = new StringBuilder(COLUMNS).append(filter);
+        List<Object> args = new ArrayList<>();
+        args.add(summaryPreviewLength);
+        args.add(textPreviewLength);
+        args.addAll(filterArgs);
+        if (beforeId != null) {
+            sql.append(" AND (created_at, id) < (?, ?)");
+            args.add(Timestamp.valueOf(beforeCreatedAt));
+            args.add(beforeId);
+        }
+        // Лишняя строка показывает, есть ли следующая страница
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT ?");
+        args.add(pageSize + 1);
+
+        List<TicketListItem> items = jdbcTemplate.query(sql.toString(), this::mapItem, args.toArray());
+        boolean hasMore = items.size() > pageSize;
+        if (hasMore) {
+            items = items.subList(0, pageSize);
+        }
+
+        return TicketListPage.builder()
+                .items(items)
+                .hasMore(hasMore)
+                .estimatedTotal(estimateCount ? estimateCount(filter.toString(), filterArgs) : null)
+                .build();
+    }
+
+    /**
+     * Оценка числа строк по фильтру из плана запроса (Plan Rows): стоит как планирование,
+     * точность - как у статистики ANALYZE
+     */
+    private Long estimateCount(String filter, List<Object> filterArgs) {
+        String plan = jdbcTemplate.queryForObject(
+                "EXPLAIN (FORMAT JSON) SELECT 1 FROM tickets " + filter,
+                String.class, filterArgs.toArray());
+        try {
+            JsonNode rows = objectMapper.readTree(plan).path(0).path("Plan").path("Plan Rows");
+            return rows.isMissingNode() ? null : rows.asLong();
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to parse ticket count estimate: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private TicketListItem mapItem(ResultSet rs, int rowNum) throws SQLException {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        return new TicketListItem(
+                rs.getLong("id"),
+                enumValue(TicketStatus.class, rs.getString("status")),
+                enumValue(Priority.class, rs.getString("priority")),
+                enumValue(Sentiment.class, rs.getString("sentiment")),
+                rs.getString("customer_name"),
+                rs.getString("summary_preview"),
+                rs.getString("text_preview"),
+                rs.getBoolean("has_audio"),
+                rs.getBoolean("has_image"),
+                (Boolean) rs.getObject("is_closed"),
+                createdAt != null ? createdAt.toLocalDateTime() : null);
+    }
+
+    private static <E extends Enum<E>> E enumValue(Class<E> type, String value) {
+        return value != null ? Enum.valueOf(type, value) : null;
+    }
+}
@@ -0,0 +1,414 @@
+package com.nova.support.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nova.support.domain.entity.AiJob;
+import com.nova.support.domain.entity.ChatMessage;
+import com.nova.support.domain.entity.Ticket;
+import com.nova.support.domain.enums.AiJobStatus;
+import com.nova.support.domain.enums.AiJobType;
+import com.nova.support.domain.enums.LlmRequestPriority;
+import com.nova.support.domain.enums.Priority;
+import com.nova.support.domain.enums.ProcessingStage;
+import com.nova.support.domain.enums.Sentiment;
+import com.nova.support.domain.enums.TicketStatus;
+import com.nova.support.dto.ChatMessageResponse;
+import com.nova.support.dto.TicketAnalysis;
+import com.nova.support.dto.TicketResponse;
+import com.nova.support.repository.ChatMessageRepository;
+import com.nova.support.repository.TicketRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * AI обработка тикетов через надёжную очередь задач (AiJobService)
+ * TRANSCRIPTION / IMAGE_DESCRIPTION -> ANALYSIS (structured-output анализ) + RAG_ANSWER
+ * Каждый шаг - отдельная задача со своими повторами; когда задач тикета не осталось, тикет открывается
+ * Прогресс отправляется в /topic/tickets/{projectId}
+ */
+@Slf4j
+@Service
+public class TicketProcessingPipeline implements AiJobHandler {
+
+    private static final String IMAGE_PROMPT =
+        "Опиши что изображено на этой картинке. Это скриншот или фото проблемы пользователя.";
+
+    private final TicketRepository ticketRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final WhisperService whisperService;
+    private final TranscriptionCache transcriptionCache;
+    private final OllamaService ollamaService;
+    private final MinioService minioService;
+    private final TicketService ticketService;
+    private final AiJobService aiJobService;
+    private final OllamaAdmission ollamaAdmission;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final AnswerStreamRelay answerStreamRelay;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public TicketProcessingPipeline(
+        TicketRepository ticketRepository,
+        ChatMessageRepository chatMessageRepository,
+        WhisperService whisperService,
+        TranscriptionCache transcriptionCache,
+        OllamaService ollamaService,
+        MinioService minioService,
+        @Lazy TicketService ticketService,
+        AiJobService aiJobService,
+        OllamaAdmission ollamaAdmission,
+        SimpMessagingTemplate messagingTemplate,
+        AnswerStreamRelay answerStreamRelay,
+        ObjectMapper objectMapper,
+        TransactionTemplate transactionTemplate
+    ) {
+        this.ticketRepository = ticketRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.whisperService = whisperService;
+        this.transcriptionCache = transcriptionCache;
+        this.ollamaService = ollamaService;
+        this.minioService = minioService;
+        this.ticketService = ticketService;
+        this.aiJobService = aiJobService;
+        this.ollamaAdmission = ollamaAdmission;
+        this.messagingTemplate = messagingTemplate;
+        this.answerStreamRelay = answerStreamRelay;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public Set<AiJobType> getSupportedTypes() {
+        return EnumSet.of(AiJobType.TRANSCRIPTION, AiJobType.IMAGE_DESCRIPTION,
+            AiJobType.ANALYSIS, AiJobType.RAG_ANSWER);
+    }
+
+    /**
+     * Поставить AI задачи тикета в очередь (вызывается в транзакции приёма тикета)
+     * Анализ голосового тикета ставится после транскрибации
+     * @return количество поставленных задач (0 - обрабатывать нечего)
+     */
+    public int enqueue(Ticket ticket) {
+        int jobs = 0;
+        if (ticket.getAudioUrl() != null) {
+            aiJobService.enqueueForTicket(AiJobType.TRANSCRIPTION, ticket.getId());
+            jobs++;
+        } else if (!buildFullText(ticket).isEmpty()) {
+            jobs += enqueueTextJobs(ticket.getId());
+        }
+        if (ticket.getImageUrl() != null) {
+            aiJobService.enqueueForTicket(AiJobType.IMAGE_DESCRIPTION, ticket.getId());
+            jobs++;
+        }
+        return jobs;
+    }
+
+    @Override
+    public void handle(AiJob job) throws Exception {
+        Ticket ticket = ticketRepository.findById(job.getTicketId()).orElse(null);
+        if (ticket == null) {
+            log.warn("Ticket {} was deleted before {} job {}", job.getTicketId(), job.getJobType(), job.getId());
+            return;
+        }
+
+        // Запросы к Ollama встают в очередь с приоритетом тикета (до анализа - MEDIUM)
+        try (var ignored = ollamaAdmission.prioritize(LlmRequestPriority.of(ticket.getPriority()))) {
+            switch (job.getJobType()) {
+                case TRANSCRIPTION -> transcribe(ticket);
+                case IMAGE_DESCRIPTION -> describeImage(ticket);
+                case ANALYSIS -> analyze(ticket);
+                case RAG_ANSWER -> suggestAnswer(ticket);
+                default -> throw new RuntimeException("Unsupported job type: " + job.getJobType());
+            }
+        }
+    }
+
+    @Override
+    public void onFinished(AiJob job) {
+        if (job.getTicketId() == null) {
+            return;
+        }
+        // Транскрибация не удалась - анализируем хотя бы текст клиента
+        if (job.getJobType() == AiJobType.TRANSCRIPTION && job.getStatus() == AiJobStatus.DEAD) {
+            transactionTemplate.executeWithoutResult(status -> ticketRepository.findById(job.getTicketId())
+                .filter(ticket -> !buildFullText(ticket).isEmpty())
+                .ifPresent(ticket -> enqueueTextJobs(ticket.getId())));
+        }
+        completeIfIdle(job.getTicketId());
+    }
+
+    /**
+     * Восстановление:
+     * - тикеты в статусе NEW (созданы до появления очереди) ставятся в очередь
+     * - тикеты в обработке без незавершённых задач (задачи ушли в dead letter по аренде) открываются
+     */
+    @Scheduled(fixedDelayString = "${ai.jobs.recovery-interval-ms:30000}")
+    public void recoverTickets() {
+        for (Ticket ticket : ticketRepository.findNewTicketsForProcessing()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (ticketRepository.transitionStatus(ticket.getId(), TicketStatus.NEW, TicketStatus.PROCESSING) == 1
+                    && enqueue(ticket) == 0) {
+                    ticketRepository.transitionStatus(ticket.getId(), TicketStatus.PROCESSING, TicketStatus.OPEN);
+                }
+            });
+        }
+        for (Long ticketId : ticketRepository.findProcessingTicketIdsWithoutActiveJobs()) {
+            completeIfIdle(ticketId);
+        }
+    }
+
+    // ===== Шаги обработки =====
+
+    private void transcribe(Ticket ticket) throws IOException {
+        String transcription = transcribeAudio(ticket);
+
+        // Транскрипция и задачи анализа фиксируются одной транзакцией
+        Ticket updated = transactionTemplate.execute(status -> ticketRepository.findById(ticket.getId())
+            .map(t -> {
+                t.setTranscribedText(transcription);
+                Ticket saved = ticketRepository.save(t);
+                if (!buildFullText(saved).isEmpty()) {
+                    enqueueTextJobs(saved.getId());
+                }
+                return saved;
+            })
+            .orElse(null));
+        if (updated == null) {
+            return;
+        }
+
+        if (transcription != null) {
+            updateFirstMessage(updated.getId(), buildFullText(updated), "transcription", transcription);
+        }
+        publishProgress(updated, ProcessingStage.MEDIA_PROCESSED);
+    }
+
+    private void describeImage(Ticket ticket) throws IOException {
+        String imageDescription;
+        try (InputStream imageStream = minioService.getFileAsStream(ticket.getImageUrl())) {
+            // Описать изображение через Ollama (gemma3:4b поддерживает vision)
+            imageDescription = ollamaService.analyzeImage(imageStream.readAllBytes(), IMAGE_PROMPT);
+            log.info("Image analyzed: {}", imageDescription);
+        }
+
+        if (imageDescription != null) {
+            updateFirstMessage(ticket.getId(), null, "imageDescription", imageDescription);
+        }
+        publishProgress(ticket, ProcessingStage.MEDIA_PROCESSED);
+    }
+
+    private void analyze(Ticket ticket) {
+        String fullText = buildFullText(ticket);
+        if (fullText.isEmpty()) {
+            return;
+        }
+
+        // Summary, sentiment и приоритет - одним structured-output запросом
+        TicketAnalysis analysis = ollamaService.analyzeTicket(fullText);
+        String summary = null;
+        Sentiment sentiment;
+        BigDecimal sentimentScore;
+        Priority priority;
+        if (analysis != null) {
+            summary = analysis.summary();
+            sentiment = analysis.sentiment();
+            sentimentScore = BigDecimal.valueOf(analysis.sentimentScore()).setScale(2, RoundingMode.HALF_UP);
+            priority = analysis.priority();
+        } else {
+            // Модель не вернула валидный анализ - эвристики по тексту
+            log.warn("Falling back to heuristic analysis for ticket {}", ticket.getId());
+            sentiment = Sentiment.NEUTRAL;
+            sentimentScore = BigDecimal.ZERO;
+            priority = determinePriority(sentiment, fullText);
+        }
+
+        String finalSummary = summary;
+        Ticket updated = updateTicket(ticket.getId(), t -> {
+            t.setAiSummary(finalSummary);
+            t.setSentiment(sentiment);
+            t.setSentimentScore(sentimentScore);
+            t.setPriority(priority);
+        });
+        if (updated != null) {
+            publishProgress(updated, ProcessingStage.ANALYZED);
+        }
+    }
+
+    private void suggestAnswer(Ticket ticket) {
+        String fullText = buildFullText(ticket);
+        if (fullText.isEmpty()) {
+            return;
+        }
+
+        // RAG: поиск подходящего ответа из базы знаний (первый ответ - нужно приветствие)
+        // Фрагменты транслируются в answer-stream по мере генерации, полный ответ сохраняется в suggested_answer
+        String suggestedAnswer;
+        try (AnswerStreamRelay.Stream stream = answerStreamRelay.open(ticket.getId(), AnswerStreamRelay.SUGGESTED)) {
+            suggestedAnswer = ticketService.findSuggestedAnswer(ticket.getProject().getId(), fullText, true, stream);
+        }
+
+        Ticket updated = updateTicket(ticket.getId(), t -> t.setSuggestedAnswer(suggestedAnswer));
+        if (updated != null) {
+            publishProgress(updated, ProcessingStage.ANSWER_SUGGESTED);
+        }
+    }
+
+    private String transcribeAudio(Ticket ticket) throws IOException {
+        String audioUrl = ticket.getAudioUrl();
+        long audioSize = minioService.getFileSize(audioUrl);
+
+        // Транскрибировать через Whisper (только если файл больше 1KB)
+        if (audioSize <= 1024) {
+            log.warn("Audio file too small for transcription: {} bytes", audioSize);
+            return null;
+        }
+
+        // То же аудио (по хэшу содержимого) уже транскрибировалось - Whisper не вызывается
+        String transcription = transcriptionCache.getOrTranscribe(
+            MinioService.contentHashOf(audioUrl), ticket.getLanguage(), () -> {
+                // Аудио передаётся из MinIO в Whisper потоком, без загрузки в память
+                try (InputStream audioStream = minioService.getFileAsStream(audioUrl)) {
+                    String filename = audioUrl.substring(audioUrl.lastIndexOf('/') + 1);
+                    return whisperService.transcribe(audioStream, filename, audioSize, ticket.getLanguage());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        if (transcription == null || transcription.trim().isEmpty()) {
+            return null;
+        }
+        log.info("Audio transcribed: {} bytes -> {} chars", audioSize, transcription.length());
+        return transcription;
+    }
+
+    private int enqueueTextJobs(Long ticketId) {
+        aiJobService.enqueueForTicketIfAbsent(AiJobType.ANALYSIS, ticketId);
+        aiJobService.enqueueForTicketIfAbsent(AiJobType.RAG_ANSWER, ticketId);
+        return 2;
+    }
+
+    /**
+     * Открыть тикет, если у него не осталось незавершённых задач
+     */
+    private void completeIfIdle(Long ticketId) {
+        if (aiJobService.hasActiveJobs(ticketId)) {
+            return;
+        }
+        if (ticketRepository.transitionStatus(ticketId, TicketStatus.PROCESSING, TicketStatus.OPEN) == 1) {
+            ticketRepository.findById(ticketId).ifPresent(ticket -> {
+                publishProgress(ticket, ProcessingStage.COMPLETED);
+                log.info("Ticket {} processed", ticketId);
+            });
+        }
+    }
+
+    /**
+     * Дополнить первое сообщение чата результатом шага (транскрипция, описание изображения)
+     * Задачи тикета выполняются параллельно, поэтому metadata дополняется под блокировкой строки
+     */
+    private void updateFirstMessage(Long ticketId, String text, String metadataKey, String metadataValue) {
+        ChatMessage saved = transactionTemplate.execute(status -> chatMessageRepository
+            .findFirstByTicketIdOrderByIdAsc(ticketId)
+            .map(message -> {
+                if (text != null) {
+                    message.setMessage(text);
+                }
+                message.setMetadata(mergeMetadata(message.getMetadata(), metadataKey, metadataValue));
+                return chatMessageRepository.save(message);
+            })
+            .orElse(null));
+
+        if (saved != null) {
+            messagingTemplate.convertAndSend(
+                "/topic/tickets/" + ticketId + "/messages",
+                ChatMessageResponse.from(saved)
+            );
+        }
+    }
+
+    private String mergeMetadata(String metadata, String key, String value) {
+        Map<String, Object> metadataMap = new HashMap<>();
+        if (metadata != null && !metadata.isBlank()) {
+            try {
+                metadataMap.putAll(objectMapper.readValue(metadata, new TypeReference<Map<String, Object>>() {}));
+            } catch (JsonProcessingException e) {
+                log.warn("Failed to parse message metadata, overwriting it", e);
+            }
+        }
+        metadataMap.put(key, value);
+        try {
+            return objectMapper.writeValueAsString(metadataMap);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize metadata", e);
+        }
+    }
+
+    /**
+     * Применить результаты шага к свежей версии тикета (короткая транзакция)
+     */
+    private Ticket updateTicket(Long ticketId, Consumer<Ticket> changes) {
+        return transactionTemplate.execute(status -> ticketRepository.findById(ticketId)
+            .map(ticket -> {
+                changes.accept(ticket);
+                return ticketRepository.save(ticket);
+            })
+            .orElse(null));
+    }
+
+    private void publishProgress(Ticket ticket, ProcessingStage stage) {
+        TicketResponse response = TicketResponse.from(ticket);
+        response.setProcessingStage(stage);
+        messagingTemplate.convertAndSend("/topic/tickets/" + ticket.getProject().getId(), response);
+        log.info("Ticket {} reached stage {}", ticket.getId(), stage);
+    }
+
+    private String buildFullText(Ticket ticket) {
+        StringBuilder fullText = new StringBuilder();
+        if (ticket.getOriginalText() != null) {
+            fullText.append(ticket.getOriginalText());
+        }
+        if (ticket.getTranscribedText() != null) {
+            fullText.append(" ").append(ticket.getTranscribedText());
+        }
+        return fullText.toString().trim();
+    }
+
+    private Priority determinePriority(Sentiment sentiment, String text) {
+        String lower = text.toLowerCase();
+
+        // Критические слова
+        if (lower.contains("urgent") || lower.contains("срочно") ||
+            lower.contains("critical") || lower.contains("критично") ||
+            lower.contains("не работает") || lower.contains("broken")) {
+            return Priority.CRITICAL;
+        }
+
+        // Высокий приоритет для негативных тикетов
+        if (sentiment == Sentiment.NEGATIVE) {
+            return Priority.HIGH;
+        }
+
+        // Средний приоритет по умолчанию
+        if (lower.contains("важно") || lower.contains("important")) {
+            return Priority.MEDIUM;
+        }
+
+        return Priority.LOW;
+    }
+}
@@ -3,15 +3,14 @@ package com.nova.support.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.nova.support.domain.entity.KnowledgeBase;
 import com.nova.support.domain.entity.Project;
 import com.nova.support.domain.entity.Ticket;
 import com.nova.support.domain.entity.ChatMessage;
 import com.nova.support.domain.entity.ChatMessage.SenderType;
-import com.nova.support.domain.enums.Priority;
-import com.nova.support.domain.enums.Sentiment;
+import com.nova.support.domain.enums.AiJobType;
+import com.nova.support.domain.enums.LlmRequestPriority;
+import com.nova.support.domain.enums.ProcessingStage;
 import com.nova.support.domain.enums.TicketStatus;
-import com.nova.support.repository.KnowledgeBaseRepository;
 import com.nova.support.repository.ProjectRepository;
 import com.nova.support.repository.TicketRepository;
 import com.nova.support.repository.ChatMessageRepository;
@@ -19,19 +18,25 @@ import com.nova.support.dto.TicketRequest;
 import com.nova.support.dto.TicketResponse;
 import com.nova.support.dto.RagAnswerResponse;
 import com.nova.support.dto.ChatMessageResponse;
+import com.nova.support.dto.KnowledgePassage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.multipart.MultipartFile;
 
-import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Arrays;
 import java.util.Base64;
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -41,168 +46,164 @@ public class TicketService {
     
     private final TicketRepository ticketRepository;
     private final ProjectRepository projectRepository;
-    private final KnowledgeBaseRepository knowledgeBaseRepository;
+    private final KnowledgeBaseService knowledgeBaseService;
     private final ChatMessageRepository chatMessageRepository;
-    private final WhisperService whisperService;
     private final OllamaService ollamaService;
+    private final OllamaAdmission ollamaAdmission;
     private final MinioService minioService;
+    private final TicketProcessingPipeline ticketProcessingPipeline;
+    private final AiJobWorker aiJobWorker;
+    private final AiJobService aiJobService;
+    private final RagAnswerCache ragAnswerCache;
+    private final AnswerStreamRelay answerStreamRelay;
     private final SimpMessagingTemplate messagingTemplate;
     private final ObjectMapper objectMapper;
     
+    @Value("${rag.debounce:2s}")
+    private Duration ragDebounce;
+    
+    /**
+     * Приём тикета (JSON, медиа в base64): сохранить тикет и медиа, вернуть ответ сразу
+     * AI обработка ставится в очередь задач и выполняется воркерами (AiJobWorker)
+     */
     @Transactional
     public TicketResponse processTicket(TicketRequest request) {
         // 1. Найти проект по API ключу
         Project project = projectRepository.findByApiKey(request.getProjectApiKey())
                 .orElseThrow(() -> new RuntimeException("Invalid API key"));
         
-        Ticket ticket = new Ticket();
-        ticket.setProject(project);
-        ticket.setStatus(TicketStatus.OPEN);
-        ticket.setIsClosed(false);
-        
-        // Установить session ID (из запроса или сгенерировать новый)
-        if (request.getSessionId() != null && !request.getSessionId().isEmpty()) {
-            ticket.setSessionId(request.getSessionId());
-        } else {
-            ticket.setSessionId(java.util.UUID.randomUUID().toString());
-        }
-        
-        String fullText = "";
-        
-        // 2. Обработка текста
-        if (request.getText() != null && !request.getText().isEmpty()) {
-            ticket.setOriginalText(request.getText());
-            fullText = request.getText();
-        }
-        
-        // 3. Обработка аудио (если есть)
+        // 2. Сохранить аудио в MinIO (транскрибация - отдельной задачей)
+        String audioUrl = null;
         if (request.getAudioBase64() != null && !request.getAudioBase64().isEmpty()) {
             try {
                 byte[] audioBytes = Base64.getDecoder().decode(request.getAudioBase64());
-                
-                // Сохранить аудио в MinIO
-                String audioUrl = minioService.uploadFile(audioBytes, "audio.webm", "audio/webm");
-                ticket.setAudioUrl(audioUrl);
-                
-                // Транскрибировать через Whisper (только если файл больше 1KB)
-                if (audioBytes.length > 1024) {
-                    try {
-                        String transcription = whisperService.transcribe(audioBytes, request.getLanguage());
-                        if (transcription != null && !transcription.trim().isEmpty()) {
-                            ticket.setTranscribedText(transcription);
-                            fullText += " " + transcription;
-                            log.info("Audio transcribed successfully: {} bytes -> {} chars", audioBytes.length, transcription.length());
-                        }
-                    } catch (Exception whisperError) {
-                        log.warn("Whisper transcription failed, continuing without transcription: {}", whisperError.getMessage());
-                        // Продолжаем без транскрипции, не прерываем создание тикета
-                    }
-                } else {
-                    log.warn("Audio file too small for transcription: {} bytes", audioBytes.length);
-                }
-                
+                audioUrl = minioService.uploadFile(audioBytes, "audio.webm", "audio/webm");
             } catch (Exception e) {
-                log.error("Failed to process audio", e);
+                log.error("Failed to store audio", e);
                 // Не прерываем создание тикета из-за ошибки аудио
             }
         }
         
-        // 4. Обработка изображения (если есть)
-        String imageDescription = null;
+        // 3. Сохранить изображение в MinIO (описание - отдельной задачей)
+        String imageUrl = null;
         if (request.getImageBase64() != null && !request.getImageBase64().isEmpty()) {
             try {
                 byte[] imageBytes = Base64.getDecoder().decode(request.getImageBase64());
-                
-                // Сохранить изображение в MinIO
-                String imageUrl = minioService.uploadFile(imageBytes, "image.png", "image/png");
-                ticket.setImageUrl(imageUrl);
-                
-                // Описать изображение через Ollama (gemma3:4b поддерживает vision)
-                imageDescription = ollamaService.analyzeImage(imageBytes, 
-                    "Опиши что изображено на этой картинке. Это скриншот или фото проблемы пользователя.");
-                // НЕ добавляем в fullText - будет в metadata
-                
-                log.info("Image analyzed: {}", imageDescription);
+                imageUrl = minioService.uploadFile(imageBytes, "image.png", "image/png");
             } catch (Exception e) {
-                log.error("Failed to process image", e);
+                log.error("Failed to store image", e);
             }
         }
         
-        fullText = fullText.trim();
+        return createTicket(project, request, audioUrl, imageUrl);
+    }
+    
+    /**
+     * Приём тикета (multipart/form-data): медиа передаются в MinIO потоком,
+     * без загрузки файлов в память целиком
+     */
+    @Transactional
+    public TicketResponse processTicket(TicketRequest request, MultipartFile audio, MultipartFile image) {
+        Project project = projectRepository.findByApiKey(request.getProjectApiKey())
+                .orElseThrow(() -> new RuntimeException("Invalid API key"));
+        
+        String audioUrl = storeMedia(audio, "audio");
+        String imageUrl = storeMedia(image, "images");
         
-        // 5. Анализ тикета через AI
-        if (!fullText.isEmpty()) {
-            // Генерация summary
-            String summary = ollamaService.generateSummary(fullText);
-            ticket.setAiSummary(summary);
-            
-            // Анализ sentiment
-            String sentimentAnalysis = ollamaService.analyzeSentiment(fullText);
-            parseSentiment(ticket, sentimentAnalysis);
-            
-            // Определение приоритета
-            Priority priority = determinePriority(ticket.getSentiment(), fullText);
-            ticket.setPriority(priority);
-            
-            // RAG: поиск подходящего ответа из базы знаний (первый ответ - нужно приветствие)
-            String suggestedAnswer = findSuggestedAnswer(project.getId(), fullText, true);
-            ticket.setSuggestedAnswer(suggestedAnswer);
+        return createTicket(project, request, audioUrl, imageUrl);
+    }
+    
+    private String storeMedia(MultipartFile file, String folder) {
+        if (file == null || file.isEmpty()) {
+            return null;
+        }
+        try {
+            return minioService.uploadFile(file, folder);
+        } catch (Exception e) {
+            log.error("Failed to store {} file", folder, e);
+            // Не прерываем создание тикета из-за ошибки медиа
+            return null;
+        }
+    }
+    
+    private TicketResponse createTicket(Project project, TicketRequest request, String audioUrl, String imageUrl) {
+        Ticket ticket = new Ticket();
+        ticket.setProject(project);
+        ticket.setStatus(TicketStatus.PROCESSING);
+        ticket.setIsClosed(false);
+        ticket.setLanguage(request.getLanguage());
+        ticket.setAudioUrl(audioUrl);
+        ticket.setImageUrl(imageUrl);
+        
+        // Установить session ID (из запроса или сгенерировать новый)
+        if (request.getSessionId() != null && !request.getSessionId().isEmpty()) {
+            ticket.setSessionId(request.getSessionId());
+        } else {
+            ticket.setSessionId(java.util.UUID.randomUUID().toString());
         }
         
-        // 6. Сохранить тикет
+        // 1. Обработка текста
+        if (request.getText() != null && !request.getText().isEmpty()) {
+            ticket.setOriginalText(request.getText());
+        }
+        
+        // 2. Сохранить тикет
         ticket = ticketRepository.save(ticket);
         
-        // 7. Создать первое сообщение клиента в чате
-        if (!fullText.isEmpty()) {
+        // 3. Создать первое сообщение клиента в чате (транскрипция добавится задачей TRANSCRIPTION)
+        String firstMessageText = firstMessageText(ticket);
+        if (firstMessageText != null) {
             ChatMessage firstMessage = new ChatMessage();
             firstMessage.setTicketId(ticket.getId());
             firstMessage.setSenderType(ChatMessage.SenderType.CLIENT);
-            firstMessage.setMessage(fullText);
+            firstMessage.setMessage(firstMessageText);
             firstMessage.setImageUrl(ticket.getImageUrl());
             firstMessage.setAudioUrl(ticket.getAudioUrl());
+            chatMessageRepository.save(firstMessage);
             
-            // Сохранить транскрипцию и описание изображения в metadata
-            if ((ticket.getTranscribedText() != null && !ticket.getTranscribedText().isEmpty()) || imageDescription != null) {
-                try {
-                    java.util.Map<String, String> metadataMap = new java.util.HashMap<>();
-                    if (ticket.getTranscribedText() != null && !ticket.getTranscribedText().isEmpty()) {
-                        metadataMap.put("transcription", ticket.getTranscribedText());
-                    }
-                    if (imageDescription != null) {
-                        metadataMap.put("imageDescription", imageDescription);
-                    }
-                    String metadata = objectMapper.writeValueAsString(metadataMap);
-                    firstMessage.setMetadata(metadata);
-                } catch (JsonProcessingException e) {
-                    log.error("Failed to serialize metadata", e);
-                }
-            }
-            
-            firstMessage = chatMessageRepository.save(firstMessage);
-            
-            // Добавить первое сообщение в RAG bucket
-            addMessageToBucket(ticket.getId(), firstMessage.getId());
+            // Первое сообщение открывает RAG bucket, но RAG_REFRESH не ставится:
+            // ответ на него генерирует задача RAG_ANSWER конвейера (suggested_answer)
             
             log.info("Created first chat message for ticket {}", ticket.getId());
         }
         
-        // 8. Отправить WebSocket уведомление
-        TicketResponse response = mapToResponse(ticket);
+        // 4. Поставить AI задачи в очередь (в той же транзакции, что и тикет)
+        if (ticketProcessingPipeline.enqueue(ticket) == 0) {
+            ticket.setStatus(TicketStatus.OPEN);
+            ticket = ticketRepository.save(ticket);
+        }
+        
+        // 5. Отправить WebSocket уведомление
+        TicketResponse response = TicketResponse.from(ticket);
+        response.setProcessingStage(ProcessingStage.INGESTED);
         messagingTemplate.convertAndSend("/topic/tickets/" + project.getId(), response);
         log.info("Sent WebSocket notification for ticket {} to project {}", ticket.getId(), project.getId());
         
         return response;
     }
     
+    private String firstMessageText(Ticket ticket) {
+        if (ticket.getOriginalText() != null) {
+            return ticket.getOriginalText();
+        }
+        if (ticket.getAudioUrl() != null) {
+            return "Голосовое сообщение";
+        }
+        if (ticket.getImageUrl() != null) {
+            return "Изображение";
+        }
+        return null;
+    }
+    
     public TicketResponse getTicket(Long id) {
         Ticket ticket = ticketRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Ticket not found"));
-        return mapToResponse(ticket);
+        return TicketResponse.from(ticket);
     }
     
     public Page<TicketResponse> getTicketsByProject(Long projectId, Pageable pageable) {
         Page<Ticket> tickets = ticketRepository.findByProjectId(projectId, pageable);
-        return tickets.map(this::mapToResponse);
+        return tickets.map(TicketResponse::from);
     }
     
     @Transactional
@@ -215,7 +216,7 @@ public class TicketService {
         ticket = ticketRepository.save(ticket);
         
         log.info("Updated ticket {} status to {}", id, status);
-        return mapToResponse(ticket);
+        return TicketResponse.from(ticket);
     }
     
     @Transactional
@@ -230,7 +231,8 @@ public class TicketService {
             closeTicket(id);
         }
         
-        // Затем удаляем
+        // Затем удаляем (задачи очереди удаляются каскадно, выполняющиеся - отменяются)
+        aiJobWorker.cancelTicketJobs(id);
         ticketRepository.deleteById(id);
         log.info("Deleted ticket: {}", id);
     }
@@ -243,7 +245,7 @@ public class TicketService {
         if (tickets.isEmpty()) {
             return null;
         }
-        return mapToResponse(tickets.get(0));
+        return TicketResponse.from(tickets.get(0));
     }
     
     /**
@@ -279,170 +281,115 @@ public class TicketService {
         );
         
         // Отправить WebSocket уведомление о закрытии
-        TicketResponse response = mapToResponse(ticket);
+        TicketResponse response = TicketResponse.from(ticket);
         messagingTemplate.convertAndSend("/topic/tickets/" + id + "/closed", response);
         
         return response;
     }
     
-    private void parseSentiment(Ticket ticket, String sentimentAnalysis) {
-        String lower = sentimentAnalysis.toLowerCase();
-        
-        if (lower.contains("positive") || lower.contains("позитивный")) {
-            ticket.setSentiment(Sentiment.POSITIVE);
-            ticket.setSentimentScore(new BigDecimal("0.8"));
-        } else if (lower.contains("negative") || lower.contains("негативный")) {
-            ticket.setSentiment(Sentiment.NEGATIVE);
-            ticket.setSentimentScore(new BigDecimal("-0.8"));
-        } else {
-            ticket.setSentiment(Sentiment.NEUTRAL);
-            ticket.setSentimentScore(BigDecimal.ZERO);
-        }
-    }
-    
-    private Priority determinePriority(Sentiment sentiment, String text) {
-        String lower = text.toLowerCase();
-        
-        // Критические слова
-        if (lower.contains("urgent") || lower.contains("срочно") || 
-            lower.contains("critical") || lower.contains("критично") ||
-            lower.contains("не работает") || lower.contains("broken")) {
-            return Priority.CRITICAL;
-        }
-        
-        // Высокий приоритет для негативных тикетов
-        if (sentiment == Sentiment.NEGATIVE) {
-            return Priority.HIGH;
-        }
-        
-        // Средний приоритет по умолчанию
-        if (lower.contains("важно") || lower.contains("important")) {
-            return Priority.MEDIUM;
-        }
-        
-        return Priority.LOW;
-    }
-    
-    private String findSuggestedAnswer(Long projectId, String queryText) {
-        return findSuggestedAnswer(projectId, queryText, false);
+    /**
+     * RAG: найти в базе знаний контекст и сгенерировать ответ на вопрос клиента
+     */
+    public String findSuggestedAnswer(Long projectId, String queryText, boolean isFirstResponse) {
+        return findSuggestedAnswer(projectId, queryText, isFirstResponse, null);
     }
     
-    private String findSuggestedAnswer(Long projectId, String queryText, boolean isFirstResponse) {
+    /**
+     * RAG со стримингом: фрагменты ответа передаются в onDelta по мере генерации (null - без стриминга)
+     */
+    public String findSuggestedAnswer(Long projectId, String queryText, boolean isFirstResponse,
+                                      Consumer<String> onDelta) {
         try {
-            // Получить эмбеддинг вопроса
-            float[] embeddingArray = ollamaService.generateEmbedding(queryText);
-            String embeddingStr = convertEmbeddingToString(embeddingArray);
-            
-            // Найти похожие записи в базе знаний
-            List<KnowledgeBase> similarKnowledge = knowledgeBaseRepository
-                    .findSimilarByEmbedding(projectId, embeddingStr, 3);
-            
-            if (similarKnowledge.isEmpty()) {
-                return "К сожалению, подходящего ответа в базе знаний не найдено.";
-            }
-            
-            // Собрать контекст из базы знаний
-            StringBuilder context = new StringBuilder();
-            for (KnowledgeBase kb : similarKnowledge) {
-                context.append(kb.getTitle()).append(": ").append(kb.getContent()).append("\n\n");
-            }
-            
-            // Сгенерировать ответ на основе контекста
-            String greetingInstruction = isFirstResponse 
-                ? "- Начни ответ с вежливого приветствия\n"
-                : "- НЕ используй приветствие, так как это продолжение диалога\n";
-            
-            String prompt = String.format(
-                "Ты - ассистент службы поддержки. Используй ТОЛЬКО информацию из базы знаний ниже для ответа.\n\n" +
-                "База знаний:\n%s\n\n" +
-                "Вопрос клиента: %s\n\n" +
-                "ВАЖНО:\n" +
-                "- Отвечай ТОЛЬКО на основе предоставленной информации\n" +
-                "- Если в базе знаний НЕТ точного ответа на вопрос, скажи: 'К сожалению, у меня нет информации по этому вопросу'\n" +
-                "- НЕ додумывай и НЕ добавляй информацию, которой нет в базе знаний\n" +
-                "- Будь точным, очень вежливым и тактичным\n" +
-                "- Используй дружелюбный и профессиональный тон общения\n" +
-                "%s" +
-                "Ответ:",
-                context.toString(), queryText, greetingInstruction
-            );
-            
-            return ollamaService.generateText(prompt);
-            
+            return generateSuggestedAnswer(projectId, queryText, isFirstResponse, onDelta);
+        } catch (OllamaOverloadedException e) {
+            // Перегрузка - не ошибка поиска: вызывающий код отложит или отклонит запрос
+            throw e;
         } catch (Exception e) {
             log.error("Failed to find suggested answer", e);
             return "Ошибка при поиске ответа в базе знаний.";
         }
     }
     
-    private TicketResponse mapToResponse(Ticket ticket) {
-        return TicketResponse.builder()
-                .id(ticket.getId())
-                .sessionId(ticket.getSessionId())
-                .originalText(ticket.getOriginalText())
-                .transcribedText(ticket.getTranscribedText())
-                .aiSummary(ticket.getAiSummary())
-                .sentiment(ticket.getSentiment())
-                .sentimentScore(ticket.getSentimentScore() != null ? 
-                        ticket.getSentimentScore().doubleValue() : null)
-                .priority(ticket.getPriority())
-                .suggestedAnswer(ticket.getSuggestedAnswer())
-                .status(ticket.getStatus())
-                .isClosed(ticket.getIsClosed())
-                .audioUrl(ticket.getAudioUrl())
-                .imageUrl(ticket.getImageUrl())
-                .createdAt(ticket.getCreatedAt())
-                .build();
-    }
-    
-    private String convertEmbeddingToString(float[] array) {
-        StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < array.length; i++) {
-            if (i > 0) sb.append(",");
-            sb.append(array[i]);
-        }
-        sb.append("]");
-        return sb.toString();
-    }
-    
-    // ===== RAG Bucket Methods =====
-    
     /**
-     * Добавить сообщение в RAG bucket
+     * RAG без обработки ошибок: исключение не превращается в текст ответа (и не попадает в кэш)
      */
-    public void addMessageToBucket(Long ticketId, Long messageId) {
-        Ticket ticket = ticketRepository.findById(ticketId)
-            .orElseThrow(() -> new RuntimeException("Ticket not found: " + ticketId));
+    private String generateSuggestedAnswer(Long projectId, String queryText, boolean isFirstResponse,
+                                           Consumer<String> onDelta) {
+        // Получить эмбеддинг вопроса
+        float[] embeddingArray = ollamaService.generateEmbedding(queryText);
         
-        String currentBucket = ticket.getRagBucketMessageIds();
-        if (currentBucket == null || currentBucket.isEmpty()) {
-            ticket.setRagBucketMessageIds(String.valueOf(messageId));
-        } else {
-            ticket.setRagBucketMessageIds(currentBucket + "," + messageId);
+        // Найти релевантные фрагменты базы знаний (лексический + семантический поиск)
+        List<KnowledgePassage> passages = knowledgeBaseService.findRelevantPassages(projectId, queryText, embeddingArray, 3);
+        
+        if (passages.isEmpty()) {
+            return "К сожалению, подходящего ответа в базе знаний не найдено.";
         }
         
-        ticketRepository.save(ticket);
-        log.info("Added message {} to RAG bucket for ticket {}", messageId, ticketId);
+        // Собрать контекст из фрагментов статей
+        StringBuilder context = new StringBuilder();
+        for (KnowledgePassage passage : passages) {
+            context.append(passage.title()).append(": ").append(passage.content()).append("\n\n");
+        }
         
-        // Send WebSocket notification that RAG needs update
-        messagingTemplate.convertAndSend(
-            "/topic/tickets/" + ticketId + "/rag-updated",
-            "RAG answer needs refresh"
+        // Сгенерировать ответ на основе контекста
+        String greetingInstruction = isFirstResponse 
+            ? "- Начни ответ с вежливого приветствия\n"
+            : "- НЕ используй приветствие, так как это продолжение диалога\n";
+        
+        String prompt = String.format(
+            "Ты - ассистент службы поддержки. Используй ТОЛЬКО информацию из базы знаний ниже для ответа.\n\n" +
+            "База знаний:\n%s\n\n" +
+            "Вопрос клиента: %s\n\n" +
+            "ВАЖНО:\n" +
+            "- Отвечай ТОЛЬКО на основе предоставленной информации\n" +
+            "- Если в базе знаний НЕТ точного ответа на вопрос, скажи: 'К сожалению, у меня нет информации по этому вопросу'\n" +
+            "- НЕ додумывай и НЕ добавляй информацию, которой нет в базе знаний\n" +
+            "- Будь точным, очень вежливым и тактичным\n" +
+            "- Используй дружелюбный и профессиональный тон общения\n" +
+            "%s" +
+            "Ответ:",
+            context.toString(), queryText, greetingInstruction
         );
+        
+        return onDelta != null
+            ? ollamaService.generateTextStreaming(prompt, onDelta)
+            : ollamaService.generateText(prompt);
     }
     
+    // ===== RAG Bucket Methods =====
+    
     /**
-     * Очистить RAG bucket (после ответа оператора)
+     * Сообщение клиента пополнило RAG bucket (bucket - сообщения клиента после последнего ответа оператора,
+     * выводится из chat_messages, тикет не обновляется)
      */
-    public void clearBucket(Long ticketId) {
-        Ticket ticket = ticketRepository.findById(ticketId)
-            .orElseThrow(() -> new RuntimeException("Ticket not found: " + ticketId));
-        
-        ticket.setRagBucketMessageIds(null);
-        ticket.setLastOperatorResponseAt(LocalDateTime.now());
-        ticketRepository.save(ticket);
-        
-        log.info("Cleared RAG bucket for ticket {}", ticketId);
+    public void onClientMessage(Long ticketId) {
+        // Ответ генерируется один раз после паузы в сообщениях и рассылается в /rag-updated (RagAnswerRefresher)
+        aiJobService.scheduleForTicket(AiJobType.RAG_REFRESH, ticketId, ragDebounce);
+        supersedeRagRefreshAfterCommit(ticketId);
+    }
+    
+    /**
+     * Ответ оператора закрыл RAG bucket
+     */
+    public void onOperatorMessage(Long ticketId) {
+        ragAnswerCache.invalidate(ticketId);
+        supersedeRagRefreshAfterCommit(ticketId);
+    }
+    
+    /**
+     * Отменить генерацию по прежнему bucket после коммита (до коммита она ещё видит старый bucket)
+     */
+    private void supersedeRagRefreshAfterCommit(Long ticketId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            aiJobWorker.supersedeTicketJobs(ticketId, AiJobType.RAG_REFRESH);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                aiJobWorker.supersedeTicketJobs(ticketId, AiJobType.RAG_REFRESH);
+            }
+        });
     }
     
     /**
@@ -452,8 +399,8 @@ public class TicketService {
         Ticket ticket = ticketRepository.findById(ticketId)
             .orElseThrow(() -> new RuntimeException("Ticket not found: " + ticketId));
         
-        String bucketIds = ticket.getRagBucketMessageIds();
-        if (bucketIds == null || bucketIds.isEmpty()) {
+        List<Long> messageIds = chatMessageRepository.findRagBucketIds(ticketId);
+        if (messageIds.isEmpty()) {
             return RagAnswerResponse.builder()
                 .answer("Нет новых сообщений для анализа")
                 .messagesCount(0)
@@ -462,15 +409,32 @@ public class TicketService {
                 .build();
         }
         
-        // Parse message IDs
-        List<Long> messageIds = Arrays.stream(bucketIds.split(","))
-            .map(String::trim)
-            .filter(s -> !s.isEmpty())
-            .map(Long::parseLong)
-            .collect(Collectors.toList());
+        String bucketIds = messageIds.stream().map(String::valueOf).collect(Collectors.joining(","));
         
-        // Load messages
-        List<ChatMessage> messages = chatMessageRepository.findAllById(messageIds);
+        // Повторные просмотры и соседние вкладки получают уже сгенерированный ответ
+        try {
+            return ragAnswerCache.getOrGenerate(ticketId, ticket.getProject().getId(), bucketIds,
+                () -> buildRagAnswer(ticket, messageIds, bucketIds));
+        } catch (OllamaOverloadedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Failed to generate RAG answer for ticket {}", ticketId, e);
+            return RagAnswerResponse.builder()
+                .answer("Ошибка при поиске ответа в базе знаний.")
+                .messagesCount(0)
+                .lastUpdated(LocalDateTime.now())
+                .messageIds(bucketIds)
+                .build();
+        }
+    }
+    
+    private RagAnswerResponse buildRagAnswer(Ticket ticket, List<Long> messageIds, String bucketIds) {
+        Long ticketId = ticket.getId();
+        
+        // Load messages (в порядке отправки)
+        List<ChatMessage> messages = chatMessageRepository.findAllById(messageIds).stream()
+            .sorted(Comparator.comparing(ChatMessage::getId))
+            .toList();
         
         if (messages.isEmpty()) {
             return RagAnswerResponse.builder()
@@ -512,12 +476,18 @@ public class TicketService {
             SenderType.OPERATOR
         );
         
-        // Search knowledge base for context
-        String kbContext = findSuggestedAnswer(
-            ticket.getProject().getId(), 
-            context.toString(),
-            !hasOperatorResponses // Если оператор ещё не отвечал - это первый ответ
-        );
+        // Search knowledge base for context (оператор ждёт ответа - интерактивный приоритет)
+        // Оператор видит ответ по мере генерации (answer-stream), полный ответ уходит в кэш и rag-updated
+        String kbContext;
+        try (var ignored = ollamaAdmission.prioritize(LlmRequestPriority.INTERACTIVE);
+             AnswerStreamRelay.Stream stream = answerStreamRelay.open(ticketId, AnswerStreamRelay.RAG)) {
+            kbContext = generateSuggestedAnswer(
+                ticket.getProject().getId(), 
+                context.toString(),
+                !hasOperatorResponses, // Если оператор ещё не отвечал - это первый ответ
+                stream
+            );
+        }
         
         // Use existing suggested answer or generate new one
         String ragAnswer = kbContext != null && !kbContext.isEmpty() 
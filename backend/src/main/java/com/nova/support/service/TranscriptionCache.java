@@ -0,0 +1,96 @@
+package com.nova.support.service;
+
+import com.nova.support.domain.entity.TranscriptionCacheEntry;
+import com.nova.support.repository.TranscriptionCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Кэш транскрипций по SHA-256 аудио и языку
+ * - in-memory LRU (ограниченный размер)
+ * - постоянный уровень в таблице transcription_cache (переживает рестарт, общий для инстансов)
+ * Повторная отправка того же голосового сообщения не запускает Whisper заново
+ */
+@Slf4j
+@Service
+public class TranscriptionCache {
+
+    private final TranscriptionCacheRepository repository;
+    private final LruCache<String, String> memory;
+    private final Counter memoryHits;
+    private final Counter databaseHits;
+    private final Counter misses;
+
+    public TranscriptionCache(
+            TranscriptionCacheRepository repository,
+            MeterRegistry meterRegistry,
+            @Value("${transcription.cache.memory-max-entries:1000}") int memoryMaxEntries) {
+        this.repository = repository;
+        this.memory = new LruCache<>(memoryMaxEntries);
+        this.memoryHits = counter(meterRegistry, "hit", "memory");
+        this.databaseHits = counter(meterRegistry, "hit", "database");
+        this.misses = counter(meterRegistry, "miss", "none");
+        Gauge.builder("transcription.cache.memory.entries", memory, LruCache::size)
+                .description("Transcriptions held in the in-memory tier")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Получить транскрипцию из кэша или выполнить её и сохранить результат
+     * 
+     * @param audioSha256 SHA-256 аудио (null - кэш не используется)
+     * @param language язык транскрибации (null/auto - автоопределение)
+     * @param transcriber транскрибация при промахе кэша
+     * @return транскрипция (пустая строка, если речь не распознана)
+     */
+    public String getOrTranscribe(String audioSha256, String language, Supplier<String> transcriber) {
+        if (audioSha256 == null) {
+            return transcriber.get();
+        }
+
+        String lang = normalizeLanguage(language);
+        String key = audioSha256 + ":" + lang;
+
+        String cached = memory.get(key);
+        if (cached != null) {
+            memoryHits.increment();
+            return cached;
+        }
+
+        cached = repository.findById(new TranscriptionCacheEntry.Key(audioSha256, lang))
+                .map(TranscriptionCacheEntry::getTranscription)
+                .orElse(null);
+        if (cached != null) {
+            databaseHits.increment();
+            memory.put(key, cached);
+            log.info("Transcription cache hit for audio {} ({})", audioSha256, lang);
+            return cached;
+        }
+
+        misses.increment();
+        String transcription = transcriber.get();
+        String value = transcription != null ? transcription : "";
+        repository.insertIfAbsent(audioSha256, lang, value);
+        memory.put(key, value);
+        return value;
+    }
+
+    private static String normalizeLanguage(String language) {
+        return language == null || language.isBlank() ? "auto" : language.toLowerCase(Locale.ROOT);
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result, String tier) {
+        return Counter.builder("transcription.cache.requests")
+                .tag("result", result)
+                .tag("tier", tier)
+                .description("Transcription cache lookups")
+                .register(meterRegistry);
+    }
+}
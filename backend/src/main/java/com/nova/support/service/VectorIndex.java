@@ -0,0 +1,40 @@
+package com.nova.support.service;
+
+import com.nova.support.domain.enums.VectorBackend;
+
+import java.util.List;
+
+/**
+ * Индекс ближайших соседей по эмбеддингам базы знаний
+ * Реализации: pgvector (HNSW в PostgreSQL) и HNSW граф в памяти инстанса
+ */
+public interface VectorIndex {
+    
+    /**
+     * Бэкенд, который реализует индекс
+     */
+    VectorBackend getBackend();
+    
+    /**
+     * Найти ближайшие записи базы знаний проекта (cosine distance)
+     * 
+     * @param projectId ID проекта
+     * @param queryEmbedding эмбеддинг запроса
+     * @param limit количество результатов
+     * @param efSearch размер списка кандидатов HNSW (не меньше limit)
+     * @return ID записей по убыванию релевантности
+     */
+    List<Long> search(Long projectId, float[] queryEmbedding, int limit, int efSearch);
+    
+    /**
+     * Добавить или заменить эмбеддинг записи
+     */
+    default void upsert(Long projectId, Long knowledgeBaseId, float[] embedding) {
+    }
+    
+    /**
+     * Удалить запись из индекса
+     */
+    default void remove(Long projectId, Long knowledgeBaseId) {
+    }
+}
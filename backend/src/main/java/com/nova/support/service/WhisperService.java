@@ -2,7 +2,8 @@ package com.nova.support.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.MultipartBodyBuilder;
 import org.springframework.stereotype.Service;
@@ -36,7 +37,7 @@ public class WhisperService {
      */
     public String transcribe(byte[] audioBytes, String language) {
         try {
-            return transcribe(new ByteArrayInputStream(audioBytes), "audio.webm", language);
+            return transcribe(new ByteArrayInputStream(audioBytes), "audio.webm", audioBytes.length, language);
         } catch (Exception e) {
             log.error("Error during transcription from bytes", e);
             throw new RuntimeException("Failed to transcribe audio: " + e.getMessage(), e);
@@ -52,18 +53,30 @@ public class WhisperService {
      * @return транскрибированный текст
      */
     public String transcribe(InputStream audioStream, String filename, String language) {
+        return transcribe(audioStream, filename, -1, language);
+    }
+    
+    /**
+     * Транскрибировать аудио поток в текст
+     * Поток передаётся в Whisper частями, целиком в память не загружается
+     * 
+     * @param audioStream поток аудио данных (закрывает вызывающий код)
+     * @param filename имя файла (для определения формата)
+     * @param contentLength размер в байтах или -1, если неизвестен
+     * @param language язык аудио (ru, en, auto)
+     * @return транскрибированный текст
+     */
+    public String transcribe(InputStream audioStream, String filename, long contentLength, String language) {
         try {
-            log.info("Sending audio to Whisper service: filename={}, language={}", filename, language);
+            log.info("Sending audio to Whisper service: filename={}, size={}, language={}", 
+                    filename, contentLength, language);
             
-            byte[] audioBytes = audioStream.readAllBytes();
+            Resource audio = contentLength >= 0
+                    ? new SizedInputStreamResource(audioStream, contentLength)
+                    : new InputStreamResource(audioStream);
             
             MultipartBodyBuilder builder = new MultipartBodyBuilder();
-            builder.part("audio", new ByteArrayResource(audioBytes) {
-                @Override
-                public String getFilename() {
-                    return filename;
-                }
-            });
+            builder.part("audio", audio).filename(filename);
             
             if (language != null && !language.isEmpty() && !language.equalsIgnoreCase("auto")) {
                 builder.part("language", language);
@@ -109,6 +122,24 @@ public class WhisperService {
         }
     }
     
+    /**
+     * Поток с известным размером: multipart запрос получает Content-Length части без чтения потока
+     */
+    private static class SizedInputStreamResource extends InputStreamResource {
+        
+        private final long contentLength;
+        
+        SizedInputStreamResource(InputStream inputStream, long contentLength) {
+            super(inputStream);
+            this.contentLength = contentLength;
+        }
+        
+        @Override
+        public long contentLength() {
+            return contentLength;
+        }
+    }
+    
     // Response DTOs
     private record TranscriptionResponse(String text, String language, Integer segments) {}
     private record HealthResponse(String status, String service, String model) {}
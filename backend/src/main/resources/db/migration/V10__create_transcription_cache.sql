@@ -0,0 +1,12 @@
+-- Кэш транскрипций: одинаковое аудио (по SHA-256 содержимого) не транскрибируется повторно
+CREATE TABLE transcription_cache (
+    audio_sha256 CHAR(64) NOT NULL,
+    
+    -- Язык транскрибации (ru, en, auto)
+    language VARCHAR(10) NOT NULL,
+    
+    transcription TEXT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    
+    PRIMARY KEY (audio_sha256, language)
+);
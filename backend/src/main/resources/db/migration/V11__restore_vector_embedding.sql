@@ -0,0 +1,11 @@
+-- Возвращаем embedding к нативному типу vector(768) (V4 перевёл его в TEXT)
+-- Приведение TEXT -> vector выполняется один раз при миграции, а не в каждом запросе
+ALTER TABLE knowledge_base
+ALTER COLUMN embedding TYPE vector(768) USING embedding::vector(768);
+
+-- HNSW индекс для косинусного расстояния: поиск ближайших соседей без полного сканирования
+DROP INDEX IF EXISTS idx_kb_embedding;
+DROP INDEX IF EXISTS idx_knowledge_base_embedding;
+CREATE INDEX idx_knowledge_base_embedding ON knowledge_base
+USING hnsw (embedding vector_cosine_ops)
+WITH (m = 16, ef_construction = 64);
@@ -0,0 +1,2 @@
+-- Бэкенд семантического поиска проекта: pgvector или in-process HNSW
+ALTER TABLE projects ADD COLUMN IF NOT EXISTS vector_backend VARCHAR(20) NOT NULL DEFAULT 'PGVECTOR';
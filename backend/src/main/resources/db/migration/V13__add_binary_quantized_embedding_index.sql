@@ -0,0 +1,5 @@
+-- Бинарное квантование эмбеддингов (1 бит на компоненту) для грубого поиска кандидатов
+-- по расстоянию Хэмминга; кандидаты переранжируются по точному cosine distance
+-- (vector.search.quantization = BINARY, pgvector >= 0.7)
+CREATE INDEX IF NOT EXISTS idx_knowledge_base_embedding_binary
+    ON knowledge_base USING hnsw ((binary_quantize(embedding)::bit(768)) bit_hamming_ops);
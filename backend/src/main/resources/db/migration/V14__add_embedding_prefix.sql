@@ -0,0 +1,16 @@
+-- Matryoshka: усечённый и нормализованный префикс эмбеддинга для грубого поиска кандидатов
+-- Длина префикса задаётся на проект (NULL - поиск по полному вектору)
+ALTER TABLE projects ADD COLUMN IF NOT EXISTS embedding_prefix_dims INTEGER;
+ALTER TABLE projects ADD CONSTRAINT chk_projects_embedding_prefix_dims
+    CHECK (embedding_prefix_dims IS NULL OR embedding_prefix_dims IN (128, 256));
+
+-- Колонка без фиксированной размерности: у проектов могут быть разные длины префикса
+ALTER TABLE knowledge_base ADD COLUMN IF NOT EXISTS embedding_prefix vector;
+
+-- Частичные HNSW индексы под каждую поддерживаемую длину (размерность в индексе должна быть фиксированной)
+CREATE INDEX IF NOT EXISTS idx_knowledge_base_embedding_prefix_256
+    ON knowledge_base USING hnsw ((embedding_prefix::vector(256)) vector_cosine_ops)
+    WHERE vector_dims(embedding_prefix) = 256;
+CREATE INDEX IF NOT EXISTS idx_knowledge_base_embedding_prefix_128
+    ON knowledge_base USING hnsw ((embedding_prefix::vector(128)) vector_cosine_ops)
+    WHERE vector_dims(embedding_prefix) = 128;
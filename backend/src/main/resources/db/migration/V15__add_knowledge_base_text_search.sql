@@ -0,0 +1,21 @@
+-- Лексический поиск по базе знаний вместо LOWER(...) LIKE '%kw%' (последовательное сканирование)
+
+-- Полнотекстовый вектор по русской и английской конфигурации (заголовок весомее содержимого)
+ALTER TABLE knowledge_base ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('russian', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('russian', coalesce(content, '')), 'B') ||
+        setweight(to_tsvector('english', coalesce(content, '')), 'B')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_knowledge_base_search_vector
+    ON knowledge_base USING gin (search_vector);
+
+-- Триграммы для поиска подстрок (артикулы, коды ошибок), в т.ч. ILIKE '%...%'
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_knowledge_base_title_trgm
+    ON knowledge_base USING gin (title gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_knowledge_base_content_trgm
+    ON knowledge_base USING gin (content gin_trgm_ops);
@@ -0,0 +1,31 @@
+-- Фрагменты статей базы знаний: ограниченные по токенам отрывки со своим эмбеддингом
+-- При правке статьи заново эмбеддятся только фрагменты с изменившимся хэшем
+CREATE TABLE knowledge_chunks (
+    id BIGSERIAL PRIMARY KEY,
+    knowledge_base_id BIGINT NOT NULL REFERENCES knowledge_base(id) ON DELETE CASCADE,
+    
+    -- Порядковый номер фрагмента в статье
+    chunk_index INT NOT NULL,
+    content TEXT NOT NULL,
+    
+    -- SHA-256 (hex) текста, отправленного на эмбеддинг (заголовок + фрагмент)
+    content_hash CHAR(64) NOT NULL,
+    token_count INT NOT NULL,
+    
+    embedding vector(768) NOT NULL,
+    
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    
+    CONSTRAINT uq_knowledge_chunks_position UNIQUE (knowledge_base_id, chunk_index)
+);
+
+-- Фрагменты ранжируются только внутри уже отобранных статей (точный перебор),
+-- поэтому отдельный HNSW индекс по фрагментам не нужен
+
+CREATE TRIGGER update_knowledge_chunks_updated_at BEFORE UPDATE ON knowledge_chunks
+    FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
+
+-- Разбить существующие статьи на фрагменты фоновыми задачами EMBEDDING
+INSERT INTO ai_jobs (job_type, knowledge_base_id)
+SELECT 'EMBEDDING', id FROM knowledge_base;
@@ -0,0 +1,47 @@
+-- Учёт модели и версии эмбеддингов, фоновая переиндексация при смене модели
+
+ALTER TABLE knowledge_base ADD COLUMN IF NOT EXISTS embedding_model VARCHAR(100);
+ALTER TABLE knowledge_base ADD COLUMN IF NOT EXISTS embedding_version INT;
+
+ALTER TABLE knowledge_chunks ADD COLUMN IF NOT EXISTS embedding_model VARCHAR(100);
+ALTER TABLE knowledge_chunks ADD COLUMN IF NOT EXISTS embedding_version INT;
+
+-- Вектор новой модели, накапливаемый переиндексацией; поиск до переключения идёт по embedding
+-- (смена размерности по-прежнему требует миграции типа колонок и индексов)
+ALTER TABLE knowledge_chunks ADD COLUMN IF NOT EXISTS next_embedding vector(768);
+ALTER TABLE knowledge_chunks ADD COLUMN IF NOT EXISTS next_embedding_model VARCHAR(100);
+ALTER TABLE knowledge_chunks ADD COLUMN IF NOT EXISTS next_embedding_version INT;
+
+-- Имеющиеся векторы построены nomic-embed-text
+UPDATE knowledge_base SET embedding_model = 'nomic-embed-text', embedding_version = 1 WHERE embedding IS NOT NULL;
+UPDATE knowledge_chunks SET embedding_model = 'nomic-embed-text', embedding_version = 1;
+
+-- Прогресс переиндексации: курсор по id фрагментов переживает рестарт
+-- Последний COMPLETED прогон - модель, векторами которой сейчас отвечает поиск
+CREATE TABLE embedding_reindex_runs (
+    id BIGSERIAL PRIMARY KEY,
+    model VARCHAR(100) NOT NULL,
+    version INT NOT NULL,
+    
+    -- RUNNING, COMPLETED
+    status VARCHAR(20) NOT NULL DEFAULT 'RUNNING',
+    
+    last_chunk_id BIGINT NOT NULL DEFAULT 0,
+    embedded_chunks BIGINT NOT NULL DEFAULT 0,
+    
+    -- Аренда: батч выполняет один инстанс
+    locked_by VARCHAR(100),
+    locked_until TIMESTAMP,
+    
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    completed_at TIMESTAMP,
+    
+    CONSTRAINT uq_embedding_reindex_runs_model UNIQUE (model, version)
+);
+
+INSERT INTO embedding_reindex_runs (model, version, status, completed_at)
+VALUES ('nomic-embed-text', 1, 'COMPLETED', CURRENT_TIMESTAMP);
+
+CREATE TRIGGER update_embedding_reindex_runs_updated_at BEFORE UPDATE ON embedding_reindex_runs
+    FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
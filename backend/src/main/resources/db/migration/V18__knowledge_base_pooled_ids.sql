@@ -0,0 +1,4 @@
+-- Идентификаторы базы знаний выдаются блоками по 50 (pooled): Hibernate и массовый импорт
+-- резервируют диапазон одним nextval и вставляют строки JDBC батчем (IDENTITY батчинг отключает)
+ALTER SEQUENCE knowledge_base_id_seq INCREMENT BY 50;
+ALTER SEQUENCE knowledge_chunks_id_seq INCREMENT BY 50;
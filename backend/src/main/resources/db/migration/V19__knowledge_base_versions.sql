@@ -0,0 +1,43 @@
+-- Версия базы знаний проекта: растёт при любом изменении статей (текст, эмбеддинг, удаление)
+-- Входит в ключ кэша RAG ответов - правка базы знаний делает закэшированные ответы недействительными
+CREATE TABLE knowledge_base_versions (
+    project_id BIGINT PRIMARY KEY REFERENCES projects(id) ON DELETE CASCADE,
+    version BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO knowledge_base_versions (project_id)
+SELECT id FROM projects;
+
+CREATE OR REPLACE FUNCTION create_knowledge_base_version()
+RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO knowledge_base_versions (project_id) VALUES (NEW.id);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER create_knowledge_base_version AFTER INSERT ON projects
+    FOR EACH ROW EXECUTE FUNCTION create_knowledge_base_version();
+
+-- Триггеры уровня оператора: пакетные изменения (импорт, переиндексация) повышают версию
+-- один раз на проект, а не на каждую строку
+CREATE OR REPLACE FUNCTION bump_knowledge_base_version()
+RETURNS TRIGGER AS $$
+BEGIN
+    UPDATE knowledge_base_versions SET version = version + 1
+    WHERE project_id IN (SELECT project_id FROM changed_rows);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER bump_knowledge_base_version_on_insert AFTER INSERT ON knowledge_base
+    REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_knowledge_base_version();
+
+CREATE TRIGGER bump_knowledge_base_version_on_update AFTER UPDATE ON knowledge_base
+    REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_knowledge_base_version();
+
+CREATE TRIGGER bump_knowledge_base_version_on_delete AFTER DELETE ON knowledge_base
+    REFERENCING OLD TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_knowledge_base_version();
@@ -0,0 +1,9 @@
+-- RAG bucket выводится из chat_messages: сообщения клиента после последнего сообщения оператора
+-- Отправка сообщения - одна вставка, без чтения и перезаписи строки тикета
+CREATE INDEX IF NOT EXISTS idx_chat_messages_ticket_sender_id ON chat_messages (ticket_id, sender_type, id);
+
+-- Покрывается префиксом нового индекса
+DROP INDEX IF EXISTS idx_chat_messages_ticket_id;
+
+ALTER TABLE tickets DROP COLUMN IF EXISTS rag_bucket_message_ids;
+ALTER TABLE tickets DROP COLUMN IF EXISTS last_operator_response_at;
@@ -0,0 +1,2 @@
+-- Keyset пагинация истории чата: последние / новее / старше курсора по id внутри тикета
+CREATE INDEX IF NOT EXISTS idx_chat_messages_ticket_id_id ON chat_messages (ticket_id, id);
@@ -0,0 +1,6 @@
+-- Keyset пагинация списка тикетов: WHERE project_id = ? [AND (created_at, id) < (?, ?)]
+-- ORDER BY created_at DESC, id DESC LIMIT n читает ровно n записей индекса
+CREATE INDEX IF NOT EXISTS idx_tickets_project_created_at_id ON tickets (project_id, created_at DESC, id DESC);
+
+-- Покрывается префиксом нового индекса
+DROP INDEX IF EXISTS idx_tickets_project_id;
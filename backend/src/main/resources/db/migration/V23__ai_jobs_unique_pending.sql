@@ -0,0 +1,13 @@
+-- Не больше одной ожидающей задачи каждого типа на тикет: на этом ограничении держатся
+-- debounce (INSERT ... ON CONFLICT DO UPDATE run_at) и постановка "если ещё не ставилась"
+-- (ON CONFLICT DO NOTHING) при одновременных запросах
+
+-- Дубликаты, успевшие появиться до ограничения: остаётся самая ранняя задача
+DELETE FROM ai_jobs a
+USING ai_jobs b
+WHERE a.status = 'PENDING' AND b.status = 'PENDING'
+  AND a.ticket_id = b.ticket_id AND a.job_type = b.job_type
+  AND a.id > b.id;
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_ai_jobs_ticket_pending ON ai_jobs (ticket_id, job_type)
+    WHERE status = 'PENDING';
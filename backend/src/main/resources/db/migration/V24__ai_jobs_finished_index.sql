@@ -0,0 +1,3 @@
+-- Очистка завершённых задач по сроку хранения (AiJobService.purgeFinishedJobs)
+CREATE INDEX IF NOT EXISTS idx_ai_jobs_finished ON ai_jobs (status, completed_at)
+    WHERE status IN ('DONE', 'DEAD');
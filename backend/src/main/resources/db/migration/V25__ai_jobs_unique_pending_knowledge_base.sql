@@ -0,0 +1,13 @@
+-- Не больше одной ожидающей задачи каждого типа на статью базы знаний: создание и быстрая правка
+-- (или две правки подряд) не ставят две задачи EMBEDDING, которые выполнялись бы параллельно
+-- Ожидающая задача читает текст статьи при запуске, поэтому вторая не нужна
+
+-- Дубликаты, успевшие появиться до ограничения: остаётся самая ранняя задача
+DELETE FROM ai_jobs a
+USING ai_jobs b
+WHERE a.status = 'PENDING' AND b.status = 'PENDING'
+  AND a.knowledge_base_id = b.knowledge_base_id AND a.job_type = b.job_type
+  AND a.id > b.id;
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_ai_jobs_knowledge_base_pending ON ai_jobs (knowledge_base_id, job_type)
+    WHERE status = 'PENDING';
@@ -0,0 +1,5 @@
+-- Язык обращения нужен асинхронному конвейеру для транскрибации аудио
+ALTER TABLE tickets ADD COLUMN IF NOT EXISTS language VARCHAR(10);
+
+-- Индекс для выборки тикетов, ожидающих AI обработки
+CREATE INDEX IF NOT EXISTS idx_tickets_status_created_at ON tickets (status, created_at);
@@ -0,0 +1,41 @@
+-- Надёжная очередь AI задач (транскрибация, описание изображений, анализ, эмбеддинги, RAG)
+-- Воркеры нескольких инстансов забирают задачи через FOR UPDATE SKIP LOCKED
+CREATE TABLE ai_jobs (
+    id BIGSERIAL PRIMARY KEY,
+    
+    -- TRANSCRIPTION, IMAGE_DESCRIPTION, ANALYSIS, EMBEDDING, RAG_ANSWER
+    job_type VARCHAR(30) NOT NULL,
+    
+    -- PENDING, RUNNING, DONE, DEAD
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    
+    -- Объект обработки
+    ticket_id BIGINT REFERENCES tickets(id) ON DELETE CASCADE,
+    knowledge_base_id BIGINT REFERENCES knowledge_base(id) ON DELETE CASCADE,
+    
+    -- Повторы с экспоненциальной задержкой
+    attempts INT NOT NULL DEFAULT 0,
+    max_attempts INT NOT NULL DEFAULT 5,
+    run_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    
+    -- Аренда задачи воркером (просроченные аренды возвращает sweeper)
+    locked_by VARCHAR(100),
+    locked_until TIMESTAMP,
+    
+    last_error TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    completed_at TIMESTAMP
+);
+
+-- Выборка готовых к запуску задач по типу
+CREATE INDEX idx_ai_jobs_pending ON ai_jobs (job_type, run_at, id) WHERE status = 'PENDING';
+
+-- Поиск просроченных аренд
+CREATE INDEX idx_ai_jobs_running_lease ON ai_jobs (locked_until) WHERE status = 'RUNNING';
+
+CREATE INDEX idx_ai_jobs_ticket_id ON ai_jobs (ticket_id);
+CREATE INDEX idx_ai_jobs_knowledge_base_id ON ai_jobs (knowledge_base_id);
+
+CREATE TRIGGER update_ai_jobs_updated_at BEFORE UPDATE ON ai_jobs
+    FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
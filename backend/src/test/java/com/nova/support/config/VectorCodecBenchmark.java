@@ -0,0 +1,102 @@
+package com.nova.support.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение прежнего текстового формата векторов ("[0.1,0.2,...]") с бинарным VectorCodec
+ * Запуск: mvn test-compile, затем main этого класса с test classpath
+ * (-prof gc в аргументах показывает аллокации на операцию)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VectorCodecBenchmark {
+
+    private static final int DIMENSION = 768;
+
+    private float[] vector;
+    private String text;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        text = legacyFormat(vector);
+        binary = VectorCodec.encode(vector);
+    }
+
+    @Benchmark
+    public String encodeText() {
+        return legacyFormat(vector);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return VectorCodec.encode(vector);
+    }
+
+    @Benchmark
+    public float[] decodeText() {
+        return legacyParse(text);
+    }
+
+    @Benchmark
+    public float[] decodeBinary() {
+        return VectorCodec.decode(binary);
+    }
+
+    /**
+     * Прежний convertEmbeddingToString
+     */
+    private static String legacyFormat(float[] array) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < array.length; i++) {
+            if (i > 0) sb.append(",");
+            sb.append(array[i]);
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    /**
+     * Прежний VectorAttributeConverter.convertToEntityAttribute
+     */
+    private static float[] legacyParse(String dbData) {
+        String cleaned = dbData.replaceAll("[\\[\\]]", "");
+        String[] parts = cleaned.split(",");
+        float[] result = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Float.parseFloat(parts[i].trim());
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(VectorCodecBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,99 @@
+package com.nova.support.config;
+
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VectorCodecTest {
+
+    @Test
+    void encodeMatchesPgvectorBinaryFormat() {
+        byte[] bytes = VectorCodec.encode(new float[]{1.5f, -2f});
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        assertThat(bytes).hasSize(4 + 2 * Float.BYTES);
+        assertThat(buffer.getShort()).isEqualTo((short) 2);
+        assertThat(buffer.getShort()).isZero();
+        assertThat(buffer.getFloat()).isEqualTo(1.5f);
+        assertThat(buffer.getFloat()).isEqualTo(-2f);
+    }
+
+    @Test
+    void decodeRestoresEncodedVector() {
+        float[] vector = {0f, -0f, 1e-30f, -3.25f, Float.MAX_VALUE, Float.MIN_VALUE};
+
+        assertThat(VectorCodec.decode(VectorCodec.encode(vector))).containsExactly(vector);
+    }
+
+    @Test
+    void dimensionAboveShortRangeIsUnsigned() {
+        float[] vector = new float[40_000];
+        Arrays.fill(vector, 0.5f);
+
+        assertThat(VectorCodec.decode(VectorCodec.encode(vector))).hasSize(40_000).containsOnly(0.5f);
+    }
+
+    @Test
+    void emptyVectorRoundTrips() {
+        assertThat(VectorCodec.decode(VectorCodec.encode(new float[0]))).isEmpty();
+    }
+
+    @Test
+    void decodeAcceptsTextFormat() {
+        assertThat(VectorCodec.decode("[1,-2.5,3e-2]".getBytes(StandardCharsets.US_ASCII)))
+                .containsExactly(1f, -2.5f, 0.03f);
+        assertThat(VectorCodec.decode("[]".getBytes(StandardCharsets.US_ASCII))).isEmpty();
+    }
+
+    @Test
+    void decodeOfNullIsNull() {
+        assertThat(VectorCodec.decode(null)).isNull();
+    }
+
+    @Test
+    void decodeRejectsTruncatedValue() {
+        byte[] bytes = VectorCodec.encode(new float[]{1f, 2f, 3f});
+
+        assertThatThrownBy(() -> VectorCodec.decode(Arrays.copyOf(bytes, bytes.length - 1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("dimension 3");
+    }
+
+    @Test
+    void bindPassesVectorAsFloat4Array() throws Exception {
+        float[] vector = {1f, 2f};
+        PreparedStatement st = mock(PreparedStatement.class);
+        Connection connection = mock(Connection.class);
+        PGConnection pgConnection = mock(PGConnection.class);
+        Array array = mock(Array.class);
+        when(st.getConnection()).thenReturn(connection);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.createArrayOf("float4", vector)).thenReturn(array);
+
+        VectorCodec.bind(st, 3, vector);
+
+        verify(st).setArray(3, array);
+    }
+
+    @Test
+    void bindOfNullSetsNull() throws Exception {
+        PreparedStatement st = mock(PreparedStatement.class);
+
+        VectorCodec.bind(st, 1, null);
+
+        verify(st).setNull(1, Types.OTHER);
+    }
+}
@@ -0,0 +1,387 @@
+package com.nova.support.repository;
+
+import com.nova.support.TestcontainersConfiguration;
+import com.nova.support.config.AiJobProperties;
+import com.nova.support.domain.entity.AiJob;
+import com.nova.support.domain.enums.AiJobStatus;
+import com.nova.support.domain.enums.AiJobType;
+import com.nova.support.service.AiJobService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * SQL очереди AI задач на PostgreSQL (Testcontainers)
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TestcontainersConfiguration.class)
+class AiJobRepositoryTest {
+
+    @Autowired
+    private AiJobRepository aiJobRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private AiJobProperties properties;
+    private AiJobService aiJobService;
+    private Long projectId;
+    private Long ticketId;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AiJobProperties();
+        properties.setPurgeBatchSize(2);
+        aiJobService = new AiJobService(aiJobRepository, properties);
+
+        projectId = jdbcTemplate.queryForObject(
+                "INSERT INTO projects (name, api_key) VALUES ('Test', gen_random_uuid()::text) RETURNING id",
+                Long.class);
+        ticketId = newTicket();
+    }
+
+    @Test
+    void claimLeasesDueJobsInRunAtOrder() {
+        LocalDateTime now = LocalDateTime.now();
+        Long later = insertJob(newTicket(), AiJobStatus.PENDING, 0, now.minusMinutes(1), null);
+        Long earlier = insertJob(ticketId, AiJobStatus.PENDING, 0, now.minusMinutes(2), null);
+        Long future = insertJob(newTicket(), AiJobStatus.PENDING, 0, now.plusMinutes(5), null);
+
+        List<AiJob> claimed = aiJobService.claim(AiJobType.ANALYSIS, 10, "worker-1");
+
+        assertThat(claimed).extracting(AiJob::getId).containsExactly(earlier, later);
+        LocalDateTime leaseEnd = now.plus(properties.leaseOf(AiJobType.ANALYSIS));
+        assertThat(claimed).allSatisfy(job -> {
+            assertThat(job.getStatus()).isEqualTo(AiJobStatus.RUNNING);
+            assertThat(job.getAttempts()).isEqualTo(1);
+            assertThat(job.getLockedBy()).isEqualTo("worker-1");
+            assertThat(job.getLockedUntil()).isCloseTo(leaseEnd, within(5, ChronoUnit.SECONDS));
+        });
+        assertThat(aiJobService.claim(AiJobType.ANALYSIS, 10, "worker-2")).isEmpty();
+        assertThat(job(future).getStatus()).isEqualTo(AiJobStatus.PENDING);
+    }
+
+    @Test
+    void claimHonoursLimitAndType() {
+        LocalDateTime due = LocalDateTime.now().minusSeconds(1);
+        insertJob(ticketId, AiJobStatus.PENDING, 0, due, null);
+        insertJob(newTicket(), AiJobStatus.PENDING, 0, due, null);
+
+        assertThat(aiJobService.claim(AiJobType.TRANSCRIPTION, 10, "worker-1")).isEmpty();
+        assertThat(aiJobService.claim(AiJobType.ANALYSIS, 1, "worker-1")).hasSize(1);
+        assertThat(aiJobService.claim(AiJobType.ANALYSIS, 1, "worker-1")).hasSize(1);
+    }
+
+    @Test
+    void failedJobIsRetriedWithBackoffThenDeadLettered() {
+        properties.setMaxAttempts(2);
+        properties.setBackoffBase(Duration.ofSeconds(10));
+        Long id = insertJob(ticketId, AiJobStatus.PENDING, 0, LocalDateTime.now(), null);
+
+        claimOne();
+        LocalDateTime failedAt = LocalDateTime.now();
+        AiJob retried = aiJobService.fail(id, "worker-1", "timeout");
+
+        assertThat(retried.getStatus()).isEqualTo(AiJobStatus.PENDING);
+        assertThat(retried.getLockedBy()).isNull();
+        assertThat(retried.getLastError()).isEqualTo("timeout");
+        // База 10 с плюс джиттер до 20%
+        assertThat(retried.getRunAt()).isBetween(failedAt.plusSeconds(10), failedAt.plusSeconds(13));
+        assertThat(aiJobService.claim(AiJobType.ANALYSIS, 10, "worker-1")).isEmpty();
+
+        makeDue(id);
+        claimOne();
+        AiJob dead = aiJobService.fail(id, "worker-1", "timeout again");
+
+        assertThat(dead.getStatus()).isEqualTo(AiJobStatus.DEAD);
+        assertThat(dead.getAttempts()).isEqualTo(2);
+        assertThat(dead.getCompletedAt()).isNotNull();
+    }
+
+    @Test
+    void resultOfLostLeaseIsIgnored() {
+        Long id = insertJob(ticketId, AiJobStatus.PENDING, 0, LocalDateTime.now(), null);
+        claimOne();
+
+        assertThat(aiJobService.complete(id, "worker-2")).isNull();
+        assertThat(aiJobService.fail(id, "worker-2", "error")).isNull();
+        assertThat(aiJobService.complete(id, "worker-1").getStatus()).isEqualTo(AiJobStatus.DONE);
+        assertThat(aiJobService.complete(id, "worker-1")).isNull();
+    }
+
+    @Test
+    void deferDoesNotSpendAttempt() {
+        Long id = insertJob(ticketId, AiJobStatus.PENDING, 0, LocalDateTime.now(), null);
+        claimOne();
+
+        AiJob deferred = aiJobService.defer(id, "worker-1", "overloaded");
+
+        assertThat(deferred.getStatus()).isEqualTo(AiJobStatus.PENDING);
+        assertThat(deferred.getAttempts()).isZero();
+        assertThat(deferred.getRunAt()).isAfter(LocalDateTime.now());
+    }
+
+    @Test
+    void retryRequeuesDeadJob() {
+        Long id = insertJob(ticketId, AiJobStatus.DEAD, 5, LocalDateTime.now().minusDays(1), null);
+
+        AiJob retried = aiJobService.retry(id);
+
+        assertThat(retried.getStatus()).isEqualTo(AiJobStatus.PENDING);
+        assertThat(retried.getAttempts()).isZero();
+        assertThat(retried.getCompletedAt()).isNull();
+        assertThat(claimOne().getId()).isEqualTo(id);
+        assertThatThrownBy(() -> aiJobService.retry(id)).hasMessageContaining("Only dead jobs");
+    }
+
+    @Test
+    void retryIsRefusedWhenSameJobIsPending() {
+        Long id = insertJob(ticketId, AiJobStatus.DEAD, 5, LocalDateTime.now().minusDays(1), null);
+        insertJob(ticketId, AiJobStatus.PENDING, 0, LocalDateTime.now(), null);
+
+        assertThatThrownBy(() -> aiJobService.retry(id)).hasMessageContaining("already queued");
+        assertThat(job(id).getStatus()).isEqualTo(AiJobStatus.DEAD);
+    }
+
+    @Test
+    void expiredLeasesAreRequeuedOrDeadLettered() {
+        LocalDateTime now = LocalDateTime.now();
+        Long requeued = insertJob(ticketId, AiJobStatus.RUNNING, 1, now.minusMinutes(10), now.minusMinutes(1));
+        Long exhausted = insertJob(newTicket(), AiJobStatus.RUNNING, 5, now.minusMinutes(10), now.minusMinutes(1));
+        Long leased = insertJob(newTicket(), AiJobStatus.RUNNING, 1, now.minusMinutes(10), now.plusMinutes(1));
+
+        assertThat(aiJobService.sweepExpiredLeases()).isEqualTo(2);
+
+        assertThat(job(requeued).getStatus()).isEqualTo(AiJobStatus.PENDING);
+        assertThat(job(requeued).getLockedBy()).isNull();
+        assertThat(job(exhausted).getStatus()).isEqualTo(AiJobStatus.DEAD);
+        assertThat(job(exhausted).getLastError()).isEqualTo("Lease expired, attempts exhausted");
+        assertThat(job(leased).getStatus()).isEqualTo(AiJobStatus.RUNNING);
+    }
+
+    @Test
+    void expiredLeaseSupersededByPendingJobIsCompleted() {
+        LocalDateTime now = LocalDateTime.now();
+        Long running = insertJob(ticketId, AiJobStatus.RUNNING, 1, now.minusMinutes(10), now.minusMinutes(1));
+        Long pending = insertJob(ticketId, AiJobStatus.PENDING, 0, now, null);
+
+        assertThat(aiJobService.sweepExpiredLeases()).isEqualTo(1);
+
+        assertThat(job(running).getStatus()).isEqualTo(AiJobStatus.DONE);
+        assertThat(job(pending).getStatus()).isEqualTo(AiJobStatus.PENDING);
+    }
+
+    @Test
+    void failedJobSupersededByScheduledJobIsCompleted() {
+        aiJobService.scheduleForTicket(AiJobType.RAG_REFRESH, ticketId, Duration.ZERO);
+        AiJob running = aiJobService.claim(AiJobType.RAG_REFRESH, 1, "worker-1").get(0);
+        // За время выполнения пришло новое сообщение - debounce ставит вторую задачу
+        aiJobService.scheduleForTicket(AiJobType.RAG_REFRESH, ticketId, Duration.ofSeconds(30));
+
+        AiJob failed = aiJobService.fail(running.getId(), "worker-1", "error");
+
+        assertThat(failed.getStatus()).isEqualTo(AiJobStatus.DONE);
+        assertThat(jobsOfTicket(AiJobType.RAG_REFRESH))
+                .extracting(AiJob::getStatus)
+                .containsExactlyInAnyOrder(AiJobStatus.DONE, AiJobStatus.PENDING);
+    }
+
+    @Test
+    void insertIfAbsentEnqueuesJobTypeOnce() {
+        LocalDateTime now = LocalDateTime.now();
+
+        assertThat(aiJobRepository.insertIfAbsent(ticketId, "ANALYSIS", now, 5)).isEqualTo(1);
+        assertThat(aiJobRepository.insertIfAbsent(ticketId, "ANALYSIS", now, 5)).isZero();
+        assertThat(aiJobRepository.insertIfAbsent(ticketId, "RAG_ANSWER", now, 5)).isEqualTo(1);
+
+        assertThat(jobsOfTicket(AiJobType.ANALYSIS)).hasSize(1);
+    }
+
+    @Test
+    void insertIfAbsentSkipsTypeInAnyStatus() {
+        aiJobRepository.insertIfAbsent(ticketId, "ANALYSIS", LocalDateTime.now(), 5);
+        jdbcTemplate.update("UPDATE ai_jobs SET status = 'DONE', completed_at = now() WHERE ticket_id = ?", ticketId);
+
+        assertThat(aiJobRepository.insertIfAbsent(ticketId, "ANALYSIS", LocalDateTime.now(), 5)).isZero();
+    }
+
+    @Test
+    void schedulePendingPostponesExistingJob() {
+        LocalDateTime first = LocalDateTime.now().plusSeconds(2).withNano(0);
+        LocalDateTime second = first.plusSeconds(5);
+
+        aiJobRepository.schedulePending(ticketId, "RAG_REFRESH", first, 5);
+        aiJobRepository.schedulePending(ticketId, "RAG_REFRESH", second, 5);
+
+        List<AiJob> jobs = jobsOfTicket(AiJobType.RAG_REFRESH);
+        assertThat(jobs).hasSize(1);
+        assertThat(jobs.get(0).getRunAt()).isEqualTo(second);
+        assertThat(jobs.get(0).getStatus()).isEqualTo(AiJobStatus.PENDING);
+    }
+
+    @Test
+    void schedulePendingAddsJobNextToRunningOne() {
+        aiJobRepository.schedulePending(ticketId, "RAG_REFRESH", LocalDateTime.now(), 5);
+        jdbcTemplate.update("UPDATE ai_jobs SET status = 'RUNNING' WHERE ticket_id = ?", ticketId);
+
+        aiJobRepository.schedulePending(ticketId, "RAG_REFRESH", LocalDateTime.now().plusSeconds(2), 5);
+
+        assertThat(jobsOfTicket(AiJobType.RAG_REFRESH))
+                .extracting(AiJob::getStatus)
+                .containsExactlyInAnyOrder(AiJobStatus.RUNNING, AiJobStatus.PENDING);
+    }
+
+    @Test
+    void knowledgeBaseJobIsEnqueuedOncePerPendingState() {
+        Long knowledgeBaseId = newKnowledgeBaseEntry();
+
+        // Создание и правка подряд: вторая задача не нужна, ожидающая возьмёт последний текст
+        assertThat(aiJobService.enqueueForKnowledgeBase(AiJobType.EMBEDDING, knowledgeBaseId)).isTrue();
+        assertThat(aiJobService.enqueueForKnowledgeBase(AiJobType.EMBEDDING, knowledgeBaseId)).isFalse();
+
+        // Миграции ставят задачи EMBEDDING для демо-статей - берём задачу своей статьи
+        AiJob running = aiJobService.claim(AiJobType.EMBEDDING, 100, "worker-1").stream()
+                .filter(job -> knowledgeBaseId.equals(job.getKnowledgeBaseId()))
+                .findFirst()
+                .orElseThrow();
+        // Правка во время выполнения ставит новую задачу рядом с выполняемой
+        assertThat(aiJobService.enqueueForKnowledgeBase(AiJobType.EMBEDDING, knowledgeBaseId)).isTrue();
+
+        AiJob failed = aiJobService.fail(running.getId(), "worker-1", "error");
+
+        assertThat(failed.getStatus()).isEqualTo(AiJobStatus.DONE);
+        assertThat(jobsOfKnowledgeBaseEntry(knowledgeBaseId))
+                .extracting(AiJob::getStatus)
+                .containsExactlyInAnyOrder(AiJobStatus.DONE, AiJobStatus.PENDING);
+    }
+
+    @Test
+    void expiredKnowledgeBaseLeaseSupersededByPendingJobIsCompleted() {
+        Long knowledgeBaseId = newKnowledgeBaseEntry();
+        aiJobService.enqueueForKnowledgeBase(AiJobType.EMBEDDING, knowledgeBaseId);
+        aiJobService.claim(AiJobType.EMBEDDING, 100, "worker-1");
+        aiJobService.enqueueForKnowledgeBase(AiJobType.EMBEDDING, knowledgeBaseId);
+        entityManager.flush();
+        jdbcTemplate.update("UPDATE ai_jobs SET locked_until = ? WHERE status = 'RUNNING' AND knowledge_base_id = ?",
+                LocalDateTime.now().minusMinutes(1), knowledgeBaseId);
+
+        assertThat(aiJobService.sweepExpiredLeases()).isEqualTo(1);
+
+        assertThat(jobsOfKnowledgeBaseEntry(knowledgeBaseId))
+                .extracting(AiJob::getStatus)
+                .containsExactlyInAnyOrder(AiJobStatus.DONE, AiJobStatus.PENDING);
+    }
+
+    @Test
+    void purgeDeletesOnlyJobsPastRetention() {
+        LocalDateTime now = LocalDateTime.now();
+        insertFinished(AiJobType.ANALYSIS, AiJobStatus.DONE, now.minusDays(8));
+        insertFinished(AiJobType.RAG_ANSWER, AiJobStatus.DONE, now.minusDays(9));
+        insertFinished(AiJobType.RAG_REFRESH, AiJobStatus.DONE, now.minusDays(10));
+        insertFinished(AiJobType.TRANSCRIPTION, AiJobStatus.DONE, now.minusHours(1));
+        insertFinished(AiJobType.IMAGE_DESCRIPTION, AiJobStatus.DEAD, now.minusDays(8));
+        insertFinished(AiJobType.EMBEDDING, AiJobStatus.DEAD, now.minusDays(31));
+        aiJobRepository.schedulePending(ticketId, "RAG_REFRESH", now.minusDays(60), 5);
+
+        // Пачки по 2: три просроченные DONE удаляются за два запроса
+        assertThat(aiJobService.purgeFinishedJobs()).isEqualTo(4);
+
+        assertThat(jobsOfTicket(null))
+                .extracting(AiJob::getJobType)
+                .containsExactlyInAnyOrder(AiJobType.TRANSCRIPTION, AiJobType.IMAGE_DESCRIPTION, AiJobType.RAG_REFRESH);
+    }
+
+    @Test
+    void purgeHonoursConfiguredRetention() {
+        insertFinished(AiJobType.ANALYSIS, AiJobStatus.DONE, LocalDateTime.now().minusHours(2));
+        properties.setDoneRetention(Duration.ofHours(1));
+
+        assertThat(aiJobService.purgeFinishedJobs()).isEqualTo(1);
+    }
+
+    private Long newTicket() {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO tickets (project_id, status) VALUES (?, 'PROCESSING') RETURNING id",
+                Long.class, projectId);
+    }
+
+    private Long newKnowledgeBaseEntry() {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO knowledge_base (project_id, title, content) VALUES (?, 'Оплата', 'Как оплатить') RETURNING id",
+                Long.class, projectId);
+    }
+
+    private List<AiJob> jobsOfKnowledgeBaseEntry(Long knowledgeBaseId) {
+        entityManager.flush();
+        entityManager.clear();
+        return aiJobRepository.findAll().stream()
+                .filter(job -> knowledgeBaseId.equals(job.getKnowledgeBaseId()))
+                .toList();
+    }
+
+    private Long insertJob(Long ticket, AiJobStatus status, int attempts, LocalDateTime runAt,
+                           LocalDateTime lockedUntil) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO ai_jobs (job_type, status, ticket_id, attempts, max_attempts, run_at, locked_by, locked_until) " +
+                "VALUES ('ANALYSIS', ?, ?, ?, ?, ?, ?, ?) RETURNING id",
+                Long.class, status.name(), ticket, attempts, properties.getMaxAttempts(), runAt,
+                lockedUntil != null ? "worker-0" : null, lockedUntil);
+    }
+
+    private AiJob claimOne() {
+        List<AiJob> claimed = aiJobService.claim(AiJobType.ANALYSIS, 1, "worker-1");
+        assertThat(claimed).hasSize(1);
+        return claimed.get(0);
+    }
+
+    /**
+     * Сдвинуть run_at задачи в прошлое, не дожидаясь задержки повтора
+     */
+    private void makeDue(Long id) {
+        entityManager.flush();
+        jdbcTemplate.update("UPDATE ai_jobs SET run_at = ? WHERE id = ?", LocalDateTime.now().minusSeconds(1), id);
+        entityManager.clear();
+    }
+
+    private AiJob job(Long id) {
+        entityManager.flush();
+        entityManager.clear();
+        Optional<AiJob> job = aiJobRepository.findById(id);
+        assertThat(job).isPresent();
+        return job.get();
+    }
+
+    private void insertFinished(AiJobType type, AiJobStatus status, LocalDateTime completedAt) {
+        jdbcTemplate.update(
+                "INSERT INTO ai_jobs (job_type, status, ticket_id, max_attempts, completed_at) VALUES (?, ?, ?, 5, ?)",
+                type.name(), status.name(), ticketId, completedAt);
+    }
+
+    private List<AiJob> jobsOfTicket(AiJobType type) {
+        entityManager.flush();
+        entityManager.clear();
+        return aiJobRepository.findAll().stream()
+                .filter(job -> ticketId.equals(job.getTicketId()))
+                .filter(job -> type == null || job.getJobType() == type)
+                .toList();
+    }
+}
@@ -0,0 +1,113 @@
+package com.nova.support.repository;
+
+import com.nova.support.TestcontainersConfiguration;
+import com.nova.support.dto.ChatMessageResponse;
+import com.nova.support.service.ChatService;
+import com.nova.support.service.TicketService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Keyset пагинация истории чата на PostgreSQL (Testcontainers)
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TestcontainersConfiguration.class)
+class ChatMessageRepositoryTest {
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ChatService chatService;
+    private Long ticketId;
+    private List<Long> messageIds;
+
+    @BeforeEach
+    void setUp() {
+        chatService = new ChatService(chatMessageRepository, mock(SimpMessagingTemplate.class), mock(TicketService.class));
+        ReflectionTestUtils.setField(chatService, "defaultMessagesLimit", 3);
+        ReflectionTestUtils.setField(chatService, "maxMessagesLimit", 4);
+
+        Long projectId = jdbcTemplate.queryForObject(
+                "INSERT INTO projects (name, api_key) VALUES ('Test', gen_random_uuid()::text) RETURNING id",
+                Long.class);
+        ticketId = newTicket(projectId);
+        Long otherTicketId = newTicket(projectId);
+
+        // Сообщения двух тикетов вперемешку: курсор по id не должен захватывать чужие
+        messageIds = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            messageIds.add(insertMessage(ticketId, "message " + i));
+            insertMessage(otherTicketId, "other " + i);
+        }
+    }
+
+    @Test
+    void withoutCursorReturnsLastMessagesInAscendingOrder() {
+        assertThat(ids(chatService.getTicketMessages(ticketId, null, null, null)))
+                .containsExactlyElementsOf(messageIds.subList(4, 7));
+    }
+
+    @Test
+    void beforePagesBackToFirstMessage() {
+        List<Long> page = ids(chatService.getTicketMessages(ticketId, null, null, null));
+        List<Long> older = ids(chatService.getTicketMessages(ticketId, null, page.get(0), null));
+        List<Long> oldest = ids(chatService.getTicketMessages(ticketId, null, older.get(0), null));
+
+        assertThat(older).containsExactlyElementsOf(messageIds.subList(1, 4));
+        assertThat(oldest).containsExactly(messageIds.get(0));
+        assertThat(chatService.getTicketMessages(ticketId, null, oldest.get(0), null)).isEmpty();
+    }
+
+    @Test
+    void afterReturnsNewerMessagesFromCursor() {
+        assertThat(ids(chatService.getTicketMessages(ticketId, messageIds.get(1), null, null)))
+                .containsExactlyElementsOf(messageIds.subList(2, 5));
+        assertThat(chatService.getTicketMessages(ticketId, messageIds.get(6), null, null)).isEmpty();
+    }
+
+    @Test
+    void limitIsCappedByMaxLimit() {
+        assertThat(chatService.getTicketMessages(ticketId, null, null, 100)).hasSize(4);
+        assertThat(chatService.getTicketMessages(ticketId, null, null, 2)).hasSize(2);
+    }
+
+    @Test
+    void bothCursorsAreRejected() {
+        assertThatThrownBy(() -> chatService.getTicketMessages(ticketId, 1L, 2L, null))
+                .hasMessageContaining("Only one of after and before");
+    }
+
+    private Long newTicket(Long projectId) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO tickets (project_id, status) VALUES (?, 'PROCESSING') RETURNING id",
+                Long.class, projectId);
+    }
+
+    private Long insertMessage(Long ticket, String text) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO chat_messages (ticket_id, sender_type, message) VALUES (?, 'CLIENT', ?) RETURNING id",
+                Long.class, ticket, text);
+    }
+
+    private static List<Long> ids(List<ChatMessageResponse> messages) {
+        return messages.stream().map(ChatMessageResponse::getId).toList();
+    }
+}
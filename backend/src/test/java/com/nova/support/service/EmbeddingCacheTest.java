@@ -0,0 +1,133 @@
+package com.nova.support.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmbeddingCacheTest {
+
+    private static final String MODEL = "nomic-embed-text";
+    private static final int DIMENSION = 4;
+    private static final int HEADER_BYTES = 16;
+    private static final int VECTOR_OFFSET = 32 + 4;
+    private static final int RECORD_BYTES = VECTOR_OFFSET + DIMENSION * Float.BYTES;
+
+    @TempDir
+    Path tempDir;
+
+    private final List<EmbeddingCache> opened = new ArrayList<>();
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(EmbeddingCache::close);
+    }
+
+    @Test
+    void entryIsReadFromFileAfterReopen() {
+        EmbeddingCache cache = open(16);
+        cache.put(MODEL, "Как оплатить заказ", vector(1));
+        cache.close();
+
+        EmbeddingCache reopened = open(16);
+
+        assertThat(reopened.getIfPresent(MODEL, "Как оплатить заказ")).containsExactly(vector(1));
+        assertThat(reopened.getIfPresent("other-model", "Как оплатить заказ")).isNull();
+        assertThat(requests("hit", "disk")).isEqualTo(1);
+        assertThat(meterRegistry.get("embedding.cache.disk.entries").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void fullProbeChainEvictsOneEntry() {
+        // Ёмкость равна длине цепочки проб: восьмая запись заполняет файл, девятая вытесняет одну из них
+        EmbeddingCache cache = open(8);
+        for (int i = 0; i <= 8; i++) {
+            cache.put(MODEL, "text " + i, vector(i));
+        }
+        cache.close();
+
+        EmbeddingCache reopened = open(8);
+        int found = 0;
+        for (int i = 0; i < 8; i++) {
+            float[] cached = reopened.getIfPresent(MODEL, "text " + i);
+            if (cached != null) {
+                assertThat(cached).containsExactly(vector(i));
+                found++;
+            }
+        }
+
+        assertThat(found).isEqualTo(7);
+        assertThat(reopened.getIfPresent(MODEL, "text 8")).containsExactly(vector(8));
+        assertThat(meterRegistry.get("embedding.cache.disk.entries").gauge().value()).isEqualTo(8);
+    }
+
+    @Test
+    void headerMismatchStartsWithEmptyFile() throws IOException {
+        EmbeddingCache cache = open(16);
+        cache.put(MODEL, "Как оплатить заказ", vector(1));
+        cache.close();
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 0x12345678), 0);
+        }
+
+        EmbeddingCache reopened = open(16);
+
+        assertThat(reopened.getIfPresent(MODEL, "Как оплатить заказ")).isNull();
+        assertThat(meterRegistry.get("embedding.cache.disk.entries").gauge().value()).isZero();
+        assertThat(Files.size(file())).isEqualTo(HEADER_BYTES + 16L * RECORD_BYTES);
+    }
+
+    @Test
+    void corruptedVectorIsMiss() throws IOException {
+        EmbeddingCache cache = open(16);
+        cache.put(MODEL, "Как оплатить заказ", vector(1));
+        cache.close();
+        // Пустые слоты проверяются по ключу, поэтому порча векторов во всех слотах задевает только занятый
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for (int slot = 0; slot < 16; slot++) {
+                long offset = HEADER_BYTES + (long) slot * RECORD_BYTES + VECTOR_OFFSET;
+                ByteBuffer value = ByteBuffer.allocate(Float.BYTES);
+                channel.read(value, offset);
+                value.putFloat(0, value.getFloat(0) + 1f);
+                channel.write(value.rewind(), offset);
+            }
+        }
+
+        EmbeddingCache reopened = open(16);
+
+        assertThat(reopened.getIfPresent(MODEL, "Как оплатить заказ")).isNull();
+        assertThat(requests("miss", "none")).isEqualTo(1);
+    }
+
+    private EmbeddingCache open(int capacity) {
+        meterRegistry = new SimpleMeterRegistry();
+        EmbeddingCache cache = new EmbeddingCache(meterRegistry, DIMENSION, 100, file().toString(), capacity);
+        opened.add(cache);
+        return cache;
+    }
+
+    private Path file() {
+        return tempDir.resolve("embedding-cache.bin");
+    }
+
+    private double requests(String result, String tier) {
+        return meterRegistry.get("embedding.cache.requests").tag("result", result).tag("tier", tier).counter().count();
+    }
+
+    private static float[] vector(int seed) {
+        return new float[]{seed, seed + 0.5f, -seed, 1f / (seed + 1)};
+    }
+}
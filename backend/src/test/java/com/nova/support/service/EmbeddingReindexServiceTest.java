@@ -0,0 +1,180 @@
+package com.nova.support.service;
+
+import com.nova.support.TestcontainersConfiguration;
+import com.nova.support.dto.EmbeddingModelVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Фоновая переиндексация и переключение поиска на новую модель эмбеддингов (Testcontainers)
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TestcontainersConfiguration.class)
+class EmbeddingReindexServiceTest {
+
+    private static final int DIMENSION = 768;
+    private static final EmbeddingModelVersion ACTIVE = new EmbeddingModelVersion("nomic-embed-text", 1);
+    private static final EmbeddingModelVersion TARGET = new EmbeddingModelVersion("nomic-embed-text", 2);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final OllamaService ollamaService = mock(OllamaService.class);
+    private final InMemoryVectorIndex inMemoryVectorIndex = mock(InMemoryVectorIndex.class);
+    private EmbeddingVersions embeddingVersions;
+    private EmbeddingReindexService reindexService;
+    private Long knowledgeBaseId;
+    private List<Long> chunkIds;
+
+    @BeforeEach
+    void setUp() {
+        when(ollamaService.generateEmbeddings(eq(TARGET), anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(1);
+            return Collections.nCopies(texts.size(), vector(0.5f));
+        });
+
+        // Активна модель, записанная миграцией как COMPLETED; конфигурация требует следующую версию
+        embeddingVersions = new EmbeddingVersions(jdbcTemplate, TARGET.model(), TARGET.version());
+        reindexService = new EmbeddingReindexService(jdbcTemplate, new TransactionTemplate(transactionManager),
+                embeddingVersions, ollamaService, new OllamaAdmission(new SimpleMeterRegistry()), inMemoryVectorIndex);
+        ReflectionTestUtils.setField(reindexService, "enabled", true);
+        ReflectionTestUtils.setField(reindexService, "batchSize", 2);
+        ReflectionTestUtils.setField(reindexService, "leaseSeconds", 300);
+
+        Long projectId = jdbcTemplate.queryForObject(
+                "INSERT INTO projects (name, api_key) VALUES ('Test', gen_random_uuid()::text) RETURNING id",
+                Long.class);
+        knowledgeBaseId = jdbcTemplate.queryForObject(
+                "INSERT INTO knowledge_base (project_id, title, content, embedding, embedding_model, embedding_version) " +
+                "VALUES (?, 'Оплата', 'Как оплатить заказ', array_fill(0.1::real, ARRAY[768])::vector, ?, ?) " +
+                "RETURNING id",
+                Long.class, projectId, ACTIVE.model(), ACTIVE.version());
+        chunkIds = List.of(insertChunk(0), insertChunk(1), insertChunk(2));
+    }
+
+    @Test
+    void searchSwitchesOnlyAfterAllChunksAreReembedded() {
+        assertThat(embeddingVersions.active()).isEqualTo(ACTIVE);
+        assertThat(embeddingVersions.inTransition()).isTrue();
+
+        reindexService.reindexBatch();
+        reindexService.reindexBatch();
+
+        // Все векторы новой модели накоплены, но поиск ещё идёт по прежним
+        assertThat(countChunks("next_embedding_version = 2")).isEqualTo(3);
+        assertThat(countChunks("embedding_version = 1")).isEqualTo(3);
+        assertThat(embeddingVersions.active()).isEqualTo(ACTIVE);
+        verify(inMemoryVectorIndex, never()).refresh();
+
+        reindexService.reindexBatch();
+
+        assertThat(embeddingVersions.active()).isEqualTo(TARGET);
+        assertThat(embeddingVersions.inTransition()).isFalse();
+        assertThat(countChunks("embedding_version = 2 AND next_embedding IS NULL")).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT embedding_version FROM knowledge_base WHERE id = ?", Integer.class, knowledgeBaseId))
+                .isEqualTo(TARGET.version());
+        assertThat(runStatus(TARGET)).isEqualTo("COMPLETED");
+        verify(inMemoryVectorIndex).refresh();
+
+        reindexService.reindexBatch();
+        verify(ollamaService, times(2)).generateEmbeddings(eq(TARGET), anyList());
+    }
+
+    @Test
+    void chunkChangedBehindCursorIsCaughtUpBeforeSwitch() {
+        reindexService.reindexBatch();
+        // Первый фрагмент изменён после того, как курсор его прошёл
+        jdbcTemplate.update("UPDATE knowledge_chunks SET next_embedding = NULL, next_embedding_model = NULL, " +
+                "next_embedding_version = NULL WHERE id = ?", chunkIds.get(0));
+        reindexService.reindexBatch();
+
+        reindexService.reindexBatch();
+
+        assertThat(embeddingVersions.active()).isEqualTo(ACTIVE);
+        assertThat(runStatus(TARGET)).isEqualTo("RUNNING");
+
+        reindexService.reindexBatch();
+        reindexService.reindexBatch();
+
+        assertThat(embeddingVersions.active()).isEqualTo(TARGET);
+        assertThat(countChunks("embedding_version = 2")).isEqualTo(3);
+    }
+
+    @Test
+    void runLeasedByAnotherInstanceIsSkipped() {
+        jdbcTemplate.update(
+                "INSERT INTO embedding_reindex_runs (model, version, locked_by, locked_until) " +
+                "VALUES (?, ?, 'other-instance', CURRENT_TIMESTAMP + interval '5 minutes')",
+                TARGET.model(), TARGET.version());
+
+        reindexService.reindexBatch();
+
+        verify(ollamaService, never()).generateEmbeddings(any(EmbeddingModelVersion.class), anyList());
+        assertThat(countChunks("next_embedding IS NOT NULL")).isZero();
+    }
+
+    @Test
+    void disabledReindexDoesNothing() {
+        ReflectionTestUtils.setField(reindexService, "enabled", false);
+
+        reindexService.reindexBatch();
+
+        verify(ollamaService, never()).generateEmbeddings(any(EmbeddingModelVersion.class), anyList());
+        assertThat(embeddingVersions.active()).isEqualTo(ACTIVE);
+    }
+
+    private Long insertChunk(int index) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO knowledge_chunks (knowledge_base_id, chunk_index, content, content_hash, token_count, " +
+                "embedding, embedding_model, embedding_version) " +
+                "VALUES (?, ?, ?, repeat(?, 64), 3, array_fill(0.1::real, ARRAY[768])::vector, ?, ?) RETURNING id",
+                Long.class, knowledgeBaseId, index, "Фрагмент " + index, String.valueOf(index),
+                ACTIVE.model(), ACTIVE.version());
+    }
+
+    private int countChunks(String condition) {
+        return jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM knowledge_chunks WHERE knowledge_base_id = ? AND " + condition,
+                Integer.class, knowledgeBaseId);
+    }
+
+    private String runStatus(EmbeddingModelVersion version) {
+        return jdbcTemplate.queryForObject(
+                "SELECT status FROM embedding_reindex_runs WHERE model = ? AND version = ?",
+                String.class, version.model(), version.version());
+    }
+
+    private static float[] vector(float value) {
+        float[] vector = new float[DIMENSION];
+        Arrays.fill(vector, value);
+        return vector;
+    }
+}
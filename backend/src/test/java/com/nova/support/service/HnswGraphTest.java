@@ -0,0 +1,228 @@
+package com.nova.support.service;
+
+import com.nova.support.domain.enums.VectorQuantization;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HnswGraphTest {
+
+    private static final int DIMENSION = 128;
+    private static final int K = 10;
+    private static final int EF = 64;
+    private static final int CLUSTERS = 20;
+
+    private final Random random = new Random(7);
+    private final float[][] centers = new float[CLUSTERS][];
+
+    @ParameterizedTest
+    @EnumSource(VectorQuantization.class)
+    void searchRecallMatchesBruteForce(VectorQuantization quantization) {
+        Map<Long, float[]> vectors = randomVectors(1000);
+        HnswGraph graph = HnswGraph.build(settings(quantization, 0),
+                List.copyOf(vectors.keySet()), List.copyOf(vectors.values()));
+
+        assertThat(recall(graph, vectors)).isGreaterThan(0.9);
+    }
+
+    @Test
+    void prefixTraversalIsRerankedOnFullVectors() {
+        Map<Long, float[]> vectors = randomVectors(500);
+        HnswGraph graph = HnswGraph.build(settings(VectorQuantization.NONE, 64),
+                List.copyOf(vectors.keySet()), List.copyOf(vectors.values()));
+
+        float[] stored = vectors.get(42L);
+        assertThat(graph.search(stored, 1, EF)).containsExactly(42L);
+    }
+
+    @Test
+    void incrementalUpsertsMatchBulkBuild() {
+        Map<Long, float[]> vectors = randomVectors(600);
+        HnswGraph graph = HnswGraph.build(settings(VectorQuantization.NONE, 0), List.of(), List.of());
+        for (Map.Entry<Long, float[]> entry : vectors.entrySet()) {
+            graph = graph.with(entry.getKey(), entry.getValue());
+        }
+
+        assertThat(graph.liveSize()).isEqualTo(vectors.size());
+        assertThat(recall(graph, vectors)).isGreaterThan(0.9);
+    }
+
+    @Test
+    void upsertReplacesVectorOfExistingId() {
+        Map<Long, float[]> vectors = randomVectors(200);
+        HnswGraph graph = HnswGraph.build(settings(VectorQuantization.NONE, 0),
+                List.copyOf(vectors.keySet()), List.copyOf(vectors.values()));
+        float[] replacement = vectors.get(5L).clone();
+        for (int i = 0; i < DIMENSION; i++) {
+            replacement[i] = -replacement[i];
+        }
+
+        HnswGraph updated = graph.with(5L, replacement);
+
+        assertThat(updated.liveSize()).isEqualTo(200);
+        assertThat(updated.search(replacement, 1, EF)).containsExactly(5L);
+        assertThat(updated.search(vectors.get(5L), K, EF)).doesNotContain(5L);
+    }
+
+    @Test
+    void removedRecordsAreNotReturned() {
+        Map<Long, float[]> vectors = randomVectors(300);
+        HnswGraph graph = HnswGraph.build(settings(VectorQuantization.NONE, 0),
+                List.copyOf(vectors.keySet()), List.copyOf(vectors.values()));
+
+        for (long id = 0; id < 50; id++) {
+            graph = graph.without(id);
+            vectors.remove(id);
+        }
+
+        assertThat(graph.liveSize()).isEqualTo(250);
+        for (long id = 0; id < 50; id++) {
+            assertThat(Arrays.stream(graph.search(randomVector(), K, EF))).allMatch(vectors::containsKey);
+        }
+        assertThat(graph.without(1_000_000L)).isSameAs(graph);
+    }
+
+    @Test
+    void compactionAfterManyDeletesKeepsRecall() {
+        Map<Long, float[]> vectors = randomVectors(400);
+        HnswGraph graph = HnswGraph.build(settings(VectorQuantization.NONE, 0),
+                List.copyOf(vectors.keySet()), List.copyOf(vectors.values()));
+
+        // Больше четверти удалённых - граф перестраивается без них
+        for (long id = 0; id < 200; id++) {
+            graph = graph.without(id);
+            vectors.remove(id);
+        }
+
+        assertThat(graph.liveSize()).isEqualTo(200);
+        // После перестроения удалённых узлов не больше четверти
+        assertThat(graph.vectorBytes() / (DIMENSION * Float.BYTES)).isLessThanOrEqualTo(200 * 4 / 3);
+        assertThat(recall(graph, vectors)).isGreaterThan(0.9);
+    }
+
+    @Test
+    void publishedSnapshotIsNotAffectedByLaterChanges() {
+        Map<Long, float[]> vectors = randomVectors(300);
+        HnswGraph snapshot = HnswGraph.build(settings(VectorQuantization.NONE, 0),
+                List.copyOf(vectors.keySet()), List.copyOf(vectors.values()));
+        float[] query = randomVector();
+        long[] before = snapshot.search(query, K, EF);
+
+        HnswGraph next = snapshot;
+        for (long id = 0; id < 100; id++) {
+            next = next.without(id).with(1000 + id, query);
+        }
+
+        assertThat(snapshot.liveSize()).isEqualTo(300);
+        assertThat(snapshot.search(query, K, EF)).containsExactly(before);
+        assertThat(Arrays.stream(next.search(query, K, EF))).allMatch(id -> id >= 1000);
+    }
+
+    @Test
+    void olderSnapshotCanBeChangedIndependently() {
+        Map<Long, float[]> vectors = randomVectors(100);
+        HnswGraph base = HnswGraph.build(settings(VectorQuantization.NONE, 0),
+                List.copyOf(vectors.keySet()), List.copyOf(vectors.values()));
+        float[] first = randomVector();
+        float[] second = randomVector();
+
+        HnswGraph a = base.with(500L, first);
+        HnswGraph b = base.with(600L, second);
+
+        assertThat(a.search(first, 1, EF)).containsExactly(500L);
+        assertThat(b.search(second, 1, EF)).containsExactly(600L);
+        assertThat(b.search(first, K, EF)).doesNotContain(500L);
+        assertThat(b.without(3L).liveSize()).isEqualTo(100);
+    }
+
+    @Test
+    void rejectsVectorsOfAnotherDimension() {
+        HnswGraph graph = HnswGraph.build(settings(VectorQuantization.NONE, 0),
+                List.of(1L), List.of(randomVector()));
+
+        assertThatThrownBy(() -> graph.search(new float[DIMENSION + 1], K, EF))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> graph.with(2L, new float[DIMENSION / 2]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void emptyGraphReturnsNothing() {
+        HnswGraph graph = HnswGraph.build(settings(VectorQuantization.NONE, 0), List.of(), List.of());
+
+        assertThat(graph.search(randomVector(), K, EF)).isEmpty();
+        assertThat(graph.liveSize()).isZero();
+    }
+
+    private static HnswGraph.Settings settings(VectorQuantization quantization, int prefixDimensions) {
+        return new HnswGraph.Settings(16, 100, quantization, 4, prefixDimensions);
+    }
+
+    private double recall(HnswGraph graph, Map<Long, float[]> vectors) {
+        int found = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector();
+            List<Long> exact = vectors.entrySet().stream()
+                    .sorted(Comparator.comparingDouble(entry -> -cosine(query, entry.getValue())))
+                    .limit(K)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            found += (int) Arrays.stream(graph.search(query, K, EF)).filter(exact::contains).count();
+        }
+        return (double) found / (queries * K);
+    }
+
+    private Map<Long, float[]> randomVectors(int count) {
+        Map<Long, float[]> vectors = new LinkedHashMap<>();
+        for (long id = 0; id < count; id++) {
+            vectors.put(id, randomVector());
+        }
+        return vectors;
+    }
+
+    /**
+     * Эмбеддинги текстов сгруппированы по темам: точка = центр темы + шум
+     */
+    private float[] randomVector() {
+        int cluster = random.nextInt(CLUSTERS);
+        if (centers[cluster] == null) {
+            centers[cluster] = gaussian(1.0);
+        }
+        float[] noise = gaussian(0.5);
+        for (int i = 0; i < DIMENSION; i++) {
+            noise[i] += centers[cluster][i];
+        }
+        return noise;
+    }
+
+    private float[] gaussian(double sigma) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) (random.nextGaussian() * sigma);
+        }
+        return vector;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+}
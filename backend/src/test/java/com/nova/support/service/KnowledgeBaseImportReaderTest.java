@@ -0,0 +1,113 @@
+package com.nova.support.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nova.support.domain.enums.KnowledgeBaseImportFormat;
+import com.nova.support.dto.KnowledgeBaseRequest;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KnowledgeBaseImportReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void csvQuotedFieldKeepsCommasNewlinesAndEscapedQuotes() throws IOException {
+        List<KnowledgeBaseRequest> records = readAll(KnowledgeBaseImportFormat.CSV,
+                "title,content,source_type,source_url\r\n" +
+                "\"Оплата, доставка\",\"Первая строка\r\nвторая \"\"в кавычках\"\"\",FAQ,\r\n" +
+                "Возврат,Без кавычек,,https://example.com/return\r\n");
+
+        assertThat(records).hasSize(2);
+        assertThat(records.get(0).getTitle()).isEqualTo("Оплата, доставка");
+        assertThat(records.get(0).getContent()).isEqualTo("Первая строка\r\nвторая \"в кавычках\"");
+        assertThat(records.get(0).getSourceType()).isEqualTo("FAQ");
+        assertThat(records.get(0).getSourceUrl()).isNull();
+        assertThat(records.get(1).getTitle()).isEqualTo("Возврат");
+        assertThat(records.get(1).getSourceType()).isEqualTo("IMPORT");
+        assertThat(records.get(1).getSourceUrl()).isEqualTo("https://example.com/return");
+    }
+
+    @Test
+    void csvHeaderIsMatchedIgnoringBomCaseAndOrder() throws IOException {
+        List<KnowledgeBaseRequest> records = readAll(KnowledgeBaseImportFormat.CSV,
+                "\uFEFFContent,Title\n\nТекст,Заголовок\n");
+
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).getTitle()).isEqualTo("Заголовок");
+        assertThat(records.get(0).getContent()).isEqualTo("Текст");
+        assertThat(records.get(0).getSourceType()).isEqualTo("IMPORT");
+    }
+
+    @Test
+    void csvWithoutContentColumnIsRejected() {
+        assertThatThrownBy(() -> readAll(KnowledgeBaseImportFormat.CSV, "title,body\nОплата,Текст\n"))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("title and content");
+    }
+
+    @Test
+    void csvShortRecordLeavesMissingFieldsEmpty() throws IOException {
+        List<KnowledgeBaseRequest> records = readAll(KnowledgeBaseImportFormat.CSV, "title,content\nОплата\n");
+
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).getTitle()).isEqualTo("Оплата");
+        assertThat(records.get(0).getContent()).isNull();
+    }
+
+    @Test
+    void csvOversizedRecordIsSkippedAndReadingContinues() throws IOException {
+        // Запятая и перевод строки после предела остаются внутри кавычек: запись дочитывается целиком
+        String longContent = "x".repeat(KnowledgeBaseImportReader.MAX_CSV_RECORD_CHARS);
+        List<KnowledgeBaseRequest> records = readAll(KnowledgeBaseImportFormat.CSV,
+                "title,content\nДлинная,\"" + longContent + ",\n\"\nОплата,Текст\n");
+
+        assertThat(records).hasSize(2);
+        assertThat(records.get(0).getTitle()).isNull();
+        assertThat(records.get(0).getContent()).isNull();
+        assertThat(records.get(1).getTitle()).isEqualTo("Оплата");
+        assertThat(records.get(1).getContent()).isEqualTo("Текст");
+    }
+
+    @Test
+    void jsonlStripsBomAndSkipsBlankLines() throws IOException {
+        List<KnowledgeBaseRequest> records = readAll(KnowledgeBaseImportFormat.JSONL,
+                "\uFEFF{\"title\":\"Оплата\",\"content\":\"Текст\",\"sourceType\":\"FAQ\"}\n\n" +
+                "{\"title\":\"Возврат\",\"content\":\"Условия\",\"sourceUrl\":\"https://example.com\"}\n");
+
+        assertThat(records).hasSize(2);
+        assertThat(records.get(0).getTitle()).isEqualTo("Оплата");
+        assertThat(records.get(0).getSourceType()).isEqualTo("FAQ");
+        assertThat(records.get(1).getSourceType()).isEqualTo("IMPORT");
+        assertThat(records.get(1).getSourceUrl()).isEqualTo("https://example.com");
+    }
+
+    @Test
+    void jsonlMalformedLineBecomesEmptyRecord() throws IOException {
+        List<KnowledgeBaseRequest> records = readAll(KnowledgeBaseImportFormat.JSONL,
+                "{\"title\":\"Оплата\",\n{\"title\":\"Возврат\",\"content\":\"Условия\"}\n");
+
+        assertThat(records).hasSize(2);
+        assertThat(records.get(0).getTitle()).isNull();
+        assertThat(records.get(1).getTitle()).isEqualTo("Возврат");
+    }
+
+    private List<KnowledgeBaseRequest> readAll(KnowledgeBaseImportFormat format, String text) throws IOException {
+        List<KnowledgeBaseRequest> records = new ArrayList<>();
+        try (KnowledgeBaseImportReader reader = KnowledgeBaseImportReader.open(format,
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), objectMapper)) {
+            KnowledgeBaseRequest record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,54 @@
+package com.nova.support.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KnowledgeBaseServiceTest {
+
+    private static final int K = 60;
+
+    @Test
+    void recordFoundByBothSearchesRanksFirst() {
+        List<Long> lexical = List.of(1L, 2L, 3L);
+        List<Long> semantic = List.of(3L, 4L);
+
+        // 3: 1/63 + 1/61; 1: 1/61; 2 и 4: 1/62 - равенство решает меньший id
+        assertThat(KnowledgeBaseService.fuseRanks(K, 10, List.of(lexical, semantic)))
+                .containsExactly(3L, 1L, 2L, 4L);
+    }
+
+    @Test
+    void resultIsCutToLimit() {
+        List<Long> lexical = List.of(5L, 6L, 7L);
+        List<Long> semantic = List.of(8L, 9L);
+
+        assertThat(KnowledgeBaseService.fuseRanks(K, 2, List.of(lexical, semantic)))
+                .containsExactly(5L, 8L);
+    }
+
+    @Test
+    void singleRankingKeepsItsOrder() {
+        List<Long> lexical = List.of(9L, 3L, 7L);
+
+        assertThat(KnowledgeBaseService.fuseRanks(K, 10, List.of(lexical, List.of())))
+                .containsExactly(9L, 3L, 7L);
+    }
+
+    @Test
+    void smallerKFavoursTopPositions() {
+        // Первое место в одном рейтинге против третьего места в обоих
+        List<Long> lexical = List.of(1L, 2L, 3L);
+        List<Long> semantic = List.of(4L, 5L, 3L);
+
+        assertThat(KnowledgeBaseService.fuseRanks(0, 1, List.of(lexical, semantic))).containsExactly(1L);
+        assertThat(KnowledgeBaseService.fuseRanks(K, 1, List.of(lexical, semantic))).containsExactly(3L);
+    }
+
+    @Test
+    void noRankingsGiveNothing() {
+        assertThat(KnowledgeBaseService.fuseRanks(K, 10, List.of(List.of(), List.of()))).isEmpty();
+    }
+}
@@ -0,0 +1,145 @@
+package com.nova.support.service;
+
+import com.nova.support.TestcontainersConfiguration;
+import com.nova.support.config.VectorCodec;
+import com.nova.support.dto.KnowledgePassage;
+import com.nova.support.repository.KnowledgeChunkRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Выбор фрагментов для контекста RAG среди статей гибридного поиска (Testcontainers)
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TestcontainersConfiguration.class)
+class KnowledgeChunkServiceTest {
+
+    private static final int DIMENSION = 768;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private KnowledgeChunkService knowledgeChunkService;
+    private Long projectId;
+    private Long lexicalArticle;
+    private Long semanticArticle;
+
+    @BeforeEach
+    void setUp() {
+        knowledgeChunkService = new KnowledgeChunkService(mock(KnowledgeChunkRepository.class),
+                mock(OllamaService.class), new OllamaAdmission(new SimpleMeterRegistry()), jdbcTemplate,
+                new TransactionTemplate(transactionManager), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(knowledgeChunkService, "pinnedArticles", 2);
+
+        projectId = jdbcTemplate.queryForObject(
+                "INSERT INTO projects (name, api_key) VALUES ('Test', gen_random_uuid()::text) RETURNING id",
+                Long.class);
+        // Статья совпала с запросом только по тексту: её фрагменты далеки от запроса по вектору
+        lexicalArticle = insertArticle("Возврат");
+        insertChunk(lexicalArticle, 0, "Возврат: сроки", vector(-1f, 0f, 0f));
+        insertChunk(lexicalArticle, 1, "Возврат: условия", vector(-1f, 0f, 1f));
+        semanticArticle = insertArticle("Оплата");
+        insertChunk(semanticArticle, 0, "Оплата: карта", vector(1f, 0.1f, 0f));
+        insertChunk(semanticArticle, 1, "Оплата: счёт", vector(1f, 0.5f, 0f));
+        insertChunk(semanticArticle, 2, "Оплата: наличные", vector(0f, 1f, 0f));
+    }
+
+    @Test
+    void lexicalOnlyArticleKeepsItsBestChunk() {
+        List<KnowledgePassage> passages = knowledgeChunkService.findBestPassages(
+                List.of(lexicalArticle, semanticArticle), vector(1f, 0f, 0f), 2);
+
+        // Только по distance оба места заняли бы фрагменты второй статьи
+        assertThat(contents(passages)).containsExactly("Возврат: условия", "Оплата: карта");
+    }
+
+    @Test
+    void remainingSlotsAreFilledByDistance() {
+        ReflectionTestUtils.setField(knowledgeChunkService, "pinnedArticles", 1);
+
+        List<KnowledgePassage> passages = knowledgeChunkService.findBestPassages(
+                List.of(lexicalArticle, semanticArticle), vector(1f, 0f, 0f), 3);
+
+        assertThat(contents(passages)).containsExactly("Возврат: условия", "Оплата: карта", "Оплата: счёт");
+        assertThat(passages.get(0).knowledgeBaseId()).isEqualTo(lexicalArticle);
+        assertThat(passages.get(0).title()).isEqualTo("Возврат");
+    }
+
+    @Test
+    void withoutEmbeddingChunksFollowArticleOrder() {
+        List<KnowledgePassage> passages = knowledgeChunkService.findBestPassages(
+                List.of(semanticArticle, lexicalArticle), null, 4);
+
+        assertThat(contents(passages))
+                .containsExactly("Оплата: карта", "Возврат: сроки", "Оплата: счёт", "Оплата: наличные");
+    }
+
+    @Test
+    void articleWithoutChunksTakesPartWhole() {
+        Long wholeArticle = jdbcTemplate.queryForObject(
+                "INSERT INTO knowledge_base (project_id, title, content) VALUES (?, 'Доставка', 'Сроки доставки') " +
+                "RETURNING id",
+                Long.class, projectId);
+
+        List<KnowledgePassage> passages = knowledgeChunkService.findBestPassages(
+                List.of(wholeArticle, semanticArticle), vector(1f, 0f, 0f), 2);
+
+        assertThat(contents(passages)).containsExactly("Сроки доставки", "Оплата: карта");
+    }
+
+    @Test
+    void emptyArticleListGivesNoPassages() {
+        assertThat(knowledgeChunkService.findBestPassages(List.of(), vector(1f, 0f, 0f), 3)).isEmpty();
+    }
+
+    private Long insertArticle(String title) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO knowledge_base (project_id, title, content) VALUES (?, ?, ?) RETURNING id",
+                Long.class, projectId, title, title + ": полный текст");
+    }
+
+    private void insertChunk(Long knowledgeBaseId, int index, String content, float[] embedding) {
+        jdbcTemplate.update(
+                "INSERT INTO knowledge_chunks (knowledge_base_id, chunk_index, content, content_hash, token_count, " +
+                "embedding, embedding_model, embedding_version) " +
+                "VALUES (?, ?, ?, md5(?) || md5(?), 3, CAST(? AS vector(768)), 'nomic-embed-text', 1)",
+                ps -> {
+                    ps.setLong(1, knowledgeBaseId);
+                    ps.setInt(2, index);
+                    ps.setString(3, content);
+                    ps.setString(4, content);
+                    ps.setString(5, content);
+                    VectorCodec.bind(ps, 6, embedding);
+                });
+    }
+
+    private static float[] vector(float x, float y, float z) {
+        float[] vector = new float[DIMENSION];
+        vector[0] = x;
+        vector[1] = y;
+        vector[2] = z;
+        return vector;
+    }
+
+    private static List<String> contents(List<KnowledgePassage> passages) {
+        return passages.stream().map(KnowledgePassage::content).toList();
+    }
+}
@@ -0,0 +1,80 @@
+package com.nova.support.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KnowledgeChunkerTest {
+
+    @Test
+    void emptyTextHasNoChunks() {
+        assertThat(KnowledgeChunker.split(null, 50, 10)).isEmpty();
+        assertThat(KnowledgeChunker.split("  \n\n \n ", 50, 10)).isEmpty();
+    }
+
+    @Test
+    void estimatesWordsAndPunctuation() {
+        assertThat(KnowledgeChunker.estimateTokens("Привет, мир!")).isEqualTo(4);
+        assertThat(KnowledgeChunker.estimateTokens("Тариф 2024 - 500 руб.")).isEqualTo(6);
+        assertThat(KnowledgeChunker.estimateTokens("")).isZero();
+    }
+
+    @Test
+    void shortParagraphsAreMergedUpToMinTokens() {
+        String text = "Первая строка.\n\nВторая строка.\n\nТретья строка.";
+
+        List<String> chunks = KnowledgeChunker.split(text, 50, 5);
+
+        assertThat(chunks).containsExactly("Первая строка.\n\nВторая строка.", "Третья строка.");
+    }
+
+    @Test
+    void editingParagraphKeepsOtherChunks() {
+        String first = sentence("альфа", 20);
+        String second = sentence("бета", 20);
+        String third = sentence("гамма", 20);
+
+        List<String> before = KnowledgeChunker.split(String.join("\n\n", first, second, third), 30, 10);
+        List<String> after = KnowledgeChunker.split(
+                String.join("\n\n", first, second + " Добавлено.", third), 30, 10);
+
+        assertThat(before).containsExactly(first, second, third);
+        assertThat(after).containsExactly(first, second + " Добавлено.", third);
+    }
+
+    @Test
+    void longParagraphIsSplitBySentences() {
+        String paragraph = IntStream.range(0, 10)
+                .mapToObj(i -> sentence("слово" + i, 9))
+                .collect(Collectors.joining(" "));
+
+        List<String> chunks = KnowledgeChunker.split(paragraph, 25, 5);
+
+        assertThat(chunks).hasSize(5);
+        assertThat(chunks).allMatch(chunk -> KnowledgeChunker.estimateTokens(chunk) <= 25);
+        assertThat(chunks.get(0)).isEqualTo(sentence("слово0", 9) + " " + sentence("слово1", 9));
+        assertThat(String.join(" ", chunks)).isEqualTo(paragraph);
+    }
+
+    @Test
+    void longSentenceIsSplitByWords() {
+        String sentence = sentence("токен", 100);
+
+        List<String> chunks = KnowledgeChunker.split(sentence, 30, 5);
+
+        assertThat(chunks).allMatch(chunk -> KnowledgeChunker.estimateTokens(chunk) <= 30);
+        assertThat(String.join(" ", chunks)).isEqualTo(sentence);
+    }
+
+    /**
+     * Предложение из words одинаковых слов с точкой: words + 1 токен
+     */
+    private static String sentence(String word, int words) {
+        return String.join(" ", Collections.nCopies(words, word)) + ".";
+    }
+}
@@ -0,0 +1,182 @@
+package com.nova.support.service;
+
+import com.nova.support.domain.enums.LlmRequestPriority;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OllamaAdmissionTest {
+
+    private static final String MODEL = "chat-model";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountDownLatch slotReleased = new CountDownLatch(1);
+    private final List<String> served = new CopyOnWriteArrayList<>();
+    private OllamaAdmission admission;
+
+    @BeforeEach
+    void setUp() {
+        admission = new OllamaAdmission(meterRegistry);
+        ReflectionTestUtils.setField(admission, "chatModel", MODEL);
+        ReflectionTestUtils.setField(admission, "chatConcurrency", 1);
+        ReflectionTestUtils.setField(admission, "embeddingConcurrency", 1);
+        ReflectionTestUtils.setField(admission, "maxQueueDepth", 2);
+        ReflectionTestUtils.setField(admission, "maxWait", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(admission, "interactiveMaxWait", Duration.ofSeconds(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        slotReleased.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void priorityScopeRestoresPrevious() {
+        assertThat(admission.currentPriority()).isEqualTo(LlmRequestPriority.MEDIUM);
+
+        try (var outer = admission.prioritize(LlmRequestPriority.BACKGROUND)) {
+            try (var inner = admission.prioritize(LlmRequestPriority.INTERACTIVE)) {
+                assertThat(admission.currentPriority()).isEqualTo(LlmRequestPriority.INTERACTIVE);
+            }
+            assertThat(admission.currentPriority()).isEqualTo(LlmRequestPriority.BACKGROUND);
+        }
+        assertThat(admission.currentPriority()).isEqualTo(LlmRequestPriority.MEDIUM);
+    }
+
+    @Test
+    void waitingRequestsAreServedByPriority() throws Exception {
+        CompletableFuture<String> holder = occupySlot();
+        CompletableFuture<String> low = submit(LlmRequestPriority.LOW, "low");
+        awaitQueueDepth(1);
+        CompletableFuture<String> interactive = submit(LlmRequestPriority.INTERACTIVE, "interactive");
+        awaitQueueDepth(2);
+
+        slotReleased.countDown();
+
+        CompletableFuture.allOf(holder, low, interactive).get(5, TimeUnit.SECONDS);
+        assertThat(served).containsExactly("holder", "interactive", "low");
+    }
+
+    @Test
+    void fullQueueDisplacesLowestPriorityWaiter() throws Exception {
+        CompletableFuture<String> holder = occupySlot();
+        CompletableFuture<String> background = submit(LlmRequestPriority.BACKGROUND, "background");
+        awaitQueueDepth(1);
+        CompletableFuture<String> low = submit(LlmRequestPriority.LOW, "low");
+        awaitQueueDepth(2);
+
+        CompletableFuture<String> high = submit(LlmRequestPriority.HIGH, "high");
+
+        assertThatThrownBy(() -> background.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(OllamaOverloadedException.class);
+        awaitQueueDepth(2);
+        slotReleased.countDown();
+        CompletableFuture.allOf(holder, low, high).get(5, TimeUnit.SECONDS);
+        assertThat(served).containsExactly("holder", "high", "low");
+        assertThat(rejected(LlmRequestPriority.BACKGROUND)).isEqualTo(1);
+    }
+
+    @Test
+    void fullQueueRejectsRequestWithoutHigherPriority() throws Exception {
+        occupySlot();
+        submit(LlmRequestPriority.LOW, "first");
+        submit(LlmRequestPriority.LOW, "second");
+        awaitQueueDepth(2);
+
+        try (var ignored = admission.prioritize(LlmRequestPriority.LOW)) {
+            assertThatThrownBy(() -> admission.execute(MODEL, () -> "third"))
+                    .isInstanceOf(OllamaOverloadedException.class)
+                    .hasMessageContaining("queue is full");
+        }
+        assertThat(rejected(LlmRequestPriority.LOW)).isEqualTo(1);
+    }
+
+    @Test
+    void waiterGivesUpAfterMaxWaitAndSlotIsKept() throws Exception {
+        ReflectionTestUtils.setField(admission, "maxWait", Duration.ofMillis(100));
+        CompletableFuture<String> holder = occupySlot();
+
+        assertThatThrownBy(() -> admission.execute(MODEL, () -> "late"))
+                .isInstanceOf(OllamaOverloadedException.class)
+                .hasMessageContaining("waited longer than");
+        assertThat(gauge("ollama.admission.queue.depth")).isZero();
+
+        slotReleased.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        assertThat(admission.execute(MODEL, () -> "next")).isEqualTo("next");
+        assertThat(gauge("ollama.admission.in.flight")).isZero();
+    }
+
+    /**
+     * Занять единственный слот модели до slotReleased
+     */
+    private CompletableFuture<String> occupySlot() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> holder = CompletableFuture.supplyAsync(() -> admission.execute(MODEL, () -> {
+            started.countDown();
+            await(slotReleased);
+            served.add("holder");
+            return "holder";
+        }), executor);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        return holder;
+    }
+
+    private CompletableFuture<String> submit(LlmRequestPriority priority, String name) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (var ignored = admission.prioritize(priority)) {
+                return admission.execute(MODEL, () -> {
+                    served.add(name);
+                    return name;
+                });
+            }
+        }, executor);
+    }
+
+    private void awaitQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gauge("ollama.admission.queue.depth") != depth) {
+            assertThat(System.nanoTime()).as("queue depth %d", depth).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("model", MODEL).gauge().value();
+    }
+
+    private double rejected(LlmRequestPriority priority) {
+        return meterRegistry.get("ollama.admission.rejected")
+                .tag("model", MODEL)
+                .tag("priority", priority.name())
+                .counter()
+                .count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.nova.support.service;
+
+import com.nova.support.domain.enums.VectorQuantization;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Латентность top-k поиска HNSW в памяти при разном квантовании и длине Matryoshka-префикса
+ * Recall@k относительно полного перебора и занимаемая память печатаются при подготовке
+ * Данные синтетические: кластеры в 768-мерном пространстве (как у эмбеддингов похожих статей),
+ * разброс центров убывает с номером компоненты - ведущие компоненты несут больше информации, как в Matryoshka
+ * Запуск: mvn test-compile, затем main этого класса с test classpath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuantizedSearchBenchmark {
+
+    private static final int DIMENSION = 768;
+    private static final int CLUSTERS = 100;
+    private static final int QUERIES = 200;
+    private static final int K = 10;
+    private static final int EF_SEARCH = 40;
+
+    @Param({"NONE", "INT8", "BINARY"})
+    private VectorQuantization quantization;
+
+    @Param({"10000"})
+    private int size;
+
+    @Param({"4"})
+    private int rerankFactor;
+
+    @Param({"0", "256", "128"})
+    private int prefixDimensions;
+
+    private HnswGraph graph;
+    private float[][] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        float[][] centers = new float[CLUSTERS][DIMENSION];
+        for (float[] center : centers) {
+            fill(center, random, null, 1);
+            for (int i = 0; i < DIMENSION; i++) {
+                center[i] *= (float) (2 / Math.sqrt(1 + i / 32.0));
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(size);
+        List<float[]> vectors = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            float[] vector = new float[DIMENSION];
+            fill(vector, random, centers[random.nextInt(CLUSTERS)], 0.6f);
+            ids.add((long) i);
+            vectors.add(vector);
+        }
+        graph = HnswGraph.build(new HnswGraph.Settings(16, 64, quantization, rerankFactor, prefixDimensions), ids, vectors);
+
+        queries = new float[QUERIES][DIMENSION];
+        for (float[] query : queries) {
+            fill(query, random, vectors.get(random.nextInt(size)), 0.3f);
+        }
+
+        System.out.printf("%n%s, prefix %d: recall@%d = %.3f, vectors %d KB, codes %d KB, graph %d KB%n",
+                quantization, prefixDimensions, K, recall(vectors), graph.vectorBytes() / 1024,
+                graph.codeBytes() / 1024, graph.graphBytes() / 1024);
+    }
+
+    @Benchmark
+    public long[] search() {
+        float[] query = queries[next++ % QUERIES];
+        return graph.search(query, K, EF_SEARCH);
+    }
+
+    private double recall(List<float[]> vectors) {
+        int hits = 0;
+        for (float[] query : queries) {
+            long[] expected = bruteForce(vectors, query);
+            long[] actual = graph.search(query, K, EF_SEARCH);
+            for (long id : actual) {
+                for (long e : expected) {
+                    if (id == e) {
+                        hits++;
+                        break;
+                    }
+                }
+            }
+        }
+        return (double) hits / (QUERIES * K);
+    }
+
+    private static long[] bruteForce(List<float[]> vectors, float[] query) {
+        Integer[] order = new Integer[vectors.size()];
+        double[] distance = new double[vectors.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            distance[i] = cosineDistance(query, vectors.get(i));
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(distance[a], distance[b]));
+        long[] top = new long[K];
+        for (int i = 0; i < K; i++) {
+            top[i] = order[i];
+        }
+        return top;
+    }
+
+    private static double cosineDistance(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return 1 - dot / Math.sqrt(normA * normB);
+    }
+
+    private static void fill(float[] target, Random random, float[] center, float noise) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] = (center != null ? center[i] : 0) + (float) random.nextGaussian() * noise;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(QuantizedSearchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,174 @@
+package com.nova.support.service;
+
+import com.nova.support.dto.EmbeddingModelVersion;
+import com.nova.support.dto.RagAnswerResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RagAnswerCacheTest {
+
+    private static final Long TICKET = 7L;
+    private static final Long PROJECT = 3L;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final EmbeddingVersions embeddingVersions = mock(EmbeddingVersions.class);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountDownLatch generationReleased = new CountDownLatch(1);
+    private final AtomicLong knowledgeBaseVersion = new AtomicLong(1);
+    private final AtomicInteger generations = new AtomicInteger();
+    private RagAnswerCache cache;
+
+    @BeforeEach
+    void setUp() {
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(PROJECT)))
+                .thenAnswer(invocation -> List.of(knowledgeBaseVersion.get()));
+        when(embeddingVersions.active()).thenReturn(new EmbeddingModelVersion("nomic-embed-text", 1));
+        cache = new RagAnswerCache(jdbcTemplate, embeddingVersions, meterRegistry, 100);
+        ReflectionTestUtils.setField(cache, "chatModel", "gemma3:4b");
+    }
+
+    @AfterEach
+    void tearDown() {
+        generationReleased.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallerJoinsInFlightGeneration() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<RagAnswerResponse> first = submit("1,2", () -> {
+            started.countDown();
+            await(generationReleased);
+            return answer("first");
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<RagAnswerResponse> second = submit("1,2", () -> answer("second"));
+        awaitRequests("shared", 1);
+
+        generationReleased.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getAnswer()).isEqualTo("first");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(first.get());
+        assertThat(generations).hasValue(1);
+        assertThat(requests("miss")).isEqualTo(1);
+    }
+
+    @Test
+    void generationErrorReachesAllWaitersAndIsNotCached() throws Exception {
+        RuntimeException failure = new RuntimeException("Ollama is unavailable");
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<RagAnswerResponse> first = submit("1,2", () -> {
+            started.countDown();
+            await(generationReleased);
+            throw failure;
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<RagAnswerResponse> second = submit("1,2", () -> answer("second"));
+        awaitRequests("shared", 1);
+
+        generationReleased.countDown();
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCause(failure);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCause(failure);
+        // Следующий запрос генерирует заново
+        assertThat(cache.getOrGenerate(TICKET, PROJECT, "1,2", counted(() -> answer("retry"))).getAnswer())
+                .isEqualTo("retry");
+        assertThat(generations).hasValue(2);
+    }
+
+    @Test
+    void keyChangesWithBucketAndKnowledgeBaseVersion() {
+        assertThat(generate("1,2").getAnswer()).isEqualTo("answer 1");
+        assertThat(generate("1,2").getAnswer()).isEqualTo("answer 1");
+        assertThat(requests("hit")).isEqualTo(1);
+
+        assertThat(generate("1,2,3").getAnswer()).isEqualTo("answer 2");
+
+        knowledgeBaseVersion.incrementAndGet();
+        assertThat(generate("1,2,3").getAnswer()).isEqualTo("answer 3");
+
+        when(embeddingVersions.active()).thenReturn(new EmbeddingModelVersion("nomic-embed-text", 2));
+        assertThat(generate("1,2,3").getAnswer()).isEqualTo("answer 4");
+        assertThat(generate("1,2,3").getAnswer()).isEqualTo("answer 4");
+        assertThat(requests("hit")).isEqualTo(2);
+    }
+
+    @Test
+    void invalidateDropsTicketAnswer() {
+        generate("1,2");
+
+        cache.invalidate(TICKET);
+
+        assertThat(generate("1,2").getAnswer()).isEqualTo("answer 2");
+    }
+
+    private RagAnswerResponse generate(String bucketMessageIds) {
+        return cache.getOrGenerate(TICKET, PROJECT, bucketMessageIds,
+                counted(() -> answer("answer " + generations.get())));
+    }
+
+    private CompletableFuture<RagAnswerResponse> submit(String bucketMessageIds,
+                                                        Supplier<RagAnswerResponse> generator) {
+        return CompletableFuture.supplyAsync(
+                () -> cache.getOrGenerate(TICKET, PROJECT, bucketMessageIds, counted(generator)), executor);
+    }
+
+    private Supplier<RagAnswerResponse> counted(Supplier<RagAnswerResponse> generator) {
+        return () -> {
+            generations.incrementAndGet();
+            return generator.get();
+        };
+    }
+
+    private void awaitRequests(String result, double count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (requests(result) != count) {
+            assertThat(System.nanoTime()).as("%s requests", result).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("rag.answer.cache.requests").tag("result", result).counter().count();
+    }
+
+    private static RagAnswerResponse answer(String text) {
+        return RagAnswerResponse.builder().answer(text).build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
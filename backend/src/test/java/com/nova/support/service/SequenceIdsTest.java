@@ -0,0 +1,64 @@
+package com.nova.support.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class SequenceIdsTest {
+
+    private static final String SEQUENCE = "knowledge_base_id_seq";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @Test
+    void blocksAreExpandedToPooledRanges() {
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(SEQUENCE), eq(3)))
+                .thenReturn(List.of(100L, 150L, 200L));
+
+        long[] ids = SequenceIds.allocate(jdbcTemplate, SEQUENCE, 120);
+
+        assertThat(ids).containsExactly(LongStream.rangeClosed(51, 170).toArray());
+    }
+
+    @Test
+    void firstNextvalOfNewSequenceIsToppedUpFromNextBlock() {
+        // Первый nextval новой последовательности - 1: блок из одного id, остаток берётся следующим вызовом
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(SEQUENCE), eq(1)))
+                .thenReturn(List.of(1L), List.of(51L));
+
+        long[] ids = SequenceIds.allocate(jdbcTemplate, SEQUENCE, 3);
+
+        assertThat(ids).containsExactly(1, 2, 3);
+        verify(jdbcTemplate, times(2))
+                .queryForList(anyString(), eq(Long.class), eq(SEQUENCE), eq(1));
+    }
+
+    @Test
+    void firstBlockOfNewSequenceSpanningSeveralBlocks() {
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(SEQUENCE), eq(2)))
+                .thenReturn(List.of(1L, 51L));
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(SEQUENCE), eq(1)))
+                .thenReturn(List.of(101L));
+
+        long[] ids = SequenceIds.allocate(jdbcTemplate, SEQUENCE, 60);
+
+        assertThat(ids).containsExactly(LongStream.rangeClosed(1, 60).toArray());
+    }
+
+    @Test
+    void zeroCountDoesNotTouchSequence() {
+        assertThat(SequenceIds.allocate(jdbcTemplate, SEQUENCE, 0)).isEmpty();
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
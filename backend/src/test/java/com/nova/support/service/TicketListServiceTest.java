@@ -0,0 +1,146 @@
+package com.nova.support.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nova.support.TestcontainersConfiguration;
+import com.nova.support.domain.enums.Priority;
+import com.nova.support.domain.enums.TicketStatus;
+import com.nova.support.dto.TicketListItem;
+import com.nova.support.dto.TicketListPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Keyset список тикетов на PostgreSQL (Testcontainers)
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TestcontainersConfiguration.class)
+class TicketListServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TicketListService ticketListService;
+    private Long projectId;
+
+    @BeforeEach
+    void setUp() {
+        ticketListService = new TicketListService(jdbcTemplate, new ObjectMapper());
+        ReflectionTestUtils.setField(ticketListService, "defaultLimit", 2);
+        ReflectionTestUtils.setField(ticketListService, "maxLimit", 3);
+        ReflectionTestUtils.setField(ticketListService, "summaryPreviewLength", 10);
+        ReflectionTestUtils.setField(ticketListService, "textPreviewLength", 5);
+
+        projectId = newProject();
+    }
+
+    @Test
+    void pagesWalkAllTicketsNewestFirstWithoutGaps() {
+        Long oldest = insertTicket(projectId, "NEW", "LOW", BASE);
+        Long tiedFirst = insertTicket(projectId, "NEW", "LOW", BASE.plusMinutes(1));
+        Long tiedSecond = insertTicket(projectId, "NEW", "LOW", BASE.plusMinutes(1));
+        Long tiedThird = insertTicket(projectId, "NEW", "LOW", BASE.plusMinutes(1));
+        Long newest = insertTicket(projectId, "NEW", "LOW", BASE.plusMinutes(2));
+        insertTicket(newProject(), "NEW", "LOW", BASE.plusMinutes(1));
+
+        List<Long> walked = new ArrayList<>();
+        TicketListPage page = ticketListService.listTickets(projectId, null, null, null, null, null, false);
+        walked.addAll(ids(page));
+        while (page.isHasMore()) {
+            TicketListItem last = page.getItems().get(page.getItems().size() - 1);
+            page = ticketListService.listTickets(projectId, null, null, last.createdAt(), last.id(), null, false);
+            assertThat(page.getItems()).hasSizeLessThanOrEqualTo(2);
+            walked.addAll(ids(page));
+        }
+
+        // Равные created_at упорядочены по id: курсор (created_at, id) не теряет и не повторяет строки
+        assertThat(walked).containsExactly(newest, tiedThird, tiedSecond, tiedFirst, oldest);
+    }
+
+    @Test
+    void filtersByStatusAndPriority() {
+        Long match = insertTicket(projectId, "CLOSED", "HIGH", BASE);
+        insertTicket(projectId, "CLOSED", "LOW", BASE.plusMinutes(1));
+        insertTicket(projectId, "NEW", "HIGH", BASE.plusMinutes(2));
+
+        TicketListPage page = ticketListService.listTickets(
+                projectId, TicketStatus.CLOSED, Priority.HIGH, null, null, 3, false);
+
+        assertThat(ids(page)).containsExactly(match);
+        assertThat(page.isHasMore()).isFalse();
+    }
+
+    @Test
+    void limitIsCappedByMaxLimit() {
+        for (int i = 0; i < 5; i++) {
+            insertTicket(projectId, "NEW", "LOW", BASE.plusMinutes(i));
+        }
+
+        TicketListPage page = ticketListService.listTickets(projectId, null, null, null, null, 100, false);
+
+        assertThat(page.getItems()).hasSize(3);
+        assertThat(page.isHasMore()).isTrue();
+    }
+
+    @Test
+    void previewsAreTruncatedInQuery() {
+        Long id = insertTicket(projectId, "NEW", "LOW", BASE);
+        jdbcTemplate.update("UPDATE tickets SET ai_summary = ?, transcribed_text = ?, audio_url = ? WHERE id = ?",
+                "Клиент не может оплатить заказ", "Здравствуйте", "/audio/1.webm", id);
+
+        TicketListItem item = ticketListService.listTickets(projectId, null, null, null, null, null, false)
+                .getItems().get(0);
+
+        assertThat(item.summaryPreview()).isEqualTo("Клиент не ");
+        assertThat(item.textPreview()).isEqualTo("Здрав");
+        assertThat(item.hasAudio()).isTrue();
+        assertThat(item.hasImage()).isFalse();
+    }
+
+    @Test
+    void estimateIsReturnedOnlyWhenRequested() {
+        insertTicket(projectId, "NEW", "LOW", BASE);
+
+        assertThat(ticketListService.listTickets(projectId, null, null, null, null, null, true)
+                .getEstimatedTotal()).isNotNull();
+        assertThat(ticketListService.listTickets(projectId, null, null, null, null, null, false)
+                .getEstimatedTotal()).isNull();
+    }
+
+    @Test
+    void cursorNeedsBothParts() {
+        assertThatThrownBy(() -> ticketListService.listTickets(projectId, null, null, BASE, null, null, false))
+                .hasMessageContaining("must be specified together");
+    }
+
+    private Long newProject() {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO projects (name, api_key) VALUES ('Test', gen_random_uuid()::text) RETURNING id",
+                Long.class);
+    }
+
+    private Long insertTicket(Long project, String status, String priority, LocalDateTime createdAt) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO tickets (project_id, status, priority, created_at) VALUES (?, ?, ?, ?) RETURNING id",
+                Long.class, project, status, priority, createdAt);
+    }
+
+    private static List<Long> ids(TicketListPage page) {
+        return page.getItems().stream().map(TicketListItem::id).toList();
+    }
+}
@@ -12,6 +12,9 @@ class AdminDashboard {
         this.tickets = [];
         this.filteredTickets = [];
         this.currentTicket = null;
+        this.chatMessages = [];
+        this.chatPageSize = 50;
+        this.hasOlderMessages = false;
         
         this.init();
     }
@@ -116,11 +119,19 @@ class AdminDashboard {
     }
 
     handleNewTicket(ticket) {
+        // Обновление стадии AI обработки уже известного тикета
+        const index = this.tickets.findIndex(t => t.id === ticket.id);
+        if (index !== -1) {
+            this.tickets[index] = this.toListItem(ticket);
+            this.applyFilters();
+            return;
+        }
+
         // Add to beginning of list
-        this.tickets.unshift(ticket);
+        this.tickets.unshift(this.toListItem(ticket));
         this.applyFilters();
         this.updateTicketsCount();
-        
+
         // Show notification
         this.showNotification(`Новый тикет #${ticket.id}`, ticket.originalText || ticket.transcribedText);
     }
@@ -130,7 +141,8 @@ class AdminDashboard {
             document.getElementById('loadingSpinner').style.display = 'block';
             document.getElementById('emptyState').style.display = 'none';
 
-            const response = await fetch(`${this.apiUrl}/admin/tickets?projectId=${this.projectId}&size=100`);
+            // Облегчённые строки списка (keyset по created_at, id); полный тикет - при открытии
+            const response = await fetch(`${this.apiUrl}/admin/tickets/list?projectId=${this.projectId}&limit=100`);
             
             if (!response.ok) {
                 throw new Error(`HTTP ${response.status}: ${response.statusText}`);
@@ -138,7 +150,7 @@ class AdminDashboard {
             
             const data = await response.json();
             
-            this.tickets = data.content || [];
+            this.tickets = data.items || [];
             this.applyFilters();
             this.updateTicketsCount();
             this.loadAnalytics();
@@ -151,6 +163,23 @@ class AdminDashboard {
         }
     }
 
+    // Полный тикет (WebSocket, PATCH status) -> строка списка, как в /admin/tickets/list
+    toListItem(ticket) {
+        const text = ticket.originalText || ticket.transcribedText;
+        return {
+            id: ticket.id,
+            status: ticket.status,
+            priority: ticket.priority,
+            sentiment: ticket.sentiment,
+            summaryPreview: ticket.aiSummary ? ticket.aiSummary.substring(0, 150) : null,
+            textPreview: text ? text.substring(0, 80) : null,
+            hasAudio: !!ticket.audioUrl,
+            hasImage: !!ticket.imageUrl,
+            isClosed: ticket.isClosed,
+            createdAt: ticket.createdAt
+        };
+    }
+
     applyFilters() {
         const status = document.getElementById('statusFilter').value;
         const priority = document.getElementById('priorityFilter').value;
@@ -162,8 +191,8 @@ class AdminDashboard {
             if (priority && ticket.priority !== priority) return false;
             if (sentiment && ticket.sentiment !== sentiment) return false;
             if (search) {
-                const text = (ticket.originalText || ticket.transcribedText || '').toLowerCase();
-                const summary = (ticket.aiSummary || '').toLowerCase();
+                const text = (ticket.textPreview || '').toLowerCase();
+                const summary = (ticket.summaryPreview || '').toLowerCase();
                 if (!text.includes(search) && !summary.includes(search)) return false;
             }
             return true;
@@ -196,22 +225,33 @@ class AdminDashboard {
                 </div>
                 
                 <div class="ticket-content">
-                    ${ticket.aiSummary ? `<p class="ticket-summary"><strong>🤖 AI Summary:</strong> ${this.escapeHtml(ticket.aiSummary.substring(0, 150))}${ticket.aiSummary.length > 150 ? '...' : ''}</p>` : ''}
-                    <p class="ticket-text-preview">${this.escapeHtml((ticket.originalText || ticket.transcribedText || 'Нет текста').substring(0, 80))}...</p>
+                    ${ticket.summaryPreview ? `<p class="ticket-summary"><strong>🤖 AI Summary:</strong> ${this.escapeHtml(ticket.summaryPreview)}${ticket.summaryPreview.length >= 150 ? '...' : ''}</p>` : ''}
+                    <p class="ticket-text-preview">${this.escapeHtml(ticket.textPreview || 'Нет текста')}...</p>
                 </div>
                 
                 <div class="ticket-footer">
                     <span class="ticket-time">${this.formatDate(ticket.createdAt)}</span>
-                    ${ticket.imageUrl ? '<span class="ticket-attachment">📷</span>' : ''}
-                    ${ticket.audioUrl ? '<span class="ticket-attachment">🎤</span>' : ''}
+                    ${ticket.hasImage ? '<span class="ticket-attachment">📷</span>' : ''}
+                    ${ticket.hasAudio ? '<span class="ticket-attachment">🎤</span>' : ''}
                 </div>
             </div>
         `).join('');
     }
 
     async showTicketDetails(ticketId) {
-        const ticket = this.tickets.find(t => t.id === ticketId);
-        if (!ticket) return;
+        // В списке только превью: полный тикет (резюме, предложенный ответ) загружается отдельно
+        let ticket;
+        try {
+            const response = await fetch(`${this.apiUrl}/admin/tickets/${ticketId}`);
+            if (!response.ok) {
+                throw new Error(`HTTP ${response.status}: ${response.statusText}`);
+            }
+            ticket = await response.json();
+        } catch (error) {
+            console.error('Error loading ticket:', error);
+            this.showError(`Ошибка загрузки тикета: ${error.message}`);
+            return;
+        }
 
         this.currentTicket = ticket;
 
@@ -306,18 +346,55 @@ class AdminDashboard {
     
     async loadChatMessages(ticketId) {
         try {
-            const response = await fetch(`${this.apiUrl}/tickets/${ticketId}/messages`);
+            // Только последние сообщения; более ранние - по кнопке (keyset по id)
+            const response = await fetch(`${this.apiUrl}/tickets/${ticketId}/messages?limit=${this.chatPageSize}`);
             if (!response.ok) throw new Error('Failed to load messages');
             
-            const messages = await response.json();
-            this.renderChatMessages(messages);
+            this.chatMessages = await response.json();
+            this.hasOlderMessages = this.chatMessages.length === this.chatPageSize;
+            this.renderChatMessages(this.chatMessages);
         } catch (error) {
             console.error('Error loading chat messages:', error);
             document.getElementById('chatMessages').innerHTML = '<div style="text-align: center; color: #ef4444; padding: 20px;">Ошибка загрузки сообщений</div>';
         }
     }
     
-    renderChatMessages(messages) {
+    async loadOlderMessages() {
+        if (!this.currentTicket || this.chatMessages.length === 0) return;
+        
+        try {
+            const before = this.chatMessages[0].id;
+            const response = await fetch(
+                `${this.apiUrl}/tickets/${this.currentTicket.id}/messages?before=${before}&limit=${this.chatPageSize}`);
+            if (!response.ok) throw new Error('Failed to load messages');
+            
+            const older = await response.json();
+            this.hasOlderMessages = older.length === this.chatPageSize;
+            this.chatMessages = older.concat(this.chatMessages);
+            
+            // Сохранить позицию прокрутки относительно уже показанных сообщений
+            const messagesContainer = document.getElementById('chatMessagesContainer');
+            const fromBottom = messagesContainer.scrollHeight - messagesContainer.scrollTop;
+            this.renderChatMessages(this.chatMessages, false);
+            messagesContainer.scrollTop = messagesContainer.scrollHeight - fromBottom;
+        } catch (error) {
+            console.error('Error loading older messages:', error);
+        }
+    }
+    
+    handleChatMessage(msg) {
+        // Новое сообщение добавляется, изменённое (транскрипция, описание изображения) заменяется
+        const index = this.chatMessages.findIndex(m => m.id === msg.id);
+        if (index >= 0) {
+            this.chatMessages[index] = msg;
+        } else {
+            this.chatMessages.push(msg);
+            this.chatMessages.sort((a, b) => a.id - b.id);
+        }
+        this.renderChatMessages(this.chatMessages);
+    }
+    
+    renderChatMessages(messages, scrollToBottom = true) {
         const container = document.getElementById('chatMessages');
         
         if (messages.length === 0) {
@@ -327,7 +404,13 @@ class AdminDashboard {
         
         const minioUrl = 'http://localhost:9000/support-tickets/';
         
-        container.innerHTML = messages.map(msg => {
+        const olderButton = this.hasOlderMessages
+            ? `<div style="text-align: center; margin-bottom: 12px;">
+                   <button onclick="dashboard.loadOlderMessages()" style="background: none; border: none; color: #667eea; cursor: pointer; font-size: 13px;">Показать предыдущие сообщения</button>
+               </div>`
+            : '';
+        
+        container.innerHTML = olderButton + messages.map(msg => {
             const isOperator = msg.senderType === 'OPERATOR';
             const alignStyle = isOperator ? 'flex-start' : 'flex-end';
             const bgColor = isOperator ? '#f3f4f6' : 'linear-gradient(135deg, #667eea 0%, #764ba2 100%)';
@@ -383,8 +466,10 @@ class AdminDashboard {
         }).join('');
         
         // Scroll to bottom
-        const messagesContainer = document.getElementById('chatMessagesContainer');
-        messagesContainer.scrollTop = messagesContainer.scrollHeight;
+        if (scrollToBottom) {
+            const messagesContainer = document.getElementById('chatMessagesContainer');
+            messagesContainer.scrollTop = messagesContainer.scrollHeight;
+        }
     }
     
     subscribeToChatMessages(ticketId) {
@@ -402,13 +487,18 @@ class AdminDashboard {
             this.ragSubscription.unsubscribe();
         }
         
+        if (this.answerStreamSubscription) {
+            this.answerStreamSubscription.unsubscribe();
+        }
+        this.answerStreams = {};
+        
         // Subscribe to chat messages
         this.chatSubscription = this.stompClient.subscribe(
             `/topic/tickets/${ticketId}/messages`,
             (message) => {
                 const msg = JSON.parse(message.body);
                 console.log('New chat message received:', msg);
-                this.loadChatMessages(ticketId);
+                this.handleChatMessage(msg);
             }
         );
         
@@ -416,10 +506,17 @@ class AdminDashboard {
         this.ragSubscription = this.stompClient.subscribe(
             `/topic/tickets/${ticketId}/rag-updated`,
             (message) => {
-                console.log('RAG update notification received');
-                this.loadRagAnswer(ticketId);
+                // Сервер присылает готовый ответ (один раз после паузы в сообщениях клиента)
+                console.log('RAG answer received');
+                this.renderRagAnswer(JSON.parse(message.body));
             }
         );
+        
+        // Subscribe to answer token stream (ответ отображается по мере генерации)
+        this.answerStreamSubscription = this.stompClient.subscribe(
+            `/topic/tickets/${ticketId}/answer-stream`,
+            (message) => this.handleAnswerChunk(JSON.parse(message.body))
+        );
     }
     
     async sendOperatorMessage() {
@@ -510,26 +607,57 @@ class AdminDashboard {
                 throw new Error(`Failed to load RAG answer: ${response.status}`);
             }
             
-            const data = await response.json();
-            
-            if (data.messagesCount > 0) {
-                ragAnswer.setAttribute('data-answer', data.answer);
-                ragAnswer.innerHTML = `
-                    <p>${this.escapeHtml(data.answer)}</p>
-                    <div style="margin-top: 12px; padding-top: 12px; border-top: 1px solid #e2e8f0; font-size: 12px; color: #94a3b8;">
-                        📊 ${data.messagesCount} сообщений • Обновлено: ${new Date(data.lastUpdated).toLocaleTimeString('ru-RU')}
-                    </div>
-                `;
-            } else {
-                ragAnswer.removeAttribute('data-answer');
-                ragAnswer.innerHTML = '<em style="color: #999;">Нет новых сообщений для анализа</em>';
-            }
+            this.renderRagAnswer(await response.json());
         } catch (error) {
             console.error('Error loading RAG answer:', error);
             document.getElementById('ragAnswer').innerHTML = '<em style="color: #ef4444;">Ошибка загрузки RAG</em>';
         }
     }
     
+    handleAnswerChunk(chunk) {
+        // Фрагменты другой генерации (новый streamId) начинают текст заново
+        let stream = this.answerStreams[chunk.source];
+        if (!stream || stream.id !== chunk.streamId) {
+            stream = this.answerStreams[chunk.source] = { id: chunk.streamId, text: '' };
+        }
+        stream.text += chunk.delta || '';
+        
+        if (chunk.source === 'SUGGESTED') {
+            if (chunk.done && stream.text && this.currentTicket) {
+                this.currentTicket.suggestedAnswer = stream.text;
+            }
+            return;
+        }
+        
+        // Полный ответ RAG приходит в rag-updated и заменяет потоковый текст
+        const ragAnswer = document.getElementById('ragAnswer');
+        if (!ragAnswer || chunk.done || !stream.text) return;
+        ragAnswer.innerHTML = `
+            <p>${this.escapeHtml(stream.text)}</p>
+            <div style="margin-top: 12px; padding-top: 12px; border-top: 1px solid #e2e8f0; font-size: 12px; color: #94a3b8;">
+                ✍️ Генерируется...
+            </div>
+        `;
+    }
+    
+    renderRagAnswer(data) {
+        const ragAnswer = document.getElementById('ragAnswer');
+        if (!ragAnswer) return;
+        
+        if (data.messagesCount > 0) {
+            ragAnswer.setAttribute('data-answer', data.answer);
+            ragAnswer.innerHTML = `
+                <p>${this.escapeHtml(data.answer)}</p>
+                <div style="margin-top: 12px; padding-top: 12px; border-top: 1px solid #e2e8f0; font-size: 12px; color: #94a3b8;">
+                    📊 ${data.messagesCount} сообщений • Обновлено: ${new Date(data.lastUpdated).toLocaleTimeString('ru-RU')}
+                </div>
+            `;
+        } else {
+            ragAnswer.removeAttribute('data-answer');
+            ragAnswer.innerHTML = '<em style="color: #999;">Нет новых сообщений для анализа</em>';
+        }
+    }
+    
     async refreshRagAnswer() {
         if (!this.currentTicket) return;
         
@@ -571,7 +699,7 @@ class AdminDashboard {
                 // Update local data
                 const index = this.tickets.findIndex(t => t.id === this.currentTicket.id);
                 if (index !== -1) {
-                    this.tickets[index] = updated;
+                    this.tickets[index] = this.toListItem(updated);
                 }
                 this.applyFilters();
                 this.showNotification('Успех', 'Статус тикета обновлен');
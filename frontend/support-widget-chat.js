@@ -18,6 +18,9 @@
             this.currentTicket = null;
             this.messages = [];
             this.isTicketClosed = false;
+            // Сообщений в одном запросе истории (не больше chat.messages.max-limit на сервере)
+            this.historyPageSize = 50;
+            this.hasOlderMessages = false;
             
             // WebSocket
             this.stompClient = null;
@@ -170,6 +173,13 @@
             removeAudio.addEventListener('click', () => this.removeAudio());
             removeImage.addEventListener('click', () => this.removeImage());
             newTicketBtn.addEventListener('click', () => this.createNewTicket());
+            
+            // Кнопка перерисовывается вместе с сообщениями, поэтому обработчик на контейнере
+            document.getElementById('chatArea').addEventListener('click', (e) => {
+                if (e.target.closest('.load-older-btn')) {
+                    this.loadOlderMessages();
+                }
+            });
         }
 
         async loadActiveTicket() {
@@ -200,12 +210,14 @@
             }
         }
 
+        // Без загруженных сообщений - только последняя страница (более ранние - по кнопке),
+        // иначе (переподключение WebSocket) - только пропущенные после последнего известного id
         async loadChatHistory(ticketId) {
             try {
-                const response = await fetch(`${this.apiUrl}/api/tickets/${ticketId}/messages`);
-                if (!response.ok) throw new Error('Failed to load chat history');
-                
-                const serverMessages = await response.json();
+                const lastId = this.lastServerMessageId();
+                const serverMessages = lastId !== null
+                    ? await this.fetchMessagesAfter(ticketId, lastId)
+                    : await this.fetchLatestMessages(ticketId);
                 
                 // Удаляем оптимистичные сообщения, так как реальные пришли с сервера
                 this.messages = this.messages.filter(m => !m._isOptimistic);
@@ -224,6 +236,61 @@
             }
         }
 
+        async fetchLatestMessages(ticketId) {
+            const page = await this.fetchMessagesPage(ticketId, '');
+            this.hasOlderMessages = page.length === this.historyPageSize;
+            return page;
+        }
+
+        async fetchMessagesAfter(ticketId, after) {
+            let messages = [];
+            while (true) {
+                const page = await this.fetchMessagesPage(ticketId, `&after=${after}`);
+                messages = messages.concat(page);
+                if (page.length < this.historyPageSize) {
+                    return messages;
+                }
+                after = page[page.length - 1].id;
+            }
+        }
+
+        async fetchMessagesPage(ticketId, cursor) {
+            const response = await fetch(
+                `${this.apiUrl}/api/tickets/${ticketId}/messages?limit=${this.historyPageSize}${cursor}`);
+            if (!response.ok) throw new Error('Failed to load chat history');
+            return response.json();
+        }
+
+        async loadOlderMessages() {
+            const firstId = this.firstServerMessageId();
+            if (!this.currentTicket || firstId === null) return;
+            
+            try {
+                const older = await this.fetchMessagesPage(this.currentTicket.id, `&before=${firstId}`);
+                this.hasOlderMessages = older.length === this.historyPageSize;
+                this.messages = older.concat(this.messages);
+                
+                // Сохранить позицию прокрутки относительно уже показанных сообщений
+                const chatArea = document.getElementById('chatArea');
+                const fromBottom = chatArea.scrollHeight - chatArea.scrollTop;
+                this.renderMessages();
+                chatArea.scrollTop = chatArea.scrollHeight - fromBottom;
+            } catch (error) {
+                console.error('Error loading older messages:', error);
+            }
+        }
+
+        // id оптимистичных сообщений - строки temp_*, у сообщений сервера - числа
+        lastServerMessageId() {
+            const ids = this.messages.filter(m => typeof m.id === 'number').map(m => m.id);
+            return ids.length > 0 ? Math.max(...ids) : null;
+        }
+
+        firstServerMessageId() {
+            const ids = this.messages.filter(m => typeof m.id === 'number').map(m => m.id);
+            return ids.length > 0 ? Math.min(...ids) : null;
+        }
+
         connectWebSocket(ticketId) {
             const socket = new SockJS(this.wsUrl);
             this.stompClient = Stomp.over(socket);
@@ -231,7 +298,7 @@
             this.stompClient.connect({}, () => {
                 console.log('WebSocket connected');
                 
-                // Загружаем историю сообщений чтобы заменить оптимистичные
+                // Догружаем пропущенные сообщения, чтобы заменить оптимистичные
                 this.loadChatHistory(ticketId);
                 
                 // Подписка на новые сообщения
@@ -286,7 +353,11 @@
                 return;
             }
             
-            chatArea.innerHTML = this.messages.map(msg => {
+            const olderButton = this.hasOlderMessages
+                ? '<button type="button" class="load-older-btn">Показать предыдущие сообщения</button>'
+                : '';
+            
+            chatArea.innerHTML = olderButton + this.messages.map(msg => {
                 const isOperator = msg.senderType === 'OPERATOR';
                 const messageClass = isOperator ? 'message-operator' : 'message-client';
                 
@@ -385,27 +456,26 @@
             if (messageInput) messageInput.value = '';
             this.clearAttachments();
             
-            const payload = {
-                projectApiKey: this.apiKey,
-                sessionId: this.sessionId,
-                text: ticketMessageText,
-                language: 'ru'
-            };
+            // multipart/form-data: медиа передаются файлами, без base64
+            const formData = new FormData();
+            formData.append('projectApiKey', this.apiKey);
+            formData.append('sessionId', this.sessionId);
+            formData.append('text', ticketMessageText);
+            formData.append('language', 'ru');
             
             if (savedAudioBlob) {
-                payload.audioBase64 = await this.blobToBase64(savedAudioBlob);
+                formData.append('audio', savedAudioBlob, 'audio.webm');
             }
             
             if (savedImage) {
-                payload.imageBase64 = savedImage;
+                formData.append('image', this.base64ToBlob(savedImage), 'image.png');
             }
             
-            console.log('Creating ticket with payload:', payload);
+            console.log('Creating ticket for session:', this.sessionId);
             
             const response = await fetch(`${this.apiUrl}/api/tickets`, {
                 method: 'POST',
-                headers: { 'Content-Type': 'application/json' },
-                body: JSON.stringify(payload)
+                body: formData
             });
             
             console.log('Response status:', response.status);
@@ -469,6 +539,7 @@
                 // Upload audio to MinIO first
                 const formData = new FormData();
                 formData.append('file', savedAudioBlob, 'audio.webm');
+                formData.append('language', 'ru'); // тот же язык, что и у тикета - общий кэш транскрипций
                 const uploadResponse = await fetch(`${this.apiUrl}/api/upload`, {
                     method: 'POST',
                     body: formData
@@ -617,6 +688,7 @@
         createNewTicket() {
             this.currentTicket = null;
             this.messages = [];
+            this.hasOlderMessages = false;
             this.isTicketClosed = false;
             this.showNewTicketForm();
         }
@@ -628,14 +700,6 @@
             }, 100);
         }
 
-        async blobToBase64(blob) {
-            return new Promise((resolve) => {
-                const reader = new FileReader();
-                reader.onloadend = () => resolve(reader.result.split(',')[1]);
-                reader.readAsDataURL(blob);
-            });
-        }
-
         base64ToBlob(base64) {
             const byteString = atob(base64);
             const ab = new ArrayBuffer(byteString.length);
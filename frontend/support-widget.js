@@ -223,27 +223,22 @@
             this.elements.loadingSpinner.classList.add('show');
 
             try {
-                const ticketData = {
-                    projectApiKey: this.apiKey,
-                    text: text
-                };
+                // Send files as multipart parts (no base64 inflation)
+                const formData = new FormData();
+                formData.append('projectApiKey', this.apiKey);
+                formData.append('text', text);
 
-                // Convert files to base64 if present
                 if (imageFile) {
-                    ticketData.imageBase64 = await this.fileToBase64(imageFile);
+                    formData.append('image', imageFile, imageFile.name);
                 }
 
-                // Convert recorded audio to base64 if present
                 if (this.recordedAudioBlob) {
-                    ticketData.audioBase64 = await this.blobToBase64(this.recordedAudioBlob);
+                    formData.append('audio', this.recordedAudioBlob, 'audio.webm');
                 }
 
                 const response = await fetch(`${this.apiUrl}/api/tickets`, {
                     method: 'POST',
-                    headers: {
-                        'Content-Type': 'application/json'
-                    },
-                    body: JSON.stringify(ticketData)
+                    body: formData
                 });
 
                 if (!response.ok) {
@@ -277,32 +272,6 @@
                 this.elements.form.style.display = 'flex';
             }
         }
-
-        fileToBase64(file) {
-            return new Promise((resolve, reject) => {
-                const reader = new FileReader();
-                reader.onload = () => {
-                    // Remove data URL prefix (e.g., "data:image/png;base64,")
-                    const base64 = reader.result.split(',')[1];
-                    resolve(base64);
-                };
-                reader.onerror = reject;
-                reader.readAsDataURL(file);
-            });
-        }
-
-        blobToBase64(blob) {
-            return new Promise((resolve, reject) => {
-                const reader = new FileReader();
-                reader.onload = () => {
-                    // Remove data URL prefix
-                    const base64 = reader.result.split(',')[1];
-                    resolve(base64);
-                };
-                reader.onerror = reject;
-                reader.readAsDataURL(blob);
-            });
-        }
     }
 
     // Global initialization